@@ -1,14 +1,29 @@
 package es.ucm.fdi.control;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.ParseException;
 
 import es.ucm.fdi.control.evbuild.EventParser;
 import es.ucm.fdi.ini.*;
 import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.simulation.EnsembleStatistics;
+import es.ucm.fdi.model.simulation.ReportArchiveWriter;
+import es.ucm.fdi.model.simulation.ReportSelection;
+import es.ucm.fdi.model.simulation.RunStatistics;
 import es.ucm.fdi.model.simulation.SimulationException;
 import es.ucm.fdi.model.simulation.TrafficSimulation;
 import es.ucm.fdi.model.simulation.TrafficSimulation.*;
@@ -35,6 +50,13 @@ public class Controller {
      */
     private Ini iniInput;
 
+    /**
+     * {@code Event}s ya construidos del escenario, 
+     * cargados de un escenario compilado, que se usan 
+     * en lugar de {@code iniInput}, o {@code null}.
+     */
+    private List<Event> scenario;
+
     /**
      * Flujo de salida donde se vuelcan los datos
      * del simulador tras cada actualización.
@@ -51,6 +73,12 @@ public class Controller {
      * Simulación a la que el controlador tiene acceso.
      */
     private TrafficSimulation simulator;
+
+    /**
+     * Número de hilos con los que se construyen los 
+     * {@code Event}s y avanza el simulador.
+     */
+    private int threads = 1;
     
     /**
      * Usado para mostrar errores por consola.
@@ -119,14 +147,18 @@ public class Controller {
         // 1 //
         // Recorre las secciones del archivo .ini de entrada
         // y construye y guarda los eventos en el simulador.
-        try {
-            pushEvents();
-        }
-        catch (ParseException e1) {
-            throw e1;
-        }
-        catch (IllegalArgumentException e2) {
-            throw e2;
+        // Sin archivo (p. ej. al reanudar un checkpoint), 
+        // se ejecutan los eventos que ya tenga.
+        if ( iniInput != null || scenario != null ) {
+            try {
+                pushEvents();
+            }
+            catch (ParseException e1) {
+                throw e1;
+            }
+            catch (IllegalArgumentException e2) {
+                throw e2;
+            }
         }
         
         BatchListener error = new BatchListener();
@@ -151,21 +183,7 @@ public class Controller {
     public void pushEvents() 
             throws ParseException, IllegalArgumentException {
         
-        EventParser parser = new EventParser();
-
-        for ( IniSection sec : iniInput.getSections() ) {
-        	Event ev;
-            
-            try {
-        		ev = parser.parse(sec);
-                
-        	}
-            catch (IllegalArgumentException e) {
-            	throw new ParseException(
-                    "Event parsing failed:\n" + 
-                    		e.getMessage());
-            }
-
+        for ( Event ev : parseEvents(threads) ) {
             try {
                 simulator.pushEvent(ev);   
             }
@@ -175,6 +193,286 @@ public class Controller {
         }
     }
 
+    /**
+     * Usa los {@code Event}s de un escenario compilado 
+     * en lugar de los de {@code iniInput}.
+     * 
+     * @param events    - {@code Event}s del escenario, 
+     *                  en su orden
+     */
+    public void setScenario(List<Event> events) {
+        scenario = events;
+    }
+
+    /**
+     * Construye, en varios hilos, los {@code Event}s 
+     * del archivo de entrada en su orden, o devuelve 
+     * los del escenario compilado si lo hay.
+     * 
+     * @throws ParseException   if event parsing failed
+     */
+    private List<Event> parseEvents(int threads) 
+            throws ParseException {
+        if ( scenario != null ) {
+            return scenario;
+        }
+        try {
+            return new EventParser().parseAll(iniInput.getSections(), threads);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ParseException(
+                "Event parsing failed:\n" + 
+                        e.getMessage());
+        }
+    }
+
+    /**
+     * Construye el {@code Event} de una sección 
+     * del archivo de entrada.
+     * 
+     * @throws ParseException   if event parsing failed
+     */
+    private Event parseEvent(EventParser parser, IniSection sec) 
+            throws ParseException {
+        try {
+            return parser.parse(sec);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ParseException(
+                "Event parsing failed:\n" + 
+                        e.getMessage());
+        }
+    }
+
+    /**
+     * <p>
+     * Método de ejecución de un conjunto de réplicas del 
+     * escenario de {@code iniInput}, que sólo se diferencian 
+     * en las semillas de los {@code CarVehicle}s:
+     * </p> <p>
+     * 1. Construye una única vez los {@code Event}s del 
+     * archivo de entrada, que comparten todas las réplicas.
+     * </p> <p>
+     * 2. Ejecuta las réplicas en varios hilos, cada una con 
+     * su propia {@code TrafficSimulation} y sin informes. La 
+     * réplica {@code 0} usa las semillas del archivo y cada una 
+     * de las demás, semillas derivadas de su número.
+     * </p> <p>
+     * 3. Agrega las estadísticas de cada réplica según 
+     * terminan y escribe en {@code outStream} las tablas 
+     * de medias y percentiles.
+     * </p>
+     * 
+     * @param replicas  - número de réplicas
+     * @param threads   - número de réplicas a la vez
+     *
+     * @throws ParseException                   if event parsing failed 
+     * @throws SimulationException              if an error ocurred in 
+     *                                          any replica
+     * @throws IOException                      if an error ocurred 
+     *                                          writing the tables
+     */
+    public void executeEnsemble(int replicas, int threads) 
+            throws ParseException, SimulationException, IOException {
+
+        // 1 //
+        List<Event> events = parseEvents(threads);
+
+        // 2 //
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        EnsembleStatistics stats = new EnsembleStatistics(replicas);
+        try {
+            List<Future<RunStatistics>> runs = new ArrayList<>();
+            for (int r = 0; r < replicas; ++r) {
+                int replica = r;
+                runs.add( pool.submit(() -> runReplica(events, replica)) );
+            }
+
+            // 3 //
+            // Se agregan en orden y se sueltan enseguida.
+            for (int r = 0; r < replicas; ++r) {
+                RunStatistics run = runs.get(r).get();
+                runs.set(r, null);
+                if ( run.getError() != null ) {
+                    throw new SimulationException(
+                        "Replica " + r + ": " + run.getError());
+                }
+                stats.add(r, run);
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new SimulationException(
+                "Ensemble execution failed: " + e.getMessage());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        stats.toIni().store(outStream);
+    }
+
+    /**
+     * <p>
+     * Método de ejecución de un barrido de parámetros de las 
+     * {@code Junction}s del escenario de {@code iniInput}:
+     * </p> <p>
+     * 1. Construye una única vez los {@code Event}s del archivo 
+     * de entrada y los de cada variante de las {@code Junction}s 
+     * del barrido.
+     * </p> <p>
+     * 2. Ejecuta cada combinación en varios hilos, con su propia 
+     * {@code TrafficSimulation} y sin informes.
+     * </p> <p>
+     * 3. Escribe en {@code outStream}, en orden y según terminan, 
+     * una sección {@code [sweep_result]} por combinación con sus 
+     * variantes, los {@code Vehicle}s llegados y el retraso medio 
+     * (ticks esperando en cruces) de los {@code Vehicle}s.
+     * </p>
+     * 
+     * @param sweep     - archivo {@code .ini} del barrido
+     * @param threads   - número de combinaciones a la vez
+     *
+     * @throws ParseException                   if event or sweep 
+     *                                          parsing failed 
+     * @throws SimulationException              if an error ocurred in 
+     *                                          any combination
+     * @throws IOException                      if an error ocurred 
+     *                                          writing the table
+     * 
+     * @see SweepPlan
+     */
+    public void executeSweep(Ini sweep, int threads) 
+            throws ParseException, SimulationException, IOException {
+
+        SweepPlan plan;
+        try {
+            plan = new SweepPlan(sweep);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ParseException(
+                "Sweep parsing failed:\n" + e.getMessage());
+        }
+
+        // 1 //
+        // Posición en la lista de eventos de cada Junction del
+        // barrido, y sus eventos con cada variante.
+        EventParser parser = new EventParser();
+        List<Event> events = new ArrayList<>();
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        Map<String, Event[]> variants = new HashMap<>();
+        List<String> swept = plan.getJunctionIDs();
+
+        for ( IniSection sec : iniInput.getSections() ) {
+            String id = sec.getValue("id");
+            if ( sec.getTag().equals("new_junction") && swept.contains(id) ) {
+                Event[] options = new Event[plan.numVariants(id)];
+                for (int v = 0; v < options.length; ++v) {
+                    options[v] = parseEvent(parser, plan.apply(sec, v));
+                }
+                positions.put(id, events.size());
+                variants.put(id, options);
+            }
+            events.add( parseEvent(parser, sec) );
+        }
+        for ( String id : swept ) {
+            if ( ! positions.containsKey(id) ) {
+                throw new ParseException(
+                    "Sweep parsing failed:\nJunction with id: " + id + 
+                    " not found in events file.");
+            }
+        }
+
+        // 2 //
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<IniSection>> runs = new ArrayList<>();
+            for (int c = 0; c < plan.size(); ++c) {
+                List<Event> combination = new ArrayList<>(events);
+                IniSection result = new IniSection("sweep_result");
+                result.setValue("combination", c);
+                for ( String id : swept ) {
+                    int v = plan.variantOf(id, c);
+                    combination.set(positions.get(id), variants.get(id)[v]);
+                    result.setValue(id, plan.label(id, v));
+                }
+
+                runs.add( pool.submit(() -> 
+                    sweepResult(result, runReplica(combination, 0))) );
+            }
+
+            // 3 //
+            for (int c = 0; c < plan.size(); ++c) {
+                IniSection result = runs.get(c).get();
+                runs.set(c, null);
+                result.store(outStream);
+                outStream.write(System.lineSeparator().getBytes());
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            Throwable cause = ( e.getCause() != null ) ? e.getCause() : e;
+            if ( cause instanceof SimulationException ) {
+                throw (SimulationException) cause;
+            }
+            throw new SimulationException(
+                "Sweep execution failed: " + cause.getMessage());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Completa la sección de resultados de una combinación 
+     * del barrido con sus indicadores.
+     * 
+     * @throws SimulationException  if an error ocurred in 
+     *                              the combination
+     */
+    private IniSection sweepResult(IniSection result, RunStatistics run) 
+            throws SimulationException {
+
+        if ( run.getError() != null ) {
+            throw new SimulationException(
+                "Combination " + result.getValue("combination") + 
+                ": " + run.getError());
+        }
+
+        int arrived = 0;
+        long delay = 0;
+        for (int i = 0; i < run.numVehicles(); ++i) {
+            if ( run.getArrival(i) > 0 ) {
+                arrived++;
+            }
+            delay += run.getVehicleWait(i);
+        }
+
+        result.setValue("vehicles", run.numVehicles());
+        result.setValue("arrived", arrived);
+        result.setValue("mean_delay", ( run.numVehicles() == 0 ) ? "-" :
+            String.format(Locale.ROOT, "%.2f", (double) delay / run.numVehicles()));
+
+        return result;
+    }
+
+    /**
+     * Ejecuta una réplica del escenario durante 
+     * {@code batchTimeLimit} ticks y devuelve 
+     * sus estadísticas.
+     */
+    private RunStatistics runReplica(List<Event> events, int replica) {
+        TrafficSimulation sim = new TrafficSimulation();
+        sim.setSeedSalt(replica);
+        for (Event ev : events) {
+            sim.pushEvent(ev);
+        }
+
+        RunStatistics run = new RunStatistics();
+        sim.addSimulatorListener(run);
+        sim.execute(batchTimeLimit, null);
+
+        return run;
+    }
+
     /**
      * Ejecuta el simulador durante un tiempo
      * determinado {@code time}.
@@ -186,6 +484,144 @@ public class Controller {
 		simulator.execute(time, outStream);
     }
 
+    /**
+     * Fija el número de hilos con los que se construyen 
+     * los {@code Event}s del archivo de entrada y con los 
+     * que el simulador avanza cada tick.
+     * 
+     * @param threads   - número de hilos de trabajo
+     */
+    public void setParallelism(int threads) {
+        this.threads = threads;
+        simulator.setParallelism(threads);
+    }
+
+    /**
+     * Activa o desactiva el avance rápido del 
+     * simulador en los ticks sin tráfico.
+     * 
+     * @param enabled   - si se activa el avance rápido
+     */
+    public void setFastForward(boolean enabled) {
+        simulator.setFastForward(enabled);
+    }
+
+    /**
+     * Hace que el simulador escriba los informes 
+     * desde un hilo aparte.
+     * 
+     * @param slots     - ticks que pueden esperar a ser 
+     *                  escritos, o {@code 0} para 
+     *                  escribirlos en el propio tick
+     * @param policy    - qué hacer si no queda sitio
+     */
+    public void setAsyncReports(int slots, AsyncIniWriter.Backpressure policy) {
+        simulator.setAsyncReports(slots, policy);
+    }
+
+    /**
+     * Elige si el simulador escribe los informes 
+     * en el formato binario por columnas.
+     * 
+     * @param enabled   - si se usa el formato columnar
+     */
+    public void setColumnarReports(boolean enabled) {
+        simulator.setColumnarReports(enabled);
+    }
+
+    /**
+     * Hace que el simulador escriba los informes en 
+     * un archivo de segmentos con índice.
+     * 
+     * @param archive   - archivo de segmentos, o 
+     *                  {@code null} para escribirlos 
+     *                  en el flujo de salida
+     */
+    public void setReportArchive(ReportArchiveWriter archive) {
+        simulator.setReportArchive(archive);
+    }
+
+    /**
+     * Hace que el simulador lea los eventos de un flujo 
+     * {@code .ini} según avanza, sin cargarlo entero, en 
+     * lugar de los de {@code iniInput}. El flujo no se 
+     * cierra al terminar.
+     * 
+     * @param in            - flujo con los eventos, 
+     *                      ordenados por tiempo
+     * @param lookahead     - ticks por delante del actual 
+     *                      hasta los que se leen
+     */
+    public void setEventStream(InputStream in, int lookahead) {
+        simulator.setEventSource(new IniEventSource(in), lookahead);
+    }
+
+    /**
+     * Elige qué informes escribe el simulador.
+     * 
+     * @param selection     - informes que se escriben, o 
+     *                      {@code null} para todos
+     */
+    public void setReportSelection(ReportSelection selection) {
+        simulator.setReportSelection(selection);
+    }
+
+    /**
+     * Hace que el simulador sólo informe de los 
+     * objetos que cambian en cada tick.
+     * 
+     * @param keyframeInterval  - ticks entre informes 
+     *                          completos, o {@code 0} 
+     *                          para informar de todo
+     */
+    public void setDeltaReports(int keyframeInterval) {
+        simulator.setDeltaReports(keyframeInterval);
+    }
+
+    /**
+     * Elige si el simulador guarda el estado de 
+     * los {@code Vehicle}s fuera del heap.
+     * 
+     * @param offHeap   - si se guarda fuera del heap
+     */
+    public void setOffHeapVehicles(boolean offHeap) {
+        simulator.setOffHeapVehicles(offHeap);
+    }
+
+    /**
+     * Hace que el simulador busque las rutas de origen 
+     * y destino con un índice de landmarks.
+     * 
+     * @param file      - fichero del índice o {@code null}
+     */
+    public void setLandmarkIndex(File file) {
+        simulator.setLandmarkIndex(file);
+    }
+
+    /**
+     * Guarda el estado completo del simulador 
+     * en un checkpoint.
+     * 
+     * @param file      - fichero del checkpoint
+     * 
+     * @throws IOException  if writing fails
+     */
+    public void saveCheckpoint(File file) throws IOException {
+        simulator.saveCheckpoint(file);
+    }
+
+    /**
+     * Sustituye el estado del simulador por 
+     * el de un checkpoint.
+     * 
+     * @param file      - fichero del checkpoint
+     * 
+     * @throws IOException  if reading fails
+     */
+    public void loadCheckpoint(File file) throws IOException {
+        simulator.loadCheckpoint(file);
+    }
+
     /**
      * Cambia el archivo {@code Ini} de entrada
      * dado un {@code InputStream}
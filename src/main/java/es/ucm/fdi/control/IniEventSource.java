@@ -0,0 +1,109 @@
+package es.ucm.fdi.control;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import es.ucm.fdi.control.evbuild.EventParser;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.IniSectionReader;
+import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.simulation.EventSource;
+import es.ucm.fdi.model.simulation.SimulationException;
+
+/**
+ * {@link EventSource} que lee las secciones de un 
+ * archivo {@code .ini} de una en una según las pide 
+ * el simulador, sin cargar el archivo entero.
+ */
+public class IniEventSource implements EventSource, Closeable {
+
+    /**
+     * Lector de las secciones del archivo.
+     */
+    private IniSectionReader reader;
+
+    /**
+     * Constructor de los {@code Event}s.
+     */
+    private EventParser parser = new EventParser();
+
+    /**
+     * Siguiente {@code Event}, ya leído, o {@code null}.
+     */
+    private Event next = null;
+
+    /**
+     * Si se ha llegado al final del archivo.
+     */
+    private boolean finished = false;
+
+    /**
+     * Constructor de {@link IniEventSource}.
+     * 
+     * @param in    - flujo del archivo {@code .ini}
+     */
+    public IniEventSource(InputStream in) {
+        reader = new IniSectionReader(in);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws SimulationException  if the file can't be 
+     *                              read or the section 
+     *                              is not a valid event
+     */
+    @Override
+    public Event peek() throws SimulationException {
+        if ( next == null && ! finished ) {
+            IniSection sec;
+            try {
+                sec = reader.next();
+            }
+            catch (IOException e) {
+                throw new SimulationException(
+                    "Event reading failed:\n" + e.getMessage());
+            }
+
+            if ( sec == null ) {
+                finished = true;
+            }
+            else {
+                try {
+                    next = parser.parse(sec);
+                }
+                catch (IllegalArgumentException e) {
+                    throw new SimulationException(
+                        "Event parsing failed:\n" + e.getMessage());
+                }
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws SimulationException  if the file can't be 
+     *                              read or the section 
+     *                              is not a valid event
+     */
+    @Override
+    public Event poll() throws SimulationException {
+        Event polled = peek();
+        next = null;
+        return polled;
+    }
+
+    /**
+     * Cierra el flujo del archivo.
+     * 
+     * @throws IOException  if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
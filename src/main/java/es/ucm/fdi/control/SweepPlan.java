@@ -0,0 +1,327 @@
+package es.ucm.fdi.control;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+
+/**
+ * <p>
+ * Barrido de parámetros de {@code Junction}s, leído de un
+ * archivo {@code .ini} con una sección {@code [sweep]} por
+ * cada {@code Junction} a variar. Ejemplo:
+ * </p> <p>
+ * [sweep] <br>
+ * junction = j1 <br>
+ * type = rr, mc, default <br>
+ * min_time_slice = 1-3 <br>
+ * max_time_slice = 4, 6
+ * </p> <p>
+ * Cada clave da una lista de valores separados por comas,
+ * y los enteros admiten rangos {@code a-b}. Los valores de
+ * {@code type} son {@code rr}, {@code mc} y {@code default};
+ * si no se da, se toma {@code rr}. Los tiempos sólo se
+ * combinan con {@code rr}, y si no se dan se mantienen los
+ * del escenario.
+ * </p> <p>
+ * El barrido recorre todas las combinaciones de las variantes
+ * de cada {@code Junction}, numeradas de forma que la
+ * última {@code Junction} es la que cambia más deprisa.
+ * </p>
+ */
+public class SweepPlan {
+
+    /**
+     * Etiqueta de las secciones del barrido.
+     */
+    private static final String SECTION_TAG = "sweep";
+
+    /**
+     * Tipo de {@code Junction} sin semáforos especiales.
+     */
+    private static final String DEFAULT_TYPE = "default";
+
+    /**
+     * Variantes de cada {@code Junction}, por su ID.
+     */
+    private final Map<String, List<Variant>> variants = new LinkedHashMap<>();
+
+    /**
+     * Combinaciones entre dos variantes seguidas
+     * de cada {@code Junction}, por su ID.
+     */
+    private final Map<String, Integer> strides = new LinkedHashMap<>();
+
+    /**
+     * Número de combinaciones.
+     */
+    private final int size;
+
+    /**
+     * Una variante de una {@code Junction}: su tipo
+     * y, en las {@code rr}, sus tiempos ({@code -1}
+     * si se mantienen los del escenario).
+     */
+    private static class Variant {
+
+        final String type;
+        final int minTime, maxTime;
+
+        Variant(String t, int min, int max) {
+            type = t;
+            minTime = min;
+            maxTime = max;
+        }
+
+        /**
+         * Descripción de la variante en la tabla
+         * de resultados. Ejemplo: "rr:1:4".
+         */
+        String label() {
+            StringBuilder label = new StringBuilder(type);
+            if ( minTime != -1 ) {
+                label.append(":" + minTime);
+            }
+            if ( maxTime != -1 ) {
+                label.append(":" + maxTime);
+            }
+
+            return label.toString();
+        }
+    }
+
+    /**
+     * Constructor de {@link SweepPlan}.
+     *
+     * @param sweep     - archivo {@code .ini} con
+     *                  las secciones del barrido
+     *
+     * @throws IllegalArgumentException     if a sweep section
+     *                                      is not valid
+     */
+    public SweepPlan(Ini sweep) throws IllegalArgumentException {
+        long combinations = 1;
+
+        for ( IniSection sec : sweep.getSections() ) {
+            if ( ! sec.getTag().equals(SECTION_TAG) ) {
+                throw new IllegalArgumentException(
+                    "Unknown section in sweep file: " + sec.getTag());
+            }
+
+            String id = sec.getValue("junction");
+            if ( id == null ) {
+                throw new IllegalArgumentException(
+                    "Sweep section without junction.");
+            }
+            if ( variants.containsKey(id) ) {
+                throw new IllegalArgumentException(
+                    "Junction with id: " + id + " swept twice.");
+            }
+
+            List<Variant> list = parseVariants(sec, id);
+            variants.put(id, list);
+
+            combinations *= list.size();
+            if ( combinations > Integer.MAX_VALUE ) {
+                throw new IllegalArgumentException(
+                    "Too many combinations in sweep.");
+            }
+        }
+
+        size = (int) combinations;
+
+        // La última Junction es la que cambia más deprisa.
+        List<String> ids = getJunctionIDs();
+        int stride = 1;
+        for (int i = ids.size() - 1; i >= 0; --i) {
+            strides.put(ids.get(i), stride);
+            stride *= numVariants(ids.get(i));
+        }
+    }
+
+    /**
+     * Construye las variantes de una sección del barrido.
+     */
+    private List<Variant> parseVariants(IniSection sec, String id) {
+        String types = sec.getValue("type");
+        List<Integer> mins = parseInts(sec, "min_time_slice");
+        List<Integer> maxs = parseInts(sec, "max_time_slice");
+
+        List<Variant> list = new ArrayList<>();
+        for ( String type : splitList(types != null ? types : "rr") ) {
+            switch (type) {
+                case "rr":
+                    for ( int min : mins ) {
+                        for ( int max : maxs ) {
+                            if ( min == -1 || max == -1 || min <= max ) {
+                                list.add(new Variant(type, min, max));
+                            }
+                        }
+                    }
+                    break;
+                case "mc":
+                case DEFAULT_TYPE:
+                    list.add(new Variant(type, -1, -1));
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Invalid junction type in sweep of junction with id: " +
+                        id + ": " + type);
+            }
+        }
+
+        if ( list.isEmpty() ) {
+            throw new IllegalArgumentException(
+                "No valid time slices in sweep of junction with id: " + id);
+        }
+
+        return list;
+    }
+
+    /**
+     * Lee una lista de enteros no negativos, con rangos
+     * {@code a-b}. Si no hay clave, devuelve {@code -1},
+     * que mantiene el valor del escenario.
+     */
+    private static List<Integer> parseInts(IniSection sec, String key) {
+        List<Integer> values = new ArrayList<>();
+        String value = sec.getValue(key);
+        if ( value == null ) {
+            values.add(-1);
+            return values;
+        }
+
+        try {
+            for ( String item : splitList(value) ) {
+                int dash = item.indexOf('-');
+                if ( dash > 0 ) {
+                    int from = Integer.parseInt(item.substring(0, dash).trim());
+                    int to = Integer.parseInt(item.substring(dash + 1).trim());
+                    for (int v = from; v <= to; ++v) {
+                        values.add(v);
+                    }
+                }
+                else {
+                    int v = Integer.parseInt(item);
+                    if ( v < 0 ) {
+                        throw new NumberFormatException();
+                    }
+                    values.add(v);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                "Invalid value for " + key + " in sweep: " + value);
+        }
+
+        return values;
+    }
+
+    /**
+     * Separa una lista de valores por comas.
+     */
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for ( String item : value.split(",") ) {
+            if ( ! item.trim().isEmpty() ) {
+                items.add(item.trim());
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Devuelve el número de combinaciones del barrido.
+     *
+     * @return  número de combinaciones
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Devuelve los IDs de las {@code Junction}s
+     * del barrido, en orden.
+     *
+     * @return  IDs de las {@code Junction}s
+     */
+    public List<String> getJunctionIDs() {
+        return new ArrayList<>(variants.keySet());
+    }
+
+    /**
+     * Devuelve el número de variantes de
+     * una {@code Junction} del barrido.
+     *
+     * @param id    - ID de la {@code Junction}
+     *
+     * @return      número de variantes
+     */
+    public int numVariants(String id) {
+        return variants.get(id).size();
+    }
+
+    /**
+     * Devuelve la variante que toma una
+     * {@code Junction} en una combinación.
+     *
+     * @param id            - ID de la {@code Junction}
+     * @param combination   - número de combinación
+     *
+     * @return              número de variante
+     */
+    public int variantOf(String id, int combination) {
+        return ( combination / strides.get(id) ) % numVariants(id);
+    }
+
+    /**
+     * Devuelve una copia de la sección {@code new_junction}
+     * de una {@code Junction} con una de sus variantes.
+     *
+     * @param junction  - sección del escenario
+     * @param variant   - número de variante
+     *
+     * @return          sección modificada
+     */
+    public IniSection apply(IniSection junction, int variant) {
+        Variant v = variants.get(junction.getValue("id")).get(variant);
+
+        IniSection copy = new IniSection(junction.getTag());
+        for ( String key : junction.getKeys() ) {
+            copy.setValue(key, junction.getValue(key));
+        }
+
+        if ( v.type.equals(DEFAULT_TYPE) ) {
+            copy.eraseKey("type");
+        }
+        else {
+            copy.setValue("type", v.type);
+        }
+        if ( v.minTime != -1 ) {
+            copy.setValue("min_time_slice", v.minTime);
+        }
+        if ( v.maxTime != -1 ) {
+            copy.setValue("max_time_slice", v.maxTime);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Devuelve la descripción de una variante
+     * en la tabla de resultados.
+     *
+     * @param id        - ID de la {@code Junction}
+     * @param variant   - número de variante
+     *
+     * @return          descripción de la variante
+     */
+    public String label(String id, int variant) {
+        return variants.get(id).get(variant).label();
+    }
+}
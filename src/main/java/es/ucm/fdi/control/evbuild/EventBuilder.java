@@ -2,7 +2,6 @@ package es.ucm.fdi.control.evbuild;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import es.ucm.fdi.ini.IniSection;
 import es.ucm.fdi.model.events.Event;
@@ -17,15 +16,45 @@ public abstract class EventBuilder {
 	 * Nombre de la {@code IniSection}.
 	 */
 	protected String iniName;
+
+	/**
+	 * Valor de la clave {@code type} de la 
+	 * {@code IniSection}, o {@code null} si 
+	 * no debe tenerla.
+	 */
+	protected String iniType;
+
+	/**
+	 * Si la {@code IniSection} puede tener 
+	 * cualquier valor de {@code type}.
+	 */
+	protected boolean anyType;
 	
 	/**
-	 * Constructor de {@link EventBuilder}.
+	 * Constructor de {@link EventBuilder} para 
+	 * {@code IniSection}s de cualquier tipo.
 	 * 
 	 * @param name 	- nombre de la 
 	 * 				{@code IniSection}
 	 */
 	public EventBuilder(String name) {
 		iniName = name;
+		anyType = true;
+	}
+
+	/**
+	 * Constructor de {@link EventBuilder} para 
+	 * {@code IniSection}s de un tipo dado.
+	 * 
+	 * @param name 	- nombre de la 
+	 * 				{@code IniSection}
+	 * @param type 	- valor de {@code type}, o 
+	 * 				{@code null} si no debe tenerlo
+	 */
+	public EventBuilder(String name, String type) {
+		iniName = name;
+		iniType = type;
+		anyType = false;
 	}
 	
 	abstract Event parse(IniSection ini);
@@ -429,11 +458,24 @@ public abstract class EventBuilder {
 	
 	/**
 	 * Comprueba si un {@code ID} dado es válido
-	 * para el simulador.
+	 * para el simulador: no vacío y formado por 
+	 * letras, dígitos y {@code _}, como {@code \\w+}.
 	 * 
 	 * @return 	si el {@code ID} es válido
 	 */
 	static boolean validID(String id) {
-		return 	Pattern.matches("\\w+", id);
+		if ( id.isEmpty() ) {
+			return false;
+		}
+
+		for ( int i = 0; i < id.length(); ++i ) {
+			char c = id.charAt(i);
+			if ( ! ( (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') 
+					|| (c >= '0' && c <= '9') || c == '_' ) ) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 }
@@ -1,5 +1,15 @@
 package es.ucm.fdi.control.evbuild;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import es.ucm.fdi.ini.IniSection;
 import es.ucm.fdi.model.events.Event;
 
@@ -33,9 +43,41 @@ public class EventParser {
 		// Vehículos
 		new NewVehicleBuilder(),
 		new NewCarVehicleBuilder(),
-		new NewBikeVehicleBuilder()
+		new NewBikeVehicleBuilder(),
+		new NewODVehicleBuilder()
 	};
 
+	/**
+	 * Builders de los {@code Event}s que no dependen 
+	 * de la clave {@code type}, por etiqueta.
+	 */
+	private static Map<String, EventBuilder> anyTypeBuilders = new HashMap<>();
+
+	/**
+	 * Builders de los demás {@code Event}s, por 
+	 * etiqueta y valor de {@code type} (o {@code null} 
+	 * si no tienen).
+	 */
+	private static Map<String, Map<String, EventBuilder>> typedBuilders = new HashMap<>();
+
+	static {
+		for ( EventBuilder event : events ) {
+			if ( event.anyType ) {
+				anyTypeBuilders.put(event.iniName, event);
+			}
+			else {
+				typedBuilders.computeIfAbsent(event.iniName, tag -> new HashMap<>())
+						.put(event.iniType, event);
+			}
+		}
+	}
+
+	/**
+	 * Número mínimo de secciones de cada bloque 
+	 * que se construye en un hilo aparte.
+	 */
+	private static final int MIN_BLOCK = 1024;
+
 	/**
 	 * Constructor de {@link EventParser}.
 	 */
@@ -45,7 +87,9 @@ public class EventParser {
 	/**
 	 * Función de búsqueda de {@code Event} a partir
 	 * de la {@code IniSection} de un archivo con 
-	 * extensión {@code .ini}.
+	 * extensión {@code .ini}. El {@code EventBuilder} 
+	 * se busca directamente por la etiqueta y el 
+	 * tipo de la sección.
 	 * 
 	 * @param ini 	- {@code IniSection} del archivo
 	 * 
@@ -61,25 +105,86 @@ public class EventParser {
 	public Event parse(IniSection ini) 
 			throws IllegalArgumentException {
 		
-		for ( EventBuilder event : events ) {
-			Event next;
-			
-			try {
-				next = event.parse(ini);
+		EventBuilder builder = anyTypeBuilders.get(ini.getTag());
+		if ( builder == null ) {
+			Map<String, EventBuilder> types = typedBuilders.get(ini.getTag());
+			if ( types != null ) {
+				builder = types.get(ini.getValue("type"));
 			}
-			catch (IllegalArgumentException e) {
-				throw e;
-			}				
-			
-			if (next != null) {
-				return next;
-			} 
 		}
-		
-		// Si llegamos a este punto es que todos 
-		// los parse han devuelto null
-		throw new IllegalArgumentException(
-			"No event found."
-		);
+
+		Event next = (builder != null) ? builder.parse(ini) : null;
+		if ( next == null ) {
+			throw new IllegalArgumentException(
+				"No event found."
+			);
+		}
+
+		return next;
+	}
+
+	/**
+	 * Construye los {@code Event}s de una lista de 
+	 * {@code IniSection}s, repartida en bloques entre 
+	 * varios hilos si es lo bastante larga. Los 
+	 * {@code Event}s se devuelven en el orden de 
+	 * sus secciones.
+	 * 
+	 * @param sections 	- {@code IniSection}s del archivo
+	 * @param threads 	- número máximo de hilos
+	 * 
+	 * @return 			{@code Event}s de las secciones
+	 * 
+	 * @throws IllegalArgumentException 	if a section is not 
+	 * 										a valid event; if there 
+	 * 										are several, the first one
+	 */
+	public List<Event> parseAll(List<IniSection> sections, int threads) 
+			throws IllegalArgumentException {
+
+		Event[] parsed = new Event[sections.size()];
+		int blocks = Math.min(threads, parsed.length / MIN_BLOCK);
+
+		if ( blocks <= 1 ) {
+			for ( int i = 0; i < parsed.length; ++i ) {
+				parsed[i] = parse(sections.get(i));
+			}
+			return Arrays.asList(parsed);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(blocks);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			int size = (parsed.length + blocks - 1) / blocks;
+			for ( int from = 0; from < parsed.length; from += size ) {
+				int first = from;
+				int last = Math.min(parsed.length, from + size);
+				done.add( pool.submit(() -> {
+					for ( int i = first; i < last; ++i ) {
+						parsed[i] = parse(sections.get(i));
+					}
+				}) );
+			}
+
+			// Se esperan en orden, para dar el primer error.
+			for ( Future<?> block : done ) {
+				block.get();
+			}
+		}
+		catch (ExecutionException e) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Event parsing interrupted");
+		}
+		finally {
+			pool.shutdownNow();
+		}
+
+		return Arrays.asList(parsed);
 	}
 }
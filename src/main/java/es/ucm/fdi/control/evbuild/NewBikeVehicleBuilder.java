@@ -29,11 +29,11 @@ public class NewBikeVehicleBuilder extends EventBuilder {
 
 	/** 
 	 * Constructor de {@link NewBikeVehicleBuilder} que 
-	 * pasa el atributo <code>SECTION_TAG</code> al 
-	 * constructor de la superclase.
+	 * pasa los atributos <code>SECTION_TAG</code> y 
+	 * <code>TYPE</code> al constructor de la superclase.
 	 */
 	public NewBikeVehicleBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, TYPE);
 	}
 
 	/**
@@ -30,11 +30,11 @@ public class NewCarVehicleBuilder extends EventBuilder {
 
 	/**
 	 * Constructor de {@link NewCarVehicleBuilder} que 
-	 * pasa el atributo {@code SECTION_TAG} al 
-	 * constructor de la superclase.
+	 * pasa los atributos {@code SECTION_TAG} y 
+	 * {@code TYPE} al constructor de la superclase.
 	 */
 	public NewCarVehicleBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, TYPE);
 	}
 
 	/**
@@ -28,11 +28,11 @@ public class NewCrowdedJunctionBuilder extends EventBuilder {
 
     /**
      * Constructor de {@link NewCrowdedJunctionBuilder} que pasa
-     * el parámetro {@code SECTION_TAG} al constructor de la
-     * superclase.
+     * los parámetros {@code SECTION_TAG} y {@code TYPE} al
+     * constructor de la superclase.
      */
     public NewCrowdedJunctionBuilder() {
-        super(SECTION_TAG);
+        super(SECTION_TAG, TYPE);
     }
 
     /**
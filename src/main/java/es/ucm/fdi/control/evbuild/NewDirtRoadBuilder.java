@@ -28,11 +28,11 @@ public class NewDirtRoadBuilder extends EventBuilder {
 
     /**
 	 * Constructor de {@link NewDirtRoadBuilder} que 
-	 * pasa el atributo {@code SECTION_TAG} al 
-	 * constructor de la superclase.
+	 * pasa los atributos {@code SECTION_TAG} y 
+	 * {@code TYPE} al constructor de la superclase.
 	 */
     public NewDirtRoadBuilder() {
-        super(SECTION_TAG);
+        super(SECTION_TAG, TYPE);
     }
 
     /**
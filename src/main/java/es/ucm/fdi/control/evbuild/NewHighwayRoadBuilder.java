@@ -28,11 +28,11 @@ public class NewHighwayRoadBuilder extends EventBuilder {
 
     /**
 	 * Constructor de {@link NewHighwayRoadBuilder} que 
-	 * pasa el atributo {@code SECTION_TAG} al 
-	 * constructor de la superclase.
+	 * pasa los atributos {@code SECTION_TAG} y 
+	 * {@code TYPE} al constructor de la superclase.
 	 */
     public NewHighwayRoadBuilder() {
-        super(SECTION_TAG);
+        super(SECTION_TAG, TYPE);
     }
 
 	/**
@@ -25,7 +25,7 @@ public class NewJunctionBuilder extends EventBuilder {
 	 * constructor de la superclase.
 	 */
 	public NewJunctionBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, null);
 	}
 
 	/**
@@ -0,0 +1,124 @@
+package es.ucm.fdi.control.evbuild;
+
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.events.NewODVehicle;
+
+/**
+ * Clase que construye un {@code Event} 
+ * {@link NewODVehicle} utilizado para crear un 
+ * {@link Vehicle} del que sólo se dan su origen 
+ * y su destino durante la simulación.
+ * Hereda de {@link EventBuilder}.
+ */
+public class NewODVehicleBuilder extends EventBuilder {
+	
+	/**
+	 * Etiqueta utilizada en las {@code IniSection}s
+	 * para representar este tipo de eventos.
+	 */
+	private static final String SECTION_TAG = "new_vehicle";
+
+	/**
+	 * Valor que debería almacenar la clave {@code type}
+	 * de una {@code IniSection} que represente a un
+	 * {@code Vehicle} de origen y destino.
+	 */
+	private static final String TYPE = "od";
+
+	/** 
+	 * Constructor de {@link NewODVehicleBuilder} que 
+	 * pasa los atributos <code>SECTION_TAG</code> y 
+	 * <code>TYPE</code> al constructor de la superclase.
+	 */
+	public NewODVehicleBuilder() {
+		super(SECTION_TAG, TYPE);
+	}
+
+	/**
+	 * Método de parsing que comprueba si la 
+	 * {@code IniSection} pasada como argumento 
+	 * representa un evento {@code NewODVehicle}
+	 * y si sus parámetros son correctos.
+	 * 
+	 * @param ini 	- {@code IniSection} a parsear
+	 * 
+	 * @return 		{@code NewODVehicle} event or 
+	 * 				{@code null} if parsing failed
+	 * 
+	 * @throws IllegalArgumentException if {@code ini} represents 
+	 *	 								the searched event but its 
+	 *									arguments are not valid
+	 */
+	@Override
+	Event parse(IniSection ini)
+			throws IllegalArgumentException {
+
+		// Se comprueba si es un NewODVehicle
+		if ( iniNameMatch(ini) && typeMatch(ini, TYPE) ) {
+			String id;
+			int time = 0;
+			int maxSpeed;
+
+			// ID ok?
+			try {
+				id = parseID(ini, "id");
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+					e.getMessage() + " in new od Vehicle."
+				);
+			}
+
+			// TIME ok?
+			if ( existsTimeKey(ini) ) {
+				try {
+					time = parseNoNegativeInt(ini, "time");
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(
+						e.getMessage() + " when reading time " + 
+						"in od vehicle with id: " + id
+					);
+				}
+			}
+
+			// MAXSPEED ok?
+			try {
+				maxSpeed = parseNoNegativeInt(ini, "max_speed");
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+					e.getMessage() + " when reading max_speed " +
+					"in od vehicle with id: " + id
+				);
+			}
+
+			// ORIGIN & DESTINATION ok?
+			String origin, destination;
+			try {
+				origin = parseID(ini, "origin");
+				destination = parseID(ini, "destination");
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+					e.getMessage() + " when reading origin or destination " + 
+					"in od vehicle with id: " + id
+				);
+			}
+
+			if ( origin.equals(destination) ) {
+				throw new IllegalArgumentException(
+					"Same origin and destination " + 
+					"in od vehicle with id: " + id
+				);
+			}
+			
+			// New OD Vehicle.
+			return 	new NewODVehicle(time, id, maxSpeed, origin, destination);
+		}
+		else {
+			return null;
+		}			
+	}
+}
@@ -26,7 +26,7 @@ public class NewRoadBuilder extends EventBuilder {
 	 * la superclase.
 	 */
 	public NewRoadBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, null);
 	}
 
 	/**
@@ -27,11 +27,11 @@ public class NewRobinJunctionBuilder extends EventBuilder {
 
     /**
      * Constructor de {@link NewRobinJunctionBuilder} que 
-     * pasa el atributo {@code SECTION_TAG} al 
-     * constructor de la superclase.
+     * pasa los atributos {@code SECTION_TAG} y 
+     * {@code TYPE} al constructor de la superclase.
      */
     public NewRobinJunctionBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, TYPE);
     }
     
     /**
@@ -27,7 +27,7 @@ public class NewVehicleBuilder extends EventBuilder {
 	 * constructor de la superclase.
 	 */
 	public NewVehicleBuilder() {
-		super(SECTION_TAG);
+		super(SECTION_TAG, null);
 	}
 
 	/**
@@ -0,0 +1,437 @@
+package es.ucm.fdi.ini;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes sections to an {@link OutputStream} from a dedicated thread, so
+ * that the thread producing them does not wait for the stream.
+ * <p>
+ * The producer takes a {@link SectionRecorder} with {@link #claim()},
+ * records a batch of sections in it and hands it back with
+ * {@link #publish(SectionRecorder)}. Recorders live in a bounded ring and
+ * are reused; the writer thread replays them in order into an
+ * {@link IniStreamWriter}, where they are encoded and written.
+ * </p> <p>
+ * When every slot of the ring is waiting to be written, the
+ * {@link Backpressure} policy decides what {@link #claim()} does: wait
+ * for a free slot, or let the producer go on by writing its batches to a
+ * temporary spill file, which the writer thread copies to the stream once
+ * the ring is empty. Either way the output is the same as writing every
+ * batch directly, in the same order.
+ * </p> <p>
+ * The producer encodes and writes spilled batches without holding the
+ * monitor, so the writer thread keeps draining the ring meanwhile. The
+ * monitor only guards handing the spill file over: the writer thread
+ * takes it between two spilled batches, and the next one starts a new
+ * file.
+ * </p> <p>
+ * Errors of the writer thread are thrown to the producer by the next
+ * call to {@link #claim()}, {@link #publish(SectionRecorder)},
+ * {@link #flush()} or {@link #close()}.
+ * </p>
+ */
+public class AsyncIniWriter implements Closeable {
+
+	/**
+	 * What the producer does when every slot of the ring is full
+	 */
+	public enum Backpressure {
+		/**
+		 * Wait for the writer thread to free a slot
+		 */
+		BLOCK,
+		/**
+		 * Write the batch to a temporary file and go on
+		 */
+		SPILL
+	}
+
+	/**
+	 * Ring of recorders
+	 */
+	private final SectionRecorder[] _ring;
+
+	/**
+	 * Policy when the ring is full
+	 */
+	private final Backpressure _policy;
+
+	/**
+	 * Writer of the output stream, only used by the writer thread
+	 */
+	private final IniStreamWriter _out;
+
+	/**
+	 * Writer thread
+	 */
+	private final Thread _thread;
+
+	/**
+	 * Position of the next recorder to be written
+	 */
+	private int _head = 0;
+
+	/**
+	 * Number of published recorders not yet written
+	 */
+	private int _count = 0;
+
+	/**
+	 * Whether a recorder has been claimed and not published
+	 */
+	private boolean _claimed = false;
+
+	/**
+	 * Whether the writer thread is writing a batch
+	 */
+	private boolean _busy = false;
+
+	/**
+	 * Whether the writer has been closed
+	 */
+	private boolean _closed = false;
+
+	/**
+	 * Recorder used while spilling
+	 */
+	private SectionRecorder _spillRecorder = new SectionRecorder();
+
+	/**
+	 * Spill file being written, or {@code null} if not spilling
+	 */
+	private File _spillFile;
+
+	/**
+	 * Writer of {@code _spillFile}
+	 */
+	private IniStreamWriter _spill;
+
+	/**
+	 * Whether the producer is writing a batch to {@code _spill}, which
+	 * the writer thread must not take until it finishes
+	 */
+	private boolean _spillWriting = false;
+
+	/**
+	 * First error not yet thrown to the producer
+	 */
+	private IOException _error;
+
+	/**
+	 * Creates a writer and starts its thread
+	 *
+	 * @param out
+	 *            The stream sections are written to
+	 * @param slots
+	 *            Number of batches that can wait to be written
+	 * @param policy
+	 *            What to do when they are all waiting
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the number of slots is lower than one
+	 */
+	public AsyncIniWriter(OutputStream out, int slots, Backpressure policy) {
+		if (slots < 1) {
+			throw new IllegalArgumentException("Invalid number of slots: " + slots);
+		}
+
+		_ring = new SectionRecorder[slots];
+		for (int i = 0; i < slots; i++) {
+			_ring[i] = new SectionRecorder();
+		}
+		_policy = policy;
+		_out = new IniStreamWriter(out);
+
+		_thread = new Thread(this::run, "ini-writer");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/**
+	 *
+	 * @return The stream sections are written to
+	 */
+	public OutputStream getOutputStream() {
+		return _out.getOutputStream();
+	}
+
+	/**
+	 * Returns an empty recorder for the next batch of sections. With
+	 * {@link Backpressure#BLOCK} it waits while the ring is full.
+	 *
+	 * @return an empty recorder
+	 *
+	 * @throws IOException
+	 *             If an earlier write failed
+	 * @throws IllegalStateException
+	 *             If the last recorder was not published or the writer is
+	 *             closed
+	 */
+	public synchronized SectionRecorder claim() throws IOException {
+		if (_claimed || _closed) {
+			throw new IllegalStateException("Writer closed or batch not published.");
+		}
+
+		if (_spillFile == null && _count == _ring.length && _policy == Backpressure.BLOCK) {
+			while (_count == _ring.length && _error == null) {
+				waitForWriter();
+			}
+		}
+		throwError();
+
+		_claimed = true;
+
+		// Once spilling starts, batches go to the spill file until the
+		// writer thread takes it, so that they are not written out of order.
+		if (_spillFile != null || _count == _ring.length) {
+			return _spillRecorder;
+		}
+		return _ring[(_head + _count) % _ring.length];
+	}
+
+	/**
+	 * Hands back a recorder with a batch of sections to be written.
+	 *
+	 * @param batch
+	 *            The recorder returned by the last {@link #claim()}
+	 *
+	 * @throws IOException
+	 *             If an earlier write failed, or writing the spill file
+	 *             fails
+	 */
+	public void publish(SectionRecorder batch) throws IOException {
+		if (batch == _spillRecorder) {
+			spill(batch);
+		}
+
+		synchronized (this) {
+			_claimed = false;
+			if (batch != _spillRecorder) {
+				_count++;
+			}
+			notifyAll();
+			throwError();
+		}
+	}
+
+	/**
+	 * Writes a batch to the spill file, starting a new one if the writer
+	 * thread has taken the last one. Only the swap of the file is done
+	 * holding the monitor.
+	 *
+	 * @param batch
+	 *            The spill recorder
+	 *
+	 * @throws IOException
+	 *             If creating or writing the spill file fails
+	 */
+	private void spill(SectionRecorder batch) throws IOException {
+		File file;
+		IniStreamWriter spill;
+		synchronized (this) {
+			file = _spillFile;
+			spill = _spill;
+			_spillWriting = true;
+		}
+
+		boolean created = false;
+		try {
+			if (file == null) {
+				file = File.createTempFile("ini-writer", ".spill");
+				created = true;
+				spill = new IniStreamWriter(new FileOutputStream(file));
+			}
+			batch.replay(spill);
+			spill.flush();
+		}
+		catch (IOException e) {
+			if (created) {
+				if (spill != null) {
+					try {
+						spill.getOutputStream().close();
+					} catch (IOException closing) {
+						// The file is deleted anyway.
+					}
+				}
+				file.delete();
+				created = false;
+			}
+			throw e;
+		}
+		finally {
+			batch.clear();
+			synchronized (this) {
+				if (created) {
+					_spillFile = file;
+					_spill = spill;
+				}
+				_spillWriting = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until every published batch has been written.
+	 *
+	 * @throws IOException
+	 *             If a write failed
+	 */
+	public synchronized void flush() throws IOException {
+		while ((_count > 0 || _spillFile != null || _busy) && _error == null) {
+			waitForWriter();
+		}
+		throwError();
+	}
+
+	/**
+	 * Writes every published batch and stops the writer thread.
+	 *
+	 * @throws IOException
+	 *             If a write failed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			synchronized (this) {
+				_closed = true;
+				notifyAll();
+			}
+			try {
+				_thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			discardSpill();
+		}
+	}
+
+	/**
+	 * Loop of the writer thread.
+	 */
+	private void run() {
+		while (true) {
+			SectionRecorder batch = null;
+			File spilled = null;
+			IniStreamWriter spill = null;
+
+			synchronized (this) {
+				while (_count == 0 && (_spillFile == null || _spillWriting) && !_closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (_count > 0) {
+					batch = _ring[_head];
+				}
+				else if (_spillFile != null && !_spillWriting) {
+					// The ring is empty, so the spill file goes next. The
+					// producer's next spilled batch starts a new one.
+					spilled = _spillFile;
+					spill = _spill;
+					_spillFile = null;
+					_spill = null;
+				}
+				else {
+					return;
+				}
+				_busy = true;
+			}
+
+			try {
+				if (batch != null) {
+					batch.replay(_out);
+					_out.flush();
+				}
+				else if (spilled != null) {
+					spill.getOutputStream().close();
+					copy(spilled);
+				}
+			} catch (IOException e) {
+				synchronized (this) {
+					if (_error == null) {
+						_error = e;
+					}
+				}
+			}
+
+			synchronized (this) {
+				if (batch != null) {
+					batch.clear();
+					_head = (_head + 1) % _ring.length;
+					_count--;
+				}
+				_busy = false;
+				notifyAll();
+			}
+			if (spilled != null) {
+				spilled.delete();
+			}
+		}
+	}
+
+	/**
+	 * Copies a spill file to the output stream.
+	 */
+	private void copy(File file) throws IOException {
+		OutputStream out = _out.getOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Deletes the spill file, if any, after an error.
+	 */
+	private synchronized void discardSpill() {
+		if (_spillFile != null) {
+			try {
+				_spill.getOutputStream().close();
+			} catch (IOException e) {
+				// The file is deleted anyway.
+			}
+			_spillFile.delete();
+			_spillFile = null;
+			_spill = null;
+		}
+	}
+
+	/**
+	 * Waits for the writer thread to finish a batch.
+	 */
+	private void waitForWriter() throws IOException {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the writer.");
+		}
+	}
+
+	/**
+	 * Throws the first error of the writer thread, if any.
+	 */
+	private void throwError() throws IOException {
+		if (_error != null) {
+			IOException e = _error;
+			_error = null;
+			throw e;
+		}
+	}
+}
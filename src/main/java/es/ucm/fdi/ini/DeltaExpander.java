@@ -0,0 +1,147 @@
+package es.ucm.fdi.ini;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the output of a {@link DeltaSectionFilter} back into full reports,
+ * with the sections of every object on every tick.
+ * <p>
+ * The input is read line by line, so its size is not limited by memory.
+ * Each tick is written when the next one starts, with the last sections
+ * received of every object, in the order they first appeared, and their
+ * {@code time} set to that of the tick. Sections without an {@code id} key
+ * outside the ticks are copied as they are.
+ * </p>
+ */
+public class DeltaExpander {
+
+	/**
+	 * Separator between keys and values, as written by {@link IniSection}
+	 */
+	private static final String KEY_SEPARATOR = " = ";
+
+	/**
+	 * Last section received of each object, as pairs of keys and values,
+	 * by tag and id
+	 */
+	private Map<String, Map<String, String[]>> _objects = new LinkedHashMap<>();
+
+	/**
+	 * Time of the tick being read, or {@code null} if none
+	 */
+	private String _time;
+
+	/**
+	 * Expands a stream of delta reports.
+	 *
+	 * @param in
+	 *            The delta reports
+	 * @param out
+	 *            The stream the full reports are written to
+	 *
+	 * @throws IOException
+	 *             If reading or writing fails, or a section is not valid
+	 */
+	public void expand(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		IniStreamWriter writer = new IniStreamWriter(out);
+
+		String tag = null;
+		List<String> pairs = new ArrayList<>();
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.isEmpty()) {
+				if (tag != null) {
+					section(tag, pairs, writer);
+					tag = null;
+					pairs.clear();
+				}
+			} else if (tag == null) {
+				if (!line.startsWith("[") || !line.endsWith("]")) {
+					throw new IOException("Invalid section at line " + lineNumber + ": " + line);
+				}
+				tag = line.substring(1, line.length() - 1);
+			} else {
+				int separator = line.indexOf(KEY_SEPARATOR);
+				if (separator < 0) {
+					throw new IOException("Invalid key at line " + lineNumber + ": " + line);
+				}
+				pairs.add(line.substring(0, separator));
+				pairs.add(line.substring(separator + KEY_SEPARATOR.length()));
+			}
+		}
+		if (tag != null) {
+			section(tag, pairs, writer);
+		}
+
+		writeTick(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Handles a section that has been read.
+	 */
+	private void section(String tag, List<String> pairs, IniStreamWriter writer) {
+		if (tag.equals(DeltaSectionFilter.DELTA_TAG) || tag.equals(DeltaSectionFilter.KEYFRAME_TAG)) {
+			writeTick(writer);
+			_time = valueOf(pairs, "time");
+			return;
+		}
+
+		String id = valueOf(pairs, "id");
+		if (_time != null && id != null) {
+			_objects.computeIfAbsent(tag, t -> new LinkedHashMap<>()).put(id, pairs.toArray(new String[0]));
+			return;
+		}
+
+		// Sections out of the ticks, such as [unchanged_report].
+		writeTick(writer);
+		writer.beginSection(tag);
+		for (int i = 0; i < pairs.size(); i += 2) {
+			writer.value(pairs.get(i), pairs.get(i + 1));
+		}
+		writer.endSection();
+	}
+
+	/**
+	 * Writes every object with the time of the tick being read, if any.
+	 */
+	private void writeTick(IniStreamWriter writer) {
+		if (_time == null) {
+			return;
+		}
+
+		for (Map.Entry<String, Map<String, String[]>> objects : _objects.entrySet()) {
+			for (String[] pairs : objects.getValue().values()) {
+				writer.beginSection(objects.getKey());
+				for (int i = 0; i < pairs.length; i += 2) {
+					writer.value(pairs[i], pairs[i].equals("time") ? _time : pairs[i + 1]);
+				}
+				writer.endSection();
+			}
+		}
+		_time = null;
+	}
+
+	/**
+	 * Returns the value of a key, or {@code null}.
+	 */
+	private static String valueOf(List<String> pairs, String key) {
+		for (int i = 0; i < pairs.size(); i += 2) {
+			if (pairs.get(i).equals(key)) {
+				return pairs.get(i + 1);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,184 @@
+package es.ucm.fdi.ini;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link SectionSink} that passes on, tick by tick, only the sections of
+ * objects whose keys changed since the last tick, ignoring {@code time}.
+ * <p>
+ * Each tick starts with {@link #beginTick(SectionSink, int)}, which writes
+ * a {@code [delta_report]} section with the time of the tick, or a
+ * {@code [keyframe_report]} one every few ticks. After a keyframe, the
+ * sections of every object follow, changed or not. Objects are told apart
+ * by the tag and the {@code id} key of their sections.
+ * </p> <p>
+ * {@link DeltaExpander} turns the result back into full reports.
+ * </p>
+ */
+public class DeltaSectionFilter implements SectionSink {
+
+	/**
+	 * Tag of the sections that start a tick with changed objects only
+	 */
+	public static final String DELTA_TAG = "delta_report";
+
+	/**
+	 * Tag of the sections that start a tick with every object
+	 */
+	public static final String KEYFRAME_TAG = "keyframe_report";
+
+	/**
+	 * Key that is ignored when comparing sections
+	 */
+	private static final String TIME_KEY = "time";
+
+	/**
+	 * Number of ticks between keyframes
+	 */
+	private final int _keyframeInterval;
+
+	/**
+	 * Number of ticks started so far
+	 */
+	private int _ticks = 0;
+
+	/**
+	 * The sink of the current tick
+	 */
+	private SectionSink _out;
+
+	/**
+	 * Whether the current tick is a keyframe
+	 */
+	private boolean _keyframe;
+
+	/**
+	 * The section being received
+	 */
+	private SectionRecorder _section = new SectionRecorder();
+
+	/**
+	 * Keys and values of the section being received, but {@code time}
+	 */
+	private StringBuilder _content = new StringBuilder();
+
+	/**
+	 * Tag of the section being received
+	 */
+	private String _tag;
+
+	/**
+	 * {@code id} of the section being received
+	 */
+	private String _id;
+
+	/**
+	 * Last contents passed on of each object, by tag and id
+	 */
+	private Map<String, Map<String, String>> _last = new HashMap<>();
+
+	/**
+	 * Creates a filter
+	 *
+	 * @param keyframeInterval
+	 *            Number of ticks between keyframes, starting by the first
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the interval is lower than one
+	 */
+	public DeltaSectionFilter(int keyframeInterval) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+		}
+		_keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * Starts the sections of a tick, which are received until the next
+	 * call.
+	 *
+	 * @param out
+	 *            The sink the changed sections are passed on to
+	 * @param time
+	 *            The time of the tick
+	 */
+	public void beginTick(SectionSink out, int time) {
+		_out = out;
+		_keyframe = (_ticks++ % _keyframeInterval == 0);
+
+		out.beginSection(_keyframe ? KEYFRAME_TAG : DELTA_TAG);
+		out.value(TIME_KEY, time);
+		out.endSection();
+	}
+
+	/**
+	 * Starts receiving sections that are passed on only if they changed,
+	 * as in a tick that is not a keyframe, but without starting a tick nor
+	 * writing its section.
+	 *
+	 * @param out
+	 *            The sink the changed sections are passed on to
+	 */
+	public void beginChanges(SectionSink out) {
+		_out = out;
+		_keyframe = false;
+	}
+
+	/**
+	 *
+	 * @return {@code true} if the current tick is a keyframe, whose
+	 *         sections are all passed on
+	 */
+	public boolean isKeyframe() {
+		return _keyframe;
+	}
+
+	@Override
+	public void beginSection(String tag) {
+		_tag = tag;
+		_id = null;
+		_content.setLength(0);
+		_section.beginSection(tag);
+	}
+
+	@Override
+	public void value(String key, CharSequence value) {
+		if (key.equals("id")) {
+			_id = value.toString();
+		}
+		if (!key.equals(TIME_KEY)) {
+			_content.append(key).append('=').append(value).append('\n');
+		}
+		_section.value(key, value);
+	}
+
+	@Override
+	public void value(String key, int value) {
+		if (!key.equals(TIME_KEY)) {
+			_content.append(key).append('=').append(value).append('\n');
+		}
+		_section.value(key, value);
+	}
+
+	@Override
+	public void endSection() {
+		_section.endSection();
+
+		Map<String, String> last = _last.computeIfAbsent(_tag, t -> new HashMap<>());
+		String previous = last.get(_id);
+		boolean changed = (previous == null || !previous.contentEquals(_content));
+		if (changed) {
+			last.put(_id, _content.toString());
+		}
+		if (changed || _keyframe) {
+			_section.replay(_out);
+		}
+		_section.clear();
+	}
+
+	@Override
+	public StringBuilder scratch() {
+		return _section.scratch();
+	}
+}
@@ -1,17 +1,12 @@
 package es.ucm.fdi.ini;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A parser/generator of INI files.
@@ -21,26 +16,6 @@ import java.util.regex.Pattern;
  */
 public class Ini {
 
-	/**
-	 * A pattern for matching an INI section line
-	 */
-	private Pattern _section = Pattern.compile("\\s*\\[([^]]*)\\]\\s*");
-
-	/**
-	 * A pattern for matching a key-value line
-	 */
-	private Pattern _keyValue = Pattern.compile("\\s*([^=]*)=(.*)");
-
-	/**
-	 * A pattern for matching white spaces
-	 */
-	private Pattern _whitespaces = Pattern.compile("\\s*");
-
-	/**
-	 * A pattern for matching a comment
-	 */
-	private Pattern _comment = Pattern.compile("[;,#](.*)");
-
 	/**
 	 * List of section
 	 */
@@ -65,7 +40,8 @@ public class Ini {
 	}
 
 	/**
-	 * Construct an INI structure from a file
+	 * Construct an INI structure from a file, which is memory-mapped and
+	 * scanned by {@link IniScanner} rather than read line by line
 	 * 
 	 * @param is
 	 *            A filename from which the INI structure is read
@@ -73,7 +49,7 @@ public class Ini {
 	 *             Exceptions thrown when reading from the input file
 	 */
 	public Ini(String path) throws IOException {
-		this(new FileInputStream(new File(path)));
+		load(new File(path));
 	}
 
 	/**
@@ -85,42 +61,25 @@ public class Ini {
 	 *             Exceptions thrown by the input stream
 	 */
 	public void load(InputStream is) throws IOException {
-		InputStreamReader r = new InputStreamReader(is);
-		BufferedReader br = new BufferedReader(r);
-		String line;
-		IniSection section = null;
-
-		while ((line = br.readLine()) != null) {
-			Boolean matched = false;
-
-			if (_comment.matcher(line).matches() || _whitespaces.matcher(line).matches()) {
-				matched = true;
-			} else {
-				Matcher m = _section.matcher(line);
-				if (m.matches()) {
-					section = new IniSection(m.group(1).trim());
-					// if the section name starts with '!' then we ignore it
-					// (still the syntax of its key-value elements must be
-					// valid)
-					if (!section.getTag().startsWith("!"))
-						_iniSections.add(section);
-					matched = true;
-				} else if (section != null) {
-					m = _keyValue.matcher(line);
-					if (m.matches()) {
-						String key = m.group(1).trim();
-						String value = m.group(2).trim();
-						section.setValue(key, value);
-						matched = true;
-					}
-				}
-
-				if (!matched) {
-					throw new IOException("Syntax error: line " + line);
-				}
-			}
+		IniSectionReader reader = new IniSectionReader(is);
+		IniSection section;
+
+		while ((section = reader.next()) != null) {
+			_iniSections.add(section);
 		}
+	}
 
+	/**
+	 * Adds sections to the INI structure from a file, with the same syntax
+	 * as {@link #load(InputStream)}
+	 * 
+	 * @param file
+	 *            A file from which the INI structure is read
+	 * @throws IOException
+	 *             Exceptions thrown when reading from the input file
+	 */
+	public void load(File file) throws IOException {
+		new IniScanner(_iniSections).scan(file);
 	}
 
 	/**
@@ -0,0 +1,273 @@
+package es.ucm.fdi.ini;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reader of INI files that scans their bytes directly, without regular
+ * expressions or intermediate line strings. Files are memory-mapped, and
+ * {@link IniSectionReader} feeds it the chunks of an input stream.
+ * <p>
+ * It accepts exactly the same syntax as {@link Ini#load(java.io.InputStream)}:
+ * lines are ended by {@code \n}, {@code \r} or {@code \r\n}; lines starting by
+ * {@code ;}, {@code ,} or {@code #} and blank lines are skipped; a
+ * {@code [tag]} line starts a section and, inside a section, a line with an
+ * {@code =} is a key-value pair split at its first {@code =}. Tags, keys and
+ * values are trimmed and decoded with the default charset, like the lines of
+ * an {@link java.io.InputStreamReader}.
+ * </p> <p>
+ * Large files are mapped in windows, each starting at the beginning of the
+ * first line the previous one didn't finish. Tags and keys, which repeat in
+ * every section, are decoded once and shared.
+ * </p>
+ */
+class IniScanner {
+
+	/**
+	 * Size of the windows in which files are mapped
+	 */
+	private static final long WINDOW = 1L << 30;
+
+	/**
+	 * Number of entries of the cache of tags and keys
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * The list where sections are added
+	 */
+	private final List<IniSection> _sections;
+
+	/**
+	 * The charset used to decode the file
+	 */
+	private final Charset _charset = Charset.defaultCharset();
+
+	/**
+	 * The section of the last {@code [tag]} line, or {@code null}
+	 */
+	private IniSection _section = null;
+
+	/**
+	 * A view of the buffer being read, used to copy its bytes
+	 */
+	private ByteBuffer _view;
+
+	/**
+	 * Buffer where the bytes of a tag, key or value are copied
+	 */
+	private byte[] _bytes = new byte[256];
+
+	/**
+	 * Cached tags and keys, and their bytes, by hash
+	 */
+	private final String[] _cachedStrings = new String[CACHE_SIZE];
+	private final byte[][] _cachedBytes = new byte[CACHE_SIZE][];
+
+	/**
+	 * Creates a scanner
+	 *
+	 * @param sections
+	 *            The list where the sections read are added
+	 */
+	IniScanner(List<IniSection> sections) {
+		_sections = sections;
+	}
+
+	/**
+	 * Adds the sections of a file
+	 *
+	 * @param file
+	 *            The INI file
+	 * @throws IOException
+	 *             If the file can't be read or has a syntax error
+	 */
+	void scan(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+
+			long size = channel.size();
+			long start = 0;
+			while (start < size) {
+				long length = Math.min(WINDOW, size - start);
+				ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				int consumed = scan(window, start + length == size);
+				if (consumed == 0) {
+					throw new IOException("Line too long at byte " + start);
+				}
+				start += consumed;
+			}
+		}
+	}
+
+	/**
+	 * Returns the section whose key-value lines are being read
+	 *
+	 * @return The section of the last {@code [tag]} line, or {@code null}
+	 */
+	IniSection current() {
+		return _section;
+	}
+
+	/**
+	 * Reads the lines of a buffer. The last one is only read if the buffer
+	 * ends the file.
+	 *
+	 * @param buf
+	 *            The buffer
+	 * @param last
+	 *            Whether the buffer ends the file
+	 * @return The number of bytes of the lines read
+	 * @throws IOException
+	 *             If there is a syntax error
+	 */
+	int scan(ByteBuffer buf, boolean last) throws IOException {
+		int limit = buf.limit();
+		int lineStart = 0;
+		_view = buf.duplicate();
+
+		for (int i = 0; i < limit; ++i) {
+			byte b = buf.get(i);
+			if (b == '\n' || b == '\r') {
+				line(buf, lineStart, i);
+				if (b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') {
+					i++;
+				}
+				lineStart = i + 1;
+			}
+		}
+
+		if (last && lineStart < limit) {
+			line(buf, lineStart, limit);
+			lineStart = limit;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Reads the line between two positions of a buffer
+	 */
+	private void line(ByteBuffer buf, int from, int to) throws IOException {
+		if (from == to) {
+			return;
+		}
+
+		// comment
+		byte first = buf.get(from);
+		if (first == ';' || first == ',' || first == '#') {
+			return;
+		}
+
+		// white spaces
+		int start = from;
+		while (start < to && isWhitespace(buf.get(start))) {
+			start++;
+		}
+		if (start == to) {
+			return;
+		}
+
+		// section
+		if (buf.get(start) == '[') {
+			int close = start + 1;
+			while (close < to && buf.get(close) != ']') {
+				close++;
+			}
+			int end = close + 1;
+			while (end < to && isWhitespace(buf.get(end))) {
+				end++;
+			}
+			if (close < to && end == to) {
+				_section = new IniSection(trimmed(buf, start + 1, close, true));
+				// if the section name starts with '!' then we ignore it
+				// (still the syntax of its key-value elements must be valid)
+				if (!_section.getTag().startsWith("!")) {
+					_sections.add(_section);
+				}
+				return;
+			}
+		}
+
+		// key-value
+		if (_section != null) {
+			int eq = from;
+			while (eq < to && buf.get(eq) != '=') {
+				eq++;
+			}
+			if (eq < to) {
+				String key = trimmed(buf, from, eq, true);
+				_section.setValue(key, trimmed(buf, eq + 1, to, false));
+				return;
+			}
+		}
+
+		throw new IOException("Syntax error: line " + decode(from, to - from));
+	}
+
+	/**
+	 * Same white spaces as {@code \s} in a {@link java.util.regex.Pattern}
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+	}
+
+	/**
+	 * Decodes the bytes between two positions, trimmed like
+	 * {@link String#trim()}, sharing the string if it's a tag or a key
+	 */
+	private String trimmed(ByteBuffer buf, int from, int to, boolean shared) {
+		while (from < to && (buf.get(from) & 0xFF) <= ' ') {
+			from++;
+		}
+		while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') {
+			to--;
+		}
+
+		int length = to - from;
+		if (!shared) {
+			return decode(from, length);
+		}
+
+		int hash = 0;
+		for (int i = from; i < to; ++i) {
+			hash = 31 * hash + buf.get(i);
+		}
+		int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+		byte[] cached = _cachedBytes[slot];
+		if (cached != null && cached.length == length) {
+			int i = 0;
+			while (i < length && cached[i] == buf.get(from + i)) {
+				i++;
+			}
+			if (i == length) {
+				return _cachedStrings[slot];
+			}
+		}
+
+		String s = decode(from, length);
+		_cachedBytes[slot] = Arrays.copyOf(_bytes, length);
+		_cachedStrings[slot] = s;
+		return s;
+	}
+
+	/**
+	 * Decodes a number of bytes from a position, leaving them in
+	 * {@code _bytes}
+	 */
+	private String decode(int from, int length) {
+		if (_bytes.length < length) {
+			_bytes = new byte[Math.max(length, 2 * _bytes.length)];
+		}
+
+		_view.position(from);
+		_view.get(_bytes, 0, length);
+		return new String(_bytes, 0, length, _charset);
+	}
+}
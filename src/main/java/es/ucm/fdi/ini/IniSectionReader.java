@@ -0,0 +1,101 @@
+package es.ucm.fdi.ini;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+
+/**
+ * A reader of the sections of an INI file one at a time, so that only the
+ * section being read is kept in memory.
+ * <p>
+ * It accepts the same syntax as {@link Ini#load(InputStream)}, which is
+ * built on it. Sections whose tag starts with {@code !} are read but never
+ * returned. The input stream is read in chunks, whose lines are scanned by
+ * an {@link IniScanner}; the part of a line a chunk doesn't finish is kept
+ * for the next one.
+ * </p>
+ */
+public class IniSectionReader implements Closeable {
+
+	/**
+	 * Initial size of the chunks read from the input stream
+	 */
+	private static final int CHUNK = 1 << 16;
+
+	/**
+	 * The input stream, as a channel
+	 */
+	private ReadableByteChannel _channel;
+
+	/**
+	 * The bytes read and not scanned yet, starting at position 0
+	 */
+	private ByteBuffer _buffer = ByteBuffer.allocate(CHUNK);
+
+	/**
+	 * The sections scanned and not returned yet; all but the last one
+	 * are complete
+	 */
+	private LinkedList<IniSection> _sections = new LinkedList<>();
+
+	/**
+	 * The scanner of the chunks
+	 */
+	private IniScanner _scanner = new IniScanner(_sections);
+
+	/**
+	 * Whether the end of the input stream has been reached
+	 */
+	private boolean _eof = false;
+
+	/**
+	 * Creates a reader of the sections of an {@link InputStream}
+	 *
+	 * @param is
+	 *            An input stream from which the sections are read
+	 */
+	public IniSectionReader(InputStream is) {
+		_channel = Channels.newChannel(is);
+	}
+
+	/**
+	 * Reads the next section, which ends at the start of the following one
+	 * or at the end of the input stream
+	 *
+	 * @return The next section, or {@code null} if there are no more
+	 * @throws IOException
+	 *             Exceptions thrown by the input stream, or a syntax error
+	 */
+	public IniSection next() throws IOException {
+		while (!_eof && (_sections.isEmpty() || _sections.getFirst() == _scanner.current())) {
+			if (!_buffer.hasRemaining()) {
+				// a line longer than the buffer
+				ByteBuffer bigger = ByteBuffer.allocate(2 * _buffer.capacity());
+				_buffer.flip();
+				_buffer = bigger.put(_buffer);
+			}
+			_eof = _channel.read(_buffer) < 0;
+
+			_buffer.flip();
+			_buffer.position(_scanner.scan(_buffer, _eof));
+			_buffer.compact();
+		}
+
+		return _sections.pollFirst();
+	}
+
+	/**
+	 * Closes the input stream
+	 *
+	 * @throws IOException
+	 *             Exceptions thrown by the input stream
+	 */
+	@Override
+	public void close() throws IOException {
+		_channel.close();
+	}
+}
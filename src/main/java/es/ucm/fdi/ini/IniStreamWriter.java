@@ -0,0 +1,224 @@
+package es.ucm.fdi.ini;
+
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link SectionSink} that encodes sections straight into a reused byte
+ * buffer, in exactly the format of {@link Ini#store(OutputStream)}, and
+ * writes it to an {@link OutputStream} when full or on {@link #flush()}.
+ * If the stream is a {@link FileOutputStream}, the buffer is written
+ * through its {@link FileChannel}.
+ * <p>
+ * No {@link IniSection}s or intermediate strings are created. Errors while
+ * writing a full buffer are kept and thrown by the next {@link #flush()}.
+ * </p>
+ */
+public class IniStreamWriter implements SectionSink, Flushable {
+
+	/**
+	 * Initial size of the buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Line separator, as written by {@link IniSection#toString()}
+	 */
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+	/**
+	 * Separator between keys and values
+	 */
+	private static final byte[] KEY_SEPARATOR = " = ".getBytes();
+
+	/**
+	 * The stream sections are written to
+	 */
+	private OutputStream _out;
+
+	/**
+	 * The channel of {@code _out}, if it is a file
+	 */
+	private FileChannel _channel;
+
+	/**
+	 * Buffer with the bytes not yet written
+	 */
+	private ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/**
+	 * Builder returned by {@link #scratch()}
+	 */
+	private StringBuilder _scratch = new StringBuilder();
+
+	/**
+	 * Charset of non-ASCII characters, the same as {@link String#getBytes()}
+	 */
+	private Charset _charset = Charset.defaultCharset();
+
+	/**
+	 * First error while writing the buffer, not yet thrown
+	 */
+	private IOException _error;
+
+	/**
+	 * Creates a writer on an output stream
+	 *
+	 * @param out
+	 *            The stream sections are written to
+	 */
+	public IniStreamWriter(OutputStream out) {
+		_out = out;
+		_channel = (out instanceof FileOutputStream) ? ((FileOutputStream) out).getChannel() : null;
+	}
+
+	/**
+	 *
+	 * @return The stream sections are written to
+	 */
+	public OutputStream getOutputStream() {
+		return _out;
+	}
+
+	@Override
+	public void beginSection(String tag) {
+		put((byte) '[');
+		put(tag);
+		put((byte) ']');
+		put(LINE_SEPARATOR);
+	}
+
+	@Override
+	public void value(String key, CharSequence value) {
+		put(key);
+		put(KEY_SEPARATOR);
+		put(value);
+		put(LINE_SEPARATOR);
+	}
+
+	@Override
+	public void value(String key, int value) {
+		put(key);
+		put(KEY_SEPARATOR);
+		put(value);
+		put(LINE_SEPARATOR);
+	}
+
+	@Override
+	public void endSection() {
+		put(LINE_SEPARATOR);
+	}
+
+	@Override
+	public StringBuilder scratch() {
+		_scratch.setLength(0);
+		return _scratch;
+	}
+
+	/**
+	 * Writes the buffered bytes to the stream.
+	 *
+	 * @throws IOException
+	 *             If this or an earlier write failed
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+
+		if (_error != null) {
+			IOException e = _error;
+			_error = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the buffer to the stream and empties it, keeping the error if
+	 * it fails.
+	 */
+	private void drain() {
+		_buffer.flip();
+		try {
+			if (_channel != null) {
+				while (_buffer.hasRemaining()) {
+					_channel.write(_buffer);
+				}
+			} else {
+				_out.write(_buffer.array(), 0, _buffer.limit());
+			}
+		} catch (IOException e) {
+			if (_error == null) {
+				_error = e;
+			}
+		}
+		_buffer.clear();
+	}
+
+	/**
+	 * Makes room for some more bytes, writing or growing the buffer.
+	 */
+	private void ensure(int bytes) {
+		if (_buffer.remaining() < bytes) {
+			drain();
+			if (_buffer.capacity() < bytes) {
+				_buffer = ByteBuffer.allocate(bytes);
+			}
+		}
+	}
+
+	private void put(byte b) {
+		ensure(1);
+		_buffer.put(b);
+	}
+
+	private void put(byte[] bytes) {
+		ensure(bytes.length);
+		_buffer.put(bytes);
+	}
+
+	private void put(CharSequence s) {
+		int length = s.length();
+		for (int i = 0; i < length; ) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				put((byte) c);
+				i++;
+			} else {
+				// Non-ASCII runs are encoded as String#getBytes() would.
+				int end = i + 1;
+				while (end < length && s.charAt(end) >= 0x80) {
+					end++;
+				}
+				put(s.subSequence(i, end).toString().getBytes(_charset));
+				i = end;
+			}
+		}
+	}
+
+	private void put(int value) {
+		if (value == Integer.MIN_VALUE) {
+			put(Integer.toString(value));
+			return;
+		}
+
+		ensure(11);
+		if (value < 0) {
+			_buffer.put((byte) '-');
+			value = -value;
+		}
+
+		// Digits from the most significant one.
+		int div = 1;
+		while (value / div >= 10) {
+			div *= 10;
+		}
+		for (; div > 0; div /= 10) {
+			_buffer.put((byte) ('0' + (value / div) % 10));
+		}
+	}
+}
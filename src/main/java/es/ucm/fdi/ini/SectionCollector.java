@@ -0,0 +1,55 @@
+package es.ucm.fdi.ini;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link SectionSink} that builds an {@link IniSection} for each
+ * section it receives.
+ */
+public class SectionCollector implements SectionSink {
+
+	/**
+	 * The sections built so far
+	 */
+	private List<IniSection> _sections = new ArrayList<>();
+
+	/**
+	 * The section being built
+	 */
+	private IniSection _current;
+
+	@Override
+	public void beginSection(String tag) {
+		_current = new IniSection(tag);
+	}
+
+	@Override
+	public void value(String key, CharSequence value) {
+		_current.setValue(key, value.toString());
+	}
+
+	@Override
+	public void value(String key, int value) {
+		_current.setValue(key, value);
+	}
+
+	@Override
+	public void endSection() {
+		_sections.add(_current);
+		_current = null;
+	}
+
+	@Override
+	public StringBuilder scratch() {
+		return new StringBuilder();
+	}
+
+	/**
+	 *
+	 * @return The sections built, in order
+	 */
+	public List<IniSection> getSections() {
+		return _sections;
+	}
+}
@@ -0,0 +1,162 @@
+package es.ucm.fdi.ini;
+
+import java.util.Arrays;
+
+/**
+ * A {@link SectionSink} that records the sections it receives in a few
+ * flat arrays, so that they can be replayed later into another sink,
+ * possibly from another thread.
+ * <p>
+ * Tags and keys are kept by reference and text values are copied, so a
+ * recording does not depend on the objects that produced it. Recorders
+ * are meant to be reused with {@link #clear()}, which keeps their arrays.
+ * </p>
+ */
+public class SectionRecorder implements SectionSink {
+
+	/**
+	 * Kinds of recorded calls
+	 */
+	private static final int BEGIN = 0, TEXT = 1, INT = 2, END = 3;
+
+	/**
+	 * Recorded calls: the kind, followed by the index of the tag or key
+	 * and, for values, the start and length of the text or the integer
+	 */
+	private int[] _calls = new int[256];
+
+	/**
+	 * Number of used positions of {@code _calls}
+	 */
+	private int _numCalls = 0;
+
+	/**
+	 * Tags and keys of the recorded calls
+	 */
+	private String[] _names = new String[64];
+
+	/**
+	 * Number of used positions of {@code _names}
+	 */
+	private int _numNames = 0;
+
+	/**
+	 * Characters of the text values
+	 */
+	private char[] _text = new char[1024];
+
+	/**
+	 * Number of used positions of {@code _text}
+	 */
+	private int _textLength = 0;
+
+	/**
+	 * Builder returned by {@link #scratch()}
+	 */
+	private StringBuilder _scratch = new StringBuilder();
+
+	@Override
+	public void beginSection(String tag) {
+		call(BEGIN, name(tag));
+	}
+
+	@Override
+	public void value(String key, CharSequence value) {
+		int length = value.length();
+		if (_textLength + length > _text.length) {
+			_text = Arrays.copyOf(_text, Math.max(2 * _text.length, _textLength + length));
+		}
+		for (int i = 0; i < length; i++) {
+			_text[_textLength + i] = value.charAt(i);
+		}
+
+		call(TEXT, name(key));
+		call(_textLength, length);
+		_textLength += length;
+	}
+
+	@Override
+	public void value(String key, int value) {
+		call(INT, name(key));
+		call(value, 0);
+	}
+
+	@Override
+	public void endSection() {
+		call(END, 0);
+	}
+
+	@Override
+	public StringBuilder scratch() {
+		_scratch.setLength(0);
+		return _scratch;
+	}
+
+	/**
+	 * Sends the recorded sections, in order, to another sink.
+	 *
+	 * @param sink
+	 *            The sink that receives the sections
+	 */
+	public void replay(SectionSink sink) {
+		for (int i = 0; i < _numCalls; i += 2) {
+			switch (_calls[i]) {
+			case BEGIN:
+				sink.beginSection(_names[_calls[i + 1]]);
+				break;
+			case TEXT:
+				String key = _names[_calls[i + 1]];
+				i += 2;
+				sink.value(key, sink.scratch().append(_text, _calls[i], _calls[i + 1]));
+				break;
+			case INT:
+				key = _names[_calls[i + 1]];
+				i += 2;
+				sink.value(key, _calls[i]);
+				break;
+			default:
+				sink.endSection();
+			}
+		}
+	}
+
+	/**
+	 * Forgets the recorded sections, keeping the arrays for the next ones.
+	 */
+	public void clear() {
+		Arrays.fill(_names, 0, _numNames, null);
+		_numCalls = 0;
+		_numNames = 0;
+		_textLength = 0;
+	}
+
+	/**
+	 *
+	 * @return {@code true} if no section has been recorded
+	 */
+	public boolean isEmpty() {
+		return _numCalls == 0;
+	}
+
+	/**
+	 * Records a pair of integers.
+	 */
+	private void call(int first, int second) {
+		if (_numCalls + 2 > _calls.length) {
+			_calls = Arrays.copyOf(_calls, 2 * _calls.length);
+		}
+		_calls[_numCalls++] = first;
+		_calls[_numCalls++] = second;
+	}
+
+	/**
+	 * Records a tag or key and returns its index.
+	 */
+	private int name(String name) {
+		if (_numNames == _names.length) {
+			_names = Arrays.copyOf(_names, 2 * _names.length);
+		}
+		_names[_numNames] = name;
+		return _numNames++;
+	}
+}
@@ -0,0 +1,56 @@
+package es.ucm.fdi.ini;
+
+/**
+ * Receives INI sections key by key, in the order they are written,
+ * so that reports can be produced without building {@link IniSection}
+ * objects first.
+ * <p>
+ * Each section starts with {@link #beginSection(String)}, followed by
+ * its keys, and finishes with {@link #endSection()}. Values built in
+ * several steps can be appended to {@link #scratch()} and then passed
+ * to {@link #value(String, CharSequence)}.
+ * </p>
+ */
+public interface SectionSink {
+
+	/**
+	 * Starts a new section.
+	 *
+	 * @param tag
+	 *            The tag of the section, without brackets
+	 */
+	void beginSection(String tag);
+
+	/**
+	 * Adds a key to the current section.
+	 *
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            Its value
+	 */
+	void value(String key, CharSequence value);
+
+	/**
+	 * Adds a key with an integer value to the current section.
+	 *
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            Its value
+	 */
+	void value(String key, int value);
+
+	/**
+	 * Finishes the current section.
+	 */
+	void endSection();
+
+	/**
+	 * Returns an empty {@link StringBuilder} to build a value in. It is
+	 * reused, so its contents are only valid until the next call.
+	 *
+	 * @return an empty builder
+	 */
+	StringBuilder scratch();
+}
@@ -1,11 +1,19 @@
 package es.ucm.fdi.launcher;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPInputStream;
 
 import javax.swing.SwingUtilities;
 
@@ -18,7 +26,17 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import es.ucm.fdi.control.Controller;
+import es.ucm.fdi.control.evbuild.EventParser;
+import es.ucm.fdi.ini.AsyncIniWriter.Backpressure;
+import es.ucm.fdi.ini.DeltaExpander;
 import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.model.events.CompiledScenario;
+import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.simulation.ColumnarReportReader;
+import es.ucm.fdi.model.simulation.ReportArchiveReader;
+import es.ucm.fdi.model.simulation.ReportArchiveWriter;
+import es.ucm.fdi.model.simulation.ReportSelection;
+import es.ucm.fdi.model.simulation.ReportSelection.Kind;
 import es.ucm.fdi.view.SimWindow;
 
 
@@ -33,6 +51,11 @@ public class Launcher {
 	 * Default execution mode if none indicated by user.
 	 */
 	private final static String _MODE_DEFAULT = "batch";
+
+	/**
+	 * Default number of worker threads if none indicated by user.
+	 */
+	private final static Integer _THREADS_DEFAULT = 1;
 	
 	/**
 	 * Execution time limit: number of ticks the simulator will do.
@@ -54,6 +77,112 @@ public class Launcher {
 	 */
 	private static String _mode = null;
 
+	/**
+	 * Number of worker threads used to advance the simulation.
+	 */
+	private static Integer _threads = _THREADS_DEFAULT;
+
+	/**
+	 * Whether ticks without traffic are skipped at once.
+	 */
+	private static boolean _fastForward = false;
+
+	/**
+	 * Whether vehicle state is kept in off-heap memory.
+	 */
+	private static boolean _offHeap = false;
+
+	/**
+	 * Whether origin-destination routes are searched with a
+	 * landmark index, saved next to the input file.
+	 */
+	private static boolean _landmarks = false;
+
+	/**
+	 * {@code String} with the pathname of the checkpoint 
+	 * written at the end of the run, or {@code null}.
+	 */
+	private static String _checkpointFile = null;
+
+	/**
+	 * {@code String} with the pathname of the checkpoint 
+	 * the run resumes from, or {@code null}.
+	 */
+	private static String _resumeFile = null;
+
+	/**
+	 * Number of replicas run with different car seeds, 
+	 * or {@code null} for a single run with reports.
+	 */
+	private static Integer _replicas = null;
+
+	/**
+	 * {@code String} with the pathname of the junction 
+	 * parameter sweep file, or {@code null}.
+	 */
+	private static String _sweepFile = null;
+
+	/**
+	 * Number of ticks whose reports can wait to be 
+	 * written by a separate thread, or {@code 0}.
+	 */
+	private static Integer _reportSlots = 0;
+
+	/**
+	 * What to do when every report slot is waiting 
+	 * to be written.
+	 */
+	private static Backpressure _backpressure = Backpressure.BLOCK;
+
+	/**
+	 * Number of ticks between full reports in delta 
+	 * report mode, or {@code 0} for full reports only.
+	 */
+	private static Integer _keyframeInterval = 0;
+
+	/**
+	 * Whether reports are written in the columnar 
+	 * binary format.
+	 */
+	private static boolean _columnar = false;
+
+	/**
+	 * Number of ticks per segment when reports are 
+	 * written to an archive directory, or {@code 0}.
+	 */
+	private static Integer _segmentTicks = 0;
+
+	/**
+	 * Whether archive segments are compressed.
+	 */
+	private static boolean _gzip = false;
+
+	/**
+	 * Which reports are written, or {@code null} for 
+	 * every report on every tick.
+	 */
+	private static ReportSelection _reportSelection = null;
+
+	/**
+	 * Number of ticks ahead of the simulation up to which 
+	 * events are read from the input file when streaming 
+	 * them, or {@code null} to load the whole file first.
+	 */
+	private static Integer _lookahead = null;
+
+	/**
+	 * Whether the events are loaded from a compiled 
+	 * scenario next to the input file, compiling it 
+	 * first if missing or stale.
+	 */
+	private static boolean _scenarioCache = false;
+
+	/**
+	 * Extension of the compiled scenarios written 
+	 * next to their input files.
+	 */
+	private static final String _COMPILED_EXTENSION = ".tsc";
+
 	public static void main(String[] args) {
 		start(args);
 	}
@@ -79,9 +208,23 @@ public class Launcher {
 			CommandLine line = parser.parse(cmdLineOptions, args);
 			parseModeOption(line);
 			parseHelpOption(line, cmdLineOptions);
+			parseCheckpointOptions(line);
 			parseInFileOption(line);
 			parseOutFileOption(line);
 			parseStepsOption(line);
+			parseParallelOption(line);
+			parseFastForwardOption(line);
+			parseOffHeapOption(line);
+			parseLandmarksOption(line);
+			parseReplicasOption(line);
+			parseSweepOption(line);
+			parseAsyncReportsOptions(line);
+			parseDeltaReportsOption(line);
+			parseColumnarOption(line);
+			parseArchiveOptions(line);
+			parseReportSelectionOptions(line);
+			parseStreamOption(line);
+			parseScenarioCacheOption(line);
 
 			// if there are some remaining arguments, then something wrong is
 			// provided in the command line!
@@ -123,7 +266,7 @@ public class Launcher {
 			Option.builder("i")
 			.longOpt("input")
 			.hasArg()
-			.desc("Events input file")
+			.desc("Events input file, which may be gzip-compressed when streamed")
 			.build()
 		);
 
@@ -132,7 +275,7 @@ public class Launcher {
 			Option.builder("m")
 			.longOpt("mode")
 			.hasArg()
-			.desc("'batch' for batch mode and 'gui' for GUI mode (default value is 'batch')")
+			.desc("'batch' for batch mode, 'gui' for GUI mode, 'expand' to turn delta or columnar reports, or an archive, back into full .ini reports and 'compile' to turn the input file into a compiled scenario, that batch mode loads directly (default value is 'batch')")
 			.build()
 		);
 
@@ -154,6 +297,180 @@ public class Launcher {
 			.build()
 		);
 
+		// Comando de hilos: -p; --parallel; <n>; "Worker threads used to advance roads..."
+		cmdLineOptions.addOption(
+			Option.builder("p")
+			.longOpt("parallel")
+			.hasArg()
+			.desc("Worker threads used to advance the simulation (default value is " + _THREADS_DEFAULT + ").")
+			.build()
+		);
+
+		// Comando de avance rápido: -f; --fast-forward; "Skip ticks without traffic..."
+		cmdLineOptions.addOption(
+			Option.builder("f")
+			.longOpt("fast-forward")
+			.desc("Skip ticks without traffic, summarizing their reports in an [unchanged_report] section.")
+			.build()
+		);
+
+		// Comando de memoria: --off-heap; "Keep vehicle state in off-heap memory"
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("off-heap")
+			.desc("Keep vehicle state in off-heap memory instead of the Java heap.")
+			.build()
+		);
+
+		// Comando de rutas: --landmarks; "Route od vehicles with a landmark index..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("landmarks")
+			.desc("Route od vehicles with a landmark index, kept in <input file>.alt between runs.")
+			.build()
+		);
+
+		// Comando de checkpoint: --checkpoint; <file>; "Write the simulation state..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("checkpoint")
+			.hasArg()
+			.desc("Write the simulation state to a binary checkpoint file at the end of the run.")
+			.build()
+		);
+
+		// Comando de reanudación: --resume; <file>; "Resume the simulation from a checkpoint..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("resume")
+			.hasArg()
+			.desc("Resume the simulation from a checkpoint file; no events file is needed.")
+			.build()
+		);
+
+		// Comando de réplicas: --replicas; <n>; "Run n replicas of the scenario..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("replicas")
+			.hasArg()
+			.desc("Run <n> replicas of the scenario with derived car seeds, -p at a time, and output mean and percentile statistics instead of reports.")
+			.build()
+		);
+
+		// Comando de barrido: --sweep; <file>; "Run every combination of junction parameters..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("sweep")
+			.hasArg()
+			.desc("Run every combination of the junction parameters in a sweep file, -p at a time, and output a table of arrived vehicles and mean delay instead of reports.")
+			.build()
+		);
+
+		// Comando de informes: --async-reports; <slots>; "Write reports from a separate thread..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("async-reports")
+			.hasArg()
+			.desc("Write reports from a separate thread, with up to <slots> ticks waiting to be written.")
+			.build()
+		);
+
+		// Comando de contrapresión: --backpressure; block|spill; "What to do when every report slot..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("backpressure")
+			.hasArg()
+			.desc("What to do when every report slot is waiting: 'block' the simulation (default) or 'spill' reports to a temporary file.")
+			.build()
+		);
+
+		// Comando de informes delta: --delta-reports; <n>; "Only report objects that changed..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("delta-reports")
+			.hasArg()
+			.desc("Only report objects that changed since the previous tick, with full reports every <n> ticks. Use -m expand to get full reports back.")
+			.build()
+		);
+
+		// Comando de formato: --columnar; "Write reports in a columnar binary format..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("columnar")
+			.desc("Write reports in a columnar binary format with dictionary-encoded ids. Use -m expand to get .ini reports back.")
+			.build()
+		);
+
+		// Comando de archivo: --archive; <ticks>; "Write reports to the output directory..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("archive")
+			.hasArg()
+			.desc("Write reports to the output directory as segments of <ticks> ticks with a tick index. Use -m expand to get a single .ini file back.")
+			.build()
+		);
+
+		// Comando de compresión: --gzip; "Compress archive segments..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("gzip")
+			.desc("Compress archive segments, each tick on its own so it can be read alone.")
+			.build()
+		);
+
+		// Comando de intervalo: --report-every; <n>; "Only write reports every <n> ticks..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("report-every")
+			.hasArg()
+			.desc("Only write reports on ticks that are multiples of <n>.")
+			.build()
+		);
+
+		// Comando de filtro: --report-include; <regex>; "Only report objects whose ID matches..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("report-include")
+			.hasArg()
+			.desc("Only report objects whose ID matches the regular expression <regex>.")
+			.build()
+		);
+
+		// Comando de filtro: --report-exclude; <regex>; "Don't report objects whose ID matches..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("report-exclude")
+			.hasArg()
+			.desc("Don't report objects whose ID matches the regular expression <regex>.")
+			.build()
+		);
+
+		// Comando de tipos: --report-kinds; <kinds>; "Only report these kinds of objects..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("report-kinds")
+			.hasArg()
+			.desc("Only report these kinds of objects, separated by commas: junction, road, vehicle.")
+			.build()
+		);
+
+		// Comando de lectura por partes: --stream; <lookahead>; "Read events while simulating..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("stream")
+			.hasArg()
+			.desc("Read events while simulating, only up to <lookahead> ticks ahead, instead of loading the whole input file first. Events must be ordered by time.")
+			.build()
+		);
+
+		// Comando de caché: --scenario-cache; "Load the events from a compiled scenario..."
+		cmdLineOptions.addOption(
+			Option.builder()
+			.longOpt("scenario-cache")
+			.desc("Load the events from a compiled scenario next to the input file, compiling it again when the input file has changed.")
+			.build()
+		);
+
 		return cmdLineOptions;
 	}
 
@@ -176,7 +493,8 @@ public class Launcher {
 			_mode = _MODE_DEFAULT;
 		}
 
-		if ( ! _mode.equals("batch") && ! _mode.equals("gui") ) {
+		if ( ! _mode.equals("batch") && ! _mode.equals("gui") 
+				&& ! _mode.equals("expand") && ! _mode.equals("compile") ) {
 			throw new ParseException("Not a valid execution mode.");
 		}
 	}
@@ -219,7 +537,7 @@ public class Launcher {
 
 		_inFile = line.getOptionValue("i");
 		if (_inFile == null) {
-			if( ! _mode.equals("gui") ) {
+			if( ! _mode.equals("gui") && _resumeFile == null ) {
 				throw new ParseException("An events file is missing");
 			}
 		}
@@ -264,6 +582,359 @@ public class Launcher {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Stores the number of worker threads indicated by the command 
+	 * line in attribute {@code _threads}.
+	 * </p> <p>
+	 * If no value is indicated, automatically set up to 
+	 * {@code _THREADS_DEFAULT}
+	 * </p>
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the number of threads 
+	 * 							is not valid
+	 */
+	private static void parseParallelOption(CommandLine line) 
+			throws ParseException {
+
+		String p = line.getOptionValue("p", _THREADS_DEFAULT.toString());
+
+		try {
+			_threads = Integer.parseInt(p);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of threads: " + p);
+		}
+
+		if (_threads < 1) {
+			throw new ParseException("Invalid number of threads: " + p);
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _fastForward} whether the 
+	 * command line asks for fast-forward.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 */
+	private static void parseFastForwardOption(CommandLine line) {
+		_fastForward = line.hasOption("f");
+	}
+
+	/**
+	 * Stores in attribute {@code _offHeap} whether the command
+	 * line asks for off-heap vehicle storage.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 */
+	private static void parseOffHeapOption(CommandLine line) {
+		_offHeap = line.hasOption("off-heap");
+	}
+
+	/**
+	 * Stores in attribute {@code _landmarks} whether the command
+	 * line asks for landmark routing.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 */
+	private static void parseLandmarksOption(CommandLine line) {
+		_landmarks = line.hasOption("landmarks");
+	}
+
+	/**
+	 * Stores in attributes {@code _checkpointFile} and 
+	 * {@code _resumeFile} the checkpoint files given 
+	 * in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 */
+	private static void parseCheckpointOptions(CommandLine line) {
+		_checkpointFile = line.getOptionValue("checkpoint");
+		_resumeFile = line.getOptionValue("resume");
+	}
+
+	/**
+	 * Stores in attribute {@code _replicas} the number of 
+	 * replicas given in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the number of replicas is 
+	 * 							not valid or a checkpoint 
+	 * 							option is also given
+	 */
+	private static void parseReplicasOption(CommandLine line) 
+			throws ParseException {
+
+		String n = line.getOptionValue("replicas");
+		if (n == null) {
+			return;
+		}
+
+		try {
+			_replicas = Integer.parseInt(n);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of replicas: " + n);
+		}
+
+		if (_replicas < 1) {
+			throw new ParseException("Invalid number of replicas: " + n);
+		}
+		if (_checkpointFile != null || _resumeFile != null) {
+			throw new ParseException("Replicas can't be combined with checkpoints.");
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _sweepFile} the sweep 
+	 * file given in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if replicas or a checkpoint 
+	 * 							option are also given
+	 */
+	private static void parseSweepOption(CommandLine line) 
+			throws ParseException {
+
+		_sweepFile = line.getOptionValue("sweep");
+
+		if (_sweepFile != null && (_replicas != null || 
+				_checkpointFile != null || _resumeFile != null)) {
+			throw new ParseException("A sweep can't be combined with replicas or checkpoints.");
+		}
+	}
+
+	/**
+	 * Stores in attributes {@code _reportSlots} and 
+	 * {@code _backpressure} the asynchronous report 
+	 * options given in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the number of slots or 
+	 * 							the policy are not valid
+	 */
+	private static void parseAsyncReportsOptions(CommandLine line) 
+			throws ParseException {
+
+		String slots = line.getOptionValue("async-reports");
+		if (slots != null) {
+			try {
+				_reportSlots = Integer.parseInt(slots);
+			} catch (NumberFormatException e) {
+				throw new ParseException("Invalid number of report slots: " + slots);
+			}
+
+			if (_reportSlots < 1) {
+				throw new ParseException("Invalid number of report slots: " + slots);
+			}
+		}
+
+		String policy = line.getOptionValue("backpressure");
+		if (policy != null) {
+			try {
+				_backpressure = Backpressure.valueOf(policy.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new ParseException("Invalid backpressure policy: " + policy);
+			}
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _keyframeInterval} the 
+	 * delta report interval given in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the interval is not valid
+	 */
+	private static void parseDeltaReportsOption(CommandLine line) 
+			throws ParseException {
+
+		String n = line.getOptionValue("delta-reports");
+		if (n == null) {
+			return;
+		}
+
+		try {
+			_keyframeInterval = Integer.parseInt(n);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid keyframe interval: " + n);
+		}
+
+		if (_keyframeInterval < 1) {
+			throw new ParseException("Invalid keyframe interval: " + n);
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _columnar} whether 
+	 * the columnar report format was chosen.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if asynchronous or delta 
+	 * 							reports are also chosen
+	 */
+	private static void parseColumnarOption(CommandLine line) 
+			throws ParseException {
+
+		_columnar = line.hasOption("columnar");
+
+		if (_columnar && (_reportSlots > 0 || _keyframeInterval > 0)) {
+			throw new ParseException("Columnar reports can't be asynchronous or delta reports.");
+		}
+	}
+
+	/**
+	 * Stores in attributes {@code _segmentTicks} and 
+	 * {@code _gzip} the archive options given in the 
+	 * command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the number of ticks is 
+	 * 							not valid, there is no output 
+	 * 							directory or other report 
+	 * 							formats are also chosen
+	 */
+	private static void parseArchiveOptions(CommandLine line) 
+			throws ParseException {
+
+		_gzip = line.hasOption("gzip");
+
+		String ticks = line.getOptionValue("archive");
+		if (ticks == null) {
+			if (_gzip) {
+				throw new ParseException("Only archive segments can be compressed.");
+			}
+			return;
+		}
+
+		try {
+			_segmentTicks = Integer.parseInt(ticks);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of ticks per segment: " + ticks);
+		}
+
+		if (_segmentTicks < 1) {
+			throw new ParseException("Invalid number of ticks per segment: " + ticks);
+		}
+		if (_outFile == null) {
+			throw new ParseException("An archive needs an output directory.");
+		}
+		if (_columnar || _reportSlots > 0 || _keyframeInterval > 0) {
+			throw new ParseException("Archived reports can't be columnar, asynchronous or delta reports.");
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _reportSelection} the 
+	 * report interval, ID patterns and kinds of objects 
+	 * given in the command line, if any.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the interval, a pattern 
+	 * 							or a kind is not valid
+	 */
+	private static void parseReportSelectionOptions(CommandLine line) 
+			throws ParseException {
+
+		String every = line.getOptionValue("report-every");
+		String include = line.getOptionValue("report-include");
+		String exclude = line.getOptionValue("report-exclude");
+		String kindList = line.getOptionValue("report-kinds");
+		if (every == null && include == null && exclude == null && kindList == null) {
+			return;
+		}
+
+		int interval = 1;
+		if (every != null) {
+			try {
+				interval = Integer.parseInt(every);
+			} catch (NumberFormatException e) {
+				throw new ParseException("Invalid report interval: " + every);
+			}
+			if (interval < 1) {
+				throw new ParseException("Invalid report interval: " + every);
+			}
+		}
+
+		Set<Kind> kinds = null;
+		if (kindList != null) {
+			kinds = EnumSet.noneOf(Kind.class);
+			for (String kind : kindList.split(",")) {
+				try {
+					kinds.add(Kind.valueOf(kind.trim().toUpperCase()));
+				} catch (IllegalArgumentException e) {
+					throw new ParseException("Invalid kind of object: " + kind);
+				}
+			}
+		}
+
+		try {
+			_reportSelection = new ReportSelection(interval, include, exclude, kinds);
+		} catch (PatternSyntaxException e) {
+			throw new ParseException("Invalid ID pattern: " + e.getPattern());
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _lookahead} the 
+	 * streaming window given in the command line.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the window is not valid 
+	 * 							or the events are needed 
+	 * 							before simulating
+	 */
+	private static void parseStreamOption(CommandLine line) 
+			throws ParseException {
+
+		String ticks = line.getOptionValue("stream");
+		if (ticks == null) {
+			return;
+		}
+
+		try {
+			_lookahead = Integer.parseInt(ticks);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid lookahead window: " + ticks);
+		}
+
+		if (_lookahead < 0) {
+			throw new ParseException("Invalid lookahead window: " + ticks);
+		}
+		if (_replicas != null || _sweepFile != null 
+				|| _checkpointFile != null || _resumeFile != null) {
+			throw new ParseException("Streamed events can't be used with replicas, sweeps or checkpoints.");
+		}
+	}
+
+	/**
+	 * Stores in attribute {@code _scenarioCache} whether 
+	 * the command line asks for a compiled scenario cache.
+	 * 
+	 * @param line 	- {@code CommandLine} introduced
+	 * 
+	 * @throws ParseException 	if the events are not 
+	 * 							loaded from the input file
+	 */
+	private static void parseScenarioCacheOption(CommandLine line) 
+			throws ParseException {
+
+		_scenarioCache = line.hasOption("scenario-cache");
+
+		if (_scenarioCache && (_lookahead != null || _sweepFile != null 
+				|| _resumeFile != null)) {
+			throw new ParseException("A scenario cache can't be used with streamed events, sweeps or checkpoints.");
+		}
+	}
+
 	/**
 	 * <p>
 	 * Runs the simulator on all files that end with {@code .ini} 
@@ -362,22 +1033,83 @@ public class Launcher {
 	 * 						of files
 	 */
 	private static void startBatchMode() throws Exception {		
-		Ini iniInput;
-		try{
-			iniInput = new Ini(_inFile);
+		// Al reanudar, los eventos están en el checkpoint.
+		Ini iniInput = null;
+		InputStream events = null;
+		List<Event> scenario = null;
+		if (_lookahead != null) {
+			if (CompiledScenario.isCompiled(new File(_inFile))) {
+				throw new IOException("Compiled scenarios can't be streamed: "
+						+ _inFile);
+			}
+			events = openEventStream();
 		}
-		catch(IOException e){
-			throw new IOException("Couldn't find the following file: "
-					+ _inFile);
+		else if (_resumeFile == null) {
+			// Los escenarios compilados se cargan directamente.
+			if (CompiledScenario.isCompiled(new File(_inFile))) {
+				scenario = CompiledScenario.read(new File(_inFile));
+			}
+			else if (_scenarioCache) {
+				scenario = loadCachedScenario();
+			}
+			else {
+				iniInput = readIniInput();
+			}
 		}
 		OutputStream os = System.out;
-		if(_outFile != null){
+		ReportArchiveWriter archive = null;
+		if (_segmentTicks > 0) {
+			os = null;
+			archive = new ReportArchiveWriter(new File(_outFile), _segmentTicks, _gzip);
+		}
+		else if(_outFile != null){
 			File outFile = new File(_outFile);
 			os = new FileOutputStream(outFile);
 		}
 		
 		// Controlador
 		Controller control = new Controller(iniInput, os, _timeLimit);
+		if (scenario != null) {
+			control.setScenario(scenario);
+		}
+		if (_replicas != null) {
+			control.executeEnsemble(_replicas, _threads);
+			return;
+		}
+		if (_sweepFile != null) {
+			if (iniInput == null) {
+				throw new IOException("Sweeps need an .ini events file: "
+						+ _inFile);
+			}
+			Ini sweep;
+			try {
+				sweep = new Ini(_sweepFile);
+			}
+			catch (IOException e) {
+				throw new IOException("Couldn't find the following file: "
+						+ _sweepFile);
+			}
+			control.executeSweep(sweep, _threads);
+			return;
+		}
+		control.setParallelism(_threads);
+		control.setFastForward(_fastForward);
+		control.setOffHeapVehicles(_offHeap);
+		control.setAsyncReports(_reportSlots, _backpressure);
+		control.setDeltaReports(_keyframeInterval);
+		control.setColumnarReports(_columnar);
+		control.setReportArchive(archive);
+		control.setReportSelection(_reportSelection);
+		if (_landmarks) {
+			String base = (_resumeFile != null) ? _resumeFile : _inFile;
+			control.setLandmarkIndex(new File(base + ".alt"));
+		}
+		if (_resumeFile != null) {
+			control.loadCheckpoint(new File(_resumeFile));
+		}
+		if (events != null) {
+			control.setEventStream(events, _lookahead);
+		}
 
 		// Ejecución y captura de excepciones
 		try {
@@ -386,6 +1118,183 @@ public class Launcher {
 		catch (Exception e) {
 			throw e;
 		}
+		finally {
+			if (archive != null) {
+				archive.close();
+			}
+			if (events != null) {
+				events.close();
+			}
+		}
+
+		if (_checkpointFile != null) {
+			control.saveCheckpoint(new File(_checkpointFile));
+		}
+	}
+
+	/**
+	 * Reads the input file.
+	 * 
+	 * @return 	{@code Ini} with the input file
+	 * 
+	 * @throws IOException 	if the file can't be read
+	 */
+	private static Ini readIniInput() throws IOException {
+		try{
+			return new Ini(_inFile);
+		}
+		catch(IOException e){
+			throw new IOException("Couldn't find the following file: "
+					+ _inFile);
+		}
+	}
+
+	/**
+	 * Loads the events of the input file from its compiled 
+	 * scenario, compiling it first if it is missing or was 
+	 * compiled from a different version of the file.
+	 * 
+	 * @return 	events of the input file, in order
+	 * 
+	 * @throws Exception 	if the input file can't be read 
+	 * 						or parsed, or the compiled 
+	 * 						scenario can't be written
+	 */
+	private static List<Event> loadCachedScenario() throws Exception {
+		File compiled = new File(_inFile + _COMPILED_EXTENSION);
+		return CompiledScenario.load(compiled, hashInFile(), Launcher::parseInFile);
+	}
+
+	/**
+	 * Returns the hash of the input file that 
+	 * identifies its compiled scenarios.
+	 * 
+	 * @return 	hash of the input file
+	 * 
+	 * @throws IOException 	if the file can't be read
+	 */
+	private static byte[] hashInFile() throws IOException {
+		try {
+			return CompiledScenario.hash(new File(_inFile));
+		}
+		catch (IOException e) {
+			throw new IOException("Couldn't find the following file: "
+					+ _inFile);
+		}
+	}
+
+	/**
+	 * Parses the events of the input file, 
+	 * with {@code _threads} threads.
+	 * 
+	 * @return 	events of the input file, in order
+	 * 
+	 * @throws Exception 	if the input file can't be 
+	 * 						read or parsed
+	 */
+	private static List<Event> parseInFile() throws Exception {
+		Ini iniInput = readIniInput();
+		try {
+			return new EventParser().parseAll(iniInput.getSections(), _threads);
+		}
+		catch (IllegalArgumentException e) {
+			throw new ParseException("Event parsing failed:\n" + e.getMessage());
+		}
+	}
+
+	/**
+	 * Turns the input file into a compiled scenario, written 
+	 * to the output file or next to the input file.
+	 * 
+	 * @throws Exception 	if the input file can't be read 
+	 * 						or parsed, or the compiled 
+	 * 						scenario can't be written
+	 */
+	private static void startCompileMode() throws Exception {
+		String compiled = (_outFile != null) ? _outFile 
+				: _inFile + _COMPILED_EXTENSION;
+		byte[] hash = hashInFile();
+		CompiledScenario.write(parseInFile(), hash, new File(compiled));
+	}
+
+	/**
+	 * Opens the input file to stream its events, 
+	 * decompressing it if it starts like a gzip file.
+	 * 
+	 * @return 	stream of the events
+	 * 
+	 * @throws IOException 	if the file can't be opened
+	 */
+	private static InputStream openEventStream() throws IOException {
+		InputStream is;
+		try {
+			is = new BufferedInputStream(new FileInputStream(_inFile), 1 << 16);
+		}
+		catch (FileNotFoundException e) {
+			throw new IOException("Couldn't find the following file: "
+					+ _inFile);
+		}
+
+		is.mark(2);
+		int magic = is.read() | (is.read() << 8);
+		is.reset();
+
+		if (magic == GZIPInputStream.GZIP_MAGIC) {
+			return new GZIPInputStream(is, 1 << 16);
+		}
+		return is;
+	}
+
+	/**
+	 * Turns the delta or columnar reports in the input 
+	 * file, or the segments of a report archive, back 
+	 * into a single file of full {@code .ini} reports.
+	 * 
+	 * @throws IOException 	if failure in reading/writing 
+	 * 						of files
+	 */
+	private static void startExpandMode() throws IOException {
+		OutputStream os = System.out;
+		if (_outFile != null) {
+			os = new FileOutputStream(new File(_outFile));
+		}
+
+		// Un archivo de segmentos se copia entero.
+		if (new File(_inFile).isDirectory()) {
+			try {
+				new ReportArchiveReader(new File(_inFile)).copyTo(os);
+			}
+			finally {
+				if (os != System.out) {
+					os.close();
+				}
+			}
+			return;
+		}
+
+		InputStream is;
+		try {
+			is = new BufferedInputStream(new FileInputStream(_inFile));
+		}
+		catch (FileNotFoundException e) {
+			throw new IOException("Couldn't find the following file: "
+					+ _inFile);
+		}
+
+		try {
+			if (ColumnarReportReader.isColumnar(is)) {
+				ColumnarReportReader.convert(is, os);
+			}
+			else {
+				new DeltaExpander().expand(is, os);
+			}
+		}
+		finally {
+			is.close();
+			if (os != System.out) {
+				os.close();
+			}
+		}
 	}
 
 	/**
@@ -431,6 +1340,12 @@ public class Launcher {
 			case "gui":
 				startGUIMode();
 				break;
+			case "expand":
+				startExpandMode();
+				break;
+			case "compile":
+				startCompileMode();
+				break;
 			}
 		}
 		catch(Exception e){
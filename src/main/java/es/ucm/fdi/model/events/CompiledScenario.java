@@ -0,0 +1,488 @@
+package es.ucm.fdi.model.events;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ * Formato binario compilado de un escenario: sus
+ * {@link Event Events} ya construidos, para no volver
+ * a leer y parsear el {@code .ini} en cada ejecución.
+ * </p> <p>
+ * El archivo empieza por una cabecera con el número
+ * mágico, la versión, el hash SHA-256 del {@code .ini}
+ * del que se compiló y los tamaños de las dos partes
+ * siguientes: la tabla de cadenas, con cada ID y nombre
+ * de clase una única vez, y los registros de los
+ * {@code Event}s en su orden. Cada registro es el mismo
+ * que escribe {@link Event#write(DataOutput)} en los
+ * checkpoints, pero con cada cadena sustituida por su
+ * índice en la tabla: los campos tienen ancho fijo para
+ * cada tipo de {@code Event} y los itinerarios son
+ * arrays de índices.
+ * </p> <p>
+ * Al cargarlo, el archivo se proyecta en memoria, la
+ * tabla se decodifica una vez y los registros se leen
+ * con {@link Event#read(DataInput)}. El archivo se
+ * escribe entero en uno temporal y se mueve después a
+ * su sitio, así que nunca se lee a medio escribir.
+ * </p>
+ */
+public class CompiledScenario {
+
+	/**
+	 * Número mágico con el que empieza el archivo ("TSSC").
+	 */
+	private static final int MAGIC = 0x54535343;
+
+	/**
+	 * Versión del formato.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Longitud del hash del {@code .ini}.
+	 */
+	private static final int HASH_LENGTH = 32;
+
+	/**
+	 * Constructor privado: sólo tiene métodos estáticos.
+	 */
+	private CompiledScenario() {
+	}
+
+	/**
+	 * Calcula el hash SHA-256 del contenido de un archivo.
+	 *
+	 * @param source 	- archivo {@code .ini}
+	 *
+	 * @return 			hash del contenido
+	 *
+	 * @throws IOException 	if reading fails
+	 */
+	public static byte[] hash(File source) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 not available", e);
+		}
+
+		try (InputStream in = new FileInputStream(source)) {
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ( (n = in.read(buffer)) > 0 ) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Comprueba si un archivo es un escenario compilado.
+	 *
+	 * @param file 	- archivo a comprobar
+	 *
+	 * @return 		si empieza por el número mágico
+	 */
+	public static boolean isCompiled(File file) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Devuelve el hash del {@code .ini} del que se
+	 * compiló un escenario.
+	 *
+	 * @param file 	- escenario compilado
+	 *
+	 * @return 		hash guardado, o {@code null} si el
+	 * 				archivo no es un escenario compilado
+	 * 				de esta versión
+	 */
+	public static byte[] getSourceHash(File file) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+				return null;
+			}
+			byte[] hash = new byte[HASH_LENGTH];
+			in.readFully(hash);
+			return hash;
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Carga los {@code Event}s de un escenario compilado
+	 * que sirve de caché de un {@code .ini}, volviendo a
+	 * compilarlo si falta, se compiló de otra versión del
+	 * {@code .ini} o no se puede leer.
+	 *
+	 * @param compiled 		- escenario compilado
+	 * @param sourceHash 	- hash del {@code .ini}, de
+	 * 						{@link #hash(File)}
+	 * @param parser 		- construye los {@code Event}s
+	 * 						del {@code .ini}
+	 *
+	 * @return 				{@code Event}s del escenario,
+	 * 						en su orden
+	 *
+	 * @throws Exception 	if the events can't be parsed
+	 * 						or the compiled scenario can't
+	 * 						be written
+	 */
+	public static List<Event> load(File compiled, byte[] sourceHash,
+			Callable<List<Event>> parser) throws Exception {
+
+		if ( Arrays.equals(sourceHash, getSourceHash(compiled)) ) {
+			try {
+				return read(compiled);
+			}
+			catch (IOException e) {
+				// Archivo dañado: se vuelve a compilar.
+			}
+		}
+
+		List<Event> events = parser.call();
+		write(events, sourceHash, compiled);
+		return events;
+	}
+
+	/**
+	 * Escribe un escenario compilado.
+	 *
+	 * @param events 		- {@code Event}s del escenario,
+	 * 						en su orden
+	 * @param sourceHash 	- hash del {@code .ini}, de
+	 * 						{@link #hash(File)}
+	 * @param file 			- archivo de destino
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	public static void write(List<Event> events, byte[] sourceHash, File file)
+			throws IOException {
+
+		if ( sourceHash.length != HASH_LENGTH ) {
+			throw new IllegalArgumentException(
+				"Invalid source hash length: " + sourceHash.length
+			);
+		}
+
+		// Registros, que van llenando la tabla de cadenas.
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		IndexedOutput out = new IndexedOutput(new DataOutputStream(records));
+		for ( Event event : events ) {
+			event.write(out);
+		}
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream tableOut = new DataOutputStream(table);
+		for ( String s : out.strings ) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			tableOut.writeInt(bytes.length);
+			tableOut.write(bytes);
+		}
+
+		// Se escribe al lado del destino, para que moverlo
+		// sea sólo renombrarlo.
+		File temp = File.createTempFile(file.getName(), ".tmp",
+				file.getAbsoluteFile().getParentFile());
+		try {
+			try (DataOutputStream fileOut = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+				fileOut.writeInt(MAGIC);
+				fileOut.writeInt(VERSION);
+				fileOut.write(sourceHash);
+				fileOut.writeInt(out.strings.size());
+				fileOut.writeInt(table.size());
+				fileOut.writeInt(events.size());
+				fileOut.writeInt(records.size());
+				table.writeTo(fileOut);
+				records.writeTo(fileOut);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Carga los {@code Event}s de un escenario compilado.
+	 *
+	 * @param file 	- escenario compilado
+	 *
+	 * @return 		{@code Event}s del escenario, en su orden
+	 *
+	 * @throws IOException 	if reading fails or the file is
+	 * 						not a compiled scenario
+	 */
+	public static List<Event> read(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+
+			if ( channel.size() > Integer.MAX_VALUE ) {
+				throw new IOException("Compiled scenario too large: " + file);
+			}
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			try {
+				if ( buf.getInt() != MAGIC ) {
+					throw new IOException("Not a compiled scenario: " + file);
+				}
+				int version = buf.getInt();
+				if ( version != VERSION ) {
+					throw new IOException("Unsupported compiled scenario version: " + version);
+				}
+				buf.position(buf.position() + HASH_LENGTH);
+
+				int numStrings = buf.getInt();
+				buf.getInt();
+				int numEvents = buf.getInt();
+				buf.getInt();
+
+				// Tabla de cadenas.
+				String[] strings = new String[numStrings];
+				byte[] bytes = new byte[64];
+				for ( int i = 0; i < numStrings; ++i ) {
+					int length = buf.getInt();
+					if ( bytes.length < length ) {
+						bytes = new byte[Math.max(length, 2 * bytes.length)];
+					}
+					buf.get(bytes, 0, length);
+					strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+				}
+
+				// Registros.
+				IndexedInput in = new IndexedInput(buf, strings);
+				List<Event> events = new ArrayList<>(numEvents);
+				for ( int i = 0; i < numEvents; ++i ) {
+					events.add( Event.read(in) );
+				}
+				return events;
+			}
+			catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+				throw new IOException("Truncated compiled scenario: " + file);
+			}
+			catch (IllegalArgumentException | NegativeArraySizeException e) {
+				throw new IOException("Corrupt compiled scenario: " + file);
+			}
+		}
+	}
+
+	/**
+	 * {@link DataOutput} que escribe cada cadena como su
+	 * índice en la tabla de cadenas, añadiéndola si es nueva.
+	 */
+	private static class IndexedOutput implements DataOutput {
+
+		final DataOutputStream out;
+		final List<String> strings = new ArrayList<>();
+		final Map<String, Integer> indices = new HashMap<>();
+
+		IndexedOutput(DataOutputStream os) {
+			out = os;
+		}
+
+		@Override
+		public void writeUTF(String s) throws IOException {
+			Integer index = indices.get(s);
+			if ( index == null ) {
+				index = strings.size();
+				strings.add(s);
+				indices.put(s, index);
+			}
+			out.writeInt(index);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void writeBoolean(boolean v) throws IOException {
+			out.writeBoolean(v);
+		}
+
+		@Override
+		public void writeByte(int v) throws IOException {
+			out.writeByte(v);
+		}
+
+		@Override
+		public void writeShort(int v) throws IOException {
+			out.writeShort(v);
+		}
+
+		@Override
+		public void writeChar(int v) throws IOException {
+			out.writeChar(v);
+		}
+
+		@Override
+		public void writeInt(int v) throws IOException {
+			out.writeInt(v);
+		}
+
+		@Override
+		public void writeLong(long v) throws IOException {
+			out.writeLong(v);
+		}
+
+		@Override
+		public void writeFloat(float v) throws IOException {
+			out.writeFloat(v);
+		}
+
+		@Override
+		public void writeDouble(double v) throws IOException {
+			out.writeDouble(v);
+		}
+
+		@Override
+		public void writeBytes(String s) throws IOException {
+			out.writeBytes(s);
+		}
+
+		@Override
+		public void writeChars(String s) throws IOException {
+			out.writeChars(s);
+		}
+	}
+
+	/**
+	 * {@link DataInput} sobre el archivo proyectado en
+	 * memoria, que lee cada cadena como su índice en la
+	 * tabla de cadenas.
+	 */
+	private static class IndexedInput implements DataInput {
+
+		final ByteBuffer buf;
+		final String[] strings;
+
+		IndexedInput(ByteBuffer buffer, String[] table) {
+			buf = buffer;
+			strings = table;
+		}
+
+		@Override
+		public String readUTF() throws IOException {
+			return strings[buf.getInt()];
+		}
+
+		@Override
+		public void readFully(byte[] b) throws IOException {
+			buf.get(b);
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			buf.get(b, off, len);
+		}
+
+		@Override
+		public int skipBytes(int n) throws IOException {
+			int skipped = Math.min(n, buf.remaining());
+			buf.position(buf.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean readBoolean() throws IOException {
+			return buf.get() != 0;
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			return buf.get();
+		}
+
+		@Override
+		public int readUnsignedByte() throws IOException {
+			return buf.get() & 0xFF;
+		}
+
+		@Override
+		public short readShort() throws IOException {
+			return buf.getShort();
+		}
+
+		@Override
+		public int readUnsignedShort() throws IOException {
+			return buf.getShort() & 0xFFFF;
+		}
+
+		@Override
+		public char readChar() throws IOException {
+			return buf.getChar();
+		}
+
+		@Override
+		public int readInt() throws IOException {
+			return buf.getInt();
+		}
+
+		@Override
+		public long readLong() throws IOException {
+			return buf.getLong();
+		}
+
+		@Override
+		public float readFloat() throws IOException {
+			return buf.getFloat();
+		}
+
+		@Override
+		public double readDouble() throws IOException {
+			return buf.getDouble();
+		}
+
+		@Override
+		public String readLine() throws IOException {
+			throw new EOFException("No lines in a compiled scenario");
+		}
+	}
+}
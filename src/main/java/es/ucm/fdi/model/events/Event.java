@@ -1,5 +1,10 @@
 package es.ucm.fdi.model.events;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
@@ -89,6 +94,109 @@ public abstract class Event implements Describable {
 		return (time == other.getTime());
 	}
 
+	/**
+	 * Escribe el {@code Event} en un checkpoint: su 
+	 * clase, su tiempo y, en las subclases, los datos 
+	 * con los que se construyó. Se lee con 
+	 * {@link #read(DataInput)}.
+	 * 
+	 * @param out 	- flujo del checkpoint
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(getClass().getSimpleName());
+		out.writeInt(time);
+	}
+
+	/**
+	 * Lee de un checkpoint un {@code Event} escrito 
+	 * con {@link #write(DataOutput)}.
+	 * 
+	 * @param in 	- flujo del checkpoint
+	 * 
+	 * @return 		{@code Event} leído
+	 * 
+	 * @throws IOException 	if reading fails or the
+	 * 						event type is unknown
+	 */
+	public static Event read(DataInput in) throws IOException {
+		String type = in.readUTF();
+		int time = in.readInt();
+
+		// Los argumentos se evalúan en orden, 
+		// el mismo en que se escribieron.
+		switch (type) {
+		case "NewJunction":
+			return new NewJunction(time, in.readUTF());
+		case "NewRobinJunction":
+			return new NewRobinJunction(time, in.readUTF(), in.readInt(), in.readInt());
+		case "NewCrowdedJunction":
+			return new NewCrowdedJunction(time, in.readUTF());
+		case "NewRoad":
+			return new NewRoad(time, in.readUTF(), in.readInt(), in.readInt(), 
+					in.readUTF(), in.readUTF());
+		case "NewDirtRoad":
+			return new NewDirtRoad(time, in.readUTF(), in.readInt(), in.readInt(), 
+					in.readUTF(), in.readUTF());
+		case "NewHighwayRoad":
+			return new NewHighwayRoad(time, in.readUTF(), in.readInt(), in.readInt(), 
+					in.readUTF(), in.readUTF(), in.readInt());
+		case "NewVehicle":
+			return new NewVehicle(time, in.readUTF(), in.readInt(), readList(in));
+		case "NewBikeVehicle":
+			return new NewBikeVehicle(time, in.readUTF(), in.readInt(), readList(in));
+		case "NewCarVehicle":
+			return new NewCarVehicle(time, in.readUTF(), in.readInt(), readList(in), 
+					in.readInt(), in.readDouble(), in.readInt(), in.readLong());
+		case "NewODVehicle":
+			String id = in.readUTF();
+			int maxSpeed = in.readInt();
+			List<String> od = readList(in);
+			return new NewODVehicle(time, id, maxSpeed, od.get(0), od.get(1));
+		case "FaultyVehicle":
+			return new FaultyVehicle(time, readList(in), in.readInt());
+		default:
+			throw new IOException("Unknown event type in checkpoint: " + type);
+		}
+	}
+
+	/**
+	 * Escribe una lista de IDs en un checkpoint.
+	 * 
+	 * @param out 	- flujo del checkpoint
+	 * @param ids 	- lista de IDs
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	protected static void writeList(DataOutput out, List<String> ids) 
+			throws IOException {
+		out.writeInt(ids.size());
+		for (String id : ids) {
+			out.writeUTF(id);
+		}
+	}
+
+	/**
+	 * Lee una lista de IDs escrita con 
+	 * {@link #writeList(DataOutput, List)}.
+	 * 
+	 * @param in 	- flujo del checkpoint
+	 * 
+	 * @return 		lista de IDs
+	 * 
+	 * @throws IOException 	if reading fails
+	 */
+	private static List<String> readList(DataInput in) throws IOException {
+		int size = in.readInt();
+		List<String> ids = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			ids.add(in.readUTF());
+		}
+		
+		return ids;
+	}
+
 	/**
 	 * Devuelve el tiempo en que se ejecutará 
 	 * el {@code Event}.
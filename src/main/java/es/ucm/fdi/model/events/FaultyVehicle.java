@@ -1,5 +1,7 @@
 package es.ucm.fdi.model.events;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 
 import es.ucm.fdi.model.simobj.Vehicle;
@@ -123,4 +125,21 @@ public class FaultyVehicle extends Event {
 
 		return same;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code FaultyVehicle} escribe los IDs de los {@code Vehicle}s y la duración de la avería.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		writeList(out, vehiclesID);
+		out.writeInt(duration);
+	}
 }
@@ -1,10 +1,9 @@
 package es.ucm.fdi.model.events;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import es.ucm.fdi.model.simobj.BikeVehicle;
-import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Route;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
 import es.ucm.fdi.model.simulation.NonExistingSimObjException;
 import es.ucm.fdi.model.simulation.SimulationException;
@@ -96,26 +95,10 @@ public class NewBikeVehicle extends NewVehicle {
 	protected BikeVehicle newVehicle(TrafficSimulation sim) 
 			throws NonExistingSimObjException {
 
-		ArrayList<Junction> trip = new ArrayList<Junction>();
-
-		// Deben existir todos los cruces del 
-		// itinerario en el momento del evento.
-		for ( String jID : tripID ) {
-			Junction j = sim.getRoadMap().getJunctionWithID(jID);
-			if (j != null) {
-				trip.add(j);
-			}
-			else {
-				throw new NonExistingSimObjException(
-					"Junction with id: " + jID + 
-					" from itinerary of vehicle with id: " + id + 
-					" not found in simulation."
-				);
-			}
-		}
+		Route trip = compileRoute(sim);
 		
 		try {
-			return	new BikeVehicle( id, trip, maxSpeed );
+			return	new BikeVehicle( id, trip, maxSpeed, sim.getRoadMap().getVehicleStore() );
 		} 
 		catch (SimulationException e) {
 			throw new NonExistingSimObjException(e.getMessage());
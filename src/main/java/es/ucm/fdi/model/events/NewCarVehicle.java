@@ -1,10 +1,11 @@
 package es.ucm.fdi.model.events;
 
-import java.util.ArrayList;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 
 import es.ucm.fdi.model.simobj.CarVehicle;
-import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Route;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
 import es.ucm.fdi.model.simulation.NonExistingSimObjException;
 import es.ucm.fdi.model.simulation.SimulationException;
@@ -127,29 +128,32 @@ public class NewCarVehicle extends NewVehicle {
 	protected CarVehicle newVehicle(TrafficSimulation sim) 
 			throws NonExistingSimObjException {
 
-		ArrayList<Junction> trip = new ArrayList<Junction>();
-
-		// Deben existir todos los cruces del itinerario 
-		// en el momento del evento.
-		for ( String jID : tripID ) {
-			Junction j = sim.getRoadMap().getJunctionWithID(jID);
-			if (j != null) {
-				trip.add(j);
-			}
-			else {
-				throw new NonExistingSimObjException(
-					"Junction with id: " + jID + 
-					" from itinerary of vehicle with id: " + id + 
-					" not found in simulation."
-				);
-			}
-		}
+		Route trip = compileRoute(sim);
 
 		try {
 			return	new CarVehicle(id, trip, maxSpeed, resistance, faultyChance,
-							faultDuration, randomSeed);
+							faultDuration, sim.deriveSeed(randomSeed), sim.getRoadMap().getVehicleStore());
 		} catch (SimulationException e) {
 			throw new NonExistingSimObjException(e.getMessage());
 		}
 	}	
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code NewCarVehicle} escribe además la resistencia, la probabilidad y la duración de las averías y la semilla.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		out.writeInt(resistance);
+		out.writeDouble(faultyChance);
+		out.writeInt(faultDuration);
+		out.writeLong(randomSeed);
+	}
 }
@@ -1,5 +1,8 @@
 package es.ucm.fdi.model.events;
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 import es.ucm.fdi.model.simobj.HighwayRoad;
 import es.ucm.fdi.model.simobj.Junction;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
@@ -117,4 +120,20 @@ public class NewHighwayRoad extends NewRoad {
             );
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Un {@code NewHighwayRoad} escribe además el número de carriles.
+     * </p>
+     * 
+     * @param out   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        super.write(out);
+        out.writeInt(numLanes);
+    }
+}
@@ -1,6 +1,9 @@
 package es.ucm.fdi.model.events;
 
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 import es.ucm.fdi.model.simobj.Junction;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
 import es.ucm.fdi.model.simulation.TrafficSimulation;
@@ -113,4 +116,20 @@ public class NewJunction extends Event {
 		
 		return same;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code NewJunction} escribe el ID de la {@code Junction}.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		out.writeUTF(id);
+	}
 }
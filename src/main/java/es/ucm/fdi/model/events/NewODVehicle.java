@@ -0,0 +1,127 @@
+package es.ucm.fdi.model.events;
+
+import java.util.Arrays;
+
+import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Route;
+import es.ucm.fdi.model.simobj.Vehicle;
+import es.ucm.fdi.model.simulation.NonExistingSimObjException;
+import es.ucm.fdi.model.simulation.SimulationException;
+import es.ucm.fdi.model.simulation.TrafficSimulation;
+
+/**
+ * {@link Event} que representa la creación de un nuevo
+ * {@link Vehicle} en la simulación del que sólo se conocen
+ * las {@code Junction}s de origen y destino. Su ruta es
+ * el camino más corto entre ellas en el momento del
+ * evento. Hereda de {@link NewVehicle}.
+ */
+public class NewODVehicle extends NewVehicle {
+
+	/**
+	 * ID de la {@code Junction} de origen.
+	 */
+	protected String originID;
+
+	/**
+	 * ID de la {@code Junction} de destino.
+	 */
+	protected String destinationID;
+
+	/**
+	 * Constructor de {@link NewODVehicle}.
+	 *
+	 * @param newTime 		- tiempo de ejecución del
+	 * 						evento
+	 * @param ID 			- identificador del nuevo
+	 * 						{@code Vehicle}
+	 * @param max 			- máxima velocidad alcanzable
+	 * @param origin 		- ID de la {@code Junction}
+	 * 						de origen
+	 * @param destination 	- ID de la {@code Junction}
+	 * 						de destino
+	 */
+	public NewODVehicle(int newTime, String ID, int max,
+			String origin, String destination) {
+
+		super(newTime, ID, max, Arrays.asList(origin, destination));
+		originID = origin;
+		destinationID = destination;
+	}
+
+	/**
+	 * <p>
+	 * Devuelve la descripción {@code NewODVehicle}
+	 * utilizada en las tablas de la GUI. Ejemplo:
+	 * </p> <p>
+	 * "New od vehicle v1"
+	 * </p>
+	 *
+	 * @return 	{@code String} con la descripción
+	 */
+	@Override
+	protected String getEventDescription() {
+		// Descripción del evento.
+		StringBuilder description = new StringBuilder();
+		description.append("New od vehicle ");
+		description.append(id);
+
+		return description.toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En un {@code NewODVehicle}, la ruta es la que
+	 * calcula el {@code RoutePlanner} del mapa entre
+	 * el origen y el destino.
+	 * </p>
+	 *
+	 * @param sim 	- {@inheritDoc}
+	 *
+	 * @return 		{@inheritDoc}
+	 *
+	 * @throws NonExistingSimObjException 	si el origen o el destino
+	 * 										no están registrados o no
+	 * 										hay camino entre ellos
+	 */
+	@Override
+	protected Route compileRoute(TrafficSimulation sim)
+			throws NonExistingSimObjException {
+
+		Junction origin = sim.getRoadMap().getJunctionWithID(originID);
+		Junction destination = sim.getRoadMap().getJunctionWithID(destinationID);
+
+		if ( origin == null || destination == null ) {
+			throw new NonExistingSimObjException(
+				"Origin or destination of vehicle with id: " + id +
+				" not found in simulation."
+			);
+		}
+
+		try {
+			return sim.getRoadMap().getRoutePlanner().getRoute(origin, destination);
+		}
+		catch (SimulationException e) {
+			throw new NonExistingSimObjException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Devuelve el ID de la {@code Junction} de origen.
+	 *
+	 * @return 	<code>originID</code>
+	 */
+	public String getOriginID() {
+		return originID;
+	}
+
+	/**
+	 * Devuelve el ID de la {@code Junction} de destino.
+	 *
+	 * @return 	<code>destinationID</code>
+	 */
+	public String getDestinationID() {
+		return destinationID;
+	}
+}
@@ -1,6 +1,9 @@
 package es.ucm.fdi.model.events;
 
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 import es.ucm.fdi.model.simobj.Junction;
 import es.ucm.fdi.model.simobj.Road;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
@@ -184,4 +187,24 @@ public class NewRoad extends Event {
 		
 		return same;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code NewRoad} escribe el ID, la longitud, el límite de velocidad y los IDs de sus {@code Junction}s.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		out.writeUTF(id);
+		out.writeInt(length);
+		out.writeInt(speedLimit);
+		out.writeUTF(fromJunctionID);
+		out.writeUTF(toJunctionID);
+	}
 }
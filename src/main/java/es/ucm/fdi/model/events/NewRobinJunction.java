@@ -1,6 +1,9 @@
 package es.ucm.fdi.model.events;
 
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 import es.ucm.fdi.model.simobj.RobinJunction;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
 import es.ucm.fdi.model.simulation.TrafficSimulation;
@@ -92,4 +95,21 @@ public class NewRobinJunction extends NewJunction {
     protected RobinJunction newJunction() {
         return  new RobinJunction(id, minTime, maxTime);
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Un {@code NewRobinJunction} escribe además las duraciones mínima y máxima.
+     * </p>
+     * 
+     * @param out   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        super.write(out);
+        out.writeInt(minTime);
+        out.writeInt(maxTime);
+    }
+}
@@ -1,9 +1,12 @@
 package es.ucm.fdi.model.events;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Route;
 import es.ucm.fdi.model.simobj.Vehicle;
 import es.ucm.fdi.model.simulation.AlreadyExistingSimObjException;
 import es.ucm.fdi.model.simulation.NonExistingSimObjException;
@@ -123,31 +126,61 @@ public class NewVehicle extends Event {
 	protected Vehicle newVehicle(TrafficSimulation sim) 
 			throws NonExistingSimObjException {
 
-		ArrayList<Junction> trip = new ArrayList<Junction>();
+		Route trip = compileRoute(sim);
 
-		// Deben existir todos los cruces del 
-		// itinerario en el momento del evento.
-		for ( String jID : tripID ) {
-			Junction j = sim.getRoadMap().getJunctionWithID(jID);
-
-			if ( j != null ) {
-				trip.add(j);
-			}
-			else {
-				throw new NonExistingSimObjException(
-					"Junction with id: " + jID + 
-					" from itinerary of vehicle with id: " + id + 
-					" not found in simulation."
-				);
-			}
-		}
 		try {
-			return	new Vehicle(id, trip, maxSpeed);
+			return	new Vehicle(id, trip, maxSpeed, sim.getRoadMap().getVehicleStore());
 		} catch (SimulationException e) {
 			throw new NonExistingSimObjException(e.getMessage());
 		}
 	}
 
+	/**
+	 * Devuelve la {@code Route} del itinerario del evento. 
+	 * Si ningún {@code Vehicle} anterior lo sigue, se compila 
+	 * a partir de las {@code Junction}s del mapa y se guarda 
+	 * en el {@code RoadMap} para los siguientes.
+	 * 
+	 * @param sim 	- la simulación sobre la que
+	 * 				se ejecuta el evento
+	 * 
+	 * @return 		{@code Route} compartida del itinerario
+	 * 
+	 * @throws NonExistingSimObjException 	si alguna {@code Junction} en 
+	 * 										la ruta no está registrada
+	 */
+	protected Route compileRoute(TrafficSimulation sim) 
+			throws NonExistingSimObjException {
+
+		Route route = sim.getRoadMap().getRoute(tripID);
+
+		if ( route == null ) {
+			ArrayList<Junction> trip = new ArrayList<Junction>();
+
+			// Deben existir todos los cruces del 
+			// itinerario en el momento del evento.
+			for ( String jID : tripID ) {
+				Junction j = sim.getRoadMap().getJunctionWithID(jID);
+
+				if ( j != null ) {
+					trip.add(j);
+				}
+				else {
+					throw new NonExistingSimObjException(
+						"Junction with id: " + jID + 
+						" from itinerary of vehicle with id: " + id + 
+						" not found in simulation."
+					);
+				}
+			}
+
+			route = new Route(trip);
+			sim.getRoadMap().addRoute(tripID, route);
+		}
+
+		return route;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -174,4 +207,22 @@ public class NewVehicle extends Event {
 		
 		return same;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code NewVehicle} escribe el ID, la velocidad máxima y el itinerario.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		out.writeUTF(id);
+		out.writeInt(maxSpeed);
+		writeList(out, tripID);
+	}
 }
@@ -1,8 +1,7 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
 import es.ucm.fdi.model.simulation.SimulationException;
 
 /**
@@ -15,15 +14,41 @@ public class BikeVehicle extends Vehicle {
 	 * Constructor de {@link BikeVehicle}.
 	 * 
 	 * @param identifier 	- identificador del objeto
-	 * @param trp 			- ruta de {@code Junction}s
+	 * @param trp 			- ruta compilada
 	 * @param max 			- máxima velocidad alcanzable
+	 * @param vehicles 		- almacén donde se guarda 
+	 * 						su estado
 	 * 
 	 * @throws SimulationException {@inheritDoc}
 	 */
-	public BikeVehicle(String identifier, ArrayList<Junction> trp, int max) 
-			throws SimulationException {
+	public BikeVehicle(String identifier, Route trp, int max,
+			VehicleStore vehicles) throws SimulationException {
 
-		super(identifier, trp, max);
+		super(identifier, trp, max, vehicles);
+	}
+
+	/**
+	 * Constructor de copia de {@link BikeVehicle}.
+	 * 
+	 * @param source 		- {@code BikeVehicle} copiado
+	 * @param trp 			- {@inheritDoc}
+	 * @param vehicles 		- {@inheritDoc}
+	 */
+	protected BikeVehicle(BikeVehicle source, Route trp, VehicleStore vehicles) {
+		super(source, trp, vehicles);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @param trp 		- {@inheritDoc}
+	 * @param vehicles 	- {@inheritDoc}
+	 * 
+	 * @return 			{@inheritDoc}
+	 */
+	@Override
+	public Vehicle copy(Route trp, VehicleStore vehicles) {
+		return new BikeVehicle(this, trp, vehicles);
 	}
 
 	/**
@@ -36,41 +61,38 @@ public class BikeVehicle extends Vehicle {
 	public void setBreakdownTime(int addedBreakdownTime)  {
 		// Si la bicicleta avanza más rápido que la mitad de su velocidad
 		// alcanzable, entonces podrá sumársele el tiempo de avería.
-		if ( actualSpeed > (maxSpeed / 2) ) {
-			breakdownTime += addedBreakdownTime;
+		if ( getActualSpeed() > (getMaxSpeed() / 2) ) {
+			super.setBreakdownTime(addedBreakdownTime);
 		}
 	}
 
 	/**
-	 * Genera una {@code IniSection} que informa de los 
-	 * atributos del {@code BikeVehicle} en el tiempo 
-	 * del simulador.
-	 * 
-	 * @param simTime 	- tiempo del simulador
+	 * {@inheritDoc}
+	 * <p>
+	 * En un {@code BikeVehicle} se incluye además el tipo.
+	 * </p>
 	 * 
-	 * @return 			{@code IniSection} con información 
-	 * 					del {@code BikeVehicle}
+	 * @param simTime 	- {@inheritDoc}
+	 * @param out 		- {@inheritDoc}
 	 */
 	@Override
-	public IniSection generateIniSection(int simTime) {
+	public void report(int simTime, SectionSink out) {
 		// 1 //
-		// Se crea la etiqueta de la sección (sin corchetes).
-		String tag = REPORT_TITLE;
-		tag = (String) tag.subSequence(1, tag.length() - 1);
-		IniSection section = new IniSection(tag);
+		// Se abre la sección del informe.
+		out.beginSection(REPORT_TAG);
 
 		// 2 // 
 		// Se generan los datos en el informe.
-		section.setValue("id", id);
-		section.setValue("time", simTime);
-		section.setValue("type", getType());
-		section.setValue("speed", actualSpeed);
-		section.setValue("kilometrage", kilometrage);
-		section.setValue("faulty", breakdownTime);
-		section.setValue("location", getReportLocation());
-		
-		
-		return section;
+		out.value("id", id);
+		out.value("time", simTime);
+		out.value("type", getType());
+		out.value("speed", getActualSpeed());
+		out.value("kilometrage", getKilometrage());
+		out.value("faulty", getBreakdownTime());
+		StringBuilder location = out.scratch();
+		appendReportLocation(location);
+		out.value("location", location);
+		out.endSection();
 	}
 
 	/**
@@ -1,9 +1,10 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
-import java.util.Random;
 
-import es.ucm.fdi.ini.IniSection;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import es.ucm.fdi.ini.SectionSink;
 import es.ucm.fdi.model.simulation.SimulationException;
 
 /**
@@ -28,36 +29,68 @@ public class CarVehicle extends Vehicle {
 	private int faultDuration;
 	
 	/**
-	 * Semilla aleatoria.
+	 * Multiplicador del generador congruencial lineal 
+	 * de {@code java.util.Random}.
 	 */
-	private Random randomSeed;
-	
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+
+	/**
+	 * Incremento del generador congruencial lineal 
+	 * de {@code java.util.Random}.
+	 */
+	private static final long ADDEND = 0xBL;
+
 	/**
-	 * Distancia transcurrida desde la última avería.
+	 * Máscara de los 48 bits de estado del generador.
 	 */
-	private int kmSinceFaulty = 0;
+	private static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * Factor que pasa un entero de 53 bits a un 
+	 * {@code double} en {@code [0, 1)}.
+	 */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
 
 	/**
 	 * Constructor de {@link CarVehicle}.
 	 * 
 	 * @param identifier 	- identificador del objeto
-	 * @param trp 			- ruta de {@code Junction}s
+	 * @param trp 			- ruta compilada
 	 * @param max 			- máxima velocidad alcanzable
 	 * @param res 			- resistencia a averiarse
 	 * @param breakChance 	- probabilidad de avería
 	 * @param breakDuration - duración máxima de avería
 	 * @param seed 			- semilla aleatoria
+	 * @param vehicles 		- almacén donde se guarda 
+	 * 						su estado
 	 * 
 	 * @throws SimulationException {@inheritDoc}
 	 */
-	public CarVehicle(String identifier, ArrayList<Junction> trp,
+	public CarVehicle(String identifier, Route trp,
 			int max, int res, double breakChance, int breakDuration, 
-			long seed) throws SimulationException {
-		super(identifier, trp, max);
+			long seed, VehicleStore vehicles) throws SimulationException {
+		super(identifier, trp, max, vehicles);
 		resistance = res;
 		faultyChance = breakChance;
 		faultDuration = breakDuration;
-		randomSeed = new Random(seed);
+
+		// Mismo estado inicial que new Random(seed).
+		setRandomState( (seed ^ MULTIPLIER) & MASK );
+	}
+
+	/**
+	 * Constructor de copia de {@link CarVehicle}. El estado 
+	 * del generador aleatorio está en el almacén compartido.
+	 * 
+	 * @param source 		- {@code CarVehicle} copiado
+	 * @param trp 			- {@inheritDoc}
+	 * @param vehicles 		- {@inheritDoc}
+	 */
+	protected CarVehicle(CarVehicle source, Route trp, VehicleStore vehicles) {
+		super(source, trp, vehicles);
+		resistance = source.resistance;
+		faultyChance = source.faultyChance;
+		faultDuration = source.faultDuration;
 	}
 
 	/**
@@ -76,10 +109,10 @@ public class CarVehicle extends Vehicle {
 		// No está averiado, pero puede averiarse
 		// si se dan las condiciones.
 		if ( ! isFaulty() ) {
-			if ( kmSinceFaulty > resistance ) {
-				if ( randomSeed.nextDouble() < faultyChance ) {
+			if ( kmSinceFaulty() > resistance ) {
+				if ( nextDouble() < faultyChance ) {
 					// Generamos un tiempo de avería entre 1 y faultDuration
-					setBreakdownTime( randomSeed.nextInt(faultDuration) + 1 );
+					setBreakdownTime( nextInt(faultDuration) + 1 );
 				}
 			}
 		}
@@ -88,49 +121,168 @@ public class CarVehicle extends Vehicle {
 		// Puede averarse por un evento o si se dan
 		// las condiciones anteriores.
 		if ( isFaulty() ) {
-			kmSinceFaulty = 0;
-			actualSpeed = 0;
+			setKmSinceFaulty(0);
+			setActualSpeed(0);
 		}
 
 		// 3 //
 		// El coche avanza como un vehículo normal y con
 		// las diferencias de kilometraje se calculan la
 		// distancia que lleva el coche sin averiarse.
-		int oldKilometrage = kilometrage;
+		int oldKilometrage = getKilometrage();
 		super.proceed();
 
-		kmSinceFaulty += kilometrage - oldKilometrage;
+		setKmSinceFaulty( kmSinceFaulty() + getKilometrage() - oldKilometrage );
+	}
+
+	/**
+	 * Devuelve la distancia transcurrida 
+	 * desde la última avería.
+	 * 
+	 * @return 	distancia sin averías
+	 */
+	private int kmSinceFaulty() {
+		return store.getInt(slot, VehicleStore.KM_SINCE_FAULTY);
+	}
+
+	/**
+	 * Fija la distancia transcurrida 
+	 * desde la última avería.
+	 * 
+	 * @param km 	- distancia sin averías
+	 */
+	private void setKmSinceFaulty(int km) {
+		store.setInt(slot, VehicleStore.KM_SINCE_FAULTY, km);
 	}
 
 	/**
-	 * Genera una {@code IniSection} que informa de
-	 * los atributos del {@code CarVehicle} en el 
-	 * tiempo del simulador.
+	 * Guarda el estado del generador aleatorio.
 	 * 
-	 * @param simTime 	- tiempo del simulador
+	 * @param state 	- estado de 48 bits
+	 */
+	private void setRandomState(long state) {
+		store.setLong(slot, VehicleStore.RANDOM_HIGH, VehicleStore.RANDOM_LOW, state);
+	}
+
+	/**
+	 * Avanza el generador aleatorio, guardado en el 
+	 * almacén, y devuelve sus bits más altos. Es el 
+	 * mismo generador que {@code java.util.Random}, 
+	 * así que una semilla da la misma secuencia.
 	 * 
-	 * @return 			{@code IniSection} con información 
-	 * 					del {@code CarVehicle}
+	 * @param bits 	- número de bits aleatorios
+	 * 
+	 * @return 		entero con los bits aleatorios
+	 */
+	private int next(int bits) {
+		long state = store.getLong(slot, VehicleStore.RANDOM_HIGH, VehicleStore.RANDOM_LOW);
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		setRandomState(state);
+
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Equivalente a {@code Random.nextDouble()}.
+	 * 
+	 * @return 	{@code double} aleatorio en {@code [0, 1)}
+	 */
+	private double nextDouble() {
+		return ( ((long) next(26) << 27) + next(27) ) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * Equivalente a {@code Random.nextInt(bound)}.
+	 * 
+	 * @param bound 	- cota superior (exclusive)
+	 * 
+	 * @return 			entero aleatorio en {@code [0, bound)}
+	 * 
+	 * @throws IllegalArgumentException 	si {@code bound} 
+	 * 										no es positivo
+	 */
+	private int nextInt(int bound) throws IllegalArgumentException {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+
+		int r = next(31);
+		int m = bound - 1;
+		if ( (bound & m) == 0 ) {
+			// Potencia de 2.
+			r = (int) ((bound * (long) r) >> 31);
+		}
+		else {
+			// Se descartan los valores que sesgarían el resultado.
+			for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+			}
+		}
+
+		return r;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En un {@code CarVehicle} se incluye además el tipo.
+	 * </p>
+	 * 
+	 * @param simTime 	- {@inheritDoc}
+	 * @param out 		- {@inheritDoc}
 	 */
 	@Override
-	public IniSection generateIniSection(int simTime) {
+	public void report(int simTime, SectionSink out) {
 		// 1 //
-		// Se crea la etiqueta de la sección (sin corchetes).
-		String tag = REPORT_TITLE;
-		tag = (String) tag.subSequence(1, tag.length() - 1);
-		IniSection section = new IniSection(tag);
+		// Se abre la sección del informe.
+		out.beginSection(REPORT_TAG);
 
 		// 2 // 
 		// Se generan los datos en el informe.
-		section.setValue("id", id);
-		section.setValue("time", simTime);
-		section.setValue("type", getType());
-		section.setValue("speed", actualSpeed);
-		section.setValue("kilometrage", kilometrage);
-		section.setValue("faulty", breakdownTime);
-		section.setValue("location", getReportLocation());
-
-		return section;
+		out.value("id", id);
+		out.value("time", simTime);
+		out.value("type", getType());
+		out.value("speed", getActualSpeed());
+		out.value("kilometrage", getKilometrage());
+		out.value("faulty", getBreakdownTime());
+		StringBuilder location = out.scratch();
+		appendReportLocation(location);
+		out.value("location", location);
+		out.endSection();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code CarVehicle} se construye además con su 
+	 * resistencia, su probabilidad de avería y la duración 
+	 * máxima de sus averías. La semilla no hace falta: el 
+	 * estado del generador se guarda con el del 
+	 * {@code VehicleStore}.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeDefinition(DataOutput out) throws IOException {
+		super.writeDefinition(out);
+		out.writeInt(resistance);
+		out.writeDouble(faultyChance);
+		out.writeInt(faultDuration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @param trp 		- {@inheritDoc}
+	 * @param vehicles 	- {@inheritDoc}
+	 * 
+	 * @return 			{@inheritDoc}
+	 */
+	@Override
+	public Vehicle copy(Route trp, VehicleStore vehicles) {
+		return new CarVehicle(this, trp, vehicles);
 	}
 
 	/**
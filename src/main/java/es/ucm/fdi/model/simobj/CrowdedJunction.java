@@ -1,12 +1,13 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 
 /**
  * Clase que representa una intersección inteligente, 
@@ -17,10 +18,11 @@ import es.ucm.fdi.ini.IniSection;
 public class CrowdedJunction extends Junction {
 
     /**
-     * Mapa de {@code incomingRoads} a sus respectivos 
-     * intervalos de duración de sus semáforos.
+     * Intervalos de duración de los semáforos de las
+     * {@code Road}s entrantes, por su posición en 
+     * {@code incoming}.
      */
-    protected Map<Road, Integer> timeLapses = new HashMap<>();
+    protected int[] timeLapses = new int[0];
 
     /**
     * Tiempo consumido (unidades: ticks)
@@ -34,12 +36,6 @@ public class CrowdedJunction extends Junction {
      */
     public CrowdedJunction(String identifier) {
         super(identifier); // light: -1
-
-        // Al inicio de la simulación, la duración 
-        // de los semáforos es nula.
-        for ( Road inc : incomingRoads.values() ) {
-            timeLapses.put(inc, 0);
-        }
     }
     
     /**
@@ -60,9 +56,7 @@ public class CrowdedJunction extends Junction {
         // 1 // 
         // La carretera con la cola más concurrida se pone en verde.
         light = mostCrowdedRoad();
-        List<String> array = new ArrayList<>(incomingRoads.keySet());
-		String nextRoad = array.get(light);
-        Road crowdedRoad = incomingRoads.get(nextRoad);
+        Road crowdedRoad = incoming.get(light);
 
         crowdedRoad.setLight(true);
         
@@ -70,7 +64,7 @@ public class CrowdedJunction extends Junction {
         // Se actualiza su timeLapse respecto al número de vehículos esperando.
         int numWaiting = crowdedRoad.getNumWaitingVehicles();
         int newTimeLapse = Math.max( (numWaiting / 2) , 1 );
-        timeLapses.put(crowdedRoad, newTimeLapse);
+        timeLapses[light] = newTimeLapse;
 
         // No se actualiza elapsedTime, 
         // pues no había ningún semáforo en verde.
@@ -109,44 +103,89 @@ public class CrowdedJunction extends Junction {
      */
     @Override
     protected void lightUpdate() {
-    	List<String> array = new ArrayList<>(incomingRoads.keySet());
-		String nextRoad = array.get(light);
-        Road usedRoad = incomingRoads.get(nextRoad);
-        int roadTimeLapse = timeLapses.get(usedRoad);
+        int roadTimeLapse = timeLapses[light];
 
         // Se actualiza el tiempo transcurrido con el semáforo en verde.
         elapsedTime += 1;
 
         // El semáforo ha agotado su tiempo.
         if ( roadTimeLapse == elapsedTime ) {
-            // * //
-            // La carretera actualizada se pone en rojo.
-            usedRoad.setLight(false);
-
-            // 1 //
-            // La carretera con la cola más concurrida se pone en verde.
-            light = mostCrowdedRoad();
-            nextRoad = array.get(light);
-            Road crowdedRoad = incomingRoads.get(nextRoad);
-
-            crowdedRoad.setLight(true);
-
-            // 2 //
-            // Se actualiza su timeLapse respecto 
-            // al número de vehículos esperando.
-            int numWaiting = crowdedRoad.getNumWaitingVehicles();
-            int newTimeLapse = Math.max((numWaiting / 2), 1);
-            timeLapses.put(crowdedRoad, newTimeLapse);
-
-            // 3 //
-            // Se resetea elapsedTime.
-            elapsedTime = 0;
+            switchLight();
+        }
+    }
+
+    /**
+     * Pone en rojo el semáforo en verde, que ha agotado 
+     * su {@code timeLapse}, pone en verde el de la 
+     * {@code Road} con la cola más concurrida, actualiza 
+     * su {@code timeLapse} y resetea {@code elapsedTime}.
+     */
+    private void switchLight() {
+        // * //
+        // La carretera actualizada se pone en rojo.
+        incoming.get(light).setLight(false);
+
+        // 1 //
+        // La carretera con la cola más concurrida se pone en verde.
+        light = mostCrowdedRoad();
+        Road crowdedRoad = incoming.get(light);
+        crowdedRoad.setLight(true);
+
+        // 2 //
+        // Se actualiza su timeLapse respecto 
+        // al número de vehículos esperando.
+        int numWaiting = crowdedRoad.getNumWaitingVehicles();
+        int newTimeLapse = Math.max((numWaiting / 2), 1);
+        timeLapses[light] = newTimeLapse;
+
+        // 3 //
+        // Se resetea elapsedTime.
+        elapsedTime = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En una {@code CrowdedJunction} sin {@code Vehicle}s 
+     * esperando todas las colas empatan, así que, una vez 
+     * se agota el semáforo actual, el verde pasa a la 
+     * siguiente {@code Road} en cada tick con 
+     * {@code timeLapse = 1}.
+     * </p>
+     * 
+     * @param ticks     - {@inheritDoc}
+     */
+    @Override
+    protected void skipIdleLights(int ticks) {
+        int remaining = timeLapses[light] - elapsedTime;
+
+        if (remaining <= 0 || remaining > ticks) {
+            // El semáforo actual no se agota.
+            elapsedTime += ticks;
+        }
+        else {
+            // Se agota el semáforo actual.
+            ticks -= remaining;
+            switchLight();
+
+            // Cambios de un tick por carretera (basta con 
+            // una vuelta para fijar todos los timeLapses).
+            int numIncomingRoads = incoming.size();
+            int laps = Math.min(ticks, numIncomingRoads);
+            for (int i = 0; i < laps; ++i) {
+                switchLight();
+            }
+            if (ticks > laps) {
+                incoming.get(light).setLight(false);
+                light = (int) ( (light + (long) (ticks - laps)) % numIncomingRoads );
+                incoming.get(light).setLight(true);
+            }
         }
     }
 
     /**
      * Busca la carretera más concurrida y devuelve su 
-     * posición en la lista {@code incomingRoads}. 
+     * posición en la lista {@code incoming}. 
      * En caso de empate, devuelve la posición menor:
      * la de la primera {@code Road} en registrarse
      * en la {@code Junction}.
@@ -158,12 +197,9 @@ public class CrowdedJunction extends Junction {
         int max = 0; // 0 vehículos
         int crowdedPos = 0; // la primera carretera
 
-        List<String> array = new ArrayList<>(incomingRoads.keySet());
-        
         // Se halla el máximo.
-        for (int i = 0; i < array.size(); ++i) {
-            int numVehicles = incomingRoads.get(array.get(i)).
-            		getNumWaitingVehicles();
+        for (int i = 0; i < incoming.size(); ++i) {
+            int numVehicles = incoming.get(i).getNumWaitingVehicles();
 
             if (numVehicles > max) {
                 max = numVehicles;
@@ -174,9 +210,8 @@ public class CrowdedJunction extends Junction {
         // Posiciones de las carreteras que empatan.
         HashSet<Integer> equallyCrowdedPos = new HashSet<>();
         
-        for (int i = 0; i < array.size(); ++i) {
-            int numVehicles = incomingRoads.get(array.get(i)).
-            		getNumWaitingVehicles();
+        for (int i = 0; i < incoming.size(); ++i) {
+            int numVehicles = incoming.get(i).getNumWaitingVehicles();
 
             if (numVehicles == max) {
                 equallyCrowdedPos.add(i);
@@ -188,10 +223,10 @@ public class CrowdedJunction extends Junction {
             // Si hay empate, de seguro el semáforo en verde 
             // no estará en la Road que se acaba de poner 
             // en rojo (light).
-            crowdedPos = ( (light + 1) % incomingRoads.size() );
+            crowdedPos = ( (light + 1) % incoming.size() );
 
             if ( ! equallyCrowdedPos.contains(crowdedPos) ) {
-                crowdedPos = ( (crowdedPos + 1) % incomingRoads.size() );
+                crowdedPos = ( (crowdedPos + 1) % incoming.size() );
             }
         }
 
@@ -206,59 +241,51 @@ public class CrowdedJunction extends Junction {
      * {@code Road} en verde.
      * </p>
      * 
-     * @param simTime   - tiempo del simulador
-     * 
-     * @return  informe {@code IniSection} de 
-     *          la {@code CrowdedJunction}
+     * @param simTime   - {@inheritDoc}
+     * @param out       - {@inheritDoc}
      */
     @Override
-    public IniSection generateIniSection(int simTime) {
+    public void report(int simTime, SectionSink out) {
+        catchUp();
+
         // 1 //
-        // Se crea la etiqueta de la sección (sin corchetes).
-        String tag = REPORT_TITLE;
-        tag = (String) tag.subSequence(1, tag.length() - 1);
-        IniSection section = new IniSection(tag);
+        // Se abre la sección del informe.
+        out.beginSection(REPORT_TAG);
 
         // 2 // 
         // Se generan los datos en el informe.
-        section.setValue("id", id);
-        section.setValue("time", simTime);
-        section.setValue("queues", getQueuesValue());
-        section.setValue("type", getType());
-
-        return section;
+        out.value("id", id);
+        out.value("time", simTime);
+        StringBuilder queues = out.scratch();
+        appendQueues(queues);
+        out.value("queues", queues);
+        out.value("type", getType());
+        out.endSection();
     }
     
     /**
      * {@inheritDoc}
      * <p>
-     * En una {@code CrowdedJunction} se incluye el 
-     * tiempo restante del semáforo de la {@code Road} 
-     * en verde.
+     * En una {@code CrowdedJunction} se incluye el tiempo 
+     * restante del semáforo de la {@code Road} en verde.
      * </p>
      * 
-     * @return  {@code String} con las colas
+     * @param queues    - {@inheritDoc}
      */
     @Override
-    protected String getQueuesValue() {
-        // Generación del string de queues
-        StringBuilder queues = new StringBuilder();
-        for (Road incR : incomingRoads.values()) {
+    protected void appendQueues(StringBuilder queues) {
+        for (int i = 0; i < incoming.size(); ++i) {
+            Road incR = incoming.get(i);
+            if (i > 0) {
+                queues.append(',');
+            }
             // Semáforo en verde.
             if (incR.isGreen()) {
-                queues.append(incR.getWaitingState(lastingLightTime(incR)));
+                incR.appendWaitingState(queues, lastingLightTime(i));
             } else { // En rojo.
-                queues.append(incR.getWaitingState());
+                incR.appendWaitingState(queues);
             }
-            queues.append(",");
         }
-
-        // Borrado de última coma (si queues no es vacío).
-        if (queues.length() > 0) {
-            queues.deleteCharAt(queues.length() - 1);
-        }
-
-        return queues.toString();
     }
 
     /**
@@ -267,13 +294,90 @@ public class CrowdedJunction extends Junction {
      * {@code elapsedTime}. No se comprueba 
      * que la {@code Road} esté en verde.
      * 
-     * @param road  {@code Road} de la que 
-     *              se quiere conocer el tiempo 
-     *              del semáforo
+     * @param pos   posición en {@code incoming} de la 
+     *              {@code Road} de la que se quiere 
+     *              conocer el tiempo del semáforo
      * @return      tiempo restante del semáforo.
      */
-    private int lastingLightTime(Road road) {
-        return ( timeLapses.get(road) - elapsedTime );
+    private int lastingLightTime(int pos) {
+        return ( timeLapses[pos] - elapsedTime );
+    }
+
+    /**
+     * Añade una nueva {@code Road} de entrada a la 
+     * {@code CrowdedJunction}. Al introducir una entrante,
+     * la duración de su semáforo es nula.
+     * 
+     * @param newRoad   - nueva {@code Road} entrante
+     */
+    @Override
+    public void addNewIncomingRoad(Road newRoad) {
+        super.addNewIncomingRoad(newRoad);
+        timeLapses = Arrays.copyOf(timeLapses, incoming.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En una {@code CrowdedJunction}, también la duración 
+     * de cada semáforo y el tiempo que lleva en verde 
+     * el actual.
+     * </p>
+     * 
+     * @param out   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(timeLapses.length);
+        for (int timeLapse : timeLapses) {
+            out.writeInt(timeLapse);
+        }
+        out.writeInt(elapsedTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param in    - {@inheritDoc}
+     * @param map   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void readState(DataInput in, RoadMap map) throws IOException {
+        super.readState(in, map);
+        timeLapses = new int[in.readInt()];
+        for (int i = 0; i < timeLapses.length; ++i) {
+            timeLapses[i] = in.readInt();
+        }
+        elapsedTime = in.readInt();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return  {@inheritDoc}
+     */
+    @Override
+    public Junction copy() {
+        return new CrowdedJunction(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param source    - {@inheritDoc}
+     * @param map       - {@inheritDoc}
+     */
+    @Override
+    public void copyState(SimObject source, RoadMap map) {
+        super.copyState(source, map);
+        CrowdedJunction junction = (CrowdedJunction) source;
+        timeLapses = junction.timeLapses.clone();
+        elapsedTime = junction.elapsedTime;
     }
 
     /**
@@ -0,0 +1,166 @@
+package es.ucm.fdi.model.simobj;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link VehicleStore} que guarda cada página de una 
+ * columna en un {@code ByteBuffer} directo, fuera del 
+ * heap, de forma que el estado de millones de 
+ * {@code Vehicle}s no ocupa memoria que tenga que 
+ * recorrer el recolector.
+ */
+public class DirectVehicleStore extends VehicleStore {
+
+	/**
+	 * Bytes de cada valor de una columna.
+	 */
+	private static final int INT_BYTES = Integer.BYTES;
+
+	/**
+	 * Páginas de cada columna del almacén.
+	 */
+	private ByteBuffer[][] pages;
+
+	/**
+	 * Páginas de cada columna compartidas con otro 
+	 * almacén, que se copian antes de escribir en ellas.
+	 */
+	private boolean[][] shared;
+
+	/**
+	 * Constructor de {@link DirectVehicleStore}.
+	 */
+	public DirectVehicleStore() {
+		reset();
+	}
+
+	/**
+	 * Constructor de {@link DirectVehicleStore} con unas 
+	 * páginas ya creadas, sin reservar memoria directa.
+	 * 
+	 * @param columnPages 	- páginas de cada columna
+	 * @param sharedPages 	- páginas compartidas
+	 */
+	private DirectVehicleStore(ByteBuffer[][] columnPages, boolean[][] sharedPages) {
+		pages = columnPages;
+		shared = sharedPages;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getInt(int slot, int column) {
+		return pages[column][slot >>> PAGE_SHIFT].getInt((slot & PAGE_MASK) * INT_BYTES);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setInt(int slot, int column, int value) {
+		int page = slot >>> PAGE_SHIFT;
+
+		if ( shared[column][page] ) {
+			pages[column][page] = copyPage(pages[column][page]);
+			shared[column][page] = false;
+		}
+		pages[column][page].putInt((slot & PAGE_MASK) * INT_BYTES, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int capacity() {
+		return pages[0].length * PAGE_ROWS;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void grow() {
+		int numPages = pages[0].length + 1;
+
+		for (int c = 0; c < COLUMNS; ++c) {
+			pages[c] = Arrays.copyOf(pages[c], numPages);
+			pages[c][numPages - 1] = newPage();
+			shared[c] = Arrays.copyOf(shared[c], numPages);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+		pages = new ByteBuffer[COLUMNS][1];
+		shared = new boolean[COLUMNS][1];
+		for (int c = 0; c < COLUMNS; ++c) {
+			pages[c][0] = newPage();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unshare() {
+		for (int c = 0; c < COLUMNS; ++c) {
+			for (int p = 0; p < pages[c].length; ++p) {
+				if ( shared[c][p] ) {
+					pages[c][p] = copyPage(pages[c][p]);
+					shared[c][p] = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected VehicleStore shareColumns() {
+		ByteBuffer[][] copyPages = new ByteBuffer[COLUMNS][];
+		boolean[][] copyShared = new boolean[COLUMNS][];
+
+		for (int c = 0; c < COLUMNS; ++c) {
+			copyPages[c] = pages[c].clone();
+			Arrays.fill(shared[c], true);
+			copyShared[c] = shared[c].clone();
+		}
+		return new DirectVehicleStore(copyPages, copyShared);
+	}
+
+	/**
+	 * Crea una página directa vacía.
+	 * 
+	 * @return 		{@code ByteBuffer} directo
+	 */
+	private ByteBuffer newPage() {
+		return ByteBuffer.allocateDirect(PAGE_ROWS * INT_BYTES)
+				.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Crea una página directa con el contenido de otra.
+	 * Lee de una vista de la página original, que puede 
+	 * estar compartida, sin mover su posición.
+	 * 
+	 * @param old 	- página a copiar
+	 * 
+	 * @return 		{@code ByteBuffer} directo
+	 */
+	private ByteBuffer copyPage(ByteBuffer old) {
+		ByteBuffer source = old.duplicate();
+		source.clear();
+
+		ByteBuffer page = newPage();
+		page.put(source);
+		page.clear();
+		return page;
+	}
+}
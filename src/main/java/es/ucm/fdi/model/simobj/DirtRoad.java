@@ -1,8 +1,8 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
+import java.util.PrimitiveIterator;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
 
 /**
  * Clase que representa un camino de tierra como 
@@ -47,11 +47,12 @@ public class DirtRoad extends Road {
      * delante de un {@code Vehicle}.
      * </p>
      * 
-     * @param onRoad    lista de {@code Vehicle}s 
-     *                  en {@code DirtRoad}.
+     * @param onRoad    carril con los {@code Vehicle}s en 
+     *                  {@code DirtRoad}, del primero al último
+     * @param store     almacén de los {@code Vehicle}s
      */
     @Override
-    protected void vehicleSpeedModifier(ArrayList<Vehicle> onRoad) {
+    protected void vehicleSpeedModifier(Lane onRoad, VehicleStore store) {
         // Velocidad máxima a la que pueden avanzar los vehículos.
         int baseSpeed = getBaseSpeed();
 
@@ -60,40 +61,54 @@ public class DirtRoad extends Road {
 
         // Se modifica la velocidad a la que avanzarán los vehículos,
         // teniendo en cuenta el factor de reducción.
-        for (Vehicle v : onRoad) {
-            v.setSpeed(baseSpeed / reductionFactor);
+        PrimitiveIterator.OfInt slots = onRoad.iterator();
+        while ( slots.hasNext() ) {
+            int slot = slots.nextInt();
+            Vehicle.setSpeed(store, slot, baseSpeed / reductionFactor);
 
-            if (v.getBreakdownTime() > 0) {
+            if (store.getInt(slot, VehicleStore.BREAKDOWN) > 0) {
                 reductionFactor += 1;
             }
         }
     }
     
     /**
-     * Genera una {@code IniSection} que informa de los 
-     * atributos de la {@code DirtRoad} en el 
-     * tiempo del simulador.
+     * {@inheritDoc}
+     * <p>
+     * En una {@code DirtRoad} se incluye además el tipo.
+     * </p>
      * 
-     * @param simTime   tiempo del simulador
-     * @return          {@code IniSection} con información
-     *                  de la {@code DirtRoad}
+     * @param simTime   - {@inheritDoc}
+     * @param out       - {@inheritDoc}
      */
     @Override
-    public IniSection generateIniSection(int simTime) {
+    public void report(int simTime, SectionSink out) {
         // 1 //
-        // Se crea la etiqueta de la sección (sin corchetes).
-        String tag = REPORT_TITLE;
-        tag = (String) tag.subSequence(1, tag.length() - 1);
-        IniSection section = new IniSection(tag);
+        // Se abre la sección del informe.
+        out.beginSection(REPORT_TAG);
 
         // 2 // 
         // Se generan los datos en el informe.
-        section.setValue("id", id);
-        section.setValue("time", simTime);
-        section.setValue("type", getType());
-        section.setValue("state", getRoadState().toString());
+        out.value("id", id);
+        out.value("time", simTime);
+        out.value("type", getType());
+        StringBuilder state = out.scratch();
+        appendRoadState(state);
+        out.value("state", state);
+        out.endSection();
+    }
 
-        return section;
+    /**
+     * {@inheritDoc}
+     * 
+     * @param fromJ     - {@inheritDoc}
+     * @param toJ       - {@inheritDoc}
+     * 
+     * @return          {@inheritDoc}
+     */
+    @Override
+    public Road copy(Junction fromJ, Junction toJ) {
+        return new DirtRoad(id, getLength(), speedLimit, fromJ, toJ);
     }
 
     /**
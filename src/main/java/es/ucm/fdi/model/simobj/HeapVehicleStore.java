@@ -0,0 +1,124 @@
+package es.ucm.fdi.model.simobj;
+
+import java.util.Arrays;
+
+/**
+ * {@link VehicleStore} que guarda cada página de 
+ * una columna en un array de enteros del heap.
+ */
+public class HeapVehicleStore extends VehicleStore {
+
+	/**
+	 * Páginas de cada columna del almacén.
+	 */
+	private int[][][] pages;
+
+	/**
+	 * Páginas de cada columna compartidas con otro 
+	 * almacén, que se copian antes de escribir en ellas.
+	 */
+	private boolean[][] shared;
+
+	/**
+	 * Constructor de {@link HeapVehicleStore}.
+	 */
+	public HeapVehicleStore() {
+		reset();
+	}
+
+	/**
+	 * Constructor de {@link HeapVehicleStore} con 
+	 * unas páginas ya creadas.
+	 * 
+	 * @param columnPages 	- páginas de cada columna
+	 * @param sharedPages 	- páginas compartidas
+	 */
+	private HeapVehicleStore(int[][][] columnPages, boolean[][] sharedPages) {
+		pages = columnPages;
+		shared = sharedPages;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getInt(int slot, int column) {
+		return pages[column][slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setInt(int slot, int column, int value) {
+		int page = slot >>> PAGE_SHIFT;
+
+		if ( shared[column][page] ) {
+			pages[column][page] = pages[column][page].clone();
+			shared[column][page] = false;
+		}
+		pages[column][page][slot & PAGE_MASK] = value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int capacity() {
+		return pages[0].length * PAGE_ROWS;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void grow() {
+		int numPages = pages[0].length + 1;
+
+		for (int c = 0; c < COLUMNS; ++c) {
+			pages[c] = Arrays.copyOf(pages[c], numPages);
+			pages[c][numPages - 1] = new int[PAGE_ROWS];
+			shared[c] = Arrays.copyOf(shared[c], numPages);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+		pages = new int[COLUMNS][1][PAGE_ROWS];
+		shared = new boolean[COLUMNS][1];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unshare() {
+		for (int c = 0; c < COLUMNS; ++c) {
+			for (int p = 0; p < pages[c].length; ++p) {
+				if ( shared[c][p] ) {
+					pages[c][p] = pages[c][p].clone();
+					shared[c][p] = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected VehicleStore shareColumns() {
+		int[][][] copyPages = new int[COLUMNS][][];
+		boolean[][] copyShared = new boolean[COLUMNS][];
+
+		for (int c = 0; c < COLUMNS; ++c) {
+			copyPages[c] = pages[c].clone();
+			Arrays.fill(shared[c], true);
+			copyShared[c] = shared[c].clone();
+		}
+		return new HeapVehicleStore(copyPages, copyShared);
+	}
+}
@@ -1,12 +1,15 @@
 package es.ucm.fdi.model.simobj;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 import es.ucm.fdi.model.simulation.SimulationException;
 
 /**
@@ -25,10 +28,10 @@ public class Junction extends SimObject {
 	};
 	
 	/**
-	 * Etiqueta que encabeza el informe de una
+	 * Etiqueta de la sección del informe de una
 	 * {@code Junction} cualquiera.
 	 */
-	protected final String REPORT_TITLE = "[junction_report]";
+	protected static final String REPORT_TAG = "junction_report";
 
 	/**
 	 * Mapa de {@code Road}s entrantes
@@ -42,12 +45,36 @@ public class Junction extends SimObject {
 	 */
 	protected Map<String, Road> exitRoads = new LinkedHashMap<>();
 
+	/**
+	 * {@code Road}s entrantes en orden de registro. La 
+	 * posición de cada una es la que indica {@code light}.
+	 */
+	protected List<Road> incoming = new ArrayList<>();
+
+	/**
+	 * {@code Road}s salientes en orden de registro.
+	 */
+	protected List<Road> exits = new ArrayList<>();
+
 	/**
 	 * Entero que mediante la operación módulo
 	 * representa el semáforo encendido.
 	 */
 	protected int light = -1;	
 
+	/**
+	 * Mapa de la {@code Junction}, que cuenta las
+	 * fases de cruces simuladas.
+	 */
+	private RoadMap map = null;
+
+	/**
+	 * Fase de cruces desde la que la {@code Junction}
+	 * duerme por no tener {@code Vehicle}s esperando,
+	 * o {@code -1} si está despierta.
+	 */
+	private int idleSince = -1;
+
 	/**
 	 * Constructor de {@link Junction}.
 	 * 
@@ -89,9 +116,7 @@ public class Junction extends SimObject {
 			else {
 				// 1 //
 				// Actualización de la cola de la Road con el semáforo en verde.
-				List<String> array = new ArrayList<>(incomingRoads.keySet());
-				String nextRoadID = array.get(light);
-				Road greenRoad = incomingRoads.get(nextRoadID);
+				Road greenRoad = incoming.get(light);
 
 				roadUpdate(greenRoad);
 				
@@ -106,15 +131,153 @@ public class Junction extends SimObject {
 		}	
 	}
 
+	/**
+	 * Avance de la {@code Junction} en el que los 
+	 * {@code Vehicle}s que cruzan se quedan en el buzón 
+	 * de su {@code Road} de salida, sin entrar todavía 
+	 * en ella. Permite avanzar varias {@code Junction}s 
+	 * a la vez, pues ninguna modifica las {@code Road}s 
+	 * entrantes de otra.
+	 * <p>
+	 * Los cruces se completan con {@link #releaseCrossings()}.
+	 * </p>
+	 */
+	public void proceedHoldingCrossings() {
+		for ( Road exit : exits ) {
+			exit.holdEntries();
+		}
+
+		proceed();
+	}
+
+	/**
+	 * Mete en sus {@code Road}s de salida los 
+	 * {@code Vehicle}s que han cruzado durante
+	 * {@link #proceedHoldingCrossings()}.
+	 */
+	public void releaseCrossings() {
+		for ( Road exit : exits ) {
+			exit.releaseEntries();
+		}
+	}
+
+	/**
+	 * Avanza la {@code Junction} un número de ticks en los 
+	 * que no hay ningún {@code Vehicle} esperando en sus 
+	 * {@code Road}s entrantes, con el mismo resultado que 
+	 * llamar a {@link #proceed()} en cada uno de ellos.
+	 * <p>
+	 * En esos ticks no cruza nadie, así que sólo cambia el 
+	 * semáforo, que se calcula con {@link #skipIdleLights(int)}.
+	 * </p>
+	 * 
+	 * @param ticks 	- número de ticks a avanzar
+	 */
+	public void advanceIdle(int ticks) {
+		if ( hasIncomingRoads() && ticks > 0 ) {
+			if (light == -1) {
+				// * //
+				// Primera actualización del semáforo.
+				firstLightUpdate();
+				ticks--;
+			}
+
+			if (ticks > 0) {
+				skipIdleLights(ticks);
+			}
+		}
+	}
+
+	/**
+	 * Actualiza el semáforo como si hubieran pasado 
+	 * {@code ticks} llamadas a {@link #lightUpdate()} 
+	 * sin que cruzase ningún {@code Vehicle}.
+	 * <p>
+	 * En una {@code Junction} común el semáforo avanza
+	 * una {@code Road} por tick.
+	 * </p>
+	 * 
+	 * @param ticks 	- número de ticks a avanzar
+	 */
+	protected void skipIdleLights(int ticks) {
+		incoming.get(light).setLight(false);
+		light = (int) ( (light + (long) ticks) % incoming.size() );
+		incoming.get(light).setLight(true);
+	}
+
+	/**
+	 * Asocia la {@code Junction} a su mapa. Empieza
+	 * dormida: no avanza hasta que le llega algún
+	 * {@code Vehicle} a la cola de espera.
+	 * 
+	 * @param roadMap 	- mapa de la {@code Junction}
+	 */
+	public void setRoadMap(RoadMap roadMap) {
+		map = roadMap;
+		idleSince = map.getJunctionPhase();
+	}
+
+	/**
+	 * Despierta la {@code Junction} para que avance 
+	 * en cada tick, poniendo antes al día su semáforo.
+	 */
+	public void wake() {
+		catchUp();
+		idleSince = -1;
+	}
+
+	/**
+	 * Duerme la {@code Junction} desde la fase de cruces
+	 * actual: deja de avanzar hasta que se la despierte.
+	 */
+	public void sleep() {
+		idleSince = map.getJunctionPhase();
+	}
+
+	/**
+	 * Si la {@code Junction} está dormida, avanza su 
+	 * semáforo con {@link #advanceIdle(int)} los ticks
+	 * que ha dormido, con el mismo resultado que si 
+	 * hubiera avanzado en cada uno. Se llama antes de 
+	 * consultar el semáforo, de cambiar las entrantes o
+	 * de que lleguen {@code Vehicle}s a las colas, de 
+	 * las que dependen algunos semáforos.
+	 */
+	public void catchUp() {
+		if ( idleSince >= 0 ) {
+			int phase = map.getJunctionPhase();
+			int owed = phase - idleSince;
+			idleSince = phase;
+			advanceIdle(owed);
+		}
+	}
+
+	/**
+	 * Comprueba si hay algún {@code Vehicle} esperando
+	 * en las {@code Road}s entrantes.
+	 * 
+	 * @return 	si alguna cola de espera 
+	 * 			no está vacía
+	 */
+	public boolean hasVehiclesWaiting() {
+		for ( Road incR : incoming ) {
+			if ( ! incR.noVehiclesWaiting() ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Comprueba si la {@code Junction}
 	 * tiene {@code Road}s entrantes.
 	 * 
-	 * @return 	si el número de mapeos clave-valor de 
-	 * 			{@code incomingRoads} no es nulo
+	 * @return 	si la lista {@code incoming} 
+	 * 			no está vacía
 	 */
-	private boolean hasIncomingRoads() {
-		return (incomingRoads.size() > 0);
+	public boolean hasIncomingRoads() {
+		return ( ! incoming.isEmpty() );
 	}
 
 	/**
@@ -124,11 +287,8 @@ public class Junction extends SimObject {
 	protected void firstLightUpdate() {
 		light = 0; // Suponemos que hay al menos una carretera entrante
 		
-		List<String> array = new ArrayList<>(incomingRoads.keySet());
-		String nextRoadID = array.get(light);
-		
 		// El semáforo de la carretera se pone verde.
-		incomingRoads.get(nextRoadID).setLight(true);
+		incoming.get(light).setLight(true);
 	}
 
 	/**
@@ -158,9 +318,7 @@ public class Junction extends SimObject {
 	 */
 	protected void lightUpdate() {
 		// Tomamos la carretera usada
-		List<String> array = new ArrayList<>(incomingRoads.keySet());
-		String nextRoad = array.get(light);
-		Road usedRoad = incomingRoads.get(nextRoad); // Carretera actualizada
+		Road usedRoad = incoming.get(light); // Carretera actualizada
 
 		// * //
 		// La carretera actualizada se pone en rojo.
@@ -168,62 +326,53 @@ public class Junction extends SimObject {
 
 		// 1 //
 		// El semáforo avanza a la siguiente carretera.
-		int numIncomingRoads = incomingRoads.size();
+		int numIncomingRoads = incoming.size();
 		light = (light + 1) % numIncomingRoads;
 
 		// 2 // 
 		// La siguiente carretera se pone en verde.
-		nextRoad = array.get(light);
-		incomingRoads.get(nextRoad).setLight(true);
+		incoming.get(light).setLight(true);
 	}
 
 	/**
-	 * Genera una {@code IniSection} que informa de los 
-	 * atributos de la {@code Junction} en el 
-	 * tiempo del simulador.
+	 * Escribe el informe de los atributos de la 
+	 * {@code Junction} en el tiempo del simulador.
 	 * 
 	 * @param simTime 	- tiempo del simulador
-	 * 
-	 * @return 			{@code IniSection} con información
-	 * 					de la {@code Junction}
+	 * @param out 		- destino del informe
 	 */
-	public IniSection generateIniSection(int simTime) {
+	public void report(int simTime, SectionSink out) {
+		catchUp();
+
 		// 1 //
-		// Se crea la etiqueta de la sección (sin corchetes).
-		String tag = REPORT_TITLE;
-		tag = (String) tag.subSequence(1, tag.length() - 1);
-		IniSection section = new IniSection(tag);
+		// Se abre la sección del informe.
+		out.beginSection(REPORT_TAG);
 
 		// 2 // 
 		// Se generan los datos en el informe.
-		section.setValue("id", id);
-		section.setValue("time", simTime);
-		section.setValue("queues", getQueuesValue() );
-
-
-		return section;
+		out.value("id", id);
+		out.value("time", simTime);
+		StringBuilder queues = out.scratch();
+		appendQueues(queues);
+		out.value("queues", queues);
+		out.endSection();
 	}
 
 	/**
-	 * Genera un {@code StringBuilder} con la información
-	 * sobre las colas de la {@code Junction}.
+	 * Añade a un {@code StringBuilder} la información
+	 * sobre las colas de la {@code Junction}, separadas
+	 * por comas.
 	 * 
-	 * @return 	{@code String} con las colas.
-	 */
-	protected String getQueuesValue() {
-		// Generación del string de queues
-		StringBuilder queues = new StringBuilder();
-		for (Road incR : incomingRoads.values() ) {
-			queues.append(incR.getWaitingState());
-			queues.append(",");
-		}
-
-		// Borrado de última coma (si queues no es vacío).
-		if (queues.length() > 0) {
-			queues.deleteCharAt(queues.length() - 1);
+	 * @param queues 	- {@code StringBuilder} de destino
+	 */
+	protected void appendQueues(StringBuilder queues) {
+		int start = queues.length();
+		for (Road incR : incoming ) {
+			if (queues.length() > start) {
+				queues.append(',');
+			}
+			incR.appendWaitingState(queues);
 		}
-
-		return queues.toString();
 	}
 	
 	/**
@@ -235,6 +384,8 @@ public class Junction extends SimObject {
 	 */
 	@Override
 	public void describe(Map<String, Object> out) {
+		catchUp();
+
 		String green = getGreenDescription();
 		String red = getRedDescription();
 		
@@ -263,7 +414,7 @@ public class Junction extends SimObject {
 
 		// Sólo hay una con el semáforo en verde.
 		green.append("[");
-		for (Road incR : incomingRoads.values()) {
+		for (Road incR : incoming) {
 			if ( incR.isGreen() ) {
 				green.append( incR.getWaitingState() );
 			}
@@ -292,7 +443,7 @@ public class Junction extends SimObject {
 
 		// Sólo hay una con el semáforo en verde.
 		red.append("[");
-		for ( Road incR : incomingRoads.values() ) {
+		for ( Road incR : incoming ) {
 			if ( ! incR.isGreen() ) {
 				red.append( incR.getWaitingState() );
 			}
@@ -328,6 +479,7 @@ public class Junction extends SimObject {
 	 */
 	public void addNewExitRoad(Road newRoad) {
 		exitRoads.put(newRoad.getID(), newRoad);
+		exits.add(newRoad);
 	}
 
 	/**
@@ -337,13 +489,18 @@ public class Junction extends SimObject {
 	 * @param newRoad 	- nueva {@code Road} entrante
 	 */
 	public void addNewIncomingRoad(Road newRoad) {
+		// El semáforo dormido avanza con las entrantes de antes.
+		catchUp();
+
 		incomingRoads.put(newRoad.getID(), newRoad);
+		incoming.add(newRoad);
 	}
 	
 	/**
 	 * Método que devuelve la {@code Road} entre dos 
 	 * {@code Junction}s. La junction de origen 
-	 * es la actual.
+	 * es la actual. Las {@code Junction}s se comparan 
+	 * por identidad, sin buscar por sus IDs.
 	 * 
 	 * @param toJunction 	- {@code Junction} de destino
 	 * 
@@ -355,11 +512,9 @@ public class Junction extends SimObject {
 	 * 								found
 	 */
 	public Road getRoadTo(Junction junction) throws SimulationException {
-		String toID;
-		for (Entry<String, Road> exit : exitRoads.entrySet()) {
-			toID = exit.getKey();
-			if ( junction.incomingRoads.containsKey(toID) ) {
-				return exitRoads.get(toID);
+		for (Road exit : exits) {
+			if ( exit.getToJunction() == junction ) {
+				return exit;
 			}
 		}
 		
@@ -369,6 +524,64 @@ public class Junction extends SimObject {
 		);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En una {@code Junction}, la posición de la 
+	 * {@code Road} entrante con el semáforo en verde.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		catchUp();
+		out.writeInt(light);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @param in 	- {@inheritDoc}
+	 * @param map 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void readState(DataInput in, RoadMap map) throws IOException {
+		light = in.readInt();
+	}
+
+	/**
+	 * Crea una {@code Junction} con la misma definición, 
+	 * sin {@code Road}s, para otra simulación.
+	 * 
+	 * @return 	{@code Junction} copiada
+	 */
+	public Junction copy() {
+		return new Junction(id);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En una {@code Junction}, el semáforo y la fase desde 
+	 * la que duerme, sin ponerla al día: el mapa copiado 
+	 * tiene la misma fase de cruces.
+	 * </p>
+	 * 
+	 * @param source 	- {@inheritDoc}
+	 * @param map 		- {@inheritDoc}
+	 */
+	@Override
+	public void copyState(SimObject source, RoadMap map) {
+		Junction junction = (Junction) source;
+		light = junction.light;
+		idleSince = junction.idleSince;
+	}
+
 	/**
 	 * Devuelve un {@code String} con el tipo de 
 	 * {@code Junction} que debe ponerse como valor 
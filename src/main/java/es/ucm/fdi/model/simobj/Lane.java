@@ -0,0 +1,432 @@
+package es.ucm.fdi.model.simobj;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Carril con los {@code Vehicle}s de una {@link Road}, 
+ * guardados por su fila del {@link VehicleStore}. Los que 
+ * circulan se ordenan con {@link #reorder(VehicleStore)} del 
+ * más adelantado al más retrasado y, si dos están en la 
+ * misma posición, va antes el que entró primero en la 
+ * {@code Road}. La cola de espera y el buzón de la 
+ * {@code Road} son carriles que no se reordenan.
+ * <p>
+ * Las filas se guardan en una ventana de un array junto a 
+ * su número de entrada. Entran siempre por el final (en la 
+ * posición 0, detrás de todos), la cabeza se saca en tiempo 
+ * constante y los huecos que dejan las salidas del medio se 
+ * compactan al reordenar.
+ * </p> <p>
+ * Un carril copiado con {@link #copy(Lane)} comparte los 
+ * arrays con el original hasta que alguno de los dos 
+ * cambia: entonces los copia antes de escribir en ellos.
+ * </p>
+ */
+public class Lane {
+
+	/**
+	 * Capacidad inicial del carril.
+	 */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * Marca de posición vacía en {@code slots}.
+	 */
+	private static final int HOLE = -1;
+
+	/**
+	 * Filas de los {@code Vehicle}s del carril en las 
+	 * posiciones {@code [head, tail)}. Puede haber huecos 
+	 * ({@link #HOLE}) hasta el siguiente reordenado.
+	 */
+	private int[] slots = newSlots(INITIAL_CAPACITY);
+
+	/**
+	 * Número de entrada en la {@code Road} de cada
+	 * {@code Vehicle} de {@code slots}.
+	 */
+	private long[] entries = new long[INITIAL_CAPACITY];
+
+	/**
+	 * Posición del primer {@code Vehicle}.
+	 */
+	private int head = 0;
+
+	/**
+	 * Posición siguiente a la del último {@code Vehicle}.
+	 */
+	private int tail = 0;
+
+	/**
+	 * Número de {@code Vehicle}s en el carril.
+	 */
+	private int size = 0;
+
+	/**
+	 * Número de entrada del siguiente {@code Vehicle}.
+	 */
+	private long nextEntry = 0;
+
+	/**
+	 * Última posición devuelta por un iterador, donde se
+	 * busca primero el {@code Vehicle} a sacar: al avanzar,
+	 * cada {@code Vehicle} que llega al final sale del
+	 * carril mientras se recorre.
+	 */
+	private int cursor = -1;
+
+	/**
+	 * Si {@code slots} y {@code entries} están compartidos 
+	 * con otro carril y hay que copiarlos antes de 
+	 * escribir en ellos.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * Mete un {@code Vehicle} al final del carril.
+	 *
+	 * @param slot 	- fila del {@code Vehicle} que entra
+	 */
+	public void addLast(int slot) {
+		own();
+		if ( tail == slots.length ) {
+			makeRoom();
+		}
+
+		slots[tail] = slot;
+		entries[tail] = nextEntry++;
+		tail++;
+		size++;
+	}
+
+	/**
+	 * Hace sitio al final del array: si la mitad delantera
+	 * está libre, desplaza la ventana al principio y, si no,
+	 * duplica la capacidad.
+	 */
+	private void makeRoom() {
+		int used = tail - head;
+
+		if ( head >= slots.length / 2 ) {
+			System.arraycopy(slots, head, slots, 0, used);
+			System.arraycopy(entries, head, entries, 0, used);
+			Arrays.fill(slots, used, tail, HOLE);
+		}
+		else {
+			int[] newSlots = newSlots(slots.length * 2);
+			long[] newEntries = new long[entries.length * 2];
+			System.arraycopy(slots, head, newSlots, 0, used);
+			System.arraycopy(entries, head, newEntries, 0, used);
+			slots = newSlots;
+			entries = newEntries;
+		}
+
+		if ( cursor >= 0 ) {
+			cursor -= head;
+		}
+		head = 0;
+		tail = used;
+	}
+
+	/**
+	 * Saca un {@code Vehicle} del carril. Si es la cabeza o el
+	 * último devuelto por un iterador, en tiempo constante.
+	 *
+	 * @param slot 	- fila del {@code Vehicle} a sacar
+	 *
+	 * @return 		si estaba en el carril
+	 */
+	public boolean remove(int slot) {
+		int pos = -1;
+
+		if ( head < tail && slots[head] == slot ) {
+			pos = head;
+		}
+		else if ( cursor >= head && cursor < tail && slots[cursor] == slot ) {
+			pos = cursor;
+		}
+		else {
+			for (int i = head; i < tail && pos == -1; ++i) {
+				if ( slots[i] == slot ) {
+					pos = i;
+				}
+			}
+		}
+
+		if ( pos == -1 ) {
+			return false;
+		}
+
+		own();
+		slots[pos] = HOLE;
+		size--;
+
+		// Se saltan los huecos de la cabeza.
+		while ( head < tail && slots[head] == HOLE ) {
+			head++;
+		}
+		if ( size == 0 ) {
+			head = 0;
+			tail = 0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Devuelve la fila del primer {@code Vehicle}.
+	 *
+	 * @return 	fila del primero
+	 *
+	 * @throws NoSuchElementException 	si el carril
+	 * 									está vacío
+	 */
+	public int first() throws NoSuchElementException {
+		if ( size == 0 ) {
+			throw new NoSuchElementException();
+		}
+
+		return slots[head];
+	}
+
+	/**
+	 * Reordena el carril tras el avance de sus {@code Vehicle}s,
+	 * compactando los huecos. Como casi no hay adelantamientos,
+	 * se ordena por inserción, en tiempo lineal más el número
+	 * de adelantamientos.
+	 *
+	 * @param store 	- almacén con la localización
+	 * 					de cada fila
+	 */
+	public void reorder(VehicleStore store) {
+		own();
+		int write = head;
+
+		for (int read = head; read < tail; ++read) {
+			int slot = slots[read];
+
+			if ( slot != HOLE ) {
+				long entry = entries[read];
+				int location = store.getInt(slot, VehicleStore.LOCATION);
+
+				// Se desplazan los que deben ir detrás.
+				int pos = write;
+				while ( pos > head && goesBefore(store, location, entry, pos - 1) ) {
+					slots[pos] = slots[pos - 1];
+					entries[pos] = entries[pos - 1];
+					pos--;
+				}
+				slots[pos] = slot;
+				entries[pos] = entry;
+				write++;
+			}
+		}
+
+		Arrays.fill(slots, write, tail, HOLE);
+		tail = write;
+		cursor = -1;
+	}
+
+	/**
+	 * Comprueba si un {@code Vehicle} con la localización
+	 * y número de entrada dados va delante del de una
+	 * posición del carril.
+	 *
+	 * @param store 	- almacén con las localizaciones
+	 * @param location 	- localización del {@code Vehicle}
+	 * @param entry 	- número de entrada del {@code Vehicle}
+	 * @param pos 		- posición con la que se compara
+	 *
+	 * @return 			si va delante
+	 */
+	private boolean goesBefore(VehicleStore store, int location, long entry, int pos) {
+		int other = store.getInt(slots[pos], VehicleStore.LOCATION);
+
+		return location > other || ( location == other && entry < entries[pos] );
+	}
+
+	/**
+	 * Devuelve el número de {@code Vehicle}s del carril.
+	 *
+	 * @return 	número de {@code Vehicle}s
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Devuelve si el carril está vacío.
+	 *
+	 * @return 	si no hay {@code Vehicle}s
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Vacía el carril, sin volver a numerar las entradas.
+	 */
+	public void clear() {
+		if ( shared ) {
+			slots = newSlots(INITIAL_CAPACITY);
+			entries = new long[INITIAL_CAPACITY];
+			shared = false;
+		}
+		else {
+			Arrays.fill(slots, head, tail, HOLE);
+		}
+		head = 0;
+		tail = 0;
+		size = 0;
+		cursor = -1;
+	}
+
+	/**
+	 * Devuelve un iterador por las filas de los 
+	 * {@code Vehicle}s del carril en orden. Se pueden 
+	 * sacar {@code Vehicle}s con {@link #remove(int)} 
+	 * mientras se recorre.
+	 *
+	 * @return 	iterador del carril
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+
+			private int next = skipHoles(head);
+
+			@Override
+			public boolean hasNext() {
+				next = skipHoles(next);
+				return next < tail;
+			}
+
+			@Override
+			public int nextInt() {
+				if ( ! hasNext() ) {
+					throw new NoSuchElementException();
+				}
+
+				cursor = next;
+				return slots[next++];
+			}
+		};
+	}
+
+	/**
+	 * Devuelve la primera posición ocupada a partir de una dada.
+	 *
+	 * @param pos 	- posición de partida
+	 *
+	 * @return 		posición ocupada o {@code tail}
+	 */
+	private int skipHoles(int pos) {
+		pos = Math.max(pos, head);
+		while ( pos < tail && slots[pos] == HOLE ) {
+			pos++;
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Escribe en un checkpoint las filas de los 
+	 * {@code Vehicle}s del carril, que coinciden con su 
+	 * índice, con sus números de entrada.
+	 *
+	 * @param out 	- flujo del checkpoint
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeLong(nextEntry);
+		for (int i = head; i < tail; ++i) {
+			if ( slots[i] != HOLE ) {
+				out.writeInt(slots[i]);
+				out.writeLong(entries[i]);
+			}
+		}
+	}
+
+	/**
+	 * Sustituye el contenido del carril por el leído
+	 * de un checkpoint escrito con {@link #write}.
+	 *
+	 * @param in 	- flujo del checkpoint
+	 * @param rows 	- número de filas del almacén
+	 *
+	 * @throws IOException 	if reading fails or a 
+	 * 						row is out of range
+	 */
+	public void read(DataInput in, int rows) throws IOException {
+		int count = in.readInt();
+		int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(count) * 2);
+		slots = newSlots(capacity);
+		entries = new long[capacity];
+		shared = false;
+		nextEntry = in.readLong();
+		for (int i = 0; i < count; ++i) {
+			int slot = in.readInt();
+			if ( slot < 0 || slot >= rows ) {
+				throw new IOException("Vehicle row out of range in checkpoint: " + slot);
+			}
+			slots[i] = slot;
+			entries[i] = in.readLong();
+		}
+		head = 0;
+		tail = count;
+		size = count;
+		cursor = -1;
+	}
+
+	/**
+	 * Sustituye el contenido del carril por el de otro
+	 * de otra simulación, con las mismas filas y 
+	 * números de entrada. No copia nada: los dos 
+	 * carriles comparten sus arrays hasta que uno 
+	 * de ellos cambia.
+	 *
+	 * @param source 	- carril del que se copia
+	 */
+	public void copy(Lane source) {
+		slots = source.slots;
+		entries = source.entries;
+		head = source.head;
+		tail = source.tail;
+		size = source.size;
+		nextEntry = source.nextEntry;
+		cursor = -1;
+		shared = true;
+		source.shared = true;
+	}
+
+	/**
+	 * Copia los arrays del carril si están compartidos 
+	 * con otro, antes de escribir en ellos.
+	 */
+	private void own() {
+		if ( shared ) {
+			slots = slots.clone();
+			entries = entries.clone();
+			shared = false;
+		}
+	}
+
+	/**
+	 * Crea un array de filas vacío.
+	 *
+	 * @param capacity 	- número de posiciones
+	 *
+	 * @return 			array lleno de huecos
+	 */
+	private static int[] newSlots(int capacity) {
+		int[] slots = new int[capacity];
+		Arrays.fill(slots, HOLE);
+		return slots;
+	}
+}
@@ -1,20 +1,29 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayDeque;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 import es.ucm.fdi.model.simulation.SimulationException;
+import es.ucm.fdi.util.ActiveSet;
 
 /**
  * Clase que representa una carretera como un objeto
  * de simulación. Hereda de {@link SimObject}
+ * <p>
+ * Los {@code Vehicle}s de la {@code Road} se guardan por 
+ * su fila del {@link VehicleStore}. Para avanzarlos o 
+ * describirlos se buscan en el {@code RoadMap}.
+ * </p>
  */
 public class Road extends SimObject {
 
@@ -28,10 +37,10 @@ public class Road extends SimObject {
 	};
 	
 	/**
-	 * Etiqueta que encabeza el informe de una 
+	 * Etiqueta de la sección del informe de una 
 	 * {@code Road} cualquiera.
 	 */
-	protected static final String REPORT_TITLE = "[road_report]";
+	protected static final String REPORT_TAG = "road_report";
 	
 	/**
 	 * Longitud de la {@code Road}.
@@ -57,18 +66,19 @@ public class Road extends SimObject {
 	private Junction toJunction;
 	
 	/**
-	 * Lista de {@code Vehicle}s ordenada por orden 
-	 * de entrada en la {@code Road}. Utilizada para 
-	 * el caso en que dos {@code Vehicle}s se encuentran 
-	 * en la misma posición.
+	 * Carril con los {@code Vehicle}s en la {@code Road} 
+	 * que no están esperando a cruzar la {@code toJunction},
+	 * ordenados por localización y, en caso de empate, 
+	 * por orden de entrada en la {@code Road}.
 	 */
-	private Deque<Vehicle> entryRecord = new ArrayDeque<>();
+	protected Lane vehiclesOnRoad = new Lane();
 
 	/**
-	 * Lista de {@code Vehicle}s en la {@code Road} 
-	 * que no están esperando a cruzar la {@code toJunction}.
+	 * Mapa de la {@code Road}, donde se buscan sus 
+	 * {@code Vehicle}s y su almacén. Puede ser 
+	 * {@code null} si no está en ningún {@code RoadMap}.
 	 */
-	protected List<Vehicle> vehiclesOnRoad = new ArrayList<>();
+	private RoadMap map = null;
 
 	/**
 	 * Lista temporal reutilizada en cada tick en la que 
@@ -78,10 +88,10 @@ public class Road extends SimObject {
 	private List<ArrivedVehicle> arrivalsToWaiting = new ArrayList<>();
 
 	/**
-	 * Lista de {@code Vehicle}s en la {@code Road} 
+	 * Cola de {@code Vehicle}s en la {@code Road} 
 	 * que están esperando para cruzar {@code toJunction}.
 	 */
-	private Deque<Vehicle> waiting = new ArrayDeque<>();
+	private Lane waiting = new Lane();
 
 	/**
 	 * Booleano que indica si el semáforo de la 
@@ -90,46 +100,27 @@ public class Road extends SimObject {
 	private boolean isGreen = false;
 
 	/**
-	 * Comparador según la localización de 2 {@code Vehicle}s
-	 * en la {@code Road}, para ordenar {@code vehiclesOnRoad} 
-	 * tras cada avance de los {@code Vehicle}s.
+	 * Buzón de la {@code Road}: {@code Vehicle}s que han 
+	 * cruzado {@code fromJunction} mientras se retenían 
+	 * las entradas y que aún no se han metido en 
+	 * {@code vehiclesOnRoad}.
 	 */
-	private static class CompByLocation implements Comparator<Vehicle> {
-		
-		Deque<Vehicle> entries;		
-
-		public CompByLocation(Road road) {
-			entries = road.getEntryRecord();
-		}
-
-		@Override
-		public int compare(Vehicle v1, Vehicle v2) {
-			int dist = v2.getLocation() - v1.getLocation();
+	private Lane inbox = new Lane();
 
-			if (dist != 0) {
-				return dist;
-			}
-			else {
-				// Están en la misma posición, se ordena por orden 
-				// de entrada en carretera.
-				for (Vehicle v : entries ) {
-					if (v == v1) {
-						return -1;
-					}
-					if (v == v2) {
-						return 1;
-					}
-				}
-
-				// Fallo del programa (no se debería dar)
-				throw new RuntimeException(
-					"Vehicles weren´t recorded when entered their road."
-				);
-			}
-		}
+	/**
+	 * Booleano que indica si los {@code Vehicle}s que 
+	 * entran en la {@code Road} se retienen en el 
+	 * buzón {@code inbox}.
+	 */
+	private boolean holdingEntries = false;
 
-		// ROADEND - (v1, 80) < (v2, 78) < (v3, 50) < (v4, 20) - ROADBEGIN
-	}
+	/**
+	 * Conjunto de {@code Road}s activas de la simulación, 
+	 * en el que se mete la {@code Road} cuando entra un 
+	 * {@code Vehicle}. Puede ser {@code null} si la 
+	 * {@code Road} no está en ningún {@code RoadMap}.
+	 */
+	private ActiveSet<Road> activeRoads = null;
 
 	/**
 	 * Comparador según el tiempo de llegada al final 
@@ -154,19 +145,19 @@ public class Road extends SimObject {
 	}
 
 	/**
-	 * Clase interna que guarda cada {@code Vehicle} con 
-	 * su tiempo de llegada al final de la {@code Road}.
+	 * Clase interna que guarda la fila de cada {@code Vehicle} 
+	 * con su tiempo de llegada al final de la {@code Road}.
 	 */
 	private class ArrivedVehicle {
-		private Vehicle arrived;
+		private int arrived;
 		private float time;
 
-		public ArrivedVehicle(Vehicle arr, float t) {
+		public ArrivedVehicle(int arr, float t) {
 			arrived = arr;
 			time = t;
 		}
 
-		public Vehicle getArrived() {
+		public int getArrived() {
 			return arrived;
 		}
 		
@@ -214,27 +205,27 @@ public class Road extends SimObject {
 	 */
 	@Override
 	public void proceed() {
-		// * //
-		// Se crea lista con los vehículos en la 
-		// carretera en ese momento, pues pueden salir 
-		// durante su proceed y provocar un error en 
-		// el foreach
-		ArrayList<Vehicle> onRoad = new ArrayList<>();
-		for (Vehicle v : vehiclesOnRoad) {
-			onRoad.add(v);
+		// Si no hay vehículos circulando, no ocurre nada.
+		if ( vehiclesOnRoad.isEmpty() ) {
+			return;
 		}
 
+		VehicleStore store = map.getVehicleStore();
+
 		// 1 //
 		// Se modifica la velocidad a la que avanzarán los 
 		// vehículos, teniendo en cuenta el factor de reducción.
-		vehicleSpeedModifier(onRoad);
+		vehicleSpeedModifier(vehiclesOnRoad, store);
 
 		// 2 //
-		// Los vehículos avanzan y se pueden adelantar.
-		for (Vehicle v : onRoad) {
-			v.proceed();
+		// Los vehículos avanzan y se pueden adelantar. Los 
+		// que llegan al final salen del carril durante el 
+		// recorrido, que lo permite.
+		PrimitiveIterator.OfInt onRoad = vehiclesOnRoad.iterator();
+		while ( onRoad.hasNext() ) {
+			map.getVehicle( onRoad.nextInt() ).proceed();
 		}
-		vehiclesOnRoad.sort(new CompByLocation(this));
+		vehiclesOnRoad.reorder(store);
 
 		// 3 //
 		// Los coches que llegan al final entran 
@@ -242,14 +233,55 @@ public class Road extends SimObject {
 		pushArrivalsToWaiting();
 	}
 
+	/**
+	 * Indica si la {@code Road} tiene que avanzar, es 
+	 * decir, si hay {@code Vehicle}s circulando por ella.
+	 * Los {@code Vehicle}s de la cola de espera los mueve 
+	 * la {@code toJunction}.
+	 * 
+	 * @return 	si {@code vehiclesOnRoad} 
+	 * 			no está vacía
+	 */
+	public boolean isActive() {
+		return ! vehiclesOnRoad.isEmpty();
+	}
+
+	/**
+	 * Asocia la {@code Road} al conjunto de {@code Road}s
+	 * activas de su simulación, en el que se meterá cada vez
+	 * que entre un {@code Vehicle}.
+	 * 
+	 * @param active 	- conjunto de {@code Road}s activas
+	 */
+	public void setActiveSet(ActiveSet<Road> active) {
+		activeRoads = active;
+
+		if ( activeRoads != null && isActive() ) {
+			activeRoads.wake(this);
+		}
+	}
+
+	/**
+	 * Asocia la {@code Road} a su mapa, donde 
+	 * busca sus {@code Vehicle}s.
+	 * 
+	 * @param roadMap 	- mapa de la {@code Road}
+	 */
+	public void setRoadMap(RoadMap roadMap) {
+		map = roadMap;
+	}
+
 	/**
 	 * Modifica la velocidad que llevarán los {@code Vehicle}s
-	 * en la {@code Road} previo avance.
+	 * en la {@code Road} previo avance, directamente en 
+	 * sus filas del almacén.
 	 * 
-	 * @param onRoad 	- lista de {@code Vehicle}s 
-	 * 					en {@code Road}
+	 * @param onRoad 	- carril con los {@code Vehicle}s 
+	 * 					en {@code Road}, del primero 
+	 * 					al último
+	 * @param store 	- almacén de los {@code Vehicle}s
 	 */
-	protected void vehicleSpeedModifier(ArrayList<Vehicle> onRoad) {
+	protected void vehicleSpeedModifier(Lane onRoad, VehicleStore store) {
 		// Velocidad máxima a la que pueden avanzar los vehículos.
 		int baseSpeed = getBaseSpeed();
 		
@@ -258,10 +290,12 @@ public class Road extends SimObject {
 
 		// Se modifica la velocidad a la que avanzarán los vehículos,
 		// teniendo en cuenta el factor de reducción.
-		for (Vehicle v : onRoad) {
-			v.setSpeed(baseSpeed / reductionFactor);
+		PrimitiveIterator.OfInt slots = onRoad.iterator();
+		while ( slots.hasNext() ) {
+			int slot = slots.nextInt();
+			Vehicle.setSpeed(store, slot, baseSpeed / reductionFactor);
 
-			if (v.getBreakdownTime() > 0) {
+			if (store.getInt(slot, VehicleStore.BREAKDOWN) > 0) {
 				reductionFactor = 2;
 			}
 		}
@@ -303,29 +337,25 @@ public class Road extends SimObject {
 
 	// ** MÉTODO DE INFORME (+ COMPLEMENTARIOS) ** //
 	/**
-	 * Genera una {@code IniSection} que informa de los 
-	 * atributos de la {@code Road} en el tiempo del simulador.
+	 * Escribe el informe de los atributos de la 
+	 * {@code Road} en el tiempo del simulador.
 	 * 
 	 * @param simTime 	- tiempo del simulador
-	 * 
-	 * @return 			{@code IniSection} con 
-	 * 					información de la {@code Road}
+	 * @param out 		- destino del informe
 	 */
-	public IniSection generateIniSection(int simTime) {
+	public void report(int simTime, SectionSink out) {
 		// 1 //
-		// Se crea la etiqueta de la sección (sin corchetes).
-		String tag = REPORT_TITLE;
-		tag = (String) tag.subSequence(1, tag.length() - 1);
-		IniSection section = new IniSection(tag);
+		// Se abre la sección del informe.
+		out.beginSection(REPORT_TAG);
 
 		// 2 // 
 		// Se generan los datos en el informe.
-		section.setValue("id", id);
-		section.setValue("time", simTime);
-		section.setValue("state", getRoadState().toString());
-		
-		
-		return section;
+		out.value("id", id);
+		out.value("time", simTime);
+		StringBuilder state = out.scratch();
+		appendRoadState(state);
+		out.value("state", state);
+		out.endSection();
 	}
 
 	/**
@@ -343,33 +373,49 @@ public class Road extends SimObject {
 	 */
 	public StringBuilder getRoadState() {
 		StringBuilder state = new StringBuilder();
+		appendRoadState(state);
 
-		// Primero los vehículos en la cola de espera.
-		for (Vehicle v : waiting) {
-			// ID
-			state.append("(" + v.getID());
-			// Location
-			state.append("," + v.getLocation());
+		return state;
+	}
 
-			state.append("),");
-		}
+	/**
+	 * Añade a un {@code StringBuilder} el estado de la 
+	 * {@code Road}, como {@link #getRoadState()}.
+	 * 
+	 * @param state 	- {@code StringBuilder} de destino
+	 */
+	public void appendRoadState(StringBuilder state) {
+		int start = state.length();
+
+		// Primero los vehículos en la cola de espera.
+		appendLaneState(state, start, waiting);
 
 		// Después los vehículos en la carretera.
-		for (Vehicle v : vehiclesOnRoad) {
-			// ID
-			state.append("(" + v.getID());
-			// Location
-			state.append("," + v.getLocation());
+		appendLaneState(state, start, vehiclesOnRoad);
+	}
 
-			state.append("),");
-		}
-		
-		// Borrado de última coma
-		if (state.length() > 0) {
-			state.deleteCharAt(state.length() - 1);
+	/**
+	 * Añade al estado de la {@code Road} el de los 
+	 * {@code Vehicle}s de uno de sus carriles.
+	 */
+	private void appendLaneState(StringBuilder state, int start, Lane lane) {
+		PrimitiveIterator.OfInt slots = lane.iterator();
+		while ( slots.hasNext() ) {
+			appendVehicleState(state, start, map.getVehicle(slots.nextInt()));
 		}
+	}
 
-		return state;
+	/**
+	 * Añade al estado de la {@code Road} el ID y la 
+	 * localización de un {@code Vehicle}, tras una 
+	 * coma si no es el primero.
+	 */
+	private static void appendVehicleState(StringBuilder state, int start, Vehicle v) {
+		if (state.length() > start) {
+			state.append(',');
+		}
+		state.append('(').append(v.getID())
+				.append(',').append(v.getLocation()).append(')');
 	}
 
 	/**
@@ -408,15 +454,9 @@ public class Road extends SimObject {
 		StringBuilder state = new StringBuilder();
 
 		state.append("[");
-		// Primero los vehículos en la cola de espera.
-		for (Vehicle v : waiting) {
-			// ID
-			state.append(v.getID());
-			state.append(",");
-		}
-
-		// Después los vehículos en la carretera.
-		for (Vehicle v : vehiclesOnRoad) {
+		// Primero los vehículos en la cola de espera, 
+		// después los vehículos en la carretera.
+		for (Vehicle v : getRoadVehicles()) {
 			// ID
 			state.append(v.getID());
 			state.append(",");
@@ -437,12 +477,12 @@ public class Road extends SimObject {
 	 * en la lista de {@code Vehicle}s que van a entrar
 	 * en {@code waiting}.
 	 * 
-	 * @param toWait 		- {@code Vehicle} que va a 
-	 * 						entrar a la cola de espera
+	 * @param toWait 		- fila del {@code Vehicle} que va 
+	 * 						a entrar a la cola de espera
 	 * @param arrivalTime 	- tiempo que ha tardado en llegar 
 	 * 						al final en el tick actual
 	 */
-	public void arriveToWaiting(Vehicle toWait, float arrivalTime) {
+	public void arriveToWaiting(int toWait, float arrivalTime) {
 		// Se guarda en el Map su información de llegada.
 		arrivalsToWaiting.add(new ArrivedVehicle(toWait, arrivalTime));
 	}	
@@ -463,13 +503,12 @@ public class Road extends SimObject {
 			boolean hasCrossed = false;
 
 			// Primer vehículo que está esperando.
-			Vehicle toMove = waiting.getFirst();
+			Vehicle toMove = map.getVehicle( waiting.first() );
 
 			// Si hay algún vehículo y no está averiado.
-			if (toMove != null && toMove.getBreakdownTime() == 0) {
-				// Se le saca de la lista de espera y del registro de entradas. 
-				entryRecord.remove(toMove);
-				waiting.pollFirst();
+			if (toMove.getBreakdownTime() == 0) {
+				// Se le saca de la lista de espera.
+				waiting.remove( toMove.getSlot() );
 
 				// Se mueve a la siguiente carretera.
 				toMove.moveToNextRoad();
@@ -492,7 +531,9 @@ public class Road extends SimObject {
 	 * averiados en la cola de espera {@code waiting}.
 	 */
 	public void refreshWaiting() {
-		for ( Vehicle v : waiting ) {
+		PrimitiveIterator.OfInt slots = waiting.iterator();
+		while ( slots.hasNext() ) {
+			Vehicle v = map.getVehicle( slots.nextInt() );
 			if ( v.getBreakdownTime() > 0 ) {
 				v.setBreakdownTime(-1); // Se resta un día.
 			}
@@ -516,28 +557,76 @@ public class Road extends SimObject {
 	 * Mete un {@code Vehicle} al final de 
 	 * {@code vehiclesOnRoad}.
 	 * 
-	 * @param v 	- {@code Vehicle} a 
-	 * 				añadir al final
+	 * @param slot 	- fila del {@code Vehicle} 
+	 * 				a añadir al final
+	 */
+	public void pushVehicle(int slot) {
+		// Si se están reteniendo las entradas, el vehículo
+		// espera en el buzón hasta que se liberen.
+		if ( holdingEntries ) {
+			inbox.addLast(slot);
+		}
+		else {
+			enterVehicle(slot);
+		}
+	}
+
+	/**
+	 * Hace que los {@code Vehicle}s que entren en la 
+	 * {@code Road} se queden en su buzón hasta la 
+	 * llamada a {@link #releaseEntries()}.
+	 * <p>
+	 * Sólo debe llamarlo la {@code fromJunction}, 
+	 * que es la única que mete {@code Vehicle}s en 
+	 * la {@code Road} durante su avance.
+	 * </p>
+	 */
+	public void holdEntries() {
+		holdingEntries = true;
+	}
+
+	/**
+	 * Mete en {@code vehiclesOnRoad}, por orden de 
+	 * llegada, los {@code Vehicle}s retenidos en el 
+	 * buzón y deja de retener las entradas.
+	 */
+	public void releaseEntries() {
+		holdingEntries = false;
+
+		PrimitiveIterator.OfInt slots = inbox.iterator();
+		while ( slots.hasNext() ) {
+			enterVehicle( slots.nextInt() );
+		}
+		inbox.clear();
+	}
+
+	/**
+	 * Mete un {@code Vehicle} al final de 
+	 * {@code vehiclesOnRoad}, que le asigna
+	 * su número de entrada.
+	 * 
+	 * @param slot 	- fila del {@code Vehicle} que entra
 	 */
-	public void pushVehicle(Vehicle v) {
-		vehiclesOnRoad.add(v);
+	private void enterVehicle(int slot) {
+		// Entra en la posición 0, detrás de todos.
+		vehiclesOnRoad.addLast(slot);
 
-		// Se guarda el último de la lista en 
-		// el registro de entradas, pues ha sido
-		// el último en entrar.
-		entryRecord.add(v);
+		// La carretera pasa a estar activa.
+		if ( activeRoads != null ) {
+			activeRoads.wake(this);
+		}
 	}
 
 	/**
 	 * Saca un {@code Vehicle} de {@code vehiclesOnRoad}.
 	 * 
-	 * @param v 	- {@code Vehicle} a quitar
+	 * @param slot 	- fila del {@code Vehicle} a quitar
 	 * 
-	 * @throws NoSuchElementException 	si {@code v} no está en
+	 * @throws NoSuchElementException 	si no está en
 	 * 									{@code vehiclesOnRoad}
 	 */
-	public void popVehicle(Vehicle v) throws NoSuchElementException {
-		if ( ! vehiclesOnRoad.remove(v) ) {
+	public void popVehicle(int slot) throws NoSuchElementException {
+		if ( ! vehiclesOnRoad.remove(slot) ) {
 			throw new NoSuchElementException(
 				"Vehicle to pop not found."
 			);
@@ -567,26 +656,24 @@ public class Road extends SimObject {
 	 */
 	public StringBuilder getWaitingState() {
 		StringBuilder state = new StringBuilder();
+		appendWaitingState(state);
+
+		return state;
+	}
+
+	/**
+	 * Añade a un {@code StringBuilder} el estado de la cola 
+	 * de espera, como {@link #getWaitingState()}.
+	 * 
+	 * @param state 	- {@code StringBuilder} de destino
+	 */
+	public void appendWaitingState(StringBuilder state) {
 		// ID
-		state.append("(" + getID() + ",");
+		state.append('(').append(getID()).append(',');
 		// Semáforo
 		state.append(isGreen ? "green" : "red");
 		// Cola de espera
-		state.append(",[");
-		if (waiting.isEmpty()) {
-			state.append("]");
-		} else {
-			for (Vehicle v : waiting) {
-				state.append(v.getID() + ",");
-			}
-			if (waiting.size() > 0) {
-				state.deleteCharAt(state.length() - 1);
-			}
-			state.append("]");
-		}
-		state.append(")");
-
-		return state;
+		appendWaitingQueue(state);
 	}
 
 	/**
@@ -610,28 +697,47 @@ public class Road extends SimObject {
 	 */
 	public StringBuilder getWaitingState(int lightTime) {
 		StringBuilder state = new StringBuilder();
+		appendWaitingState(state, lightTime);
+
+		return state;
+	}
+
+	/**
+	 * Añade a un {@code StringBuilder} el estado de la cola 
+	 * de espera con el tiempo restante del semáforo, como 
+	 * {@link #getWaitingState(int)}.
+	 * 
+	 * @param state 		- {@code StringBuilder} de destino
+	 * @param lightTime 	- tiempo restante que el 
+	 * 						semáforo estará encendido
+	 */
+	public void appendWaitingState(StringBuilder state, int lightTime) {
 		// ID
-		state.append("(" + getID() + ",");
+		state.append('(').append(getID()).append(',');
 		// Semáforo
 		state.append(isGreen ? "green" : "red");
 		// Tiempo de semáforo
-		state.append(":" + lightTime);
+		state.append(':').append(lightTime);
 		// Cola de espera
+		appendWaitingQueue(state);
+	}
+
+	/**
+	 * Añade la lista de {@code Vehicle}s de la cola 
+	 * de espera y cierra el estado de la cola.
+	 */
+	private void appendWaitingQueue(StringBuilder state) {
 		state.append(",[");
-		if (waiting.isEmpty()) {
-			state.append("]");
-		} else {
-			for (Vehicle v : waiting) {
-				state.append(v.getID() + ",");
-			}
-			if (waiting.size() > 0) {
-				state.deleteCharAt(state.length() - 1);
+		boolean first = true;
+		PrimitiveIterator.OfInt slots = waiting.iterator();
+		while ( slots.hasNext() ) {
+			if (! first) {
+				state.append(',');
 			}
-			state.append("]");
+			state.append( map.getVehicle(slots.nextInt()).getID() );
+			first = false;
 		}
-		state.append(")");
-
-		return state;
+		state.append("])");
 	}
 
 	/**
@@ -644,11 +750,22 @@ public class Road extends SimObject {
 	}
 
 	/**
-	 * Devuelve si el semáforo está en verde.
+	 * Devuelve el límite de velocidad de la vía.
+	 * 
+	 * @return límite de velocidad
+	 */
+	public int getSpeedLimit() {
+		return speedLimit;
+	}
+
+	/**
+	 * Devuelve si el semáforo está en verde, poniendo
+	 * antes al día la {@code toJunction} si duerme.
 	 * 
 	 * @return si el semáforo está en verde
 	 */
 	public boolean isGreen() {
+		toJunction.catchUp();
 		return isGreen;
 	}
 
@@ -682,17 +799,6 @@ public class Road extends SimObject {
 		return toJunction;
 	}
 
-	/**
-	 * Devuelve la lista de registro de entradas de 
-	 * los {@code Vehicle}s que están en la 
-	 * {@code Road}
-	 * 
-	 * @return 	registro de entradas
-	 */
-	private Deque<Vehicle> getEntryRecord() {
-		return entryRecord;
-	}
-
 	/**
 	 * Devuelve el número de {@code Vehicle}s esperando
 	 * en la cola {@code waiting}.
@@ -703,6 +809,102 @@ public class Road extends SimObject {
 		return waiting.size();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Una {@code Road} se construye además con su longitud, 
+	 * su límite de velocidad y los índices de sus 
+	 * {@code Junction}s de origen y destino.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeDefinition(DataOutput out) throws IOException {
+		super.writeDefinition(out);
+		out.writeInt(length);
+		out.writeInt(speedLimit);
+		out.writeInt(fromJunction.getIndex());
+		out.writeInt(toJunction.getIndex());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En una {@code Road}, el semáforo, la cola de espera y 
+	 * el carril, con los {@code Vehicle}s por su fila, que 
+	 * es su índice. Entre ticks, el buzón y las llegadas 
+	 * están vacíos.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		out.writeBoolean(isGreen);
+		waiting.write(out);
+		vehiclesOnRoad.write(out);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * No despierta la {@code Road} en el conjunto de 
+	 * {@code Road}s activas: se restaura aparte.
+	 * </p>
+	 * 
+	 * @param in 	- {@inheritDoc}
+	 * @param map 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void readState(DataInput in, RoadMap map) throws IOException {
+		int rows = map.getVehicleStore().size();
+		isGreen = in.readBoolean();
+		waiting.read(in, rows);
+		vehiclesOnRoad.read(in, rows);
+	}
+
+	/**
+	 * Crea una {@code Road} con la misma definición entre 
+	 * dos {@code Junction}s de otra simulación.
+	 * 
+	 * @param fromJ 	- {@code Junction} donde empieza
+	 * @param toJ 		- {@code Junction} donde acaba
+	 * 
+	 * @return 			{@code Road} copiada
+	 */
+	public Road copy(Junction fromJ, Junction toJ) {
+		return new Road(id, length, speedLimit, fromJ, toJ);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En una {@code Road}, el semáforo, la cola de espera 
+	 * y el carril, que se comparten con los de 
+	 * {@code source} hasta que alguna de las dos cambia. 
+	 * Entre ticks, el buzón y las llegadas están vacíos. 
+	 * No despierta la {@code Road} en el conjunto de 
+	 * {@code Road}s activas.
+	 * </p>
+	 * 
+	 * @param source 	- {@inheritDoc}
+	 * @param map 		- {@inheritDoc}
+	 */
+	@Override
+	public void copyState(SimObject source, RoadMap map) {
+		Road road = (Road) source;
+		isGreen = road.isGreen;
+		waiting.copy(road.waiting);
+		vehiclesOnRoad.copy(road.vehiclesOnRoad);
+	}
+
 	/**
 	 * Devuelve un {@code String} con el tipo de 
 	 * {@code Road} que debe ponerse como valor 
@@ -720,19 +922,34 @@ public class Road extends SimObject {
 
 	/**
 	 * Devuelve una lista con todos los vehículos en
-	 * la {@code Road}, los de {@code vehiclesOnRoad}
-	 * y los de {@code waiting}.
+	 * la {@code Road}, los de {@code waiting} y los 
+	 * de {@code vehiclesOnRoad}, buscados en el mapa 
+	 * para los informes y la {@code GUI}.
 	 * 
 	 * @return 	{@code List<Vehicle>} con todos
 	 * 			los {@code Vehicle}s de la 
 	 * 			{@code Road}
 	 */
 	public List<Vehicle> getRoadVehicles() {
-		List<Vehicle> list = new ArrayList<>();
+		List<Vehicle> list = new ArrayList<>(waiting.size() + vehiclesOnRoad.size());
 
-		list.addAll(vehiclesOnRoad);
-		list.addAll(waiting);
+		addVehicles(waiting, list);
+		addVehicles(vehiclesOnRoad, list);
 
 		return list;
 	}
+
+	/**
+	 * Añade a una lista los {@code Vehicle}s 
+	 * de un carril, en orden.
+	 * 
+	 * @param lane 	- carril de la {@code Road}
+	 * @param list 	- lista de destino
+	 */
+	private void addVehicles(Lane lane, List<Vehicle> list) {
+		PrimitiveIterator.OfInt slots = lane.iterator();
+		while ( slots.hasNext() ) {
+			list.add( map.getVehicle(slots.nextInt()) );
+		}
+	}
 }
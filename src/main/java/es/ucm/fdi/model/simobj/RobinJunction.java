@@ -1,11 +1,12 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 import es.ucm.fdi.model.simulation.SimulationException;
 
 /**
@@ -32,10 +33,11 @@ public class RobinJunction extends Junction {
     protected int maxLightTime;
 
     /**
-     * Mapa de {@code incomingRoads} a sus 
-     * respectivos intervalos de duración de sus semáforos.
+     * Intervalos de duración de los semáforos de las
+     * {@code Road}s entrantes, por su posición en 
+     * {@code incoming}.
      */
-    protected Map<Road, Integer> timeLapses = new HashMap<>();
+    protected int[] timeLapses = new int[0];
 
     /**
      * Tiempo consumido (unidades: ticks)
@@ -142,55 +144,92 @@ public class RobinJunction extends Junction {
      */
     @Override
     protected void lightUpdate() {
-    	List<String> array = new ArrayList<>(incomingRoads.keySet());
-		String nextRoad = array.get(light);
-        Road usedRoad = incomingRoads.get(nextRoad);
-        int roadTimeLapse = timeLapses.get(usedRoad);
+        int roadTimeLapse = timeLapses[light];
 
         // Se actualiza el tiempo transcurrido con el semáforo en verde.
         elapsedTime += 1;
 
         // El semáforo ha agotado su tiempo.
         if ( roadTimeLapse == elapsedTime ) {
-            // * //
-            // La carretera actualizada se pone en rojo.
-            usedRoad.setLight(false);
-
-            // 1 // 
-            // Se calcula la nueva duración del semáforo.
-            int newTimeLapse = 0;
-
-            if (uselessGreen) {
-                newTimeLapse = Math.max(roadTimeLapse - 1, minLightTime);
-            } 
-            else if (usefulGreen) {
-                newTimeLapse = Math.min(roadTimeLapse + 1, maxLightTime);
+            switchLight(roadTimeLapse);
+        }
+    }
+
+    /**
+     * Pone en rojo el semáforo en verde, que ha agotado 
+     * su {@code timeLapse}, calcula su nueva duración, 
+     * pone en verde el semáforo siguiente y resetea 
+     * {@code elapsedTime, uselessGreen, usefulGreen}.
+     * 
+     * @param roadTimeLapse     - duración del 
+     *                          semáforo en verde
+     */
+    private void switchLight(int roadTimeLapse) {
+        // * //
+        // La carretera actualizada se pone en rojo.
+        incoming.get(light).setLight(false);
+
+        // 1 // 
+        // Se calcula la nueva duración del semáforo.
+        int newTimeLapse = 0;
+        if (uselessGreen) {
+            newTimeLapse = Math.max(roadTimeLapse - 1, minLightTime);
+        } 
+        else if (usefulGreen) {
+            newTimeLapse = Math.min(roadTimeLapse + 1, maxLightTime);
+        }
+        else {
+            newTimeLapse = roadTimeLapse;
+        }
+        // Nueva duración del semáforo para la carretera.
+        timeLapses[light] = newTimeLapse;
+
+        // 2 // 
+        // Se pone en verde el semáforo siguiente.
+        // Número de carreteras entrantes en el cruce.
+        int numIncomingRoads = incoming.size();
+        // Avanza en 1 el semáforo circular.
+        light = (light + 1) % numIncomingRoads;
+        // El semáforo de la carretera se pone verde.
+        incoming.get(light).setLight(true);
+
+        // 3 //
+        // Se resetea elapsedTime y los booleanos
+        elapsedTime = 0;
+        uselessGreen = true;
+        usefulGreen = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En una {@code RobinJunction} se avanza de semáforo en 
+     * semáforo: como no cruza nadie, cada semáforo que se 
+     * agota acorta su duración si no había cruzado nadie 
+     * desde que se puso en verde.
+     * </p>
+     * 
+     * @param ticks     - {@inheritDoc}
+     */
+    @Override
+    protected void skipIdleLights(int ticks) {
+        while (ticks > 0) {
+            int roadTimeLapse = timeLapses[light];
+            int remaining = roadTimeLapse - elapsedTime;
+
+            // En cada tick sin cruces el semáforo deja de ser útil.
+            usefulGreen = false;
+
+            if (remaining <= 0 || remaining > ticks) {
+                // El semáforo no se agota en los ticks restantes
+                // (o no se agota nunca, si su duración es nula).
+                elapsedTime += ticks;
+                ticks = 0;
             }
             else {
-                newTimeLapse = roadTimeLapse;
+                ticks -= remaining;
+                switchLight(roadTimeLapse);
             }
-
-            // Nueva duración del semáforo para la carretera.
-            timeLapses.put(usedRoad, newTimeLapse);
-            
-
-            // 2 // 
-            // Se pone en verde el semáforo siguiente.
-            // Número de carreteras entrantes en el cruce.
-            int numIncomingRoads = incomingRoads.size();
-            
-            // Avanza en 1 el semáforo circular.
-            light = (light + 1) % numIncomingRoads;
-
-            // El semáforo de la carretera se pone verde.
-    		nextRoad = array.get(light);
-            incomingRoads.get(nextRoad).setLight(true);
-
-            // 3 //
-            // Se resetea elapsedTime y los booleanos
-            elapsedTime = 0;
-            uselessGreen = true;
-            usefulGreen = true;
         }
     }
 
@@ -202,27 +241,26 @@ public class RobinJunction extends Junction {
      * {@code Road} en verde.
      * </p>
      * 
-     * @param simTime   - tiempo del simulador
-     * 
-     * @return  informe {@code IniSection} 
-     *          de la {@code RobinJunction}
+     * @param simTime   - {@inheritDoc}
+     * @param out       - {@inheritDoc}
      */
     @Override
-    public IniSection generateIniSection(int simTime) {
+    public void report(int simTime, SectionSink out) {
+        catchUp();
+
         // 1 //
-        // Se crea la etiqueta de la sección (sin corchetes).
-        String tag = REPORT_TITLE;
-        tag = (String) tag.subSequence(1, tag.length() - 1);
-        IniSection section = new IniSection(tag);
+        // Se abre la sección del informe.
+        out.beginSection(REPORT_TAG);
 
         // 2 // 
         // Se generan los datos en el informe.
-        section.setValue("id", id);
-        section.setValue("time", simTime);
-        section.setValue("queues", getQueuesValue());
-        section.setValue("type", getType());
-
-        return section;
+        out.value("id", id);
+        out.value("time", simTime);
+        StringBuilder queues = out.scratch();
+        appendQueues(queues);
+        out.value("queues", queues);
+        out.value("type", getType());
+        out.endSection();
     }   
     
     /**
@@ -232,28 +270,22 @@ public class RobinJunction extends Junction {
      * restante del semáforo de la {@code Road} en verde.
      * </p>
      * 
-     * @return {@code String} con las colas.
+     * @param queues    - {@inheritDoc}
      */
     @Override
-    protected String getQueuesValue() {
-        // Generación del string de queues
-        StringBuilder queues = new StringBuilder();
-        for (Road incR : incomingRoads.values()) {
+    protected void appendQueues(StringBuilder queues) {
+        for (int i = 0; i < incoming.size(); ++i) {
+            Road incR = incoming.get(i);
+            if (i > 0) {
+                queues.append(',');
+            }
             // Semáforo en verde.
             if (incR.isGreen()) {
-                queues.append(incR.getWaitingState(lastingLightTime(incR)));
+                incR.appendWaitingState(queues, lastingLightTime(i));
             } else { // En rojo.
-                queues.append(incR.getWaitingState());
+                incR.appendWaitingState(queues);
             }
-            queues.append(",");
         }
-
-        // Borrado de última coma (si queues no es vacío).
-        if (queues.length() > 0) {
-            queues.deleteCharAt(queues.length() - 1);
-        }
-
-        return queues.toString();
     }
 
     /**
@@ -261,14 +293,14 @@ public class RobinJunction extends Junction {
      * {@code Road} con respecto a {@code elapsedTime}. 
      * El método no comprueba que la {@code Road} esté en verde.
      * 
-     * @param road  - {@code Road} de la que 
-     *              se quiere conocer el tiempo 
-     *              del semáforo
+     * @param pos   - posición en {@code incoming} de la 
+     *              {@code Road} de la que se quiere 
+     *              conocer el tiempo del semáforo
      * 
      * @return      tiempo restante del semáforo
      */
-    private int lastingLightTime(Road road) {
-        return timeLapses.get(road) - elapsedTime;
+    private int lastingLightTime(int pos) {
+        return timeLapses[pos] - elapsedTime;
     }
 
     /**
@@ -280,8 +312,97 @@ public class RobinJunction extends Junction {
      */
     @Override
     public void addNewIncomingRoad(Road newRoad) {
-        incomingRoads.put(newRoad.getID(), newRoad);
-        timeLapses.put(newRoad, maxLightTime);
+        super.addNewIncomingRoad(newRoad);
+        timeLapses = Arrays.copyOf(timeLapses, incoming.size());
+        timeLapses[incoming.size() - 1] = maxLightTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Una {@code RobinJunction} se construye además 
+     * con sus duraciones mínima y máxima.
+     * </p>
+     * 
+     * @param out   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void writeDefinition(DataOutput out) throws IOException {
+        super.writeDefinition(out);
+        out.writeInt(minLightTime);
+        out.writeInt(maxLightTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En una {@code RobinJunction}, también la duración 
+     * de cada semáforo, el tiempo que lleva en verde el 
+     * actual y si ha sido útil o inútil.
+     * </p>
+     * 
+     * @param out   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(timeLapses.length);
+        for (int timeLapse : timeLapses) {
+            out.writeInt(timeLapse);
+        }
+        out.writeInt(elapsedTime);
+        out.writeBoolean(uselessGreen);
+        out.writeBoolean(usefulGreen);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param in    - {@inheritDoc}
+     * @param map   - {@inheritDoc}
+     * 
+     * @throws IOException  {@inheritDoc}
+     */
+    @Override
+    public void readState(DataInput in, RoadMap map) throws IOException {
+        super.readState(in, map);
+        timeLapses = new int[in.readInt()];
+        for (int i = 0; i < timeLapses.length; ++i) {
+            timeLapses[i] = in.readInt();
+        }
+        elapsedTime = in.readInt();
+        uselessGreen = in.readBoolean();
+        usefulGreen = in.readBoolean();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return  {@inheritDoc}
+     */
+    @Override
+    public Junction copy() {
+        return new RobinJunction(id, minLightTime, maxLightTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param source    - {@inheritDoc}
+     * @param map       - {@inheritDoc}
+     */
+    @Override
+    public void copyState(SimObject source, RoadMap map) {
+        super.copyState(source, map);
+        RobinJunction junction = (RobinJunction) source;
+        timeLapses = junction.timeLapses.clone();
+        elapsedTime = junction.elapsedTime;
+        uselessGreen = junction.uselessGreen;
+        usefulGreen = junction.usefulGreen;
     }
 
     /**
@@ -0,0 +1,198 @@
+package es.ucm.fdi.model.simobj;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import es.ucm.fdi.model.simulation.SimulationException;
+
+/**
+ * Itinerario compilado de un {@code Vehicle}: las
+ * {@link Junction}s por las que pasa y las {@link Road}s
+ * entre cada par de ellas, por su posición en la ruta.
+ * <p>
+ * El {@code RoadMap} guarda una sola {@code Route} por
+ * itinerario, que comparten todos los {@code Vehicle}s
+ * que lo siguen. Pasar a la siguiente {@code Road} es
+ * entonces un acceso a un array.
+ * </p> <p>
+ * Como las {@code Road}s pueden crearse después que los
+ * {@code Vehicle}s que las usan, cada tramo se busca con
+ * {@link Junction#getRoadTo(Junction)} la primera vez que
+ * se pide y se guarda. Una vez creada, la {@code Road}
+ * entre dos {@code Junction}s no cambia, así que dos
+ * {@code Junction}s que avancen a la vez pueden buscar
+ * el mismo tramo sin más coste que repetir la búsqueda.
+ * </p>
+ */
+public class Route {
+
+	/**
+	 * {@code Junction}s del itinerario, en orden.
+	 */
+	private final Junction[] junctions;
+
+	/**
+	 * {@code Road} entre cada {@code Junction} y la
+	 * siguiente, o {@code null} si aún no se ha buscado.
+	 */
+	private final Road[] roads;
+
+	/**
+	 * Constructor de {@link Route}.
+	 *
+	 * @param trip 	- {@code Junction}s del itinerario
+	 */
+	public Route(List<Junction> trip) {
+		junctions = trip.toArray(new Junction[trip.size()]);
+		roads = new Road[Math.max(junctions.length - 1, 0)];
+	}
+
+	/**
+	 * Constructor de {@link Route} con todos 
+	 * los tramos ya elegidos.
+	 *
+	 * @param trip 	- {@code Junction}s del itinerario
+	 * @param path 	- {@code Road} entre cada 
+	 * 				{@code Junction} y la siguiente
+	 */
+	public Route(Junction[] trip, Road[] path) {
+		junctions = trip;
+		roads = path;
+	}
+
+	/**
+	 * Devuelve la {@code Road} que sale de la
+	 * {@code Junction} de una posición de la ruta.
+	 *
+	 * @param pos 	- posición de la {@code Junction}
+	 * 				de origen
+	 *
+	 * @return 		{@code Road} hasta la
+	 * 				siguiente {@code Junction}
+	 *
+	 * @throws SimulationException 	si no hay {@code Road}
+	 * 								entre las dos
+	 * 								{@code Junction}s
+	 */
+	public Road getRoad(int pos) throws SimulationException {
+		Road road = roads[pos];
+
+		if ( road == null ) {
+			road = junctions[pos].getRoadTo(junctions[pos + 1]);
+			roads[pos] = road;
+		}
+
+		return road;
+	}
+
+	/**
+	 * Devuelve la {@code Road} que sale de la {@code Junction} 
+	 * de una posición de la ruta si ya se ha buscado, como la 
+	 * de cualquier tramo por el que ya ha pasado un 
+	 * {@code Vehicle}.
+	 *
+	 * @param pos 	- posición de la {@code Junction}
+	 * 				de origen
+	 *
+	 * @return 		{@code Road} hasta la siguiente 
+	 * 				{@code Junction}, o {@code null} 
+	 * 				si aún no se ha buscado
+	 */
+	public Road getFoundRoad(int pos) {
+		return roads[pos];
+	}
+
+	/**
+	 * Devuelve la {@code Junction} de una
+	 * posición de la ruta.
+	 *
+	 * @param pos 	- posición en la ruta
+	 *
+	 * @return 		{@code Junction} buscada
+	 */
+	public Junction getJunction(int pos) {
+		return junctions[pos];
+	}
+
+	/**
+	 * Escribe en un checkpoint la ruta: los índices de sus
+	 * {@code Junction}s y de los tramos ya buscados
+	 * ({@code -1} los que no).
+	 *
+	 * @param out 	- flujo del checkpoint
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(junctions.length);
+		for (Junction junction : junctions) {
+			out.writeInt(junction.getIndex());
+		}
+		for (Road road : roads) {
+			out.writeInt(road != null ? road.getIndex() : -1);
+		}
+	}
+
+	/**
+	 * Lee de un checkpoint una ruta escrita
+	 * con {@link #write}.
+	 *
+	 * @param in 		- flujo del checkpoint
+	 * @param junction 	- {@code Junction} de cada índice
+	 * @param road 		- {@code Road} de cada índice
+	 *
+	 * @return 			{@code Route} leída
+	 *
+	 * @throws IOException 	if reading fails
+	 */
+	public static Route read(DataInput in, IntFunction<Junction> junction,
+			IntFunction<Road> road) throws IOException {
+
+		Junction[] trip = new Junction[in.readInt()];
+		for (int i = 0; i < trip.length; ++i) {
+			trip[i] = junction.apply(in.readInt());
+		}
+		Road[] path = new Road[Math.max(trip.length - 1, 0)];
+		for (int i = 0; i < path.length; ++i) {
+			int index = in.readInt();
+			path[i] = ( index != -1 ) ? road.apply(index) : null;
+		}
+
+		return new Route(trip, path);
+	}
+
+	/**
+	 * Crea la misma ruta entre los objetos de otra
+	 * simulación, con los tramos ya buscados.
+	 *
+	 * @param junction 	- {@code Junction} de cada índice
+	 * @param road 		- {@code Road} de cada índice
+	 *
+	 * @return 			{@code Route} copiada
+	 */
+	public Route copy(IntFunction<Junction> junction, IntFunction<Road> road) {
+		Junction[] trip = new Junction[junctions.length];
+		for (int i = 0; i < trip.length; ++i) {
+			trip[i] = junction.apply(junctions[i].getIndex());
+		}
+		Road[] path = new Road[roads.length];
+		for (int i = 0; i < path.length; ++i) {
+			path[i] = ( roads[i] != null ) ? road.apply(roads[i].getIndex()) : null;
+		}
+
+		return new Route(trip, path);
+	}
+
+	/**
+	 * Devuelve el número de {@code Junction}s
+	 * de la ruta.
+	 *
+	 * @return 	longitud de la ruta
+	 */
+	public int size() {
+		return junctions.length;
+	}
+}
@@ -1,8 +1,14 @@
 package es.ucm.fdi.model.simobj;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
 import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionCollector;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 import es.ucm.fdi.util.Describable;
 
 /**
@@ -17,6 +23,13 @@ public abstract class SimObject implements Describable {
 	 */
 	protected String id;	
 
+	/**
+	 * Índice denso del objeto entre los de su tipo, 
+	 * asignado por el {@code RoadMap} al añadirlo 
+	 * ({@code -1} si no se ha añadido).
+	 */
+	private int index = -1;
+
 	/**
 	 * Método de avance de cualquier objeto de la 
 	 * simulación. Ocurre en un tick.
@@ -29,7 +42,62 @@ public abstract class SimObject implements Describable {
 	@Override
 	public abstract void describe(Map<String, Object> out);
 
-	public abstract IniSection generateIniSection(int simTime);
+	/**
+	 * Escribe el informe del objeto en el 
+	 * tiempo del simulador.
+	 * 
+	 * @param simTime 	- tiempo del simulador
+	 * @param out 		- destino del informe
+	 */
+	public abstract void report(int simTime, SectionSink out);
+
+	/**
+	 * Genera una {@code IniSection} con el informe 
+	 * del objeto en el tiempo del simulador.
+	 * 
+	 * @param simTime 	- tiempo del simulador
+	 * 
+	 * @return 			{@code IniSection} con el informe
+	 */
+	public IniSection generateIniSection(int simTime) {
+		SectionCollector sections = new SectionCollector();
+		report(simTime, sections);
+
+		return sections.getSections().get(0);
+	}
+
+	/**
+	 * Escribe en un checkpoint el estado del objeto 
+	 * que cambia durante la simulación.
+	 * 
+	 * @param out 	- flujo del checkpoint
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	public abstract void writeState(DataOutput out) throws IOException;
+
+	/**
+	 * Recupera el estado escrito con {@link #writeState}. 
+	 * Los demás objetos se referencian por su índice en 
+	 * el {@code RoadMap}, ya reconstruido.
+	 * 
+	 * @param in 	- flujo del checkpoint
+	 * @param map 	- mapa de la simulación
+	 * 
+	 * @throws IOException 	if reading fails
+	 */
+	public abstract void readState(DataInput in, RoadMap map) throws IOException;
+
+	/**
+	 * Copia el estado de otro objeto de la misma clase y 
+	 * definición, de otra simulación. Los demás objetos se 
+	 * referencian por su índice en el {@code RoadMap}, ya 
+	 * copiado, como en {@link #readState}.
+	 * 
+	 * @param source 	- objeto del que se copia
+	 * @param map 		- mapa de la simulación
+	 */
+	public abstract void copyState(SimObject source, RoadMap map);
 
 	/**
 	 * Constructor de {@link SimObject}.
@@ -69,9 +137,34 @@ public abstract class SimObject implements Describable {
 		
 		// Mismo identificador.
 		SimObject other = (SimObject) obj;
-		return (id == other.id);
+		return id.equals(other.id);
 	}	
 
+	/**
+	 * Devuelve el código hash del {@code SimObject}, 
+	 * coherente con {@link #equals(Object)}.
+	 * 
+	 * @return 	código hash del identificador
+	 */
+	@Override
+	public int hashCode() {
+		return id.hashCode();
+	}
+
+	/**
+	 * Escribe en un checkpoint la definición del objeto: 
+	 * su clase, su identificador y, en las subclases, 
+	 * los parámetros con los que se construyó.
+	 * 
+	 * @param out 	- flujo del checkpoint
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	public void writeDefinition(DataOutput out) throws IOException {
+		out.writeUTF(getClass().getSimpleName());
+		out.writeUTF(id);
+	}
+
 	/**
 	 * Devuelve el identificador del objeto 
 	 * de la simulación.
@@ -81,4 +174,25 @@ public abstract class SimObject implements Describable {
 	public String getID() {
 		return id;
 	}
+
+	/**
+	 * Devuelve el índice denso del objeto de 
+	 * la simulación entre los de su tipo.
+	 * 
+	 * @return 	índice del objeto o {@code -1}
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Fija el índice denso del objeto de la 
+	 * simulación. Lo llama el {@code RoadMap} 
+	 * al añadir el objeto.
+	 * 
+	 * @param i 	- índice del objeto
+	 */
+	public void setIndex(int i) {
+		index = i;
+	}
 }
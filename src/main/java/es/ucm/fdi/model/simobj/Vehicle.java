@@ -1,10 +1,12 @@
 package es.ucm.fdi.model.simobj;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.RoadMap;
 import es.ucm.fdi.model.simulation.SimulationException;
 
 /**
@@ -23,101 +25,79 @@ public class Vehicle extends SimObject {
 	};
 
 	/**
-	 * Etiqueta que encabeza el informe de un
+	 * Etiqueta de la sección del informe de un
 	 * {@code Vehicle} cualquiera.
 	 */
-	protected final String REPORT_TITLE = "[vehicle_report]";
+	protected static final String REPORT_TAG = "vehicle_report";
 	
 	/**
-	 * Ruta del {@code Vehicle} en forma de
-	 * lista de {@code Junction}s.
+	 * Ruta del {@code Vehicle}, compartida con los 
+	 * demás {@code Vehicle}s del mismo itinerario.
 	 */
-	protected List<Junction> trip;
+	protected Route trip;
 
 	/**
-	 * Última posición en la lista que representa la ruta,
-	 * de forma que {@code trip.get(lastTripPos)} es la
-	 * última {@code Junction} por la que ha pasado
-	 * el {@code Vehicle}.
-	 */
-	protected int lastTripPos = 0;
-
-	/**
-	 * Máxima velocidad que puede alcanzar el {@code Vehicle} 
-	 * en cualquier vía.
-	 */
-	protected int maxSpeed;
-
-	/**
-	 * Distancia recorrida por el {@code Vehicle} desde 
-	 * que empezo la simulación.
-	 */
-	protected int kilometrage = 0;
-
-	/**
-	 * Tiempo restante hasta la recuperación de un {@code Vehicle}
-	 * averiado. Si {@code breakdownTime = 0}, no está averiado.
+	 * Almacén donde se guarda el estado del {@code Vehicle}: 
+	 * localización, velocidad, velocidad máxima, kilometraje, 
+	 * tiempo de avería, posición en la ruta y si ha llegado 
+	 * o está esperando. Su {@code Road} es la del tramo de 
+	 * {@code trip} en el que está.
 	 */
-	protected int breakdownTime = 0;
+	protected final VehicleStore store;
 
 	/**
-	 * Booleano que indica si el {@code Vehicle}
-	 * ha llegado a si destino, es decir, a la última 
-	 * {@code Junction} de {@code trip}.
+	 * Fila del {@code Vehicle} en {@code store}, con la que 
+	 * lo guardan las {@code Road}s. Coincide con su índice 
+	 * en el {@code RoadMap}.
 	 */
-	protected boolean hasArrived = false;
-
-	/**
-	 * Booleano que indica si un {@code Vehicle}
-	 * está esperando en la cola de una {@code Road}
-	 * para cruzar una {@code Junction}.
-	 */
-	protected boolean isWaiting = false;
-
-	/**
-	 * {@code Road} en la que se encuentra el 
-	 * {@code Vehicle}.
-	 */
-	protected Road road;
-
-	/**
-	 * Localización del {@code Vehicle}
-	 * dentro de la {@code road}.
-	 */
-	protected int location = 0;
-
-	/**
-	 * Velocidad actual del coche en la {@code road}.
-	 */
-	protected int actualSpeed = 0;	
+	protected final int slot;
 
 	/**
 	 * Constructor de {@link Vehicle}.
 	 * 
 	 * @param identifier 	- identificador del objeto
-	 * @param trp 			- ruta de {@code Junction}s
+	 * @param trp 			- ruta compilada
 	 * @param max 			- máxima velocidad alcanzable
+	 * @param vehicles 		- almacén donde se guarda 
+	 * 						su estado
 	 * 
 	 * @throws SimulationException 	cuando no se encuentra la 
 	 * 								primera carretera entre 
 	 * 								sus junction
 	 */
-	public Vehicle(String identifier, ArrayList<Junction> trp, int max) throws SimulationException {
+	public Vehicle(String identifier, Route trp, int max,
+			VehicleStore vehicles) throws SimulationException {
 		super(identifier);
 		trip = trp;
-		maxSpeed = max;
+		store = vehicles;
+
+		// Se busca la primera carretera antes de reservar 
+		// la fila, para no dejarla ocupada si no existe.
+		Road road = trip.getRoad(0);
 
 		// Se mete en la primera carretera.
-		try {
-			Junction fromJunction = trip.get(lastTripPos);
-			Junction nextJunction = trip.get(lastTripPos + 1);
-			road = fromJunction.getRoadTo(nextJunction);
-						
-			road.pushVehicle(this);
-		}
-		catch (SimulationException e) {
-			throw e;
-		}
+		slot = store.allocate();
+		store.setInt(slot, VehicleStore.MAX_SPEED, max);
+		road.pushVehicle(slot);
+	}
+
+	/**
+	 * Constructor de copia de {@link Vehicle}, para otra 
+	 * simulación cuyo almacén comparte sus filas con el 
+	 * de {@code source}. No entra en ninguna {@code Road}: 
+	 * su posición se copia con {@link #copyState}.
+	 * 
+	 * @param source 		- {@code Vehicle} copiado
+	 * @param trp 			- ruta compilada en la 
+	 * 						otra simulación
+	 * @param vehicles 		- almacén de la otra 
+	 * 						simulación
+	 */
+	protected Vehicle(Vehicle source, Route trp, VehicleStore vehicles) {
+		super(source.id);
+		trip = trp;
+		store = vehicles;
+		slot = source.slot;
 	}
 	
 	/**
@@ -139,17 +119,21 @@ public class Vehicle extends SimObject {
 	public void proceed() {
 		// Comprobamos primero si el vehículo está averiado o no
 		if ( isFaulty() ) {
-			breakdownTime--;
+			store.setInt(slot, VehicleStore.BREAKDOWN, getBreakdownTime() - 1);
 		}
 		else {
+			Road road = getRoad();
+			int location = getLocation();
+			int actualSpeed = getActualSpeed();
+
 			// Comprobamos si el vehículo llega al cruce.
 			if ( location + actualSpeed >= road.getLength() ) {
-				kilometrage += ( road.getLength() - location );
+				addKilometrage( road.getLength() - location );
 				waitInJunction();
 			}
 			else {
-				location += actualSpeed;
-				kilometrage += actualSpeed;
+				store.setInt(slot, VehicleStore.LOCATION, location + actualSpeed);
+				addKilometrage(actualSpeed);
 			}
 		}		
 	}
@@ -165,61 +149,63 @@ public class Vehicle extends SimObject {
 	 * </p>
 	 */
 	public void waitInJunction() {
+		Road road = getRoad();
+
 		// Saca al vehículo de la zona de circulación de la Road
-		road.popVehicle(this);
+		road.popVehicle(slot);
 		
 		// Cálculo del tiempo de llegada.
-		float arrivalTime = ( actualSpeed / (road.getLength() - location) );
+		float arrivalTime = ( getActualSpeed() / (road.getLength() - getLocation()) );
 		// Se mete el Vehicle en la lista de llegados a la cola de espera.
 		// Será introducido en road.waiting una vez que todos hayan llegado.
-		road.arriveToWaiting(this, arrivalTime);	
+		road.arriveToWaiting(slot, arrivalTime);	
 		
 		// Localización = longitud de Road
-		location = road.getLength();
-		isWaiting = true;
-		actualSpeed = 0;
+		store.setInt(slot, VehicleStore.LOCATION, road.getLength());
+		setFlag(VehicleStore.WAITING, true);
+		setActualSpeed(0);
 	}
 
 	/**
-	 * Genera una {@code IniSection} que informa de los atributos del
-	 * {@code Vehicle} en el timmpo del simulador.
+	 * Escribe el informe de los atributos del 
+	 * {@code Vehicle} en el tiempo del simulador.
 	 * 
 	 * @param simTime 	- tiempo del simulador
-	 * 
-	 * @return 	{@code IniSection} con información 
-	 * 			del {@code Vehicle}
+	 * @param out 		- destino del informe
 	 */
-	public IniSection generateIniSection(int simTime) {
+	public void report(int simTime, SectionSink out) {
 		// 1 //
-		// Se crea la etiqueta de la sección (sin corchetes).
-		String tag = REPORT_TITLE;
-		tag = (String) tag.subSequence(1, tag.length() - 1);
-		IniSection section = new IniSection(tag);
+		// Se abre la sección del informe.
+		out.beginSection(REPORT_TAG);
 
-		// 2 //
+		// 2 // 
 		// Se generan los datos en el informe.
-		section.setValue("id", id);
-		section.setValue("time", simTime);
-		section.setValue("speed", actualSpeed);
-		section.setValue("kilometrage", kilometrage);
-		section.setValue("faulty", breakdownTime);
-		section.setValue("location", getReportLocation());
-
-		return section;
+		out.value("id", id);
+		out.value("time", simTime);
+		out.value("speed", getActualSpeed());
+		out.value("kilometrage", getKilometrage());
+		out.value("faulty", getBreakdownTime());
+		StringBuilder location = out.scratch();
+		appendReportLocation(location);
+		out.value("location", location);
+		out.endSection();
 	}
 
 	/**
-	 * Devuelve la localización del {@code Vehicle}
-	 * como debe mostrarse en los informes generados
-	 * por el simulador.
+	 * Añade a un {@code StringBuilder} la localización 
+	 * del {@code Vehicle} como debe mostrarse en los 
+	 * informes generados por el simulador.
 	 * 
-	 * @return	{@code String} con la localización
-	 * 			correcta para el informe
+	 * @param location 	- {@code StringBuilder} de destino
 	 */
-	protected String getReportLocation() {
-		return 	hasArrived ? 
-					"arrived" : 
-					"(" + road.getID() + "," + location + ")";
+	protected void appendReportLocation(StringBuilder location) {
+		if ( hasArrived() ) {
+			location.append("arrived");
+		}
+		else {
+			location.append('(').append(getRoad().getID())
+					.append(',').append(getLocation()).append(')');
+		}
 	}
 
 	/**
@@ -233,11 +219,11 @@ public class Vehicle extends SimObject {
 	public void describe(Map<String, Object> out) {
 		// Strings
 		String type = getType();
-		String road = this.road.getID();
+		String road = getRoad().getID();
 		String location = getDescriptionLocation();
-		String speed = Integer.toString(this.actualSpeed);
-		String km = Integer.toString(this.kilometrage);
-		String faulty = Integer.toString(this.breakdownTime);
+		String speed = Integer.toString(getActualSpeed());
+		String km = Integer.toString(getKilometrage());
+		String faulty = Integer.toString(getBreakdownTime());
 		String route = getRouteDescription();
 
 		// Map update
@@ -264,8 +250,8 @@ public class Vehicle extends SimObject {
 		StringBuilder route = new StringBuilder();
 
 		route.append("[");
-		for (Junction j : trip) {
-			route.append( j.getID() );
+		for (int i = 0; i < trip.size(); ++i) {
+			route.append( trip.getJunction(i).getID() );
 			route.append(",");
 		}
 
@@ -288,9 +274,9 @@ public class Vehicle extends SimObject {
 	 * 			de la localización
 	 */
 	protected String getDescriptionLocation() {
-		return 	hasArrived ?
+		return 	hasArrived() ?
 					"arrived" :
-					Integer.toString(location);
+					Integer.toString(getLocation());
 	}
 
 	/**
@@ -305,42 +291,44 @@ public class Vehicle extends SimObject {
 	 * 								siguiente carretera
 	 */
 	public void moveToNextRoad() throws SimulationException {
+		int lastTripPos = getLastTripPos();
 		int waitingPos = lastTripPos + 1; // Cruce donde estaba esperando
 		int nextWaitingPos = waitingPos + 1; // Cruce donde debe acabar la siguiente road
 
 		if ( nextWaitingPos == trip.size() ) {
 			// Última vez. El cruce donde se espera es el destino final.
-			hasArrived = true;
+			setFlag(VehicleStore.ARRIVED, true);
 		}				 
 		else {
 			// Cambio normal de una road a otra.
 			try {
-				Junction fromJunction = trip.get(waitingPos);
-				Junction nextJunction = trip.get(nextWaitingPos);
-				road = fromJunction.getRoadTo(nextJunction);
-				
-				road.pushVehicle(this);
+				trip.getRoad(waitingPos).pushVehicle(slot);
 
-				location = 0;
+				store.setInt(slot, VehicleStore.LOCATION, 0);
 			} catch (SimulationException e) {
 				throw e;
 			}			
 		}
 
 		// Se ha pasado ya la siguiente Junction
-		lastTripPos++;
+		store.setInt(slot, VehicleStore.TRIP_POS, lastTripPos + 1);
 		// El vehículo ya no está esperando
-		isWaiting = false;
+		setFlag(VehicleStore.WAITING, false);
 	}
 	
 	/**
-	 * Añade más tiempo de avería al ya existente.
+	 * Añade más tiempo de avería al ya existente. Si el 
+	 * {@code Vehicle} no estaba averiado, cuenta como 
+	 * una avería nueva.
 	 * 
 	 * @param addedBreakdownTime 	- tiempo de avería 
 	 * 								a sumar
 	 */
 	public void setBreakdownTime(int addedBreakdownTime)  {
-		breakdownTime += addedBreakdownTime;
+		if ( addedBreakdownTime > 0 && ! isFaulty() ) {
+			store.setInt(slot, VehicleStore.FAULTS, getNumFaults() + 1);
+		}
+		store.setInt(slot, VehicleStore.BREAKDOWN, getBreakdownTime() + addedBreakdownTime);
 	}	
 	
 	/**
@@ -353,13 +341,27 @@ public class Vehicle extends SimObject {
 	 * 						la {@code Road}
 	 */
 	public void setSpeed(int roadSpeed) {
-		if (breakdownTime == 0 ) {
-			actualSpeed = Math.min(roadSpeed, maxSpeed);
+		setSpeed(store, slot, roadSpeed);
+	}	
+
+	/**
+	 * Modifica la velocidad del {@code Vehicle} de una 
+	 * fila como {@link #setSpeed(int)}, sin pasar por él.
+	 * 
+	 * @param store 		- almacén del {@code Vehicle}
+	 * @param slot 			- fila del {@code Vehicle}
+	 * @param roadSpeed 	- velocidad permitida por 
+	 * 						la {@code Road}
+	 */
+	static void setSpeed(VehicleStore store, int slot, int roadSpeed) {
+		if ( store.getInt(slot, VehicleStore.BREAKDOWN) == 0 ) {
+			store.setInt(slot, VehicleStore.SPEED, 
+					Math.min(roadSpeed, store.getInt(slot, VehicleStore.MAX_SPEED)));
 		}
 		else {
-			actualSpeed = 0;
+			store.setInt(slot, VehicleStore.SPEED, 0);
 		}
-	}	
+	}
 	
 	/**
 	 * Devuelve el tiempo restante de avería 
@@ -368,7 +370,7 @@ public class Vehicle extends SimObject {
 	 * @return 	tiempo de avería
 	 */
 	public int getBreakdownTime() {
-		return breakdownTime;
+		return store.getInt(slot, VehicleStore.BREAKDOWN);
 	}
 
 	/**
@@ -379,9 +381,142 @@ public class Vehicle extends SimObject {
 	 * 			{@code Vehicle}
 	 */
 	public int getLocation() {
-		return location;
+		return store.getInt(slot, VehicleStore.LOCATION);
+	}
+
+	/**
+	 * Devuelve la máxima velocidad que puede alcanzar 
+	 * el {@code Vehicle} en cualquier vía.
+	 * 
+	 * @return 	la velocidad máxima
+	 */
+	public int getMaxSpeed() {
+		return store.getInt(slot, VehicleStore.MAX_SPEED);
+	}
+
+	/**
+	 * Devuelve la velocidad actual del {@code Vehicle}.
+	 * 
+	 * @return 	la velocidad actual
+	 */
+	public int getActualSpeed() {
+		return store.getInt(slot, VehicleStore.SPEED);
+	}
+
+	/**
+	 * Fija la velocidad actual del {@code Vehicle}.
+	 * 
+	 * @param speed 	- nueva velocidad
+	 */
+	protected void setActualSpeed(int speed) {
+		store.setInt(slot, VehicleStore.SPEED, speed);
+	}
+
+	/**
+	 * Devuelve la distancia recorrida por el 
+	 * {@code Vehicle} desde que empezó la simulación.
+	 * 
+	 * @return 	el kilometraje
+	 */
+	public int getKilometrage() {
+		return store.getInt(slot, VehicleStore.KILOMETRAGE);
+	}
+
+	/**
+	 * Suma una distancia al kilometraje.
+	 * 
+	 * @param km 	- distancia recorrida
+	 */
+	private void addKilometrage(int km) {
+		store.setInt(slot, VehicleStore.KILOMETRAGE, getKilometrage() + km);
+	}
+
+	/**
+	 * Devuelve la posición en {@code trip} de la 
+	 * última {@code Junction} por la que ha pasado
+	 * el {@code Vehicle}.
+	 * 
+	 * @return 	posición en la ruta
+	 */
+	protected int getLastTripPos() {
+		return store.getInt(slot, VehicleStore.TRIP_POS);
+	}
+
+	/**
+	 * Devuelve si el {@code Vehicle} ha llegado a su 
+	 * destino, es decir, a la última {@code Junction} 
+	 * de {@code trip}.
+	 * 
+	 * @return 	si ha llegado
+	 */
+	public boolean hasArrived() {
+		return ( store.getInt(slot, VehicleStore.FLAGS) & VehicleStore.ARRIVED ) != 0;
+	}
+
+	/**
+	 * Devuelve si el {@code Vehicle} está esperando 
+	 * en la cola de una {@code Road} para cruzar 
+	 * una {@code Junction}.
+	 * 
+	 * @return 	si está esperando
+	 */
+	public boolean isWaiting() {
+		return ( store.getInt(slot, VehicleStore.FLAGS) & VehicleStore.WAITING ) != 0;
+	}
+
+	/**
+	 * Activa o desactiva un indicador de {@code FLAGS}.
+	 * 
+	 * @param flag 		- indicador
+	 * @param value 	- nuevo valor
+	 */
+	private void setFlag(int flag, boolean value) {
+		int flags = store.getInt(slot, VehicleStore.FLAGS);
+		flags = value ? ( flags | flag ) : ( flags & ~flag );
+		store.setInt(slot, VehicleStore.FLAGS, flags);
 	}
 	
+	/**
+	 * Devuelve la ruta compilada del {@code Vehicle}.
+	 * 
+	 * @return 	ruta del {@code Vehicle}
+	 */
+	public Route getRoute() {
+		return trip;
+	}
+
+	/**
+	 * Devuelve la {@code Road} por la que circula el 
+	 * {@code Vehicle}: la que sale de la última 
+	 * {@code Junction} por la que ha pasado o, si ha 
+	 * llegado, la última de su {@code trip}.
+	 * 
+	 * @return 	{@code Road} actual
+	 */
+	public Road getRoad() {
+		return trip.getFoundRoad( Math.min(getLastTripPos(), trip.size() - 2) );
+	}
+
+	/**
+	 * Devuelve la fila del {@code Vehicle} 
+	 * en su almacén.
+	 * 
+	 * @return 	{@code slot}
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Devuelve el número de averías que ha 
+	 * sufrido el {@code Vehicle}.
+	 * 
+	 * @return 	número de averías
+	 */
+	public int getNumFaults() {
+		return store.getInt(slot, VehicleStore.FAULTS);
+	}
+
 	/**
 	 * Devuelve si el {@code Vehicle} 
 	 * está averiado.
@@ -389,9 +524,99 @@ public class Vehicle extends SimObject {
 	 * @return si hay avería
 	 */
 	public boolean isFaulty() {
-		return (breakdownTime > 0);
+		return ( getBreakdownTime() > 0 );
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Un {@code Vehicle} se construye además con su 
+	 * velocidad máxima. Su {@code Route} la guarda 
+	 * aparte el checkpoint, que la comparte.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeDefinition(DataOutput out) throws IOException {
+		super.writeDefinition(out);
+		out.writeInt(getMaxSpeed());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En un {@code Vehicle}, todas sus columnas del 
+	 * {@code VehicleStore}, incluido el estado del 
+	 * generador aleatorio de los {@code CarVehicle}s. 
+	 * De la posición en la ruta sale su {@code Road}.
+	 * </p>
+	 * 
+	 * @param out 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		for (int column = 0; column < VehicleStore.COLUMNS; ++column) {
+			out.writeInt(store.getInt(slot, column));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @param in 	- {@inheritDoc}
+	 * @param map 	- {@inheritDoc}
+	 * 
+	 * @throws IOException 	{@inheritDoc}
+	 */
+	@Override
+	public void readState(DataInput in, RoadMap map) throws IOException {
+		for (int column = 0; column < VehicleStore.COLUMNS; ++column) {
+			store.setInt(slot, column, in.readInt());
+		}
+
+		int tripPos = getLastTripPos();
+		if ( tripPos < 0 || tripPos >= trip.size() 
+				|| getRoad() == null ) {
+			throw new IOException("Invalid route position in checkpoint: " + tripPos);
+		}
+	}
+
+	/**
+	 * Crea un {@code Vehicle} con la misma definición y 
+	 * fila para otra simulación, con 
+	 * {@link #Vehicle(Vehicle, Route, VehicleStore)}.
+	 * 
+	 * @param trp 		- ruta compilada en la 
+	 * 					otra simulación
+	 * @param vehicles 	- almacén de la otra simulación, 
+	 * 					de {@link VehicleStore#share()}
+	 * 
+	 * @return 			{@code Vehicle} copiado
+	 */
+	public Vehicle copy(Route trp, VehicleStore vehicles) {
+		return new Vehicle(this, trp, vehicles);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * En un {@code Vehicle}, nada: sus columnas las comparte 
+	 * ya el almacén copiado y su {@code Road} sale de ellas 
+	 * y de la {@code Route} copiada.
+	 * </p>
+	 * 
+	 * @param source 	- {@inheritDoc}
+	 * @param map 		- {@inheritDoc}
+	 */
+	@Override
+	public void copyState(SimObject source, RoadMap map) {
+	}
+
 	/**
 	 * Devuelve un {@code String} con el tipo de 
 	 * {@code Vehicle} que debe ponerse como valor 
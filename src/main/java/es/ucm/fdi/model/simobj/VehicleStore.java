@@ -0,0 +1,251 @@
+package es.ucm.fdi.model.simobj;
+
+/**
+ * Almacén del estado variable de los {@link Vehicle}s de una 
+ * simulación, organizado en columnas de enteros (una por 
+ * atributo) en lugar de en campos de cada objeto. Cada 
+ * {@code Vehicle} ocupa una fila, {@code slot}, que se le 
+ * asigna al crearse con {@link #allocate()}.
+ * <p>
+ * Cada columna se divide en páginas de {@link #PAGE_ROWS} 
+ * filas. Las subclases deciden dónde se guardan las páginas: 
+ * en arrays del heap o en memoria directa, fuera del heap. 
+ * Al llenarse, las columnas crecen una página sin copiar 
+ * las que ya tienen.
+ * </p> <p>
+ * Con {@link #share()} dos almacenes comparten sus páginas 
+ * hasta que uno escribe en ellas: cada uno copia una página 
+ * compartida la primera vez que escribe en ella, así que 
+ * sólo se copian las filas que tienen cerca alguna escrita.
+ * </p> <p>
+ * Varios hilos pueden leer y escribir a la vez filas 
+ * distintas de páginas no compartidas, pero 
+ * {@link #allocate()}, {@link #clear()} y 
+ * {@link #unshare()} sólo deben llamarse desde un 
+ * único hilo.
+ * </p>
+ */
+public abstract class VehicleStore {
+
+	/**
+	 * Columna con la localización en la {@code Road}.
+	 */
+	public static final int LOCATION = 0;
+
+	/**
+	 * Columna con la velocidad actual.
+	 */
+	public static final int SPEED = 1;
+
+	/**
+	 * Columna con la distancia recorrida.
+	 */
+	public static final int KILOMETRAGE = 2;
+
+	/**
+	 * Columna con el tiempo restante de avería.
+	 */
+	public static final int BREAKDOWN = 3;
+
+	/**
+	 * Columna con la posición en la ruta de la última 
+	 * {@code Junction} por la que se ha pasado.
+	 */
+	public static final int TRIP_POS = 4;
+
+	/**
+	 * Columna con los indicadores {@link #ARRIVED} 
+	 * y {@link #WAITING}.
+	 */
+	public static final int FLAGS = 5;
+
+	/**
+	 * Columna con la distancia recorrida desde la última 
+	 * avería (sólo {@code CarVehicle}s).
+	 */
+	public static final int KM_SINCE_FAULTY = 6;
+
+	/**
+	 * Columnas con la mitad alta y baja del estado del 
+	 * generador aleatorio (sólo {@code CarVehicle}s).
+	 */
+	public static final int RANDOM_HIGH = 7, RANDOM_LOW = 8;
+
+	/**
+	 * Columna con el número de averías sufridas.
+	 */
+	public static final int FAULTS = 9;
+
+	/**
+	 * Columna con la velocidad máxima alcanzable. No cambia 
+	 * tras crear el {@code Vehicle}, pero se guarda con el 
+	 * resto para que las {@code Road}s fijen la velocidad 
+	 * de sus {@code Vehicle}s sin pasar por ellos.
+	 */
+	public static final int MAX_SPEED = 10;
+
+	/**
+	 * Número de columnas del almacén.
+	 */
+	protected static final int COLUMNS = 11;
+
+	/**
+	 * Indicador de {@code Vehicle} llegado a su destino.
+	 */
+	public static final int ARRIVED = 1;
+
+	/**
+	 * Indicador de {@code Vehicle} esperando en un cruce.
+	 */
+	public static final int WAITING = 2;
+
+	/**
+	 * Logaritmo en base 2 del número de filas de una página.
+	 */
+	protected static final int PAGE_SHIFT = 8;
+
+	/**
+	 * Número de filas de cada página de una columna.
+	 */
+	protected static final int PAGE_ROWS = 1 << PAGE_SHIFT;
+
+	/**
+	 * Máscara de la fila dentro de su página.
+	 */
+	protected static final int PAGE_MASK = PAGE_ROWS - 1;
+
+	/**
+	 * Número de filas ocupadas.
+	 */
+	private int size = 0;
+
+	/**
+	 * Reserva una fila nueva, con todas sus 
+	 * columnas a {@code 0}.
+	 * 
+	 * @return 	índice de la fila
+	 */
+	public int allocate() {
+		if ( size == capacity() ) {
+			grow();
+		}
+
+		return size++;
+	}
+
+	/**
+	 * Vacía el almacén.
+	 */
+	public void clear() {
+		size = 0;
+		reset();
+	}
+
+	/**
+	 * Devuelve el número de filas ocupadas.
+	 * 
+	 * @return 	número de {@code Vehicle}s
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Devuelve un valor de 64 bits guardado en dos columnas.
+	 * 
+	 * @param slot 	- fila
+	 * @param high 	- columna con la mitad alta
+	 * @param low 	- columna con la mitad baja
+	 * 
+	 * @return 		valor guardado
+	 */
+	public long getLong(int slot, int high, int low) {
+		return ( (long) getInt(slot, high) << 32 ) | ( getInt(slot, low) & 0xFFFFFFFFL );
+	}
+
+	/**
+	 * Guarda un valor de 64 bits en dos columnas.
+	 * 
+	 * @param slot 	- fila
+	 * @param high 	- columna con la mitad alta
+	 * @param low 	- columna con la mitad baja
+	 * @param value - valor a guardar
+	 */
+	public void setLong(int slot, int high, int low, long value) {
+		setInt(slot, high, (int) (value >>> 32));
+		setInt(slot, low, (int) value);
+	}
+
+	/**
+	 * Crea un almacén con el mismo contenido que éste 
+	 * y que comparte con él sus páginas. Cada uno copia 
+	 * una página la primera vez que escribe en ella, así 
+	 * que ninguno ve lo que escribe el otro. Sólo se copia 
+	 * la tabla de páginas de cada columna.
+	 * 
+	 * @return 	almacén copiado
+	 */
+	public VehicleStore share() {
+		VehicleStore copy = shareColumns();
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Devuelve el valor de una columna de una fila.
+	 * 
+	 * @param slot 		- fila
+	 * @param column 	- columna
+	 * 
+	 * @return 			valor guardado
+	 */
+	public abstract int getInt(int slot, int column);
+
+	/**
+	 * Guarda el valor de una columna de una fila.
+	 * 
+	 * @param slot 		- fila
+	 * @param column 	- columna
+	 * @param value 	- valor a guardar
+	 */
+	public abstract void setInt(int slot, int column, int value);
+
+	/**
+	 * Devuelve el número de filas que caben en 
+	 * las columnas sin ampliarlas.
+	 * 
+	 * @return 	capacidad de las columnas
+	 */
+	protected abstract int capacity();
+
+	/**
+	 * Añade a cada columna una página nueva, con sus 
+	 * filas a {@code 0}, sin copiar las que ya tiene 
+	 * ni dejar de compartirlas.
+	 */
+	protected abstract void grow();
+
+	/**
+	 * Devuelve las columnas a una sola página, 
+	 * con todas las filas a {@code 0}.
+	 */
+	protected abstract void reset();
+
+	/**
+	 * Copia las páginas que aún comparte con otro 
+	 * almacén, para que después puedan escribir en 
+	 * ellas varios hilos a la vez: dos hilos que 
+	 * escribieran en filas distintas de una página 
+	 * compartida la copiarían a la vez.
+	 */
+	public abstract void unshare();
+
+	/**
+	 * Crea un almacén de la misma clase que comparte 
+	 * las páginas con éste, y marca las de ambos 
+	 * como compartidas.
+	 * 
+	 * @return 	almacén con las páginas compartidas
+	 */
+	protected abstract VehicleStore shareColumns();
+}
@@ -0,0 +1,630 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.ucm.fdi.ini.IniStreamWriter;
+import es.ucm.fdi.ini.SectionSink;
+
+/**
+ * Lector de los informes en formato columnar de
+ * {@link ColumnarReportWriter}, bloque a bloque.
+ * <p>
+ * Cada bloque es un tick con informes o un salto de ticks
+ * sin tráfico. Las columnas de un tick sólo se decodifican
+ * cuando se piden, así que leer una columna no obliga a
+ * procesar las demás. Los IDs y tipos se devuelven como
+ * índices del diccionario, que se traducen con
+ * {@link #getName(int)}; las columnas de recuento se
+ * convierten en posiciones con {@link #getOffsets(Column)}.
+ * </p> <p>
+ * {@link #writeIni(SectionSink)} reconstruye los informes
+ * de siempre a partir de las columnas, y {@link #convert}
+ * convierte un fichero entero.
+ * </p>
+ */
+public class ColumnarReportReader {
+
+	/**
+	 * Número mágico del formato ("TSCR").
+	 */
+	static final int MAGIC = 0x54534352;
+
+	/**
+	 * Versión del formato.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Tipos de bloque.
+	 */
+	static final int TICK = 1, UNCHANGED = 2;
+
+	/**
+	 * Primer byte del número mágico, con el que empieza
+	 * cada fichero concatenado.
+	 */
+	private static final int MAGIC_START = MAGIC >>> 24;
+
+	/**
+	 * Cómo se codifican los valores de una columna.
+	 */
+	enum Encoding {
+		/** Índice del diccionario, en diferencias con el anterior. */
+		ID,
+		/** Índice del diccionario más uno, o 0 si no hay. */
+		NAME,
+		/** Entero con signo. */
+		INT
+	}
+
+	/**
+	 * Columnas de cada tick, en el orden en que se guardan.
+	 * Las de {@code Junction}s tienen una fila por
+	 * {@code Junction}, salvo las de colas ({@code QUEUE_*}),
+	 * con una por {@code Road} entrante, y
+	 * {@code WAITING_VEHICLE}, con una por {@code Vehicle}
+	 * esperando; igual con las de {@code Road}s y su estado.
+	 */
+	public enum Column {
+		/** ID de la {@code Junction}. */
+		JUNCTION_ID(Encoding.ID),
+		/** Tipo de la {@code Junction}, o -1. */
+		JUNCTION_TYPE(Encoding.NAME),
+		/** Número de colas de la {@code Junction}. */
+		QUEUE_COUNT(Encoding.INT),
+		/** ID de la {@code Road} de la cola. */
+		QUEUE_ROAD(Encoding.ID),
+		/** Semáforo: 1 si está en verde, más 2 si se informa de su tiempo. */
+		QUEUE_LIGHT(Encoding.INT),
+		/** Tiempo restante del semáforo, si se informa. */
+		QUEUE_LIGHT_TIME(Encoding.INT),
+		/** Número de {@code Vehicle}s en la cola. */
+		WAITING_COUNT(Encoding.INT),
+		/** ID de cada {@code Vehicle} en la cola. */
+		WAITING_VEHICLE(Encoding.ID),
+		/** ID de la {@code Road}. */
+		ROAD_ID(Encoding.ID),
+		/** Tipo de la {@code Road}, o -1. */
+		ROAD_TYPE(Encoding.NAME),
+		/** Número de {@code Vehicle}s en el estado de la {@code Road}. */
+		STATE_COUNT(Encoding.INT),
+		/** ID de cada {@code Vehicle} del estado. */
+		STATE_VEHICLE(Encoding.ID),
+		/** Posición de cada {@code Vehicle} del estado. */
+		STATE_LOCATION(Encoding.INT),
+		/** ID del {@code Vehicle}. */
+		VEHICLE_ID(Encoding.ID),
+		/** Tipo del {@code Vehicle}, o -1. */
+		VEHICLE_TYPE(Encoding.NAME),
+		/** Velocidad. */
+		SPEED(Encoding.INT),
+		/** Kilometraje. */
+		KILOMETRAGE(Encoding.INT),
+		/** Tiempo de avería. */
+		FAULTY(Encoding.INT),
+		/** ID de la {@code Road} en que está, o -1 si ha llegado. */
+		VEHICLE_ROAD(Encoding.NAME),
+		/** Posición en la {@code Road}, o 0 si ha llegado. */
+		VEHICLE_LOCATION(Encoding.INT);
+
+		final Encoding encoding;
+
+		Column(Encoding e) {
+			encoding = e;
+		}
+	}
+
+	/**
+	 * Fichero de entrada.
+	 */
+	private final DataInputStream in;
+
+	/**
+	 * Diccionario de IDs y tipos.
+	 */
+	private final List<String> names = new ArrayList<>();
+
+	/**
+	 * Tipo del bloque actual.
+	 */
+	private int kind;
+
+	/**
+	 * Tiempo del bloque actual y, en los
+	 * saltos, el del primer tick saltado.
+	 */
+	private int time, since;
+
+	/**
+	 * Número de {@code Junction}s, {@code Road}s
+	 * y {@code Vehicle}s del tick actual.
+	 */
+	private int numJunctions, numRoads, numVehicles;
+
+	/**
+	 * Contenido del tick actual.
+	 */
+	private byte[] block = new byte[0];
+
+	/**
+	 * Posición y longitud de cada columna en {@code block}.
+	 */
+	private final int[] columnStart = new int[Column.values().length],
+			columnLength = new int[Column.values().length];
+
+	/**
+	 * Columnas ya decodificadas del tick actual.
+	 */
+	private final int[][] decoded = new int[Column.values().length][];
+
+	/**
+	 * Constructor de {@link ColumnarReportReader}.
+	 *
+	 * @param is 	- flujo con los informes
+	 *
+	 * @throws IOException 	if the stream is not
+	 * 						a columnar report
+	 */
+	public ColumnarReportReader(InputStream is) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(is));
+		readHeader(in.readInt());
+	}
+
+	/**
+	 * Comprueba la cabecera de un fichero.
+	 */
+	private void readHeader(int magic) throws IOException {
+		if ( magic != MAGIC ) {
+			throw new IOException("Not a columnar report file.");
+		}
+		int version = in.readInt();
+		if ( version != VERSION ) {
+			throw new IOException(
+				"Unsupported columnar report version: " + version);
+		}
+		names.clear();
+	}
+
+	/**
+	 * Indica si un flujo empieza como un fichero de
+	 * informes columnares, sin consumirlo.
+	 *
+	 * @param is 	- flujo que admita {@code mark}
+	 *
+	 * @return 		si es un fichero columnar
+	 *
+	 * @throws IOException 	if reading fails
+	 */
+	public static boolean isColumnar(InputStream is) throws IOException {
+		is.mark(4);
+		try {
+			int magic = 0;
+			for (int i = 0; i < 4; ++i) {
+				int b = is.read();
+				if ( b < 0 ) {
+					return false;
+				}
+				magic = (magic << 8) | b;
+			}
+			return magic == MAGIC;
+		}
+		finally {
+			is.reset();
+		}
+	}
+
+	/**
+	 * Avanza al siguiente bloque.
+	 *
+	 * @return 	{@code false} si no quedan bloques
+	 *
+	 * @throws IOException 	if reading fails or the
+	 * 						block is not valid
+	 */
+	public boolean next() throws IOException {
+		int b = in.read();
+		// Ficheros concatenados, como los de una
+		// simulación reanudada desde un checkpoint.
+		while ( b == MAGIC_START ) {
+			readHeader((b << 24) | (in.readUnsignedByte() << 16)
+					| in.readUnsignedShort());
+			b = in.read();
+		}
+		if ( b < 0 ) {
+			return false;
+		}
+
+		kind = b;
+		switch (kind) {
+			case UNCHANGED:
+				since = readVarInt(in);
+				time = readVarInt(in);
+				numJunctions = numRoads = numVehicles = 0;
+				break;
+			case TICK:
+				time = readVarInt(in);
+				readTick(readVarInt(in));
+				break;
+			default:
+				throw new IOException("Invalid columnar block: " + kind);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Lee el contenido de un tick.
+	 */
+	private void readTick(int length) throws IOException {
+		if ( block.length < length ) {
+			block = new byte[length];
+		}
+		in.readFully(block, 0, length);
+
+		DataInputStream body = new DataInputStream(
+				new ByteArrayInputStream(block, 0, length));
+		int newNames = readVarInt(body);
+		for (int i = 0; i < newNames; ++i) {
+			names.add(body.readUTF());
+		}
+		numJunctions = readVarInt(body);
+		numRoads = readVarInt(body);
+		numVehicles = readVarInt(body);
+
+		int pos = length - body.available();
+		for (Column c : Column.values()) {
+			int[] lengthAt = { pos };
+			columnLength[c.ordinal()] = readVarInt(block, lengthAt);
+			columnStart[c.ordinal()] = lengthAt[0];
+			pos = lengthAt[0] + columnLength[c.ordinal()];
+			decoded[c.ordinal()] = null;
+		}
+		if ( pos != length ) {
+			throw new IOException("Invalid columnar block at time " + time);
+		}
+	}
+
+	/**
+	 * Indica si el bloque actual es un salto de ticks
+	 * sin tráfico, sin informes de objetos.
+	 *
+	 * @return 	si es un salto
+	 */
+	public boolean isUnchanged() {
+		return kind == UNCHANGED;
+	}
+
+	/**
+	 * Devuelve el tiempo del bloque actual: el del
+	 * tick o el último de los saltados.
+	 *
+	 * @return 	tiempo del bloque
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Devuelve el primer tick saltado, si el
+	 * bloque actual es un salto.
+	 *
+	 * @return 	primer tick saltado
+	 */
+	public int getSince() {
+		return since;
+	}
+
+	/**
+	 * @return 	número de {@code Junction}s del tick
+	 */
+	public int numJunctions() {
+		return numJunctions;
+	}
+
+	/**
+	 * @return 	número de {@code Road}s del tick
+	 */
+	public int numRoads() {
+		return numRoads;
+	}
+
+	/**
+	 * @return 	número de {@code Vehicle}s del tick
+	 */
+	public int numVehicles() {
+		return numVehicles;
+	}
+
+	/**
+	 * Devuelve el ID o tipo de un índice del diccionario.
+	 *
+	 * @param index 	- índice del diccionario
+	 *
+	 * @return 			ID o tipo
+	 */
+	public String getName(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * Devuelve una columna del tick actual, decodificándola
+	 * sólo la primera vez que se pide.
+	 *
+	 * @param c 	- columna
+	 *
+	 * @return 		valores de la columna, que no
+	 * 				deben modificarse
+	 *
+	 * @throws IOException 	if the column is not valid
+	 */
+	public int[] getColumn(Column c) throws IOException {
+		int[] values = decoded[c.ordinal()];
+		if ( values != null ) {
+			return values;
+		}
+
+		int[] pos = { columnStart[c.ordinal()] };
+		int end = pos[0] + columnLength[c.ordinal()];
+		int[] read = new int[16];
+		int n = 0, last = 0;
+		while ( pos[0] < end ) {
+			int v = readVarInt(block, pos);
+			switch (c.encoding) {
+				case ID:
+					last += zigzagDecode(v);
+					v = last;
+					break;
+				case NAME:
+					v = v - 1;
+					break;
+				default:
+					v = zigzagDecode(v);
+			}
+			if ( n == read.length ) {
+				read = Arrays.copyOf(read, 2 * n);
+			}
+			read[n++] = v;
+		}
+
+		values = Arrays.copyOf(read, n);
+		decoded[c.ordinal()] = values;
+		return values;
+	}
+
+	/**
+	 * Convierte una columna de recuentos en las posiciones
+	 * de inicio de cada fila en la columna que cuenta,
+	 * con una posición final más.
+	 *
+	 * @param counts 	- columna de recuentos, como
+	 * 					{@code STATE_COUNT}
+	 *
+	 * @return 			posiciones de inicio
+	 *
+	 * @throws IOException 	if the column is not valid
+	 */
+	public int[] getOffsets(Column counts) throws IOException {
+		int[] values = getColumn(counts);
+		int[] offsets = new int[values.length + 1];
+		for (int i = 0; i < values.length; ++i) {
+			offsets[i + 1] = offsets[i] + values[i];
+		}
+		return offsets;
+	}
+
+	/**
+	 * Escribe los informes del bloque actual en el
+	 * formato {@code .ini} de siempre.
+	 *
+	 * @param out 	- destino de las secciones
+	 *
+	 * @throws IOException 	if the block is not valid
+	 */
+	public void writeIni(SectionSink out) throws IOException {
+		if ( isUnchanged() ) {
+			out.beginSection("unchanged_report");
+			out.value("since", since);
+			out.value("time", time);
+			out.endSection();
+			return;
+		}
+
+		writeJunctions(out);
+		writeRoads(out);
+		writeVehicles(out);
+	}
+
+	/**
+	 * Escribe los informes de las {@code Junction}s.
+	 */
+	private void writeJunctions(SectionSink out) throws IOException {
+		int[] ids = getColumn(Column.JUNCTION_ID);
+		int[] types = getColumn(Column.JUNCTION_TYPE);
+		int[] queues = getOffsets(Column.QUEUE_COUNT);
+		int[] roads = getColumn(Column.QUEUE_ROAD);
+		int[] lights = getColumn(Column.QUEUE_LIGHT);
+		int[] lightTimes = getColumn(Column.QUEUE_LIGHT_TIME);
+		int[] waiting = getOffsets(Column.WAITING_COUNT);
+		int[] vehicles = getColumn(Column.WAITING_VEHICLE);
+
+		for (int j = 0; j < numJunctions; ++j) {
+			out.beginSection("junction_report");
+			out.value("id", names.get(ids[j]));
+			out.value("time", time);
+
+			StringBuilder value = out.scratch();
+			for (int q = queues[j]; q < queues[j + 1]; ++q) {
+				if ( q > queues[j] ) {
+					value.append(',');
+				}
+				value.append('(').append(names.get(roads[q])).append(',');
+				value.append((lights[q] & 1) != 0 ? "green" : "red");
+				if ( (lights[q] & 2) != 0 ) {
+					value.append(':').append(lightTimes[q]);
+				}
+				value.append(",[");
+				for (int w = waiting[q]; w < waiting[q + 1]; ++w) {
+					if ( w > waiting[q] ) {
+						value.append(',');
+					}
+					value.append(names.get(vehicles[w]));
+				}
+				value.append("])");
+			}
+			out.value("queues", value);
+
+			if ( types[j] >= 0 ) {
+				out.value("type", names.get(types[j]));
+			}
+			out.endSection();
+		}
+	}
+
+	/**
+	 * Escribe los informes de las {@code Road}s.
+	 */
+	private void writeRoads(SectionSink out) throws IOException {
+		int[] ids = getColumn(Column.ROAD_ID);
+		int[] types = getColumn(Column.ROAD_TYPE);
+		int[] state = getOffsets(Column.STATE_COUNT);
+		int[] vehicles = getColumn(Column.STATE_VEHICLE);
+		int[] locations = getColumn(Column.STATE_LOCATION);
+
+		for (int r = 0; r < numRoads; ++r) {
+			out.beginSection("road_report");
+			out.value("id", names.get(ids[r]));
+			out.value("time", time);
+			if ( types[r] >= 0 ) {
+				out.value("type", names.get(types[r]));
+			}
+
+			StringBuilder value = out.scratch();
+			for (int v = state[r]; v < state[r + 1]; ++v) {
+				if ( v > state[r] ) {
+					value.append(',');
+				}
+				value.append('(').append(names.get(vehicles[v]))
+						.append(',').append(locations[v]).append(')');
+			}
+			out.value("state", value);
+			out.endSection();
+		}
+	}
+
+	/**
+	 * Escribe los informes de los {@code Vehicle}s.
+	 */
+	private void writeVehicles(SectionSink out) throws IOException {
+		int[] ids = getColumn(Column.VEHICLE_ID);
+		int[] types = getColumn(Column.VEHICLE_TYPE);
+		int[] speeds = getColumn(Column.SPEED);
+		int[] kilometrages = getColumn(Column.KILOMETRAGE);
+		int[] faulties = getColumn(Column.FAULTY);
+		int[] roads = getColumn(Column.VEHICLE_ROAD);
+		int[] locations = getColumn(Column.VEHICLE_LOCATION);
+
+		for (int v = 0; v < numVehicles; ++v) {
+			out.beginSection("vehicle_report");
+			out.value("id", names.get(ids[v]));
+			out.value("time", time);
+			if ( types[v] >= 0 ) {
+				out.value("type", names.get(types[v]));
+			}
+			out.value("speed", speeds[v]);
+			out.value("kilometrage", kilometrages[v]);
+			out.value("faulty", faulties[v]);
+
+			StringBuilder value = out.scratch();
+			if ( roads[v] < 0 ) {
+				value.append("arrived");
+			}
+			else {
+				value.append('(').append(names.get(roads[v]))
+						.append(',').append(locations[v]).append(')');
+			}
+			out.value("location", value);
+			out.endSection();
+		}
+	}
+
+	/**
+	 * Convierte un fichero de informes columnares
+	 * al formato {@code .ini} de siempre.
+	 *
+	 * @param is 	- informes columnares
+	 * @param os 	- destino de los informes {@code .ini}
+	 *
+	 * @throws IOException 	if reading or writing fails
+	 */
+	public static void convert(InputStream is, OutputStream os)
+			throws IOException {
+
+		ColumnarReportReader reader = new ColumnarReportReader(is);
+		IniStreamWriter writer = new IniStreamWriter(os);
+		while ( reader.next() ) {
+			reader.writeIni(writer);
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Lee un entero sin signo en base 128.
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if ( b < 0 ) {
+				throw new EOFException("Truncated columnar report.");
+			}
+			value |= (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid varint in columnar report.");
+	}
+
+	/**
+	 * Lee un entero sin signo en base 128 de un
+	 * array, avanzando la posición {@code pos[0]}.
+	 */
+	private static int readVarInt(byte[] bytes, int[] pos) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if ( pos[0] >= bytes.length ) {
+				throw new EOFException("Truncated columnar report.");
+			}
+			int b = bytes[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid varint in columnar report.");
+	}
+
+	/**
+	 * Deshace la codificación zigzag de un entero con signo.
+	 */
+	static int zigzagDecode(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Codifica en zigzag un entero con signo, de forma
+	 * que los valores pequeños ocupen pocos bytes.
+	 */
+	static int zigzagEncode(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+}
@@ -0,0 +1,548 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.ucm.fdi.ini.SectionSink;
+import es.ucm.fdi.model.simulation.ColumnarReportReader.Column;
+
+/**
+ * Escribe los informes de la simulación en un formato
+ * binario por columnas, mucho más compacto que el
+ * {@code .ini} y que se puede analizar columna a columna.
+ * <p>
+ * Recibe las mismas secciones que el escritor de texto y
+ * las reparte en columnas, que se escriben como un bloque
+ * por tick, en cada {@link #flush()} o al llegar las
+ * secciones del tick siguiente.
+ * Los IDs y tipos se guardan en un diccionario que crece
+ * con cada bloque, y las columnas de IDs como diferencias
+ * con el anterior. Los estados de las {@code Road}s y las
+ * colas de las {@code Junction}s se guardan aplanados,
+ * con una columna de recuentos por fila.
+ * </p> <p>
+ * Todos los enteros se guardan en base 128, con los de
+ * signo en zigzag, y cada columna lleva delante su
+ * longitud para poder saltarla sin decodificarla.
+ * {@link ColumnarReportReader} lee el formato y lo
+ * convierte de nuevo en {@code .ini}.
+ * </p>
+ */
+public class ColumnarReportWriter implements SectionSink, Flushable {
+
+	/**
+	 * Flujo de salida original.
+	 */
+	private final OutputStream file;
+
+	/**
+	 * Flujo de salida de los bloques.
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * Si ya se ha escrito la cabecera.
+	 */
+	private boolean header = false;
+
+	/**
+	 * Índice de cada ID o tipo en el diccionario.
+	 */
+	private final Map<String, Integer> names = new HashMap<>();
+
+	/**
+	 * IDs y tipos añadidos al diccionario en este tick.
+	 */
+	private final List<String> newNames = new ArrayList<>();
+
+	/**
+	 * Valores de cada columna en el tick actual.
+	 */
+	private final IntColumn[] columns = new IntColumn[Column.values().length];
+
+	/**
+	 * Número de {@code Junction}s, {@code Road}s
+	 * y {@code Vehicle}s del tick actual.
+	 */
+	private int numJunctions, numRoads, numVehicles;
+
+	/**
+	 * Tiempo del tick actual, o {@code -1} si aún
+	 * no hay secciones.
+	 */
+	private int time = -1;
+
+	/**
+	 * Primer y último tick del salto pendiente de
+	 * escribir, o {@code -1} si no lo hay.
+	 */
+	private int unchangedSince, unchangedTime = -1;
+
+	/**
+	 * Etiqueta de la sección actual.
+	 */
+	private String tag;
+
+	/**
+	 * Valores de la sección actual que se añaden a
+	 * las columnas al cerrarla: ID, tipo (-1 si no
+	 * hay), y los de la sección {@code unchanged_report}.
+	 */
+	private int id, type, since, sectionTime;
+
+	/**
+	 * Contenido de un bloque antes de escribirlo.
+	 */
+	private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+	/**
+	 * Contenido de una columna antes de escribirla.
+	 */
+	private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+	/**
+	 * Constructor de {@link StringBuilder} que se presta
+	 * a los objetos para construir sus valores.
+	 */
+	private final StringBuilder scratch = new StringBuilder();
+
+	/**
+	 * Columna de enteros que crece según se añaden.
+	 */
+	private static class IntColumn {
+
+		int[] values = new int[64];
+		int size = 0;
+
+		void add(int v) {
+			if ( size == values.length ) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = v;
+		}
+	}
+
+	/**
+	 * Constructor de {@link ColumnarReportWriter}.
+	 *
+	 * @param os 	- flujo de salida
+	 */
+	public ColumnarReportWriter(OutputStream os) {
+		file = os;
+		out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+		for (int i = 0; i < columns.length; ++i) {
+			columns[i] = new IntColumn();
+		}
+	}
+
+	/**
+	 * Devuelve el flujo de salida.
+	 *
+	 * @return 	flujo de salida
+	 */
+	public OutputStream getOutputStream() {
+		return file;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param t 	- {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException 	if the section
+	 * 										is not a report
+	 */
+	@Override
+	public void beginSection(String t) {
+		switch (t) {
+			case "junction_report":
+			case "road_report":
+			case "vehicle_report":
+			case "unchanged_report":
+				break;
+			default:
+				throw new IllegalArgumentException(
+					"Section can't be written as a columnar report: " + t);
+		}
+
+		tag = t;
+		type = -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param key 		- {@inheritDoc}
+	 * @param value 	- {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException 	if the key is not
+	 * 										part of the report
+	 */
+	@Override
+	public void value(String key, CharSequence value) {
+		switch (key) {
+			case "id":
+				id = name(value, 0, value.length());
+				break;
+			case "type":
+				type = name(value, 0, value.length());
+				break;
+			case "queues":
+				parseQueues(value);
+				break;
+			case "state":
+				parseState(value);
+				break;
+			case "location":
+				parseLocation(value);
+				break;
+			default:
+				value(key, Integer.parseInt(value.toString()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param key 		- {@inheritDoc}
+	 * @param value 	- {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException 	if the key is not
+	 * 										part of the report, or
+	 * 										the section is from an
+	 * 										earlier tick or follows
+	 * 										an unchanged report
+	 */
+	@Override
+	public void value(String key, int value) {
+		switch (key) {
+			case "time":
+				sectionTime = value;
+				if ( ! tag.equals("unchanged_report") ) {
+					startTick();
+				}
+				break;
+			case "since":
+				since = value;
+				break;
+			case "speed":
+				column(Column.SPEED).add(value);
+				break;
+			case "kilometrage":
+				column(Column.KILOMETRAGE).add(value);
+				break;
+			case "faulty":
+				column(Column.FAULTY).add(value);
+				break;
+			default:
+				throw new IllegalArgumentException(
+					"Key can't be written as a columnar report: " + key);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endSection() {
+		switch (tag) {
+			case "junction_report":
+				column(Column.JUNCTION_ID).add(id);
+				column(Column.JUNCTION_TYPE).add(type);
+				numJunctions++;
+				break;
+			case "road_report":
+				column(Column.ROAD_ID).add(id);
+				column(Column.ROAD_TYPE).add(type);
+				numRoads++;
+				break;
+			case "vehicle_report":
+				column(Column.VEHICLE_ID).add(id);
+				column(Column.VEHICLE_TYPE).add(type);
+				numVehicles++;
+				break;
+			default:
+				// Se escribe tras el tick actual, si lo hay.
+				unchangedSince = since;
+				unchangedTime = sectionTime;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @return 	{@inheritDoc}
+	 */
+	@Override
+	public StringBuilder scratch() {
+		scratch.setLength(0);
+		return scratch;
+	}
+
+	/**
+	 * Escribe el bloque del tick o del salto actual,
+	 * si lo hay.
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeTick();
+		if ( unchangedTime != -1 ) {
+			writeHeader();
+			out.writeByte(ColumnarReportReader.UNCHANGED);
+			writeVarInt(out, unchangedSince);
+			writeVarInt(out, unchangedTime);
+			unchangedTime = -1;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Empieza el tick de la sección si es otro que el 
+	 * actual, escribiendo antes el bloque de éste: los 
+	 * ticks saltados en reposo llegan juntos, con las 
+	 * {@code Junction}s que cambian en cada uno.
+	 */
+	private void startTick() {
+		if ( unchangedTime != -1 ) {
+			throw new IllegalArgumentException(
+				"Reports in the same columnar block as an unchanged report.");
+		}
+		if ( time != -1 && time != sectionTime ) {
+			if ( sectionTime < time ) {
+				throw new IllegalArgumentException(
+					"Reports of time " + sectionTime + " after time " + time + ".");
+			}
+			try {
+				writeTick();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		time = sectionTime;
+	}
+
+	/**
+	 * Escribe la cabecera antes del primer bloque.
+	 */
+	private void writeHeader() throws IOException {
+		if ( ! header ) {
+			out.writeInt(ColumnarReportReader.MAGIC);
+			out.writeInt(ColumnarReportReader.VERSION);
+			header = true;
+		}
+	}
+
+	/**
+	 * Escribe el bloque del tick actual, si lo hay,
+	 * y vacía las columnas.
+	 */
+	private void writeTick() throws IOException {
+		if ( time == -1 ) {
+			return;
+		}
+
+		block.reset();
+		DataOutputStream body = new DataOutputStream(block);
+		writeVarInt(body, newNames.size());
+		for (String name : newNames) {
+			body.writeUTF(name);
+		}
+		writeVarInt(body, numJunctions);
+		writeVarInt(body, numRoads);
+		writeVarInt(body, numVehicles);
+
+		for (Column c : Column.values()) {
+			encoded.reset();
+			encode(c, columns[c.ordinal()], encoded);
+			writeVarInt(body, encoded.size());
+			encoded.writeTo(body);
+		}
+
+		writeHeader();
+		out.writeByte(ColumnarReportReader.TICK);
+		writeVarInt(out, time);
+		writeVarInt(out, block.size());
+		block.writeTo(out);
+
+		newNames.clear();
+		for (IntColumn column : columns) {
+			column.size = 0;
+		}
+		numJunctions = numRoads = numVehicles = 0;
+		time = -1;
+	}
+
+	/**
+	 * Codifica los valores de una columna.
+	 */
+	private static void encode(Column c, IntColumn column, ByteArrayOutputStream os) {
+		int last = 0;
+		for (int i = 0; i < column.size; ++i) {
+			int v = column.values[i];
+			switch (c.encoding) {
+				case ID:
+					writeVarInt(os, ColumnarReportReader.zigzagEncode(v - last));
+					last = v;
+					break;
+				case NAME:
+					writeVarInt(os, v + 1);
+					break;
+				default:
+					writeVarInt(os, ColumnarReportReader.zigzagEncode(v));
+			}
+		}
+	}
+
+	/**
+	 * Devuelve una columna del tick actual.
+	 */
+	private IntColumn column(Column c) {
+		return columns[c.ordinal()];
+	}
+
+	/**
+	 * Devuelve el índice en el diccionario de un trozo de
+	 * un valor, añadiéndolo si es nuevo.
+	 */
+	private int name(CharSequence value, int start, int end) {
+		String name = value.subSequence(start, end).toString();
+		Integer index = names.get(name);
+		if ( index == null ) {
+			index = names.size();
+			names.put(name, index);
+			newNames.add(name);
+		}
+		return index;
+	}
+
+	/**
+	 * Reparte en columnas las colas de una {@code Junction}:
+	 * "(r1,green:3,[v1,v2]),(r2,red,[])".
+	 */
+	private void parseQueues(CharSequence value) {
+		int queues = 0;
+		int pos = 0;
+		while ( pos < value.length() ) {
+			// (road,
+			int end = indexOf(value, ',', pos + 1);
+			column(Column.QUEUE_ROAD).add(name(value, pos + 1, end));
+
+			// green|red[:time],
+			pos = end + 1;
+			int light = (value.charAt(pos) == 'g') ? 1 : 0;
+			end = indexOf(value, ',', pos);
+			int colon = indexOf(value, ':', pos);
+			int lightTime = 0;
+			if ( colon < end ) {
+				light |= 2;
+				lightTime = Integer.parseInt(value.subSequence(colon + 1, end).toString());
+			}
+			column(Column.QUEUE_LIGHT).add(light);
+			column(Column.QUEUE_LIGHT_TIME).add(lightTime);
+
+			// [v1,v2])
+			pos = end + 2;
+			int waiting = 0;
+			while ( value.charAt(pos) != ']' ) {
+				end = pos;
+				while ( value.charAt(end) != ',' && value.charAt(end) != ']' ) {
+					end++;
+				}
+				column(Column.WAITING_VEHICLE).add(name(value, pos, end));
+				waiting++;
+				pos = (value.charAt(end) == ',') ? end + 1 : end;
+			}
+			column(Column.WAITING_COUNT).add(waiting);
+			queues++;
+
+			// ]),
+			pos += 3;
+		}
+		column(Column.QUEUE_COUNT).add(queues);
+	}
+
+	/**
+	 * Reparte en columnas el estado de una {@code Road}:
+	 * "(v1,5),(v2,3)".
+	 */
+	private void parseState(CharSequence value) {
+		int vehicles = 0;
+		int pos = 0;
+		while ( pos < value.length() ) {
+			int comma = indexOf(value, ',', pos + 1);
+			int end = indexOf(value, ')', comma);
+			column(Column.STATE_VEHICLE).add(name(value, pos + 1, comma));
+			column(Column.STATE_LOCATION).add(
+					Integer.parseInt(value.subSequence(comma + 1, end).toString()));
+			vehicles++;
+
+			// ),
+			pos = end + 2;
+		}
+		column(Column.STATE_COUNT).add(vehicles);
+	}
+
+	/**
+	 * Reparte en columnas la posición de un {@code Vehicle}:
+	 * "(r1,5)" o "arrived".
+	 */
+	private void parseLocation(CharSequence value) {
+		if ( value.charAt(0) != '(' ) {
+			column(Column.VEHICLE_ROAD).add(-1);
+			column(Column.VEHICLE_LOCATION).add(0);
+			return;
+		}
+
+		int comma = indexOf(value, ',', 1);
+		column(Column.VEHICLE_ROAD).add(name(value, 1, comma));
+		column(Column.VEHICLE_LOCATION).add(Integer.parseInt(
+				value.subSequence(comma + 1, value.length() - 1).toString()));
+	}
+
+	/**
+	 * Posición de un carácter a partir de otra, o la
+	 * longitud del valor si no está.
+	 */
+	private static int indexOf(CharSequence value, char c, int from) {
+		int i = from;
+		while ( i < value.length() && value.charAt(i) != c ) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Escribe un entero sin signo en base 128.
+	 */
+	private static void writeVarInt(DataOutputStream os, int v) throws IOException {
+		while ( (v & ~0x7F) != 0 ) {
+			os.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		os.writeByte(v);
+	}
+
+	/**
+	 * Escribe un entero sin signo en base 128.
+	 */
+	private static void writeVarInt(ByteArrayOutputStream os, int v) {
+		while ( (v & ~0x7F) != 0 ) {
+			os.write((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		os.write(v);
+	}
+}
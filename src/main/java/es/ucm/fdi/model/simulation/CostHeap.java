@@ -0,0 +1,74 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Montículo binario de mínimos de índices de
+ * {@code Junction}s con prioridades reales, usado en las
+ * búsquedas de caminos mínimos. Desempata por el menor
+ * índice. Admite entradas repetidas: las ya procesadas
+ * se descartan al sacarlas.
+ */
+class CostHeap {
+
+	private double[] keys = new double[16];
+	private int[] nodes = new int[16];
+	private int size = 0;
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	void push(double key, int node) {
+		if ( size == keys.length ) {
+			keys = Arrays.copyOf(keys, size * 2);
+			nodes = Arrays.copyOf(nodes, size * 2);
+		}
+
+		int i = size++;
+		while ( i > 0 ) {
+			int up = (i - 1) >>> 1;
+			if ( ! less(key, node, keys[up], nodes[up]) ) {
+				break;
+			}
+			keys[i] = keys[up];
+			nodes[i] = nodes[up];
+			i = up;
+		}
+		keys[i] = key;
+		nodes[i] = node;
+	}
+
+	int pop() {
+		int top = nodes[0];
+		double key = keys[--size];
+		int node = nodes[size];
+
+		int i = 0;
+		while ( 2 * i + 1 < size ) {
+			int child = 2 * i + 1;
+			if ( child + 1 < size &&
+					less(keys[child + 1], nodes[child + 1], keys[child], nodes[child]) ) {
+				child++;
+			}
+			if ( ! less(keys[child], nodes[child], key, node) ) {
+				break;
+			}
+			keys[i] = keys[child];
+			nodes[i] = nodes[child];
+			i = child;
+		}
+		keys[i] = key;
+		nodes[i] = node;
+
+		return top;
+	}
+
+	private static boolean less(double k1, int n1, double k2, int n2) {
+		return k1 < k2 || ( k1 == k2 && n1 < n2 );
+	}
+}
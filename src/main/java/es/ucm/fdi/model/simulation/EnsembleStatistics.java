@@ -0,0 +1,156 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+
+/**
+ * Agrega las {@link RunStatistics} de varias réplicas de
+ * un mismo escenario en tablas de medias y percentiles
+ * por {@code Road} y por {@code Vehicle}.
+ * <p>
+ * De cada réplica sólo se guardan sus valores finales,
+ * uno por estadística y objeto, así que las réplicas
+ * pueden descartarse en cuanto se añaden.
+ * </p> <p>
+ * Las tablas se generan como un {@link Ini} con una
+ * sección {@code [road_stats]} por {@code Road} y una
+ * {@code [vehicle_stats]} por {@code Vehicle}. La media
+ * y los percentiles del tick de llegada sólo cuentan
+ * las réplicas en que el {@code Vehicle} llega.
+ * </p>
+ */
+public class EnsembleStatistics {
+
+	/**
+	 * Estadísticas de cada {@code Vehicle}.
+	 */
+	private static final int ARRIVAL = 0, VEHICLE_WAIT = 1, VEHICLE_FAULTS = 2;
+
+	/**
+	 * Estadísticas de cada {@code Road}.
+	 */
+	private static final int ROAD_WAIT = 0, ROAD_FAULTS = 1;
+
+	/**
+	 * Percentiles de las tablas.
+	 */
+	private static final int[] PERCENTILES = { 50, 90 };
+
+	/**
+	 * Número de réplicas.
+	 */
+	private final int replicas;
+
+	/**
+	 * Valores de cada {@code Vehicle}, por su ID:
+	 * {@code [estadística][réplica]}.
+	 */
+	private final Map<String, int[][]> vehicles = new LinkedHashMap<>();
+
+	/**
+	 * Valores de cada {@code Road}, por su ID:
+	 * {@code [estadística][réplica]}.
+	 */
+	private final Map<String, int[][]> roads = new LinkedHashMap<>();
+
+	/**
+	 * Constructor de {@link EnsembleStatistics}.
+	 *
+	 * @param numReplicas 	- número de réplicas
+	 */
+	public EnsembleStatistics(int numReplicas) {
+		replicas = numReplicas;
+	}
+
+	/**
+	 * Añade las estadísticas de una réplica.
+	 *
+	 * @param replica 	- número de la réplica
+	 * @param run 		- sus estadísticas
+	 */
+	public void add(int replica, RunStatistics run) {
+		for (int i = 0; i < run.numRoads(); ++i) {
+			int[][] values = roads.computeIfAbsent(run.getRoadID(i),
+					id -> new int[2][replicas]);
+			values[ROAD_WAIT][replica] = run.getRoadWait(i);
+			values[ROAD_FAULTS][replica] = run.getRoadFaults(i);
+		}
+
+		for (int i = 0; i < run.numVehicles(); ++i) {
+			int[][] values = vehicles.computeIfAbsent(run.getVehicleID(i),
+					id -> new int[3][replicas]);
+			values[ARRIVAL][replica] = run.getArrival(i);
+			values[VEHICLE_WAIT][replica] = run.getVehicleWait(i);
+			values[VEHICLE_FAULTS][replica] = run.getVehicleFaults(i);
+		}
+	}
+
+	/**
+	 * Genera las tablas de medias y percentiles.
+	 *
+	 * @return 	{@code Ini} con una sección por objeto
+	 */
+	public Ini toIni() {
+		Ini ini = new Ini();
+
+		for (Map.Entry<String, int[][]> road : roads.entrySet()) {
+			IniSection section = new IniSection("road_stats");
+			section.setValue("id", road.getKey());
+			section.setValue("replicas", replicas);
+			summarize(section, "wait", road.getValue()[ROAD_WAIT]);
+			summarize(section, "faults", road.getValue()[ROAD_FAULTS]);
+			ini.addsection(section);
+		}
+
+		for (Map.Entry<String, int[][]> vehicle : vehicles.entrySet()) {
+			int[][] values = vehicle.getValue();
+			int[] arrivals = Arrays.stream(values[ARRIVAL]).filter(t -> t > 0).toArray();
+
+			IniSection section = new IniSection("vehicle_stats");
+			section.setValue("id", vehicle.getKey());
+			section.setValue("replicas", replicas);
+			section.setValue("arrived", arrivals.length);
+			summarize(section, "arrival", arrivals);
+			summarize(section, "wait", values[VEHICLE_WAIT]);
+			summarize(section, "faults", values[VEHICLE_FAULTS]);
+			ini.addsection(section);
+		}
+
+		return ini;
+	}
+
+	/**
+	 * Añade a una sección la media y los percentiles
+	 * de unos valores, o {@code -} si no hay ninguno.
+	 */
+	private static void summarize(IniSection section, String name, int[] values) {
+		if ( values.length == 0 ) {
+			section.setValue(name + "_mean", "-");
+			for (int p : PERCENTILES) {
+				section.setValue(name + "_p" + p, "-");
+			}
+			return;
+		}
+
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		long sum = 0;
+		for (int v : sorted) {
+			sum += v;
+		}
+		section.setValue(name + "_mean",
+				String.format(Locale.ROOT, "%.2f", (double) sum / sorted.length));
+
+		// Percentil por rango más cercano.
+		for (int p : PERCENTILES) {
+			int rank = (p * sorted.length + 99) / 100;
+			section.setValue(name + "_p" + p, sorted[Math.max(rank, 1) - 1]);
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.ucm.fdi.model.events.Event;
+
+/**
+ * <p>
+ * Cola de los {@link Event}s pendientes de la simulación,
+ * agrupados por tick: una cola de calendario con un cubo
+ * por tick sobre tiempos {@code int}.
+ * </p> <p>
+ * Los ticks se reparten en un anillo de cubos según su
+ * resto módulo el tamaño del anillo, y cada cubo guarda
+ * sus ticks ordenados, así que el tick actual está casi
+ * siempre al principio de su cubo. Encolar y sacar los
+ * {@code Event}s de un tick cuesta O(1) amortizado: el
+ * anillo se duplica cuando hay más ticks pendientes que
+ * el doble de cubos, y los ticks ya ejecutados se
+ * liberan con {@link #release(int)}.
+ * </p>
+ */
+public class EventQueue {
+
+	/**
+	 * Número inicial de cubos del anillo.
+	 */
+	private static final int INITIAL_BUCKETS = 64;
+
+	/**
+	 * Anillo de cubos, cada uno con sus ticks
+	 * pendientes en orden.
+	 */
+	private Tick[] buckets = new Tick[INITIAL_BUCKETS];
+
+	/**
+	 * Número de ticks con {@code Event}s pendientes.
+	 */
+	private int ticks = 0;
+
+	/**
+	 * Número de {@code Event}s pendientes.
+	 */
+	private int size = 0;
+
+	/**
+	 * Contador de cambios, para saber cuándo
+	 * rehacer la vista de pendientes.
+	 */
+	private int version = 0;
+
+	/**
+	 * Vista de sólo lectura de los {@code Event}s
+	 * pendientes.
+	 */
+	private final PendingView pending = new PendingView();
+
+	/**
+	 * Añade un {@code Event} tras los que ya
+	 * hubiera en su tick.
+	 *
+	 * @param event 	- {@code Event} a añadir
+	 */
+	public void add(Event event) {
+		int time = event.getTime();
+		int slot = time & (buckets.length - 1);
+
+		Tick prev = null, tick = buckets[slot];
+		while ( tick != null && tick.time < time ) {
+			prev = tick;
+			tick = tick.next;
+		}
+
+		if ( tick == null || tick.time != time ) {
+			Tick created = new Tick(time);
+			created.next = tick;
+			if ( prev == null ) {
+				buckets[slot] = created;
+			}
+			else {
+				prev.next = created;
+			}
+			tick = created;
+			ticks++;
+		}
+
+		tick.events.add(event);
+		size++;
+		version++;
+
+		if ( ticks > 2 * buckets.length ) {
+			resize(2 * buckets.length);
+		}
+	}
+
+	/**
+	 * Devuelve los {@code Event}s de un tick, en
+	 * el orden en que se añadieron.
+	 *
+	 * @param time 	- tick
+	 *
+	 * @return 		{@code Event}s del tick, o {@code null}
+	 * 				si no tiene
+	 */
+	public List<Event> get(int time) {
+		Tick tick = find(time);
+		return (tick != null) ? tick.events : null;
+	}
+
+	/**
+	 * Libera los {@code Event}s de un tick, una
+	 * vez ejecutados.
+	 *
+	 * @param time 	- tick
+	 */
+	public void release(int time) {
+		int slot = time & (buckets.length - 1);
+
+		Tick prev = null, tick = buckets[slot];
+		while ( tick != null && tick.time < time ) {
+			prev = tick;
+			tick = tick.next;
+		}
+		if ( tick == null || tick.time != time ) {
+			return;
+		}
+
+		if ( prev == null ) {
+			buckets[slot] = tick.next;
+		}
+		else {
+			prev.next = tick.next;
+		}
+		ticks--;
+		size -= tick.events.size();
+		version++;
+	}
+
+	/**
+	 * Devuelve el primer tick con {@code Event}s
+	 * pendientes a partir de uno dado.
+	 *
+	 * @param from 	- primer tick que se considera
+	 *
+	 * @return 		tick del siguiente {@code Event},
+	 * 				o {@code -1} si no hay más
+	 */
+	public int nextTime(int from) {
+		if ( size == 0 ) {
+			return -1;
+		}
+
+		// Se recorren los cubos en orden desde el de
+		// from: el primero cuyo siguiente tick cae en
+		// esta vuelta del anillo tiene el buscado. Si
+		// ninguno, es el menor de los siguientes.
+		int next = -1;
+		for ( int i = 0; i < buckets.length; ++i ) {
+			Tick tick = buckets[(from + i) & (buckets.length - 1)];
+			while ( tick != null && tick.time < from ) {
+				tick = tick.next;
+			}
+			if ( tick != null ) {
+				if ( tick.time == from + i ) {
+					return tick.time;
+				}
+				if ( next < 0 || tick.time < next ) {
+					next = tick.time;
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * @return 	número de {@code Event}s pendientes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Elimina todos los {@code Event}s.
+	 */
+	public void clear() {
+		buckets = new Tick[INITIAL_BUCKETS];
+		ticks = 0;
+		size = 0;
+		version++;
+	}
+
+	/**
+	 * Devuelve una vista de sólo lectura de los
+	 * {@code Event}s pendientes, por orden de tick y,
+	 * en cada tick, de llegada. Refleja los cambios de
+	 * la cola, y sólo se rehace al leerla tras uno.
+	 *
+	 * @return 	{@code Event}s pendientes
+	 */
+	public List<Event> pending() {
+		return pending;
+	}
+
+	/**
+	 * Busca un tick en su cubo.
+	 */
+	private Tick find(int time) {
+		Tick tick = buckets[time & (buckets.length - 1)];
+		while ( tick != null && tick.time < time ) {
+			tick = tick.next;
+		}
+		return (tick != null && tick.time == time) ? tick : null;
+	}
+
+	/**
+	 * Reparte los ticks en un anillo de otro tamaño.
+	 */
+	private void resize(int length) {
+		Tick[] old = buckets;
+		buckets = new Tick[length];
+
+		for ( Tick chain : old ) {
+			while ( chain != null ) {
+				Tick tick = chain;
+				chain = chain.next;
+
+				int slot = tick.time & (length - 1);
+				Tick prev = null, at = buckets[slot];
+				while ( at != null && at.time < tick.time ) {
+					prev = at;
+					at = at.next;
+				}
+				tick.next = at;
+				if ( prev == null ) {
+					buckets[slot] = tick;
+				}
+				else {
+					prev.next = tick;
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@code Event}s pendientes de un tick.
+	 */
+	private static class Tick {
+		final int time;
+		final ArrayList<Event> events = new ArrayList<>();
+		Tick next;
+
+		Tick(int t) {
+			time = t;
+		}
+	}
+
+	/**
+	 * Vista de los {@code Event}s pendientes, copiados
+	 * en orden la primera vez que se lee tras un cambio.
+	 */
+	private class PendingView extends AbstractList<Event> {
+
+		private Event[] snapshot = new Event[0];
+		private int snapshotVersion = 0;
+
+		@Override
+		public Event get(int index) {
+			return snapshot()[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		private Event[] snapshot() {
+			if ( snapshotVersion != version ) {
+				Tick[] all = new Tick[ticks];
+				int n = 0;
+				for ( Tick chain : buckets ) {
+					for ( Tick tick = chain; tick != null; tick = tick.next ) {
+						all[n++] = tick;
+					}
+				}
+				Arrays.sort(all, (a, b) -> Integer.compare(a.time, b.time));
+
+				Event[] events = new Event[size];
+				int i = 0;
+				for ( Tick tick : all ) {
+					for ( Event event : tick.events ) {
+						events[i++] = event;
+					}
+				}
+				snapshot = events;
+				snapshotVersion = version;
+			}
+			return snapshot;
+		}
+	}
+}
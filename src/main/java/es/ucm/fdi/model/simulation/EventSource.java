@@ -0,0 +1,37 @@
+package es.ucm.fdi.model.simulation;
+
+import es.ucm.fdi.model.events.Event;
+
+/**
+ * Fuente de la que el simulador va leyendo los 
+ * {@link Event Events} según avanza, en lugar de 
+ * recibirlos todos antes de empezar. Los da en orden 
+ * de tiempo, o casi: basta con que ninguno llegue 
+ * después de que el simulador haya pasado su tiempo.
+ * 
+ * @see TrafficSimulation#setEventSource(EventSource, int)
+ */
+public interface EventSource {
+
+	/**
+	 * Devuelve el siguiente {@code Event} sin sacarlo.
+	 * 
+	 * @return 	siguiente {@code Event}, o {@code null} 
+	 * 			si no quedan
+	 * 
+	 * @throws SimulationException 	if the next event 
+	 * 								can't be read
+	 */
+	Event peek() throws SimulationException;
+
+	/**
+	 * Saca el siguiente {@code Event}.
+	 * 
+	 * @return 	siguiente {@code Event}, o {@code null} 
+	 * 			si no quedan
+	 * 
+	 * @throws SimulationException 	if the next event 
+	 * 								can't be read
+	 */
+	Event poll() throws SimulationException;
+}
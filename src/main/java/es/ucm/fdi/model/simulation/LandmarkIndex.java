@@ -0,0 +1,571 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Road;
+
+/**
+ * Índice de landmarks (ALT) sobre el grafo de
+ * {@link Junction Junctions} y {@link Road Roads} de un
+ * {@link RoadMap}, que acelera las búsquedas de caminos
+ * mínimos entre dos {@code Junction}s.
+ * <p>
+ * Se eligen unas pocas {@code Junction}s alejadas entre sí
+ * (landmarks) y se guardan las distancias desde y hasta
+ * cada una de ellas. Por la desigualdad triangular, esas
+ * distancias dan una cota inferior de la distancia entre
+ * dos {@code Junction}s cualesquiera, con la que A* explora
+ * sólo una pequeña parte del grafo. El coste de cada
+ * {@code Road} es, como en {@link RoutePlanner},
+ * {@code length / speedLimit}.
+ * </p> <p>
+ * El índice se puede guardar en un fichero junto a la huella
+ * del grafo con el que se construyó, y sólo se vuelve a
+ * cargar si el grafo no ha cambiado.
+ * </p> <p>
+ * Las búsquedas reutilizan los arrays del índice, así que
+ * no se pueden hacer varias a la vez. Para buscar desde
+ * otro hilo se usa una copia de {@link #share()}.
+ * </p>
+ */
+public class LandmarkIndex {
+
+	/**
+	 * Número de landmarks por defecto.
+	 */
+	public static final int DEFAULT_LANDMARKS = 8;
+
+	/**
+	 * Cabecera de los ficheros de índice ("ALT1").
+	 */
+	private static final int MAGIC = 0x414C5431;
+
+	/**
+	 * Factor con el que se rebajan las cotas para que los
+	 * errores de redondeo no las hagan sobrestimar.
+	 */
+	private static final double SLACK = 1 - 1e-9;
+
+	/**
+	 * Huella del grafo sobre el que se construyó.
+	 */
+	private final long fingerprint;
+
+	/**
+	 * Índices de las {@code Junction}s landmark.
+	 */
+	private final int[] landmarks;
+
+	/**
+	 * Distancia desde cada landmark {@code l} a cada
+	 * {@code Junction v}, en {@code [v * k + l]}.
+	 */
+	private final double[] fromLandmark;
+
+	/**
+	 * Distancia desde cada {@code Junction v} a cada
+	 * landmark {@code l}, en {@code [v * k + l]}.
+	 */
+	private final double[] toLandmark;
+
+	/**
+	 * Grafo sobre el que se busca.
+	 */
+	private final Graph graph;
+
+	// Estado de las búsquedas, marcado con el número
+	// de búsqueda para no tener que limpiarlo.
+	private final double[] cost;
+	private final int[] parent;
+	private final int[] seen;
+	private final int[] closed;
+	private final CostHeap heap = new CostHeap();
+	private int search = 0;
+
+	/**
+	 * Constructor de {@link LandmarkIndex}.
+	 */
+	private LandmarkIndex(Graph g, long print, int[] marks,
+			double[] from, double[] to) {
+
+		graph = g;
+		fingerprint = print;
+		landmarks = marks;
+		fromLandmark = from;
+		toLandmark = to;
+
+		cost = new double[g.numJunctions];
+		parent = new int[g.numJunctions];
+		seen = new int[g.numJunctions];
+		closed = new int[g.numJunctions];
+	}
+
+	/**
+	 * Construye el índice de un mapa.
+	 * <p>
+	 * Los landmarks se eligen uno a uno, cada uno lo más
+	 * lejos posible de los anteriores. Las distancias hasta
+	 * los landmarks se calculan después en paralelo si se
+	 * dan hilos.
+	 * </p>
+	 *
+	 * @param map 			- mapa a indexar
+	 * @param numLandmarks 	- número de landmarks
+	 * @param workers 		- hilos para el cálculo o
+	 * 						{@code null}
+	 *
+	 * @return 				índice del mapa
+	 */
+	public static LandmarkIndex build(RoadMap map, int numLandmarks,
+			ForkJoinPool workers) {
+
+		Graph g = new Graph(map);
+		int n = g.numJunctions;
+		int k = Math.min(numLandmarks, n);
+
+		int[] marks = new int[k];
+		double[] from = new double[n * k];
+		double[] to = new double[n * k];
+
+		// 1 //
+		// Landmarks lejanos y distancias desde ellos.
+		double[] nearest = new double[n];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		double[] dist = ( n > 0 ) ? g.distances(0, false) : new double[0];
+		for (int l = 0; l < k; ++l) {
+			int mark = farthest(l == 0 ? dist : nearest, marks, l);
+			marks[l] = mark;
+
+			dist = g.distances(mark, false);
+			for (int v = 0; v < n; ++v) {
+				from[v * k + l] = dist[v];
+				nearest[v] = Math.min(nearest[v], dist[v]);
+			}
+		}
+
+		// 2 //
+		// Distancias hasta los landmarks, independientes entre sí.
+		List<Junction> markJunctions = new ArrayList<>();
+		for (int mark : marks) {
+			markJunctions.add(map.getJunction(mark));
+		}
+		Consumer<Junction> backwards = junction -> {
+			int l = indexOf(marks, junction.getIndex());
+			double[] back = g.distances(marks[l], true);
+			for (int v = 0; v < n; ++v) {
+				to[v * k + l] = back[v];
+			}
+		};
+		if ( workers != null ) {
+			workers.invoke(new ProceedTask<>(markJunctions, backwards));
+		}
+		else {
+			markJunctions.forEach(backwards);
+		}
+
+		return new LandmarkIndex(g, fingerprint(map), marks, from, to);
+	}
+
+	/**
+	 * Devuelve la {@code Junction} más alejada según unas
+	 * distancias que no sea ya un landmark. Las que no se
+	 * alcanzan se consideran las más alejadas.
+	 */
+	private static int farthest(double[] dist, int[] marks, int chosen) {
+		int best = -1;
+		for (int v = 0; v < dist.length; ++v) {
+			if ( indexOf(marks, v, chosen) == -1 &&
+					( best == -1 || dist[v] > dist[best] ) ) {
+				best = v;
+			}
+		}
+
+		return best;
+	}
+
+	private static int indexOf(int[] array, int value) {
+		return indexOf(array, value, array.length);
+	}
+
+	private static int indexOf(int[] array, int value, int length) {
+		for (int i = 0; i < length; ++i) {
+			if ( array[i] == value ) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Busca con A* el camino mínimo entre dos {@code Junction}s.
+	 * Los empates entre caminos del mismo coste se resuelven a
+	 * favor de las {@code Road}s de menor índice.
+	 *
+	 * @param from 	- índice de la {@code Junction} de origen
+	 * @param to 	- índice de la {@code Junction} de destino
+	 *
+	 * @return 		índices de las {@code Road}s del camino, en
+	 * 				orden, o {@code null} si no hay camino
+	 */
+	public int[] path(int from, int to) {
+		if ( from >= graph.numJunctions || to >= graph.numJunctions ) {
+			return null;
+		}
+
+		if ( ++search == Integer.MAX_VALUE ) {
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			search = 1;
+		}
+
+		heap.clear();
+		cost[from] = 0;
+		parent[from] = -1;
+		seen[from] = search;
+		heap.push(bound(from, to), from);
+
+		while ( ! heap.isEmpty() ) {
+			int u = heap.pop();
+			if ( closed[u] == search ) {
+				continue;
+			}
+			closed[u] = search;
+			if ( u == to ) {
+				break;
+			}
+
+			for (int e = graph.outStart[u]; e < graph.outStart[u + 1]; ++e) {
+				int v = graph.outTo[e];
+				if ( closed[v] == search ) {
+					continue;
+				}
+
+				double c = cost[u] + graph.outCost[e];
+				int road = graph.outRoad[e];
+				if ( seen[v] != search || c < cost[v] ||
+						( c == cost[v] && road < parent[v] ) ) {
+					seen[v] = search;
+					cost[v] = c;
+					parent[v] = road;
+					heap.push(c + bound(v, to), v);
+				}
+			}
+		}
+
+		if ( closed[to] != search ) {
+			return null;
+		}
+
+		// Se recorre el camino hacia atrás.
+		int hops = 0;
+		for (int v = to; v != from; v = graph.roadFrom[parent[v]]) {
+			hops++;
+		}
+		int[] roads = new int[hops];
+		for (int v = to; v != from; v = graph.roadFrom[parent[v]]) {
+			roads[--hops] = parent[v];
+		}
+
+		return roads;
+	}
+
+	/**
+	 * Cota inferior de la distancia entre dos
+	 * {@code Junction}s según los landmarks.
+	 */
+	private double bound(int v, int t) {
+		int k = landmarks.length;
+		double best = 0;
+
+		for (int l = 0; l < k; ++l) {
+			// d(v, t) >= d(L, t) - d(L, v)
+			double lt = fromLandmark[t * k + l];
+			double lv = fromLandmark[v * k + l];
+			if ( lt != Double.POSITIVE_INFINITY && lv != Double.POSITIVE_INFINITY ) {
+				best = Math.max(best, lt - lv);
+			}
+
+			// d(v, t) >= d(v, L) - d(t, L)
+			double vl = toLandmark[v * k + l];
+			double tl = toLandmark[t * k + l];
+			if ( vl != Double.POSITIVE_INFINITY && tl != Double.POSITIVE_INFINITY ) {
+				best = Math.max(best, vl - tl);
+			}
+		}
+
+		return best * SLACK;
+	}
+
+	/**
+	 * Comprueba si el índice se construyó sobre
+	 * el grafo actual de un mapa.
+	 *
+	 * @param map 	- mapa a comprobar
+	 *
+	 * @return 		si el grafo no ha cambiado
+	 */
+	public boolean matches(RoadMap map) {
+		return fingerprint == fingerprint(map);
+	}
+
+	/**
+	 * Devuelve una copia del índice que comparte con éste
+	 * el grafo y las distancias, que no cambian, pero tiene
+	 * sus propios arrays de búsqueda.
+	 *
+	 * @return 	copia para otro hilo
+	 */
+	LandmarkIndex share() {
+		return new LandmarkIndex(graph, fingerprint, landmarks,
+				fromLandmark, toLandmark);
+	}
+
+	/**
+	 * Guarda el índice en un fichero. Se escribe en un 
+	 * temporal al lado y se mueve después, así que quien 
+	 * lo lea a la vez ve el fichero anterior o el nuevo, 
+	 * nunca uno a medio escribir.
+	 *
+	 * @param file 	- fichero de destino
+	 *
+	 * @throws IOException 	si falla la escritura
+	 */
+	public void save(File file) throws IOException {
+		File temp = File.createTempFile(file.getName(), ".tmp",
+				file.getAbsoluteFile().getParentFile());
+		try {
+			try ( DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp))) ) {
+
+				out.writeInt(MAGIC);
+				out.writeLong(fingerprint);
+				out.writeInt(graph.numJunctions);
+				out.writeInt(landmarks.length);
+				for (int mark : landmarks) {
+					out.writeInt(mark);
+				}
+				for (double d : fromLandmark) {
+					out.writeDouble(d);
+				}
+				for (double d : toLandmark) {
+					out.writeDouble(d);
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Carga el índice de un mapa de un fichero.
+	 *
+	 * @param file 	- fichero de origen
+	 * @param map 	- mapa al que debe corresponder
+	 *
+	 * @return 		índice cargado o {@code null} si el
+	 * 				fichero es de otro grafo
+	 *
+	 * @throws IOException 	si falla la lectura o el 
+	 * 						fichero está cortado o dañado
+	 */
+	public static LandmarkIndex load(File file, RoadMap map) throws IOException {
+		try ( DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file))) ) {
+
+			if ( in.readInt() != MAGIC ) {
+				return null;
+			}
+			long print = in.readLong();
+			if ( print != fingerprint(map) ) {
+				return null;
+			}
+
+			Graph g = new Graph(map);
+			int n = in.readInt();
+			int k = in.readInt();
+			if ( n != g.numJunctions || k > n ) {
+				return null;
+			}
+			if ( k < 0 ) {
+				throw new IOException("Corrupt landmark index: " + file);
+			}
+
+			int[] marks = new int[k];
+			for (int l = 0; l < k; ++l) {
+				marks[l] = in.readInt();
+				if ( marks[l] < 0 || marks[l] >= n ) {
+					throw new IOException("Corrupt landmark index: " + file);
+				}
+			}
+			double[] from = new double[n * k];
+			for (int i = 0; i < from.length; ++i) {
+				from[i] = in.readDouble();
+			}
+			double[] to = new double[n * k];
+			for (int i = 0; i < to.length; ++i) {
+				to[i] = in.readDouble();
+			}
+
+			return new LandmarkIndex(g, print, marks, from, to);
+		}
+	}
+
+	/**
+	 * Calcula la huella del grafo de un mapa a partir de
+	 * los IDs de sus {@code Junction}s y de los IDs,
+	 * extremos, longitudes y límites de sus {@code Road}s.
+	 *
+	 * @param map 	- mapa del que se calcula
+	 *
+	 * @return 		huella de 64 bits
+	 */
+	static long fingerprint(RoadMap map) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (Junction junction : map.getJunctionList()) {
+			hash = mix(hash, junction.getID());
+		}
+		for (Road road : map.getRoadList()) {
+			hash = mix(hash, road.getID());
+			hash = mix(hash, road.getFromJunction().getIndex());
+			hash = mix(hash, road.getToJunction().getIndex());
+			hash = mix(hash, road.getLength());
+			hash = mix(hash, road.getSpeedLimit());
+		}
+
+		return hash;
+	}
+
+	private static long mix(long hash, String s) {
+		for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		}
+
+		return mix(hash, s.length());
+	}
+
+	private static long mix(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash = (hash ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Grafo en arrays compactos, con las {@code Road}s
+	 * salientes y entrantes de cada {@code Junction}.
+	 */
+	private static class Graph {
+
+		final int numJunctions;
+
+		final int[] outStart;
+		final int[] outTo;
+		final int[] outRoad;
+		final double[] outCost;
+
+		final int[] inStart;
+		final int[] inFrom;
+		final double[] inCost;
+
+		final int[] roadFrom;
+
+		Graph(RoadMap map) {
+			List<Road> roads = map.getRoadList();
+			numJunctions = map.getJunctionList().size();
+			int m = roads.size();
+
+			outStart = new int[numJunctions + 1];
+			inStart = new int[numJunctions + 1];
+			roadFrom = new int[m];
+			for (Road road : roads) {
+				outStart[road.getFromJunction().getIndex() + 1]++;
+				inStart[road.getToJunction().getIndex() + 1]++;
+			}
+			for (int v = 0; v < numJunctions; ++v) {
+				outStart[v + 1] += outStart[v];
+				inStart[v + 1] += inStart[v];
+			}
+
+			outTo = new int[m];
+			outRoad = new int[m];
+			outCost = new double[m];
+			inFrom = new int[m];
+			inCost = new double[m];
+			int[] outNext = Arrays.copyOf(outStart, numJunctions);
+			int[] inNext = Arrays.copyOf(inStart, numJunctions);
+			for (Road road : roads) {
+				int u = road.getFromJunction().getIndex();
+				int v = road.getToJunction().getIndex();
+				double c = (double) road.getLength() / road.getSpeedLimit();
+
+				int e = outNext[u]++;
+				outTo[e] = v;
+				outRoad[e] = road.getIndex();
+				outCost[e] = c;
+
+				e = inNext[v]++;
+				inFrom[e] = u;
+				inCost[e] = c;
+
+				roadFrom[road.getIndex()] = u;
+			}
+		}
+
+		/**
+		 * Distancias mínimas desde (o, si {@code reverse},
+		 * hasta) una {@code Junction} a todas las demás.
+		 */
+		double[] distances(int source, boolean reverse) {
+			int[] start = reverse ? inStart : outStart;
+			int[] next = reverse ? inFrom : outTo;
+			double[] weight = reverse ? inCost : outCost;
+
+			double[] dist = new double[numJunctions];
+			boolean[] done = new boolean[numJunctions];
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+			CostHeap heap = new CostHeap();
+			dist[source] = 0;
+			heap.push(0, source);
+			while ( ! heap.isEmpty() ) {
+				int u = heap.pop();
+				if ( done[u] ) {
+					continue;
+				}
+				done[u] = true;
+
+				for (int e = start[u]; e < start[u + 1]; ++e) {
+					int v = next[e];
+					double c = dist[u] + weight[e];
+					if ( c < dist[v] ) {
+						dist[v] = c;
+						heap.push(c, v);
+					}
+				}
+			}
+
+			return dist;
+		}
+	}
+}
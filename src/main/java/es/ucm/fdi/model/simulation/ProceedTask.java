@@ -0,0 +1,97 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import es.ucm.fdi.model.simobj.SimObject;
+
+/**
+ * Tarea de {@code ForkJoin} que aplica una acción de avance
+ * a un rango de {@link SimObject SimObjects} de una lista,
+ * dividiéndolo en mitades hasta que el rango es lo bastante
+ * pequeño como para avanzarlo de forma secuencial.
+ * <p>
+ * Sólo es correcta si el avance de cada objeto del rango
+ * no modifica el estado de ningún otro objeto del mismo
+ * rango, como ocurre con las {@code Road}s, o con las
+ * {@code Junction}s cuando los cruces se retienen en los 
+ * buzones de las {@code Road}s de salida.
+ * </p>
+ * 
+ * @param <T> 	tipo de los objetos a avanzar
+ */
+@SuppressWarnings("serial")
+class ProceedTask<T extends SimObject> extends RecursiveAction {
+
+	/**
+	 * Número de objetos a partir del cual el
+	 * rango se divide en dos subtareas.
+	 */
+	private static final int THRESHOLD = 32;
+
+	/**
+	 * Lista de objetos a avanzar.
+	 */
+	private final List<T> objects;
+
+	/**
+	 * Acción de avance aplicada a cada objeto.
+	 */
+	private final Consumer<? super T> action;
+
+	/**
+	 * Primera posición del rango (inclusive).
+	 */
+	private final int from;
+
+	/**
+	 * Última posición del rango (exclusive).
+	 */
+	private final int to;
+
+	/**
+	 * Constructor de {@link ProceedTask} para toda la lista.
+	 *
+	 * @param objs 	- lista de objetos a avanzar
+	 * @param act 	- acción de avance de cada objeto
+	 */
+	ProceedTask(List<T> objs, Consumer<? super T> act) {
+		this(objs, act, 0, objs.size());
+	}
+
+	/**
+	 * Constructor de {@link ProceedTask} para un rango.
+	 *
+	 * @param objs 	- lista de objetos a avanzar
+	 * @param act 	- acción de avance de cada objeto
+	 * @param f 	- primera posición (inclusive)
+	 * @param t 	- última posición (exclusive)
+	 */
+	private ProceedTask(List<T> objs, Consumer<? super T> act, int f, int t) {
+		objects = objs;
+		action = act;
+		from = f;
+		to = t;
+	}
+
+	/**
+	 * Avanza el rango de forma secuencial si es pequeño
+	 * o lo divide en dos subtareas si no lo es.
+	 */
+	@Override
+	protected void compute() {
+		if ( to - from <= THRESHOLD ) {
+			for (int i = from; i < to; ++i) {
+				action.accept(objects.get(i));
+			}
+		}
+		else {
+			int middle = (from + to) >>> 1;
+			invokeAll(
+				new ProceedTask<>(objects, action, from, middle),
+				new ProceedTask<>(objects, action, middle, to)
+			);
+		}
+	}
+}
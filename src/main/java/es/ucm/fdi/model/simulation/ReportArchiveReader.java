@@ -0,0 +1,272 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+
+/**
+ * Lector de los archivos de segmentos de
+ * {@link ReportArchiveWriter}.
+ * <p>
+ * Al abrirlo sólo se lee el índice. Los informes de un
+ * tick se buscan en él y se leen directamente de su
+ * posición en el segmento, descomprimiendo únicamente
+ * ese tick.
+ * </p>
+ */
+public class ReportArchiveReader {
+
+	/**
+	 * Directorio del archivo.
+	 */
+	private final File dir;
+
+	/**
+	 * Si los segmentos están comprimidos.
+	 */
+	private final boolean gzip;
+
+	/**
+	 * Entradas del índice, en orden: primer y último
+	 * tick, segmento y longitud guardada.
+	 */
+	private int[] firstTimes, lastTimes, segments, lengths;
+
+	/**
+	 * Posición de cada entrada del índice en su segmento.
+	 */
+	private long[] offsets;
+
+	/**
+	 * Si cada entrada del índice es un salto de
+	 * ticks sin tráfico.
+	 */
+	private boolean[] skipped;
+
+	/**
+	 * Número de entradas del índice.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructor de {@link ReportArchiveReader}.
+	 *
+	 * @param directory 	- directorio del archivo
+	 *
+	 * @throws IOException 	if the index can't be read
+	 */
+	public ReportArchiveReader(File directory) throws IOException {
+		dir = directory;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(new File(dir, ReportArchiveWriter.INDEX_FILE))))) {
+
+			if ( in.readInt() != ReportArchiveWriter.MAGIC ) {
+				throw new IOException("Not a report archive: " + directory);
+			}
+			int version = in.readInt();
+			if ( version != ReportArchiveWriter.VERSION ) {
+				throw new IOException(
+					"Unsupported report archive version: " + version);
+			}
+			gzip = in.readBoolean();
+
+			firstTimes = new int[64];
+			lastTimes = new int[64];
+			segments = new int[64];
+			lengths = new int[64];
+			offsets = new long[64];
+			skipped = new boolean[64];
+			while ( readEntry(in) ) {
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Lee una entrada del índice. Las entradas a medias
+	 * de un archivo que aún se escribe se ignoran.
+	 */
+	private boolean readEntry(DataInputStream in) throws IOException {
+		if ( size == firstTimes.length ) {
+			firstTimes = Arrays.copyOf(firstTimes, 2 * size);
+			lastTimes = Arrays.copyOf(lastTimes, 2 * size);
+			segments = Arrays.copyOf(segments, 2 * size);
+			lengths = Arrays.copyOf(lengths, 2 * size);
+			offsets = Arrays.copyOf(offsets, 2 * size);
+			skipped = Arrays.copyOf(skipped, 2 * size);
+		}
+
+		try {
+			firstTimes[size] = in.readInt();
+			lastTimes[size] = in.readInt();
+			skipped[size] = in.readBoolean();
+			segments[size] = in.readInt();
+			offsets[size] = in.readLong();
+			lengths[size] = in.readInt();
+			return true;
+		}
+		catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return 	primer tick del archivo, o {@code -1}
+	 * 			si está vacío
+	 */
+	public int getFirstTime() {
+		return size > 0 ? firstTimes[0] : -1;
+	}
+
+	/**
+	 * @return 	último tick del archivo, o {@code -1}
+	 * 			si está vacío
+	 */
+	public int getLastTime() {
+		return size > 0 ? lastTimes[size - 1] : -1;
+	}
+
+	/**
+	 * Devuelve los informes con los que acaba un tick: los
+	 * del propio tick o, si se saltó por no haber tráfico,
+	 * los del salto: las {@code Junction}s que cambian en
+	 * cada tick y su sección {@code unchanged_report}.
+	 *
+	 * @param time 	- tick
+	 *
+	 * @return 		secciones de los informes, o {@code null}
+	 * 				si el tick no está en el archivo
+	 *
+	 * @throws IOException 	if the segment can't be read
+	 */
+	public List<IniSection> getTick(int time) throws IOException {
+		int entry = find(time);
+		if ( entry < 0 ) {
+			return null;
+		}
+
+		return new Ini(new ByteArrayInputStream(read(entry))).getSections();
+	}
+
+	/**
+	 * Devuelve el informe de un objeto en un tick. Si el tick
+	 * se saltó por no haber tráfico, se devuelve el último que
+	 * se escribió hasta él: el de su tick en el salto si es una
+	 * {@code Junction} que cambió, o el del tick anterior al
+	 * salto.
+	 *
+	 * @param tag 	- etiqueta del informe, como
+	 * 				{@code vehicle_report}
+	 * @param id 	- ID del objeto
+	 * @param time 	- tick
+	 *
+	 * @return 		informe del objeto, o {@code null}
+	 * 				si no está en el archivo
+	 *
+	 * @throws IOException 	if the segment can't be read
+	 */
+	public IniSection getState(String tag, String id, int time) throws IOException {
+		int entry = find(time);
+		if ( entry >= 0 && skipped[entry] ) {
+			IniSection last = null;
+			for (IniSection section : new Ini(new ByteArrayInputStream(read(entry))).getSections()) {
+				if ( section.getTag().equals(tag) && id.equals(section.getValue("id"))
+						&& Integer.parseInt(section.getValue("time")) <= time ) {
+					last = section;
+				}
+			}
+			if ( last != null ) {
+				return last;
+			}
+		}
+		while ( entry >= 0 && skipped[entry] ) {
+			entry--;
+		}
+		if ( entry < 0 ) {
+			return null;
+		}
+
+		for (IniSection section : new Ini(new ByteArrayInputStream(read(entry))).getSections()) {
+			if ( section.getTag().equals(tag) && id.equals(section.getValue("id")) ) {
+				return section;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copia todos los informes del archivo, descomprimidos,
+	 * en el formato de un único fichero {@code .ini}.
+	 *
+	 * @param out 	- destino de los informes
+	 *
+	 * @throws IOException 	if reading or writing fails
+	 */
+	public void copyTo(OutputStream out) throws IOException {
+		for (int entry = 0; entry < size; ++entry) {
+			out.write(read(entry));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Busca la entrada del índice que contiene un tick.
+	 */
+	private int find(int time) {
+		int low = 0, high = size - 1;
+		while ( low <= high ) {
+			int mid = (low + high) >>> 1;
+			if ( lastTimes[mid] < time ) {
+				low = mid + 1;
+			}
+			else if ( firstTimes[mid] > time ) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Lee y descomprime los informes de una entrada.
+	 */
+	private byte[] read(int entry) throws IOException {
+		byte[] stored = new byte[lengths[entry]];
+		File file = new File(dir, ReportArchiveWriter.segmentName(segments[entry], gzip));
+		try (RandomAccessFile segment = new RandomAccessFile(file, "r")) {
+			segment.seek(offsets[entry]);
+			segment.readFully(stored);
+		}
+
+		if ( ! gzip ) {
+			return stored;
+		}
+
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 14];
+			int n;
+			while ( (n = in.read(buffer)) > 0 ) {
+				bytes.write(buffer, 0, n);
+			}
+			return bytes.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import es.ucm.fdi.ini.IniStreamWriter;
+import es.ucm.fdi.ini.SectionSink;
+
+/**
+ * Escribe los informes de la simulación en un archivo de
+ * segmentos, con un índice para encontrar cualquier tick
+ * sin leer el resto.
+ * <p>
+ * El archivo es un directorio con un fichero de informes
+ * {@code .ini} (o {@code .ini.gz}) cada cierto número de
+ * ticks, y un índice {@code reports.idx} con la posición
+ * de cada tick en su segmento. Si se comprimen, cada tick
+ * es un miembro {@code gzip} independiente, de forma que
+ * se puede descomprimir sólo ese tick; la concatenación de
+ * todos los segmentos descomprimidos es la salida de
+ * siempre. {@link ReportArchiveReader} lee el archivo.
+ * </p> <p>
+ * Los informes de cada tick se escriben en cada
+ * {@link #flush()}, y el índice se actualiza con ellos,
+ * así que un archivo a medias se puede leer hasta el
+ * último tick escrito.
+ * </p>
+ */
+public class ReportArchiveWriter implements SectionSink, Flushable, Closeable {
+
+	/**
+	 * Nombre del índice en el directorio del archivo.
+	 */
+	static final String INDEX_FILE = "reports.idx";
+
+	/**
+	 * Número mágico del índice ("TSRA").
+	 */
+	static final int MAGIC = 0x54535241;
+
+	/**
+	 * Versión del índice.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Directorio del archivo.
+	 */
+	private final File dir;
+
+	/**
+	 * Número de ticks de cada segmento.
+	 */
+	private final int segmentTicks;
+
+	/**
+	 * Si los segmentos se comprimen.
+	 */
+	private final boolean gzip;
+
+	/**
+	 * Índice del archivo.
+	 */
+	private final DataOutputStream index;
+
+	/**
+	 * Segmento actual, o {@code null} si aún no hay.
+	 */
+	private OutputStream segment = null;
+
+	/**
+	 * Número del segmento actual.
+	 */
+	private int segmentNumber = -1;
+
+	/**
+	 * Ticks escritos en el segmento actual.
+	 */
+	private int segmentTicksWritten = 0;
+
+	/**
+	 * Bytes escritos en el segmento actual.
+	 */
+	private long segmentOffset = 0;
+
+	/**
+	 * Informes del tick actual, sin comprimir.
+	 */
+	private final ByteArrayOutputStream tick = new ByteArrayOutputStream();
+
+	/**
+	 * Escritor de los informes en {@code tick}.
+	 */
+	private final IniStreamWriter tickWriter = new IniStreamWriter(tick);
+
+	/**
+	 * Primer y último tick de los informes actuales,
+	 * o {@code -1} si aún no hay.
+	 */
+	private int firstTime = -1, lastTime = -1;
+
+	/**
+	 * Si los informes actuales son un salto de
+	 * ticks sin tráfico.
+	 */
+	private boolean skipped = false;
+
+	/**
+	 * Constructor de {@link ReportArchiveWriter}, que crea
+	 * el directorio si no existe.
+	 *
+	 * @param directory 	- directorio del archivo
+	 * @param ticks 		- ticks de cada segmento
+	 * @param compress 		- si se comprimen los segmentos
+	 *
+	 * @throws IOException 	if the directory or the
+	 * 						index can't be created
+	 * @throws IllegalArgumentException 	if the number of
+	 * 										ticks is not valid
+	 */
+	public ReportArchiveWriter(File directory, int ticks, boolean compress)
+			throws IOException {
+
+		if ( ticks < 1 ) {
+			throw new IllegalArgumentException(
+				"Invalid number of ticks per segment: " + ticks);
+		}
+		if ( ! directory.isDirectory() && ! directory.mkdirs() ) {
+			throw new IOException(
+				"Couldn't create the archive directory: " + directory);
+		}
+
+		dir = directory;
+		segmentTicks = ticks;
+		gzip = compress;
+
+		index = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(dir, INDEX_FILE))));
+		index.writeInt(MAGIC);
+		index.writeInt(VERSION);
+		index.writeBoolean(gzip);
+	}
+
+	/**
+	 * Devuelve el nombre del fichero de un segmento.
+	 *
+	 * @param number 	- número del segmento
+	 * @param gzip 		- si está comprimido
+	 *
+	 * @return 			nombre del fichero
+	 */
+	static String segmentName(int number, boolean gzip) {
+		return String.format("reports-%05d.ini", number) + (gzip ? ".gz" : "");
+	}
+
+	@Override
+	public void beginSection(String tag) {
+		tickWriter.beginSection(tag);
+	}
+
+	@Override
+	public void value(String key, CharSequence value) {
+		tickWriter.value(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Las claves {@code time} y {@code since} fijan los
+	 * ticks de los informes actuales en el índice.
+	 * </p>
+	 *
+	 * @param key 		- {@inheritDoc}
+	 * @param value 	- {@inheritDoc}
+	 */
+	@Override
+	public void value(String key, int value) {
+		if ( key.equals("since") ) {
+			skipped = true;
+		}
+		if ( key.equals("since") || (key.equals("time") && firstTime == -1) ) {
+			firstTime = value;
+		}
+		if ( key.equals("time") ) {
+			lastTime = value;
+		}
+		tickWriter.value(key, value);
+	}
+
+	@Override
+	public void endSection() {
+		tickWriter.endSection();
+	}
+
+	@Override
+	public StringBuilder scratch() {
+		return tickWriter.scratch();
+	}
+
+	/**
+	 * Escribe los informes actuales en su segmento,
+	 * empezando uno nuevo si el actual está completo,
+	 * y los añade al índice.
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	@Override
+	public void flush() throws IOException {
+		tickWriter.flush();
+		if ( tick.size() == 0 ) {
+			return;
+		}
+
+		if ( segment == null || segmentTicksWritten == segmentTicks ) {
+			nextSegment();
+		}
+
+		long offset = segmentOffset;
+		if ( gzip ) {
+			// Un miembro por tick, para descomprimirlo solo.
+			CountingStream counter = new CountingStream(segment);
+			GZIPOutputStream member = new GZIPOutputStream(counter);
+			tick.writeTo(member);
+			member.close();
+			segmentOffset += counter.count;
+		}
+		else {
+			tick.writeTo(segment);
+			segmentOffset += tick.size();
+		}
+		segment.flush();
+
+		index.writeInt(firstTime);
+		index.writeInt(lastTime);
+		index.writeBoolean(skipped);
+		index.writeInt(segmentNumber);
+		index.writeLong(offset);
+		index.writeInt((int) (segmentOffset - offset));
+		index.flush();
+
+		segmentTicksWritten++;
+		tick.reset();
+		firstTime = lastTime = -1;
+		skipped = false;
+	}
+
+	/**
+	 * Cierra el segmento actual y empieza el siguiente.
+	 */
+	private void nextSegment() throws IOException {
+		if ( segment != null ) {
+			segment.close();
+		}
+		segmentNumber++;
+		segment = new BufferedOutputStream(new FileOutputStream(
+				new File(dir, segmentName(segmentNumber, gzip))), 1 << 16);
+		segmentTicksWritten = 0;
+		segmentOffset = 0;
+	}
+
+	/**
+	 * Escribe los informes pendientes y cierra
+	 * el segmento actual y el índice.
+	 *
+	 * @throws IOException 	if writing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			if ( segment != null ) {
+				segment.close();
+			}
+			index.close();
+		}
+	}
+
+	/**
+	 * Flujo que cuenta los bytes que pasan por él.
+	 * Al cerrarlo no se cierra el flujo al que escribe.
+	 */
+	private static class CountingStream extends OutputStream {
+
+		final OutputStream out;
+		long count = 0;
+
+		CountingStream(OutputStream os) {
+			out = os;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
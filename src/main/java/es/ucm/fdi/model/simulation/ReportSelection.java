@@ -0,0 +1,174 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import es.ucm.fdi.model.simobj.SimObject;
+
+/**
+ * Selección de los informes que escribe el simulador:
+ * cada cuántos ticks, de qué tipos de objeto y de qué
+ * IDs.
+ * <p>
+ * Cada objeto se compara con los patrones una única vez,
+ * la primera en que aparece en el {@link RoadMap}; desde
+ * entonces las listas de objetos seleccionados se
+ * recorren directamente, así que los objetos que no se
+ * informan no cuestan nada en cada tick.
+ * </p>
+ */
+public class ReportSelection {
+
+	/**
+	 * Tipos de objeto de los que se puede informar.
+	 */
+	public enum Kind {
+		JUNCTION, ROAD, VEHICLE
+	}
+
+	/**
+	 * Número de ticks entre informes.
+	 */
+	private final int interval;
+
+	/**
+	 * Patrón que deben cumplir los IDs, o {@code null}.
+	 */
+	private final Pattern include;
+
+	/**
+	 * Patrón que no deben cumplir los IDs, o {@code null}.
+	 */
+	private final Pattern exclude;
+
+	/**
+	 * Tipos de objeto de los que se informa.
+	 */
+	private final Set<Kind> kinds;
+
+	/**
+	 * Objetos seleccionados de cada tipo, por
+	 * orden de aparición en el mapa.
+	 */
+	private final Selected<?>[] selected = new Selected<?>[Kind.values().length];
+
+	/**
+	 * Constructor de {@link ReportSelection}.
+	 *
+	 * @param ticks 		- ticks entre informes; sólo se
+	 * 						informa de los múltiplos
+	 * @param includeIDs 	- expresión regular que deben
+	 * 						cumplir los IDs, o {@code null}
+	 * @param excludeIDs 	- expresión regular que no deben
+	 * 						cumplir los IDs, o {@code null}
+	 * @param reportKinds 	- tipos de objeto de los que se
+	 * 						informa, o {@code null} para todos
+	 *
+	 * @throws IllegalArgumentException 	if the interval
+	 * 										is not valid
+	 * @throws java.util.regex.PatternSyntaxException 	if a
+	 * 													pattern is
+	 * 													not valid
+	 */
+	public ReportSelection(int ticks, String includeIDs, String excludeIDs,
+			Set<Kind> reportKinds) {
+
+		if ( ticks < 1 ) {
+			throw new IllegalArgumentException(
+				"Invalid report interval: " + ticks
+			);
+		}
+
+		interval = ticks;
+		include = (includeIDs != null) ? Pattern.compile(includeIDs) : null;
+		exclude = (excludeIDs != null) ? Pattern.compile(excludeIDs) : null;
+		kinds = (reportKinds != null) ? EnumSet.copyOf(reportKinds)
+				: EnumSet.allOf(Kind.class);
+
+		for (Kind kind : Kind.values()) {
+			selected[kind.ordinal()] = new Selected<>();
+		}
+	}
+
+	/**
+	 * Comprueba si en un tick se escriben informes.
+	 *
+	 * @param time 	- tick
+	 *
+	 * @return 		si {@code time} es múltiplo del intervalo
+	 */
+	public boolean isReportTime(int time) {
+		return time % interval == 0;
+	}
+
+	/**
+	 * Devuelve el primer tick posterior a uno
+	 * dado en el que se escriben informes.
+	 *
+	 * @param time 	- tick
+	 *
+	 * @return 		siguiente tick con informes
+	 */
+	public int nextReportTime(int time) {
+		return (time / interval + 1) * interval;
+	}
+
+	/**
+	 * Devuelve los objetos de un tipo de los que se informa.
+	 * Sólo se comparan con los patrones los que no se habían
+	 * visto antes; si el mapa se ha vaciado o cambiado, se
+	 * vuelven a comparar todos.
+	 *
+	 * @param kind 	- tipo de los objetos
+	 * @param all 	- todos los objetos de ese tipo,
+	 * 				por orden de aparición
+	 *
+	 * @return 		objetos seleccionados, o una lista
+	 * 				vacía si el tipo no se informa
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends SimObject> List<T> select(Kind kind, List<T> all) {
+		Selected<T> cache = (Selected<T>) selected[kind.ordinal()];
+		if ( ! kinds.contains(kind) ) {
+			return cache.objects;
+		}
+
+		if ( all.size() < cache.scanned
+				|| (cache.scanned > 0 && all.get(0) != cache.first) ) {
+			cache.objects.clear();
+			cache.scanned = 0;
+		}
+
+		for (int i = cache.scanned; i < all.size(); ++i) {
+			T obj = all.get(i);
+			if ( accepts(obj.getID()) ) {
+				cache.objects.add(obj);
+			}
+		}
+		cache.scanned = all.size();
+		cache.first = all.isEmpty() ? null : all.get(0);
+
+		return cache.objects;
+	}
+
+	/**
+	 * Comprueba si un ID cumple los patrones.
+	 */
+	private boolean accepts(String id) {
+		return (include == null || include.matcher(id).matches())
+			&& (exclude == null || ! exclude.matcher(id).matches());
+	}
+
+	/**
+	 * Objetos seleccionados de un tipo y cuántos
+	 * de los del mapa se han comparado ya.
+	 */
+	private static class Selected<T> {
+		final List<T> objects = new ArrayList<>();
+		int scanned = 0;
+		T first = null;
+	}
+}
@@ -1,11 +1,31 @@
 package es.ucm.fdi.model.simulation;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import es.ucm.fdi.model.simobj.BikeVehicle;
+import es.ucm.fdi.model.simobj.CarVehicle;
+import es.ucm.fdi.model.simobj.CrowdedJunction;
+import es.ucm.fdi.model.simobj.DirectVehicleStore;
+import es.ucm.fdi.model.simobj.DirtRoad;
+import es.ucm.fdi.model.simobj.HeapVehicleStore;
+import es.ucm.fdi.model.simobj.HighwayRoad;
 import es.ucm.fdi.model.simobj.Junction;
 import es.ucm.fdi.model.simobj.Road;
+import es.ucm.fdi.model.simobj.RobinJunction;
+import es.ucm.fdi.model.simobj.Route;
+import es.ucm.fdi.model.simobj.SimObject;
 import es.ucm.fdi.model.simobj.Vehicle;
+import es.ucm.fdi.model.simobj.VehicleStore;
+import es.ucm.fdi.util.ActiveSet;
 
 /**
  * Clase que guarda los {@link SimObj} introducidos durante
@@ -18,6 +38,57 @@ public class RoadMap {
     private Map<String, Road>       roadObjects = new LinkedHashMap<>();
     private Map<String, Vehicle>    vehicleObjects = new LinkedHashMap<>();
 
+    /**
+     * Objetos de cada tipo por su índice denso, que es 
+     * su posición de inserción. Los IDs sólo se usan 
+     * al leer eventos y al generar informes; el resto 
+     * de la simulación trabaja con índices.
+     */
+    private List<Junction>  junctionList = new ArrayList<>();
+    private List<Road>      roadList = new ArrayList<>();
+    private List<Vehicle>   vehicleList = new ArrayList<>();
+
+    /**
+     * <code>Routes</code> compiladas por itinerario de IDs 
+     * de <code>Junctions</code>, compartidas por todos los 
+     * <code>Vehicles</code> con el mismo itinerario.
+     */
+    private Map<List<String>, Route> routes = new HashMap<>();
+
+    /**
+     * Buscador de caminos mínimos entre 
+     * <code>Junctions</code> del mapa.
+     */
+    private RoutePlanner planner = new RoutePlanner(this);
+
+    /**
+     * Almacén con el estado variable de los 
+     * <code>Vehicles</code> del mapa.
+     */
+    private VehicleStore vehicleStore = new HeapVehicleStore();
+
+    /**
+     * <code>Roads</code> con vehículos circulando, que son 
+     * las únicas que tienen que avanzar en cada tick. Cada 
+     * <code>Road</code> se mete sola al entrarle un vehículo.
+     */
+    private ActiveSet<Road> activeRoads = new ActiveSet<>(SimObject::getIndex);
+
+    /**
+     * <code>Junctions</code> con vehículos esperando, que son 
+     * las únicas que tienen que avanzar en cada tick. Las 
+     * demás duermen y ponen al día su semáforo al despertar 
+     * o al consultarse.
+     */
+    private ActiveSet<Junction> activeJunctions = new ActiveSet<>(SimObject::getIndex);
+
+    /**
+     * Número de fases de cruces simuladas, con el que cada 
+     * <code>Junction</code> dormida sabe cuántos ticks debe 
+     * a su semáforo.
+     */
+    private int junctionPhase = 0;
+
     /**
      * Constructor vacío de {@link RoadMap}
      */
@@ -58,7 +129,10 @@ public class RoadMap {
      * @param newJunction   <code>Junction</code> a añadir
      */
     public void addJunction(Junction newJunction) {
+        newJunction.setIndex(junctionList.size());
+        junctionList.add(newJunction);
         junctionObjects.put(newJunction.getID(), newJunction);
+        newJunction.setRoadMap(this);
     }
 
     /**
@@ -68,19 +142,274 @@ public class RoadMap {
      * @param newRoad <code>Road</code> a añadir
      */
     public void addRoad(Road newRoad) {
+        newRoad.setIndex(roadList.size());
+        roadList.add(newRoad);
         roadObjects.put(newRoad.getID(), newRoad);
+        newRoad.setActiveSet(activeRoads);
+        newRoad.setRoadMap(this);
+
+        // Los caminos mínimos calculados pueden cambiar.
+        planner.invalidate();
+    }
+
+    /**
+     * Devuelve el almacén donde los <code>Vehicles</code>
+     * del mapa guardan su estado.
+     * 
+     * @return <code>vehicleStore</code>
+     */
+    public VehicleStore getVehicleStore() {
+        return vehicleStore;
+    }
+
+    /**
+     * Elige si el estado de los <code>Vehicles</code> se 
+     * guarda en memoria directa, fuera del heap, o en 
+     * arrays del heap. Sólo puede cambiarse mientras no 
+     * haya ningún <code>Vehicle</code> en el mapa.
+     * 
+     * @param offHeap   si se guarda fuera del heap
+     * 
+     * @throws IllegalStateException    si ya hay 
+     *                                  <code>Vehicles</code>
+     */
+    public void setOffHeapVehicles(boolean offHeap) 
+            throws IllegalStateException {
+        
+        if ( vehicleStore.size() > 0 ) {
+            throw new IllegalStateException(
+                "Vehicle storage can't change once vehicles exist."
+            );
+        }
+        vehicleStore = offHeap ? new DirectVehicleStore() : new HeapVehicleStore();
+    }
+
+    /**
+     * Devuelve el conjunto de <code>Roads</code> con 
+     * vehículos circulando.
+     * 
+     * @return <code>activeRoads</code>
+     */
+    public ActiveSet<Road> getActiveRoads() {
+        return activeRoads;
+    }
+
+    /**
+     * Devuelve la lista de <code>Junctions</code> con 
+     * vehículos esperando, que tienen que avanzar en la 
+     * fase de cruces de este tick. 
+     * <p>
+     * Los vehículos sólo llegan a las colas de espera al 
+     * avanzar su carretera, así que se despiertan los 
+     * cruces de las <code>Roads</code> activas con cola 
+     * y se duermen los que ya no tienen a nadie esperando.
+     * Debe llamarse tras avanzar las <code>Roads</code>.
+     * </p>
+     * 
+     * @return <code>Junctions</code> activas
+     */
+    public List<Junction> getActiveJunctions() {
+        for ( Road road : activeRoads.asList() ) {
+            if ( ! road.noVehiclesWaiting() ) {
+                Junction junction = road.getToJunction();
+                if ( activeJunctions.wake(junction) ) {
+                    junction.wake();
+                }
+            }
+        }
+
+        activeJunctions.prune(junction -> {
+            if ( junction.hasVehiclesWaiting() ) {
+                return true;
+            }
+            junction.sleep();
+            return false;
+        });
+
+        return activeJunctions.asList();
+    }
+
+    /**
+     * Devuelve el número de fases de cruces simuladas.
+     * 
+     * @return <code>junctionPhase</code>
+     */
+    public int getJunctionPhase() {
+        return junctionPhase;
+    }
+
+    /**
+     * Cuenta fases de cruces simuladas: una tras avanzar
+     * las <code>Junctions</code> activas, o las de los 
+     * ticks que se saltan en reposo.
+     * 
+     * @param phases    número de fases
+     */
+    public void advanceJunctionPhase(int phases) {
+        junctionPhase += phases;
     }
     
     /**
      * Añade un <code>Vehicle</code> al mapa
-     * de <code>Vehicles</code>.
+     * de <code>Vehicles</code>. Su índice es su fila 
+     * en <code>vehicleStore</code>, con la que lo 
+     * guardan las <code>Roads</code>.
      * 
      * @param newVehicle <code>Vehicle</code> a añadir
+     * 
+     * @throws IllegalStateException    si no es el último 
+     *                                  <code>Vehicle</code> 
+     *                                  creado en el almacén
      */
-    public void addVehicle(Vehicle newVehicle) {
+    public void addVehicle(Vehicle newVehicle) throws IllegalStateException {
+        if ( newVehicle.getSlot() != vehicleList.size() ) {
+            throw new IllegalStateException(
+                "Vehicle " + newVehicle.getID() + " is not in the next store row."
+            );
+        }
+        newVehicle.setIndex(vehicleList.size());
+        vehicleList.add(newVehicle);
         vehicleObjects.put(newVehicle.getID(), newVehicle);
     }
 
+    /**
+     * Devuelve la <code>Route</code> compilada de un 
+     * itinerario, o <code>null</code> si aún no hay 
+     * ningún <code>Vehicle</code> que lo siga.
+     * 
+     * @param tripID    IDs de las <code>Junctions</code> 
+     *                  del itinerario
+     * @return          <code>Route</code> compartida 
+     *                  o <code>null</code>
+     */
+    public Route getRoute(List<String> tripID) {
+        return routes.get(tripID);
+    }
+
+    /**
+     * Devuelve el buscador de caminos mínimos 
+     * entre <code>Junctions</code> del mapa.
+     * 
+     * @return <code>planner</code>
+     */
+    public RoutePlanner getRoutePlanner() {
+        return planner;
+    }
+
+    /**
+     * Guarda la <code>Route</code> compilada de un 
+     * itinerario para que la compartan los siguientes 
+     * <code>Vehicles</code> que lo sigan.
+     * 
+     * @param tripID    IDs de las <code>Junctions</code> 
+     *                  del itinerario
+     * @param route     <code>Route</code> compilada
+     */
+    public void addRoute(List<String> tripID, Route route) {
+        routes.put(new ArrayList<>(tripID), route);
+    }
+
+    /**
+     * Devuelve las <code>Junctions</code> del mapa 
+     * por su índice denso, como lista de sólo lectura.
+     * 
+     * @return <code>junctionList</code>
+     */
+    public List<Junction> getJunctionList() {
+        return Collections.unmodifiableList(junctionList);
+    }
+
+    /**
+     * Devuelve las <code>Roads</code> del mapa 
+     * por su índice denso, como lista de sólo lectura.
+     * 
+     * @return <code>roadList</code>
+     */
+    public List<Road> getRoadList() {
+        return Collections.unmodifiableList(roadList);
+    }
+
+    /**
+     * Devuelve los <code>Vehicles</code> del mapa 
+     * por su índice denso, como lista de sólo lectura.
+     * 
+     * @return <code>vehicleList</code>
+     */
+    public List<Vehicle> getVehicleList() {
+        return Collections.unmodifiableList(vehicleList);
+    }
+
+    /**
+     * Devuelve la <code>Junction</code> con un índice dado.
+     * 
+     * @param index     índice de la <code>Junction</code>
+     * @return          <code>Junction</code> buscada
+     */
+    public Junction getJunction(int index) {
+        return junctionList.get(index);
+    }
+
+    /**
+     * Devuelve la <code>Road</code> con un índice dado.
+     * 
+     * @param index     índice de la <code>Road</code>
+     * @return          <code>Road</code> buscada
+     */
+    public Road getRoad(int index) {
+        return roadList.get(index);
+    }
+
+    /**
+     * Devuelve el <code>Vehicle</code> con un índice dado.
+     * 
+     * @param index     índice del <code>Vehicle</code>
+     * @return          <code>Vehicle</code> buscado
+     */
+    public Vehicle getVehicle(int index) {
+        return vehicleList.get(index);
+    }
+
+    /**
+     * Devuelve el índice de la <code>Junction</code> 
+     * con un id dado, o <code>-1</code> si no existe.
+     * 
+     * @param id    id de la <code>Junction</code>
+     * @return      índice de la <code>Junction</code>
+     */
+    public int indexOfJunction(String id) {
+        return indexOf(junctionObjects.get(id));
+    }
+
+    /**
+     * Devuelve el índice de la <code>Road</code> 
+     * con un id dado, o <code>-1</code> si no existe.
+     * 
+     * @param id    id de la <code>Road</code>
+     * @return      índice de la <code>Road</code>
+     */
+    public int indexOfRoad(String id) {
+        return indexOf(roadObjects.get(id));
+    }
+
+    /**
+     * Devuelve el índice del <code>Vehicle</code> 
+     * con un id dado, o <code>-1</code> si no existe.
+     * 
+     * @param id    id del <code>Vehicle</code>
+     * @return      índice del <code>Vehicle</code>
+     */
+    public int indexOfVehicle(String id) {
+        return indexOf(vehicleObjects.get(id));
+    }
+
+    /**
+     * Devuelve el índice de un objeto o <code>-1</code>
+     * si es <code>null</code>.
+     */
+    private int indexOf(SimObject obj) {
+        return ( obj != null ) ? obj.getIndex() : -1;
+    }
+
     /**
      * Comprueba si existe una determinada <code>Junction</code>
      * en el mapa de la simulación.
@@ -165,6 +494,266 @@ public class RoadMap {
     	return roadObjects.get(id);
     }
 
+    /**
+     * Escribe el mapa en un checkpoint: primero la definición 
+     * de todos los objetos, por orden de índice, junto con las 
+     * <code>Routes</code> compartidas, y después su estado y 
+     * el orden de las <code>Roads</code> activas.
+     * 
+     * @param out       flujo del checkpoint
+     * 
+     * @throws IOException  if writing fails
+     */
+    void writeCheckpoint(DataOutput out) throws IOException {
+        out.writeInt(junctionList.size());
+        for ( Junction junction : junctionList ) {
+            junction.writeDefinition(out);
+        }
+        out.writeInt(roadList.size());
+        for ( Road road : roadList ) {
+            road.writeDefinition(out);
+        }
+
+        // Cada Route se escribe una vez, aunque la compartan 
+        // varios Vehicles o esté guardada por su itinerario.
+        List<Route> shared = new ArrayList<>(routes.values());
+        for ( Vehicle vehicle : vehicleList ) {
+            shared.add(vehicle.getRoute());
+        }
+        Map<Route, Integer> routeIndex = new IdentityHashMap<>();
+        List<Route> routeList = new ArrayList<>();
+        for ( Route route : shared ) {
+            if ( routeIndex.putIfAbsent(route, routeList.size()) == null ) {
+                routeList.add(route);
+            }
+        }
+        out.writeInt(routeList.size());
+        for ( Route route : routeList ) {
+            route.write(out);
+        }
+        out.writeInt(routes.size());
+        for ( Map.Entry<List<String>, Route> entry : routes.entrySet() ) {
+            out.writeInt(entry.getKey().size());
+            for ( String junctionID : entry.getKey() ) {
+                out.writeUTF(junctionID);
+            }
+            out.writeInt(routeIndex.get(entry.getValue()));
+        }
+
+        out.writeInt(vehicleList.size());
+        for ( Vehicle vehicle : vehicleList ) {
+            out.writeInt(routeIndex.get(vehicle.getRoute()));
+            vehicle.writeDefinition(out);
+        }
+
+        // Los cruces dormidos ponen al día sus semáforos 
+        // antes de que se escriban los de las Roads.
+        for ( Junction junction : junctionList ) {
+            junction.writeState(out);
+        }
+        for ( Road road : roadList ) {
+            road.writeState(out);
+        }
+        for ( Vehicle vehicle : vehicleList ) {
+            vehicle.writeState(out);
+        }
+        out.writeInt(activeRoads.size());
+        for ( Road road : activeRoads.asList() ) {
+            out.writeInt(road.getIndex());
+        }
+    }
+
+    /**
+     * Reconstruye en el mapa, que debe estar vacío, el 
+     * escrito con {@link #writeCheckpoint(DataOutput)}.
+     * 
+     * @param in        flujo del checkpoint
+     * 
+     * @throws IOException  if reading fails or the 
+     *                      checkpoint is not valid
+     */
+    void readCheckpoint(DataInput in) throws IOException {
+        int numJunctions = in.readInt();
+        for (int i = 0; i < numJunctions; ++i) {
+            addJunction( readJunction(in) );
+        }
+        int numRoads = in.readInt();
+        for (int i = 0; i < numRoads; ++i) {
+            addRoad( readRoad(in) );
+        }
+
+        Route[] routeList = new Route[in.readInt()];
+        for (int i = 0; i < routeList.length; ++i) {
+            routeList[i] = Route.read(in, this::getJunction, this::getRoad);
+        }
+        int numItineraries = in.readInt();
+        for (int i = 0; i < numItineraries; ++i) {
+            List<String> tripID = new ArrayList<>();
+            int size = in.readInt();
+            for (int j = 0; j < size; ++j) {
+                tripID.add(in.readUTF());
+            }
+            addRoute(tripID, routeList[in.readInt()]);
+        }
+
+        // Al crearse, los Vehicles entran en su primera 
+        // Road: el estado de las Roads lo sustituye después.
+        int numVehicles = in.readInt();
+        for (int i = 0; i < numVehicles; ++i) {
+            Route route = routeList[in.readInt()];
+            addVehicle( readVehicle(in, route) );
+        }
+
+        for ( Junction junction : junctionList ) {
+            junction.readState(in, this);
+        }
+        for ( Road road : roadList ) {
+            road.readState(in, this);
+        }
+        for ( Vehicle vehicle : vehicleList ) {
+            vehicle.readState(in, this);
+        }
+        activeRoads.clear();
+        int numActive = in.readInt();
+        for (int i = 0; i < numActive; ++i) {
+            activeRoads.wake( getRoad(in.readInt()) );
+        }
+        activeJunctions.clear();
+        for ( Junction junction : junctionList ) {
+            if ( junction.hasVehiclesWaiting() ) {
+                activeJunctions.wake(junction);
+                junction.wake();
+            }
+        }
+    }
+
+    /**
+     * Copia en el mapa, que debe estar vacío, el estado de 
+     * otro. Los objetos se crean de nuevo, pues se apuntan 
+     * unos a otros, pero las páginas del almacén de los 
+     * <code>Vehicles</code> y los carriles de las 
+     * <code>Roads</code> se comparten con el otro mapa 
+     * hasta que alguno de los dos escribe en ellos. 
+     * Las <code>Junctions</code> dormidas no se ponen al 
+     * día: el mapa copiado tiene la misma fase de cruces.
+     * 
+     * @param source    mapa del que se copia
+     */
+    void copy(RoadMap source) {
+        junctionPhase = source.junctionPhase;
+        for ( Junction junction : source.junctionList ) {
+            addJunction( junction.copy() );
+        }
+        for ( Road road : source.roadList ) {
+            addRoad( road.copy(getJunction(road.getFromJunction().getIndex()), 
+                    getJunction(road.getToJunction().getIndex())) );
+        }
+
+        // Cada Route se copia una vez, aunque la compartan 
+        // varios Vehicles o esté guardada por su itinerario.
+        Map<Route, Route> copied = new IdentityHashMap<>();
+        for ( Map.Entry<List<String>, Route> entry : source.routes.entrySet() ) {
+            routes.put(entry.getKey(), copied.computeIfAbsent(entry.getValue(), 
+                    route -> route.copy(this::getJunction, this::getRoad)));
+        }
+
+        vehicleStore = source.vehicleStore.share();
+        for ( Vehicle vehicle : source.vehicleList ) {
+            Route route = copied.computeIfAbsent(vehicle.getRoute(), 
+                    r -> r.copy(this::getJunction, this::getRoad));
+            addVehicle( vehicle.copy(route, vehicleStore) );
+        }
+
+        for ( int i = 0; i < junctionList.size(); ++i ) {
+            junctionList.get(i).copyState(source.junctionList.get(i), this);
+        }
+        for ( int i = 0; i < roadList.size(); ++i ) {
+            roadList.get(i).copyState(source.roadList.get(i), this);
+        }
+        for ( int i = 0; i < vehicleList.size(); ++i ) {
+            vehicleList.get(i).copyState(source.vehicleList.get(i), this);
+        }
+        for ( Road road : source.activeRoads.asList() ) {
+            activeRoads.wake( getRoad(road.getIndex()) );
+        }
+        for ( Junction junction : source.activeJunctions.asList() ) {
+            activeJunctions.wake( getJunction(junction.getIndex()) );
+        }
+    }
+
+    /**
+     * Crea la <code>Junction</code> de una 
+     * definición del checkpoint.
+     */
+    private Junction readJunction(DataInput in) throws IOException {
+        String type = in.readUTF();
+        String id = in.readUTF();
+
+        switch (type) {
+        case "Junction":
+            return new Junction(id);
+        case "RobinJunction":
+            return new RobinJunction(id, in.readInt(), in.readInt());
+        case "CrowdedJunction":
+            return new CrowdedJunction(id);
+        default:
+            throw new IOException("Unknown junction type in checkpoint: " + type);
+        }
+    }
+
+    /**
+     * Crea la <code>Road</code> de una 
+     * definición del checkpoint.
+     */
+    private Road readRoad(DataInput in) throws IOException {
+        String type = in.readUTF();
+        String id = in.readUTF();
+        int length = in.readInt();
+        int speedLimit = in.readInt();
+        Junction from = getJunction(in.readInt());
+        Junction to = getJunction(in.readInt());
+
+        switch (type) {
+        case "Road":
+            return new Road(id, length, speedLimit, from, to);
+        case "DirtRoad":
+            return new DirtRoad(id, length, speedLimit, from, to);
+        case "HighwayRoad":
+            return new HighwayRoad(id, length, speedLimit, from, to, in.readInt());
+        default:
+            throw new IOException("Unknown road type in checkpoint: " + type);
+        }
+    }
+
+    /**
+     * Crea el <code>Vehicle</code> de una 
+     * definición del checkpoint.
+     */
+    private Vehicle readVehicle(DataInput in, Route route) throws IOException {
+        String type = in.readUTF();
+        String id = in.readUTF();
+        int maxSpeed = in.readInt();
+
+        try {
+            switch (type) {
+            case "Vehicle":
+                return new Vehicle(id, route, maxSpeed, vehicleStore);
+            case "BikeVehicle":
+                return new BikeVehicle(id, route, maxSpeed, vehicleStore);
+            case "CarVehicle":
+                // La semilla no importa: el estado del 
+                // generador se lee con el del Vehicle.
+                return new CarVehicle(id, route, maxSpeed, in.readInt(), 
+                        in.readDouble(), in.readInt(), 0, vehicleStore);
+            default:
+                throw new IOException("Unknown vehicle type in checkpoint: " + type);
+            }
+        }
+        catch (SimulationException e) {
+            throw new IOException("Invalid vehicle in checkpoint: " + e.getMessage());
+        }
+    }
+
     /**
      * Método que limpia <code>RoadMap</code> de todos
      * los <code>SimObj</code> introducidos durante la
@@ -174,6 +763,15 @@ public class RoadMap {
     	junctionObjects.clear();
     	roadObjects.clear();
     	vehicleObjects.clear();
+    	junctionList.clear();
+    	roadList.clear();
+    	vehicleList.clear();
+    	routes.clear();
+    	planner.invalidate();
+    	vehicleStore.clear();
+    	activeRoads.clear();
+    	activeJunctions.clear();
+    	junctionPhase = 0;
     }
 
     
@@ -0,0 +1,419 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Road;
+import es.ucm.fdi.model.simobj.Route;
+
+/**
+ * Calcula las {@link Route Routes} más cortas entre dos
+ * {@link Junction Junctions} del {@link RoadMap}, usando
+ * como coste de cada {@code Road} su tiempo de recorrido
+ * a la velocidad límite ({@code length / speedLimit}).
+ * <p>
+ * Para cada origen se calcula con Dijkstra el árbol de
+ * caminos mínimos a todos los destinos y se guarda, de
+ * forma que los {@code Vehicle}s que salen del mismo
+ * origen no repiten la búsqueda. Las {@code Route}s de
+ * cada par origen-destino también se guardan y se
+ * comparten. Todo se descarta al añadir una {@code Road}.
+ * </p> <p>
+ * Los empates entre caminos del mismo coste se resuelven
+ * a favor de las {@code Junction}s y {@code Road}s de menor
+ * índice, así que el resultado no depende del orden en que
+ * se calculen los árboles.
+ * </p> <p>
+ * En mapas grandes se puede usar en su lugar un
+ * {@link LandmarkIndex}, con el que cada par origen-destino
+ * se busca con A* sin calcular árboles completos. El índice
+ * se construye la primera vez que hace falta con el mapa
+ * ya cargado, y puede guardarse en un fichero para no
+ * tener que construirlo en las siguientes ejecuciones.
+ * </p>
+ */
+public class RoutePlanner {
+
+	/**
+	 * Mapa sobre el que se buscan los caminos.
+	 */
+	private final RoadMap map;
+
+	/**
+	 * Árbol de caminos mínimos de cada origen, por su
+	 * índice: para cada {@code Junction}, el índice de
+	 * la {@code Road} por la que se llega a ella
+	 * ({@code -1} si es el origen o no se alcanza).
+	 * Es {@code null} si aún no se ha calculado.
+	 */
+	private int[][] trees = new int[0][];
+
+	/**
+	 * {@code Route}s ya construidas desde cada origen, 
+	 * por índice de destino. Cada fila se crea junto 
+	 * con el árbol de su origen.
+	 */
+	private Route[][] routes = new Route[0][];
+
+	/**
+	 * Si se buscan las rutas con un {@code LandmarkIndex}.
+	 */
+	private boolean useLandmarks = false;
+
+	/**
+	 * Fichero donde se guarda el {@code LandmarkIndex}, 
+	 * o {@code null} si no se guarda.
+	 */
+	private File landmarkFile = null;
+
+	/**
+	 * Índice del grafo actual, o {@code null} si 
+	 * aún no se ha construido.
+	 */
+	private LandmarkIndex landmarks = null;
+
+	/**
+	 * {@code Route}s ya construidas con el 
+	 * {@code LandmarkIndex}, por par origen-destino: 
+	 * el índice del origen en los 32 bits altos de 
+	 * la clave y el del destino en los bajos.
+	 */
+	private Map<Long, Route> landmarkRoutes = new HashMap<>();
+
+	/**
+	 * Constructor de {@link RoutePlanner}.
+	 *
+	 * @param roadMap 	- mapa sobre el que
+	 * 					se buscan los caminos
+	 */
+	RoutePlanner(RoadMap roadMap) {
+		map = roadMap;
+	}
+
+	/**
+	 * Devuelve la {@code Route} más corta entre
+	 * dos {@code Junction}s del mapa.
+	 *
+	 * @param origin 		- {@code Junction} de origen
+	 * @param destination 	- {@code Junction} de destino
+	 *
+	 * @return 				{@code Route} compartida
+	 * 						entre las dos
+	 *
+	 * @throws SimulationException 	si el destino no se
+	 * 								alcanza desde el origen
+	 */
+	public Route getRoute(Junction origin, Junction destination)
+			throws SimulationException {
+
+		int from = origin.getIndex();
+		int to = destination.getIndex();
+
+		if ( useLandmarks ) {
+			return landmarkRoute(from, to, null);
+		}
+
+		int[] parent = tree(origin);
+
+		if ( routes[from] == null ) {
+			routes[from] = new Route[parent.length];
+		}
+		if ( to >= parent.length ) {
+			// Destino posterior al árbol: no se alcanza.
+			return buildRoute(parent, from, to);
+		}
+
+		Route route = routes[from][to];
+		if ( route == null ) {
+			route = buildRoute(parent, from, to);
+			routes[from][to] = route;
+		}
+
+		return route;
+	}
+
+	/**
+	 * Calcula de antemano los árboles que faltan de
+	 * unos orígenes, repartiéndolos entre los hilos
+	 * de un {@code ForkJoinPool}.
+	 *
+	 * @param origins 	- {@code Junction}s de origen
+	 * @param workers 	- hilos que calculan los árboles
+	 *
+	 * @throws SimulationException 	si no se puede cargar 
+	 * 								o guardar el 
+	 * 								{@code LandmarkIndex}
+	 */
+	public void prepare(Collection<Junction> origins, ForkJoinPool workers)
+			throws SimulationException {
+		if ( useLandmarks ) {
+			// No hay árboles: basta con tener el índice.
+			landmarkIndex(workers);
+			return;
+		}
+
+		ensureCapacity();
+
+		List<Junction> missing = new ArrayList<>();
+		boolean[] seen = new boolean[trees.length];
+		for ( Junction origin : origins ) {
+			int from = origin.getIndex();
+			if ( trees[from] == null && ! seen[from] ) {
+				seen[from] = true;
+				missing.add(origin);
+			}
+		}
+
+		// Cada tarea escribe sólo el árbol de su origen.
+		int[][] target = trees;
+		workers.invoke(new ProceedTask<>(missing,
+				origin -> target[origin.getIndex()] = shortestPathTree(origin)));
+	}
+
+	/**
+	 * Descarta todos los árboles y {@code Route}s
+	 * calculados, que dejan de ser válidos al
+	 * cambiar el mapa.
+	 */
+	void invalidate() {
+		trees = new int[0][];
+		routes = new Route[0][];
+		landmarks = null;
+		landmarkRoutes.clear();
+	}
+
+	/**
+	 * Reutiliza lo ya calculado por el {@code RoutePlanner}
+	 * de otra simulación con el mismo grafo. Los árboles y
+	 * el {@code LandmarkIndex} no cambian una vez creados, así
+	 * que se comparten; las {@code Route}s apuntan a los objetos
+	 * de la otra simulación y se vuelven a construir. El índice
+	 * no se guarda en fichero desde la copia.
+	 *
+	 * @param source 	- planificador del que se copia
+	 */
+	void shareFrom(RoutePlanner source) {
+		useLandmarks = source.useLandmarks;
+		landmarkFile = null;
+		trees = source.trees.clone();
+		routes = new Route[trees.length][];
+		landmarks = ( source.landmarks != null ) ? source.landmarks.share() : null;
+		landmarkRoutes.clear();
+	}
+
+	/**
+	 * Hace que las rutas se busquen con un {@code LandmarkIndex}. 
+	 * Si se da un fichero, el índice se carga de él cuando 
+	 * corresponde al mapa, y si no se construye y se guarda 
+	 * en él.
+	 * 
+	 * @param file 	- fichero del índice o {@code null}
+	 */
+	public void useLandmarks(File file) {
+		useLandmarks = true;
+		landmarkFile = file;
+		invalidate();
+	}
+
+	/**
+	 * Devuelve la {@code Route} entre dos {@code Junction}s 
+	 * buscada con el {@code LandmarkIndex}.
+	 */
+	private Route landmarkRoute(int from, int to, ForkJoinPool workers) 
+			throws SimulationException {
+
+		Long key = ((long) from << 32) | to;
+		Route route = landmarkRoutes.get(key);
+
+		if ( route == null ) {
+			int[] path = landmarkIndex(workers).path(from, to);
+			if ( path == null ) {
+				throw noRoute(from, to);
+			}
+
+			List<Road> roads = new ArrayList<>();
+			for (int roadIndex : path) {
+				roads.add(map.getRoad(roadIndex));
+			}
+			route = toRoute(from, roads);
+			landmarkRoutes.put(key, route);
+		}
+
+		return route;
+	}
+
+	/**
+	 * Devuelve el {@code LandmarkIndex} del mapa actual, 
+	 * cargándolo o construyéndolo si no estaba. Un fichero 
+	 * que no se puede leer, cortado o dañado, se trata como 
+	 * uno de otro grafo: se vuelve a construir y a guardar.
+	 *
+	 * @throws SimulationException 	si falla la escritura 
+	 * 								del fichero del índice
+	 */
+	private LandmarkIndex landmarkIndex(ForkJoinPool workers) 
+			throws SimulationException {
+
+		if ( landmarks == null && landmarkFile != null && landmarkFile.exists() ) {
+			try {
+				landmarks = LandmarkIndex.load(landmarkFile, map);
+			}
+			catch (IOException e) {
+				// Fichero dañado: se vuelve a construir.
+				landmarks = null;
+			}
+		}
+
+		if ( landmarks == null ) {
+			landmarks = LandmarkIndex.build(map, LandmarkIndex.DEFAULT_LANDMARKS, workers);
+
+			if ( landmarkFile != null ) {
+				try {
+					landmarks.save(landmarkFile);
+				}
+				catch (IOException e) {
+					throw new SimulationException(
+						"Landmark index " + landmarkFile + " not saved: " + e.getMessage()
+					);
+				}
+			}
+		}
+
+		return landmarks;
+	}
+
+	/**
+	 * Devuelve el árbol de un origen,
+	 * calculándolo si no estaba.
+	 */
+	private int[] tree(Junction origin) {
+		ensureCapacity();
+
+		int from = origin.getIndex();
+		if ( trees[from] == null ) {
+			trees[from] = shortestPathTree(origin);
+		}
+
+		return trees[from];
+	}
+
+	/**
+	 * Amplía {@code trees} para que quepan todas
+	 * las {@code Junction}s del mapa.
+	 */
+	private void ensureCapacity() {
+		int numJunctions = map.getJunctionList().size();
+		if ( trees.length < numJunctions ) {
+			trees = Arrays.copyOf(trees, numJunctions);
+			routes = Arrays.copyOf(routes, numJunctions);
+		}
+	}
+
+	/**
+	 * Calcula con Dijkstra el árbol de caminos
+	 * mínimos desde una {@code Junction}.
+	 *
+	 * @param origin 	- {@code Junction} de origen
+	 *
+	 * @return 			índice de la {@code Road} de
+	 * 					llegada a cada {@code Junction}
+	 */
+	private int[] shortestPathTree(Junction origin) {
+		int numJunctions = trees.length;
+		double[] cost = new double[numJunctions];
+		int[] parent = new int[numJunctions];
+		boolean[] done = new boolean[numJunctions];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		Arrays.fill(parent, -1);
+
+		CostHeap heap = new CostHeap();
+		cost[origin.getIndex()] = 0;
+		heap.push(0, origin.getIndex());
+
+		while ( ! heap.isEmpty() ) {
+			int u = heap.pop();
+			if ( done[u] ) {
+				continue;
+			}
+			done[u] = true;
+
+			for ( Road road : map.getJunction(u).getExitRoads().values() ) {
+				int v = road.getToJunction().getIndex();
+				if ( v >= numJunctions || done[v] ) {
+					continue;
+				}
+
+				double c = cost[u] + (double) road.getLength() / road.getSpeedLimit();
+				if ( c < cost[v] || ( c == cost[v] && road.getIndex() < parent[v] ) ) {
+					cost[v] = c;
+					parent[v] = road.getIndex();
+					heap.push(c, v);
+				}
+			}
+		}
+
+		return parent;
+	}
+
+	/**
+	 * Construye la {@code Route} hasta un destino
+	 * recorriendo el árbol hacia atrás.
+	 *
+	 * @throws SimulationException 	si no se alcanza
+	 */
+	private Route buildRoute(int[] parent, int from, int to)
+			throws SimulationException {
+
+		List<Road> path = new ArrayList<>();
+		int current = to;
+		while ( current != from ) {
+			int roadIndex = ( current < parent.length ) ? parent[current] : -1;
+			if ( roadIndex == -1 ) {
+				throw noRoute(from, to);
+			}
+
+			Road road = map.getRoad(roadIndex);
+			path.add(road);
+			current = road.getFromJunction().getIndex();
+		}
+		Collections.reverse(path);
+
+		return toRoute(from, path);
+	}
+
+	/**
+	 * Construye la {@code Route} que sale de una 
+	 * {@code Junction} y sigue unas {@code Road}s.
+	 */
+	private Route toRoute(int from, List<Road> path) {
+		int hops = path.size();
+		Junction[] junctions = new Junction[hops + 1];
+		Road[] roads = path.toArray(new Road[hops]);
+		junctions[0] = map.getJunction(from);
+		for (int i = 0; i < hops; ++i) {
+			junctions[i + 1] = roads[i].getToJunction();
+		}
+
+		return new Route(junctions, roads);
+	}
+
+	/**
+	 * Excepción de destino no alcanzable.
+	 */
+	private SimulationException noRoute(int from, int to) {
+		return new SimulationException(
+			"No route found between junctions with id: " +
+			map.getJunction(from).getID() + ", " +
+			map.getJunction(to).getID()
+		);
+	}
+}
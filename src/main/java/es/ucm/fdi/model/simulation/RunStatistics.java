@@ -0,0 +1,259 @@
+package es.ucm.fdi.model.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import es.ucm.fdi.model.simobj.Road;
+import es.ucm.fdi.model.simobj.Vehicle;
+import es.ucm.fdi.model.simulation.TrafficSimulation.Listener;
+import es.ucm.fdi.model.simulation.TrafficSimulation.UpdateEvent;
+import es.ucm.fdi.util.EventType;
+
+/**
+ * {@link Listener} que resume una ejecución de la simulación
+ * en unas pocas estadísticas por {@link Vehicle} y por
+ * {@link Road}, sin generar informes:
+ * <p>
+ * - De cada {@code Vehicle}, el tick en que llega a su
+ * destino, los ticks que pasa esperando en los cruces y
+ * el número de averías.
+ * </p> <p>
+ * - De cada {@code Road}, la suma por tick de los
+ * {@code Vehicle}s que esperan al final, y las averías
+ * ocurridas en ella.
+ * </p> <p>
+ * Se actualiza al terminar cada tick, así que no debe
+ * usarse con el avance rápido, que salta ticks de golpe.
+ * Guarda también el primer error de la simulación.
+ * </p>
+ */
+public class RunStatistics implements Listener {
+
+	/**
+	 * Tick de llegada de cada {@code Vehicle}, por
+	 * su índice, o {@code 0} si aún no ha llegado.
+	 */
+	private int[] arrival = new int[0];
+
+	/**
+	 * Ticks de espera en los cruces de cada {@code Vehicle}.
+	 */
+	private int[] vehicleWait = new int[0];
+
+	/**
+	 * Averías de cada {@code Vehicle}.
+	 */
+	private int[] vehicleFaults = new int[0];
+
+	/**
+	 * Suma por tick de los {@code Vehicle}s
+	 * esperando al final de cada {@code Road}.
+	 */
+	private int[] roadWait = new int[0];
+
+	/**
+	 * Averías ocurridas en cada {@code Road}.
+	 */
+	private int[] roadFaults = new int[0];
+
+	/**
+	 * IDs de los {@code Vehicle}s, por su índice.
+	 */
+	private String[] vehicleIDs = new String[0];
+
+	/**
+	 * IDs de las {@code Road}s, por su índice.
+	 */
+	private String[] roadIDs = new String[0];
+
+	/**
+	 * Primer error de la simulación, o {@code null}.
+	 */
+	private String error = null;
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Tras cada tick, recoge las estadísticas del
+	 * {@code RoadMap}. Si hay un error, lo guarda.
+	 * </p>
+	 */
+	@Override
+	public void update(UpdateEvent ue, String msg) {
+		if ( ue.getEvent() == EventType.ADVANCED ) {
+			// El tick que acaba es el del siguiente informe.
+			record(ue.getRoadMap(), ue.getCurrentTime() + 1);
+		}
+		else if ( ue.getEvent() == EventType.ERROR && error == null ) {
+			error = msg;
+		}
+	}
+
+	/**
+	 * Añade a las estadísticas el estado del
+	 * mapa al final de un tick.
+	 *
+	 * @param map 	- mapa de la simulación
+	 * @param tick 	- tick que acaba
+	 */
+	private void record(RoadMap map, int tick) {
+		List<Vehicle> vehicles = map.getVehicleList();
+		List<Road> roads = map.getRoadList();
+		ensureCapacity(vehicles, roads);
+
+		for (Vehicle v : vehicles) {
+			int i = v.getIndex();
+
+			if ( arrival[i] == 0 && v.hasArrived() ) {
+				arrival[i] = tick;
+			}
+			if ( v.isWaiting() ) {
+				vehicleWait[i]++;
+			}
+
+			// Las averías nuevas se anotan en la Road
+			// donde está el Vehicle, que no se mueve.
+			int faults = v.getNumFaults();
+			if ( faults > vehicleFaults[i] ) {
+				roadFaults[v.getRoad().getIndex()] += faults - vehicleFaults[i];
+				vehicleFaults[i] = faults;
+			}
+		}
+
+		for (Road r : roads) {
+			roadWait[r.getIndex()] += r.getNumWaitingVehicles();
+		}
+	}
+
+	/**
+	 * Amplía los arrays para que quepan todos
+	 * los objetos del mapa.
+	 */
+	private void ensureCapacity(List<Vehicle> vehicles, List<Road> roads) {
+		if ( vehicleIDs.length < vehicles.size() ) {
+			int old = vehicleIDs.length;
+			arrival = Arrays.copyOf(arrival, vehicles.size());
+			vehicleWait = Arrays.copyOf(vehicleWait, vehicles.size());
+			vehicleFaults = Arrays.copyOf(vehicleFaults, vehicles.size());
+			vehicleIDs = Arrays.copyOf(vehicleIDs, vehicles.size());
+			for (int i = old; i < vehicleIDs.length; ++i) {
+				vehicleIDs[i] = vehicles.get(i).getID();
+			}
+		}
+		if ( roadIDs.length < roads.size() ) {
+			int old = roadIDs.length;
+			roadWait = Arrays.copyOf(roadWait, roads.size());
+			roadFaults = Arrays.copyOf(roadFaults, roads.size());
+			roadIDs = Arrays.copyOf(roadIDs, roads.size());
+			for (int i = old; i < roadIDs.length; ++i) {
+				roadIDs[i] = roads.get(i).getID();
+			}
+		}
+	}
+
+	/**
+	 * Devuelve el número de {@code Vehicle}s.
+	 *
+	 * @return 	número de {@code Vehicle}s vistos
+	 */
+	public int numVehicles() {
+		return vehicleIDs.length;
+	}
+
+	/**
+	 * Devuelve el número de {@code Road}s.
+	 *
+	 * @return 	número de {@code Road}s vistas
+	 */
+	public int numRoads() {
+		return roadIDs.length;
+	}
+
+	/**
+	 * Devuelve el ID de un {@code Vehicle}.
+	 *
+	 * @param i 	- índice del {@code Vehicle}
+	 *
+	 * @return 		ID del {@code Vehicle}
+	 */
+	public String getVehicleID(int i) {
+		return vehicleIDs[i];
+	}
+
+	/**
+	 * Devuelve el ID de una {@code Road}.
+	 *
+	 * @param i 	- índice de la {@code Road}
+	 *
+	 * @return 		ID de la {@code Road}
+	 */
+	public String getRoadID(int i) {
+		return roadIDs[i];
+	}
+
+	/**
+	 * Devuelve el tick de llegada de un {@code Vehicle}.
+	 *
+	 * @param i 	- índice del {@code Vehicle}
+	 *
+	 * @return 		tick de llegada, o {@code 0}
+	 * 				si no ha llegado
+	 */
+	public int getArrival(int i) {
+		return arrival[i];
+	}
+
+	/**
+	 * Devuelve los ticks de espera de un {@code Vehicle}.
+	 *
+	 * @param i 	- índice del {@code Vehicle}
+	 *
+	 * @return 		ticks esperando en cruces
+	 */
+	public int getVehicleWait(int i) {
+		return vehicleWait[i];
+	}
+
+	/**
+	 * Devuelve las averías de un {@code Vehicle}.
+	 *
+	 * @param i 	- índice del {@code Vehicle}
+	 *
+	 * @return 		número de averías
+	 */
+	public int getVehicleFaults(int i) {
+		return vehicleFaults[i];
+	}
+
+	/**
+	 * Devuelve la espera acumulada en una {@code Road}.
+	 *
+	 * @param i 	- índice de la {@code Road}
+	 *
+	 * @return 		suma por tick de los
+	 * 				{@code Vehicle}s esperando
+	 */
+	public int getRoadWait(int i) {
+		return roadWait[i];
+	}
+
+	/**
+	 * Devuelve las averías ocurridas en una {@code Road}.
+	 *
+	 * @param i 	- índice de la {@code Road}
+	 *
+	 * @return 		número de averías
+	 */
+	public int getRoadFaults(int i) {
+		return roadFaults[i];
+	}
+
+	/**
+	 * Devuelve el primer error de la simulación.
+	 *
+	 * @return 	mensaje de error, o {@code null}
+	 */
+	public String getError() {
+		return error;
+	}
+}
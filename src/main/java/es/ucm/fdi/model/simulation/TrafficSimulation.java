@@ -1,20 +1,39 @@
 package es.ucm.fdi.model.simulation;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.SwingUtilities;
 
+import es.ucm.fdi.ini.AsyncIniWriter;
+import es.ucm.fdi.ini.AsyncIniWriter.Backpressure;
+import es.ucm.fdi.ini.DeltaExpander;
+import es.ucm.fdi.ini.DeltaSectionFilter;
 import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniStreamWriter;
+import es.ucm.fdi.ini.SectionRecorder;
+import es.ucm.fdi.ini.SectionSink;
 import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.events.NewODVehicle;
+import es.ucm.fdi.model.simulation.ReportSelection.Kind;
 import es.ucm.fdi.model.simobj.Junction;
 import es.ucm.fdi.model.simobj.Road;
 import es.ucm.fdi.model.simobj.SimObject;
 import es.ucm.fdi.model.simobj.Vehicle;
+import es.ucm.fdi.util.ActiveSet;
 import es.ucm.fdi.util.EventType;
-import es.ucm.fdi.util.MultiTreeMap;
 
 /**
  * Clase que representa el simulador de tráfico, almacenando 
@@ -71,9 +90,9 @@ public class TrafficSimulation {
 		
 		/**
 		 * Getter de los eventos a ejecutar.
-		 * @return MultiTreeMap con lista de eventos.
+		 * @return EventQueue con los eventos pendientes.
 		 */
-		public MultiTreeMap<Integer, Event> getEventQueue() {
+		public EventQueue getEventQueue() {
 			return events;
 		}
 		
@@ -87,12 +106,10 @@ public class TrafficSimulation {
 	}
 
 	/**
-	 * Mapa de eventos donde: {@code Integer} representa 
-	 * el tiempo de ejecución de un evento, {@code Event} 
-	 * para añadir listas de eventos que se ejecutan en 
-	 * ese tiempo.
+	 * Cola de eventos pendientes, agrupados por el 
+	 * tiempo en que se ejecutan.
 	 */
-	private MultiTreeMap<Integer, Event> events = new MultiTreeMap<>();
+	private EventQueue events = new EventQueue();
 
 	/**
 	 * Lista con los {@code Listener}s registrados en el simulador.
@@ -108,6 +125,126 @@ public class TrafficSimulation {
 	 * Tiempo actual de la simulación.
 	 */
 	private int time = 0;
+
+	/**
+	 * Pool de hilos con el que se avanzan las {@code Road}s
+	 * y las {@code Junction}s en paralelo. Si es {@code null}, el avance es secuencial.
+	 */
+	private ForkJoinPool workers = null;
+
+	/**
+	 * Booleano que indica si se saltan de golpe los 
+	 * ticks en los que no hay tráfico.
+	 */
+	private boolean fastForward = false;
+
+	/**
+	 * Valor con el que se derivan las semillas de los 
+	 * {@code CarVehicle}s. Con {@code 0} se usan las 
+	 * semillas tal cual.
+	 */
+	private long seedSalt = 0;
+
+	/**
+	 * Escritor de los informes, que reutiliza su búfer 
+	 * de un tick a otro mientras no cambie el flujo 
+	 * de salida.
+	 */
+	private IniStreamWriter reportWriter = null;
+
+	/**
+	 * Número de ticks cuyos informes pueden esperar a 
+	 * ser escritos por el hilo escritor, o {@code 0} 
+	 * si se escriben en el hilo de la simulación.
+	 */
+	private int reportSlots = 0;
+
+	/**
+	 * Qué hacer cuando todos los ticks del anillo 
+	 * esperan a ser escritos.
+	 */
+	private Backpressure backpressure = Backpressure.BLOCK;
+
+	/**
+	 * Escritor asíncrono de los informes, que sólo 
+	 * existe durante {@link #execute}.
+	 */
+	private AsyncIniWriter asyncWriter = null;
+
+	/**
+	 * Si los informes se escriben en el formato 
+	 * binario por columnas.
+	 */
+	private boolean columnarReports = false;
+
+	/**
+	 * Escritor de los informes en formato columnar.
+	 */
+	private ColumnarReportWriter columnarWriter = null;
+
+	/**
+	 * Archivo de segmentos al que van los informes, 
+	 * o {@code null} si van al flujo de salida.
+	 */
+	private ReportArchiveWriter archive = null;
+
+	/**
+	 * Fuente de la que se leen los {@code Event}s según 
+	 * avanza la simulación, o {@code null} si se reciben 
+	 * todos antes de empezar.
+	 */
+	private EventSource eventSource = null;
+
+	/**
+	 * Ticks por delante del actual hasta los que se leen 
+	 * los {@code Event}s de {@code eventSource}.
+	 */
+	private int lookahead = 0;
+
+	/**
+	 * Tiempo del siguiente {@code Event} de {@code eventSource} 
+	 * aún sin leer, o {@code null} si no quedan.
+	 */
+	private Integer pendingEventTime = null;
+
+	/**
+	 * Qué informes se escriben, o {@code null} 
+	 * para escribirlos todos en cada tick.
+	 */
+	private ReportSelection reportSelection = null;
+
+	/**
+	 * Número de ticks entre informes completos en el 
+	 * modo delta, o {@code 0} si no se usa.
+	 */
+	private int deltaInterval = 0;
+
+	/**
+	 * Filtro de los informes en el modo delta, con el 
+	 * último informe escrito de cada objeto.
+	 */
+	private DeltaSectionFilter deltaFilter = null;
+
+	/**
+	 * Flujo de salida de {@code deltaFilter}.
+	 */
+	private OutputStream deltaFile = null;
+
+	/**
+	 * Etiqueta de la sección que sustituye a los informes 
+	 * de los ticks saltados en avance rápido.
+	 */
+	private static final String UNCHANGED_REPORT = "unchanged_report";
+
+	/**
+	 * Número mágico con el que empieza un checkpoint.
+	 */
+	private static final int CHECKPOINT_MAGIC = 0x54534350;
+
+	/**
+	 * Versión del formato de los checkpoints.
+	 */
+	private static final int CHECKPOINT_VERSION = 3;
 	
 	/**
 	 * Constructor vacío del simulador.
@@ -134,6 +271,39 @@ public class TrafficSimulation {
 		// ** //
 		// Bucle de la simulación.
 		while (time <= timeLimit) {
+			// * //
+			// Con una fuente de eventos, se leen los que caen 
+			// dentro de la ventana.
+			if ( eventSource != null ) {
+				try {
+					readEvents();
+				}
+				catch (SimulationException e) {
+					fireUpdateEvent(EventType.ERROR, e.getMessage());
+					break;
+				}
+			}
+
+			// 0 // AVANCE RÁPIDO //
+			// Si no hay tráfico, se saltan los ticks hasta el 
+			// anterior al siguiente evento o al tiempo límite.
+			if ( fastForward && isIdle() ) {
+				int skipped = idleTicks(timeLimit);
+
+				if ( skipped > 0 ) {
+					try {
+						skipIdleTicks(skipped, file);
+					}
+					catch (IOException e) {
+						fireUpdateEvent(EventType.ERROR, e.getMessage());
+						break;
+					}
+					
+					//Aviso a Listeners de avance
+					fireUpdateEvent(EventType.ADVANCED, "Advanced error");
+				}
+			}
+
 			// 1 // EVENTOS //
 			// Se ejecutan los eventos correspondientes a ese tiempo.			
 			try {
@@ -142,6 +312,9 @@ public class TrafficSimulation {
 				fireUpdateEvent(EventType.ERROR, e1.getMessage());
 				break;
 			}
+
+			// Los eventos ya ejecutados no se guardan.
+			events.release(time);
 			
 			// 2 // SIMULACIÓN //
 			proceedAll();
@@ -156,7 +329,7 @@ public class TrafficSimulation {
 			// Escribir un informe en OutputStream en 
 			// caso de que no sea nulo
 			try {
-				generateReports(file);
+				generateReports(file, false);
 			}
 			catch (IOException e) {
 				fireUpdateEvent(EventType.ERROR, e.getMessage());
@@ -164,6 +337,16 @@ public class TrafficSimulation {
 			}
 
 		}
+
+		// 4 // INFORMES PENDIENTES //
+		// Con informes asíncronos, se espera a que el hilo 
+		// escritor termine antes de devolver el control.
+		try {
+			closeAsyncReports();
+		}
+		catch (IOException e) {
+			fireUpdateEvent(EventType.ERROR, e.getMessage());
+		}
 	}
 
 	/**
@@ -178,8 +361,16 @@ public class TrafficSimulation {
 	 * 								{@code SimObject}
 	 */
 	private void executeEvents() throws SimulationException{
-		if ( events.get(time) != null ) {
-			for ( Event event : events.get(time) ) {
+		List<Event> now = events.get(time);
+		if ( now != null ) {
+			// Posición hasta la que se han planificado las rutas.
+			int planned = 0;
+			for ( int i = 0; i < now.size(); ++i ) {
+				Event event = now.get(i);
+				if ( workers != null && i >= planned && event instanceof NewODVehicle ) {
+					planned = planRoutes(now, i);
+				}
+				
 				try {
 					event.execute(this);
 					
@@ -198,48 +389,411 @@ public class TrafficSimulation {
 		}
 	}
 
+	/**
+	 * Lee de {@code eventSource} los {@code Event}s hasta 
+	 * {@code lookahead} ticks por delante del actual, y 
+	 * apunta el tiempo del siguiente.
+	 * 
+	 * @throws SimulationException	if an event can't be read
+	 * 								or its time has passed
+	 */
+	private void readEvents() throws SimulationException {
+		Event next = eventSource.peek();
+		while ( next != null && next.getTime() <= time + lookahead ) {
+			if ( next.getTime() < time ) {
+				throw new SimulationException(
+					"Event time " + next.getTime() + " is lower than current time " 
+							+ time + ", beyond the lookahead window."
+				);
+			}
+			pushEvent( eventSource.poll() );
+			next = eventSource.peek();
+		}
+
+		pendingEventTime = (next != null) ? next.getTime() : null;
+	}
+
+	/**
+	 * Calcula en paralelo los caminos mínimos desde los 
+	 * orígenes de los {@code NewODVehicle}s consecutivos 
+	 * a partir de una posición de la lista de eventos. 
+	 * Entre ellos no se añade ninguna {@code Road}, así 
+	 * que los caminos siguen siendo válidos al crearlos.
+	 * 
+	 * @param now 	- eventos del tick actual
+	 * @param from 	- posición del primer {@code NewODVehicle}
+	 * 
+	 * @return 		posición siguiente al último
+	 * 
+	 * @throws SimulationException	if the landmark index
+	 * 								can't be loaded or saved
+	 */
+	private int planRoutes(List<Event> now, int from) throws SimulationException {
+		List<Junction> origins = new ArrayList<>();
+		int to = from;
+		while ( to < now.size() && now.get(to) instanceof NewODVehicle ) {
+			String originID = ( (NewODVehicle) now.get(to) ).getOriginID();
+			Junction origin = roadMap.getJunctionWithID(originID);
+			if ( origin != null ) {
+				origins.add(origin);
+			}
+			to++;
+		}
+		
+		roadMap.getRoutePlanner().prepare(origins, workers);
+		
+		return to;
+	}
+
 	/**
 	 * Llama a los métodos de avance de {@Road}s
 	 * y de {@code Junction}s.
 	 */
 	private void proceedAll(){
-		// Para cada carretera, los coches que no están 
-		// esperando avanzan.
-		for ( Road road : roadMap.getRoads().values() ) {
-			road.proceed();
+		// Sólo avanzan las carreteras con coches circulando: 
+		// se descartan las que se han quedado vacías.
+		ActiveSet<Road> activeRoads = roadMap.getActiveRoads();
+		activeRoads.prune(Road::isActive);
+
+		// Los cruces dormidos a los que pueden llegar vehículos 
+		// ponen al día su semáforo antes de que lleguen, pues 
+		// algunos semáforos dependen de las colas de espera.
+		for ( Road road : activeRoads.asList() ) {
+			road.getToJunction().catchUp();
+		}
+
+		if ( workers != null ) {
+			proceedAllParallel(activeRoads.asList());
+		}
+		else {
+			// Para cada carretera activa, los coches que no 
+			// están esperando avanzan.
+			for ( Road road : activeRoads.asList() ) {
+				road.proceed();
+			}
+
+			// Para cada cruce con vehículos a la espera, avanzan los 
+			// que puedan y se actualiza el semáforo y los tiempos de 
+			// avería de los vehículos a la espera. Los demás cruces 
+			// duermen y ponen al día su semáforo al consultarse.
+			for ( Junction junction : roadMap.getActiveJunctions() ) {
+				junction.proceed();			
+			}
+		}
+		roadMap.advanceJunctionPhase(1);
+	}
+
+	/**
+	 * Versión paralela de {@link #proceedAll()}, con el mismo 
+	 * resultado que la secuencial.
+	 * <p>
+	 * Cada {@code Road} sólo modifica sus propios vehículos, por 
+	 * lo que todas pueden avanzar a la vez. 
+	 * </p> <p>
+	 * Las {@code Junction}s, en cambio, meten los vehículos que 
+	 * cruzan en {@code Road}s que son entrantes de otras 
+	 * {@code Junction}s. Para evitarlo, cada {@code Junction} 
+	 * deja sus cruces en el buzón de su {@code Road} de salida 
+	 * y, una vez han avanzado todas, los buzones se vacían en 
+	 * el orden en que avanzan las {@code Junction}s.
+	 * </p>
+	 * 
+	 * @param roads 	- {@code Road}s activas a avanzar
+	 */
+	private void proceedAllParallel(List<Road> roads) {
+		// Las páginas compartidas con otra simulación se 
+		// copian antes de que escriban en ellas varios hilos.
+		roadMap.getVehicleStore().unshare();
+
+		workers.invoke(new ProceedTask<>(roads, Road::proceed));
+
+		List<Junction> junctions = roadMap.getActiveJunctions();
+		workers.invoke(new ProceedTask<>(junctions, Junction::proceedHoldingCrossings));
+		
+		for ( Junction junction : junctions ) {
+			junction.releaseCrossings();
 		}
+	}
+
+	/**
+	 * Comprueba si la simulación está en reposo: no hay 
+	 * {@code Vehicle}s circulando ni esperando en ningún 
+	 * cruce. En ese caso, un tick sin eventos sólo cambia 
+	 * los semáforos.
+	 * 
+	 * @return 	si no hay tráfico
+	 */
+	private boolean isIdle() {
+		ActiveSet<Road> activeRoads = roadMap.getActiveRoads();
+		activeRoads.prune(Road::isActive);
+		if ( ! activeRoads.isEmpty() ) {
+			return false;
+		}
+
+		return roadMap.getActiveJunctions().isEmpty();
+	}
+
+	/**
+	 * Calcula cuántos ticks pueden saltarse estando en 
+	 * reposo: todos hasta el anterior al siguiente 
+	 * {@code Event}, al siguiente tick con informes o 
+	 * al tiempo límite, que se simula de forma normal 
+	 * para generar un informe completo.
+	 * 
+	 * @param timeLimit 	- último tick a simular
+	 * 
+	 * @return 				número de ticks a saltar
+	 */
+	private int idleTicks(int timeLimit) {
+		int target = timeLimit + 1;
 
-		// Para cada cruce, avanzan los vehículos a la espera que 
-		// puedan y se actualiza el semáforo y los tiempos de 
-		// avería de los vehículos a la espera.
-		for ( Junction junction : roadMap.getJunctions().values() ) {
-			junction.proceed();			
+		int nextEvent = events.nextTime(time);
+		if ( nextEvent >= 0 && nextEvent < target ) {
+			target = nextEvent;
+		}
+		if ( pendingEventTime != null && pendingEventTime < target ) {
+			target = pendingEventTime;
+		}
+		if ( reportSelection != null ) {
+			target = Math.min(target, reportSelection.nextReportTime(time));
 		}
+
+		return target - time - 1;
 	}
 
 	/**
-	 * Genera informes de todos los {@code SimObject}s.
+	 * Salta de golpe un número de ticks en reposo, en los 
+	 * que sólo cambian los semáforos. Las {@code Junction}s, 
+	 * todas dormidas, los ponen al día al consultarse.
+	 * <p>
+	 * Los informes de esos ticks se sustituyen por los de 
+	 * las {@code Junction}s que cambian en cada uno, seguidos 
+	 * de una sección {@code [unchanged_report]}: las 
+	 * {@code Road}s y los {@code Vehicle}s siguen igual que 
+	 * en el informe del tiempo {@code since} hasta el tiempo 
+	 * {@code time}. En modo delta, cada tick saltado es un 
+	 * tick delta en el que sólo cambian las {@code Junction}s.
+	 * </p>
+	 * 
+	 * @param ticks 	- número de ticks a saltar
+	 * @param file 		- fichero de salida
+	 * 
+	 * @throws IOException	if an IO error ocurred during
+	 * 						reports generation
+	 */
+	private void skipIdleTicks(int ticks, OutputStream file) 
+			throws IOException {
+		
+		int since = time;
+
+		// Con informes cada varios ticks, el salto nunca 
+		// cubre uno de ellos y no se informa de él.
+		boolean reported = ( reportSelection == null 
+				|| reportSelection.nextReportTime(since) <= since + ticks );
+
+		if ( (file == null && archive == null) || ! reported ) {
+			roadMap.advanceJunctionPhase(ticks);
+			time += ticks;
+		}
+		else if ( deltaInterval > 0 && ! columnarReports ) {
+			for (int i = 0; i < ticks; ++i) {
+				roadMap.advanceJunctionPhase(1);
+				time++;
+				generateReports(file, true);
+			}
+		}
+		else {
+			// Estado de las Junctions en el tiempo since, con 
+			// el que se comparan las del primer tick saltado.
+			List<Junction> junctions = roadMap.getJunctionList();
+			DeltaSectionFilter changes = new DeltaSectionFilter(1);
+			changes.beginChanges(new SectionRecorder());
+			for (Junction junction : junctions) {
+				junction.report(time, changes);
+			}
+
+			SectionSink out = beginReports(file);
+			changes.beginChanges(out);
+			for (int i = 0; i < ticks; ++i) {
+				roadMap.advanceJunctionPhase(1);
+				time++;
+				for (Junction junction : junctions) {
+					junction.report(time, changes);
+				}
+			}
+			out.beginSection(UNCHANGED_REPORT);
+			out.value("since", since);
+			out.value("time", time);
+			out.endSection();
+			endReports(out);
+		}
+	}
+
+	/**
+	 * Devuelve el escritor de informes de un flujo 
+	 * de salida, creándolo si el flujo ha cambiado.
+	 */
+	private IniStreamWriter reportWriter(OutputStream file) {
+		if ( reportWriter == null || reportWriter.getOutputStream() != file ) {
+			reportWriter = new IniStreamWriter(file);
+		}
+
+		return reportWriter;
+	}
+
+	/**
+	 * Genera informes de todos los {@code SimObject}s, 
+	 * o sólo de los elegidos en {@code reportSelection}.
 	 * 
 	 * @param file 	- fichero de salida
+	 * @param idle 	- si el tick se ha saltado en reposo: 
+	 * 				en modo delta, las {@code Road}s y los 
+	 * 				{@code Vehicle}s no cambian y sólo se 
+	 * 				informa de ellos en los keyframes
 	 */
-	private void generateReports(OutputStream file) 
+	private void generateReports(OutputStream file, boolean idle) 
 			throws IOException {
 		
-		if (file != null) {
-			Ini iniFile = generateIniReports();
+		if ( reportSelection != null && ! reportSelection.isReportTime(time) ) {
+			return;
+		}
+
+		if (file != null || archive != null) {
+			SectionSink out = beginReports(file);
+			SectionSink reports = out;
+			
+			// En modo delta sólo pasan los objetos que cambian.
+			if ( deltaInterval > 0 && ! columnarReports ) {
+				if ( deltaFilter == null || deltaFile != file ) {
+					deltaFilter = new DeltaSectionFilter(deltaInterval);
+					deltaFile = file;
+				}
+				deltaFilter.beginTick(out, time);
+				reports = deltaFilter;
+			}
+			
+			List<Junction> junctions = roadMap.getJunctionList();
+			List<Road> roads = roadMap.getRoadList();
+			List<Vehicle> vehicles = roadMap.getVehicleList();
+			if ( reportSelection != null ) {
+				junctions = reportSelection.select(Kind.JUNCTION, junctions);
+				roads = reportSelection.select(Kind.ROAD, roads);
+				vehicles = reportSelection.select(Kind.VEHICLE, vehicles);
+			}
+			
+			for (Junction junction : junctions ) {
+				junction.report(time, reports);
+			}
+			if ( idle && ! deltaFilter.isKeyframe() ) {
+				roads = Collections.emptyList();
+				vehicles = Collections.emptyList();
+			}
+			for (Road road : roads ) {
+				road.report(time, reports);
+			}
+			for (Vehicle vehicle : vehicles ) {
+				vehicle.report(time, reports);
+			}
 			
 			// Guardado en el outputStream
-			try{
-				iniFile.store(file);
+			endReports(out);
+		}
+	}
+
+	/**
+	 * Devuelve dónde escribir los informes de un tick: 
+	 * el escritor del flujo de salida o, si los informes 
+	 * son asíncronos, un registro libre del anillo.
+	 * 
+	 * @param file 	- fichero de salida
+	 * 
+	 * @throws IOException 	if an earlier write failed
+	 */
+	private SectionSink beginReports(OutputStream file) 
+			throws IOException {
+		
+		if ( archive != null ) {
+			return archive;
+		}
+		if ( columnarReports ) {
+			if ( columnarWriter == null || columnarWriter.getOutputStream() != file ) {
+				columnarWriter = new ColumnarReportWriter(file);
+			}
+			return columnarWriter;
+		}
+		if ( reportSlots == 0 ) {
+			return reportWriter(file);
+		}
+
+		if ( asyncWriter != null && asyncWriter.getOutputStream() != file ) {
+			closeAsyncReports();
+		}
+		if ( asyncWriter == null ) {
+			asyncWriter = new AsyncIniWriter(file, reportSlots, backpressure);
+		}
+		try {
+			return asyncWriter.claim();
+		}
+		catch (IOException e) {
+			throw saveError(e);
+		}
+	}
+
+	/**
+	 * Termina los informes de un tick, escribiéndolos o 
+	 * pasándolos al hilo escritor.
+	 * 
+	 * @param out 	- destino devuelto por {@link #beginReports}
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	private void endReports(SectionSink out) 
+			throws IOException {
+		
+		try {
+			if ( out instanceof SectionRecorder ) {
+				asyncWriter.publish((SectionRecorder) out);
+			}
+			else {
+				((Flushable) out).flush();
+			}
+		}
+		catch (IOException e) {
+			throw saveError(e);
+		}
+	}
+
+	/**
+	 * Espera a que se escriban los informes asíncronos 
+	 * pendientes y detiene el hilo escritor.
+	 * 
+	 * @throws IOException 	if writing fails
+	 */
+	private void closeAsyncReports() 
+			throws IOException {
+		
+		if ( asyncWriter != null ) {
+			try {
+				asyncWriter.close();
 			}
 			catch (IOException e) {
-				throw new IOException(
-					"Error when saving file on time " + time + ":" + 
-					e.getMessage()
-				);
+				throw saveError(e);
+			}
+			finally {
+				asyncWriter = null;
 			}
 		}
 	}
+
+	/**
+	 * Error de escritura de los informes en el tick actual.
+	 */
+	private IOException saveError(IOException e) {
+		return new IOException(
+			"Error when saving file on time " + time + ":" + 
+			e.getMessage()
+		);
+	}
 	
 	/**
 	 * Añade un {@code Event} al mapa de {@code Event}s 
@@ -262,7 +816,7 @@ public class TrafficSimulation {
 		}
 
 		// Añade el evento al mapa.
-		events.putValue(e.getTime(), e);
+		events.add(e);
 		fireUpdateEvent(EventType.NEW_EVENT, "New Event error.");
 	}
 	
@@ -279,30 +833,6 @@ public class TrafficSimulation {
 		return iniFile.toString();
 	}
 	
-	/**
-	 * Genera un {@code Ini} con informes de todos 
-	 * los {@code SimObject}s
-	 * 
-	 * @return 	{@code Ini} con informes creados
-	 */
-	private Ini generateIniReports(){
-		//Creación de ini
-		Ini iniFile = new Ini();
-		//Junctions:
-		for (Junction junction : roadMap.getJunctions().values() ) {
-			iniFile.addsection(junction.generateIniSection(time));
-		}
-		//Roads:
-		for (Road road : roadMap.getRoads().values() ) {
-			iniFile.addsection(road.generateIniSection(time));
-		}
-		//Vehicles:
-		for (Vehicle vehicle : roadMap.getVehicles().values() ) {
-			iniFile.addsection(vehicle.generateIniSection(time));
-		}
-		return iniFile;
-	}
-
 	/**
 	 * Genera un {@code .ini} con informes de los
 	 * {@code SimObject}s que recibe como argumento.
@@ -414,6 +944,156 @@ public class TrafficSimulation {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Guarda en un fichero binario el estado completo de la 
+	 * simulación: el tiempo actual, los objetos del 
+	 * {@code RoadMap} con su estado (colas, carriles, 
+	 * semáforos y generadores aleatorios) y los 
+	 * {@code Event}s pendientes.
+	 * </p> <p>
+	 * Al cargarlo con {@link #loadCheckpoint(File)} la 
+	 * simulación sigue exactamente igual que si no se 
+	 * hubiera interrumpido.
+	 * </p>
+	 * 
+	 * @param file 	- fichero del checkpoint
+	 * 
+	 * @throws IOException	if writing fails
+	 */
+	public void saveCheckpoint(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			writeCheckpoint(out);
+		}
+	}
+
+	/**
+	 * Sustituye el estado de la simulación por el guardado 
+	 * con {@link #saveCheckpoint(File)}. Se mantienen los 
+	 * hilos, el avance rápido y el almacén de los 
+	 * {@code Vehicle}s elegidos.
+	 * 
+	 * @param file 	- fichero del checkpoint
+	 * 
+	 * @throws IOException	if reading fails or the file 
+	 * 						is not a valid checkpoint
+	 */
+	public void loadCheckpoint(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if ( in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION ) {
+				throw new IOException("Not a valid checkpoint: " + file);
+			}
+
+			events.clear();
+			roadMap.clear();
+			readCheckpoint(in);
+		}
+
+		fireUpdateEvent(EventType.NEW_EVENT, "New Event error.");
+		fireUpdateEvent(EventType.ADVANCED, "Advanced error");
+	}
+
+	/**
+	 * Escribe el estado de la simulación tras la cabecera
+	 * del checkpoint.
+	 */
+	private void writeCheckpoint(DataOutputStream out) throws IOException {
+		out.writeInt(time);
+		out.writeLong(seedSalt);
+		roadMap.writeCheckpoint(out);
+
+		out.writeInt(events.size());
+		for (Event event : events.pending()) {
+			event.write(out);
+		}
+	}
+
+	/**
+	 * Lee el estado de la simulación tras la cabecera
+	 * del checkpoint, sobre un mapa vacío.
+	 */
+	private void readCheckpoint(DataInputStream in) throws IOException {
+		time = in.readInt();
+		seedSalt = in.readLong();
+		roadMap.readCheckpoint(in);
+
+		int numEvents = in.readInt();
+		for (int i = 0; i < numEvents; ++i) {
+			Event event = Event.read(in);
+			// Los de checkpoints antiguos pueden estar ya ejecutados.
+			if ( event.getTime() >= time ) {
+				events.add(event);
+			}
+		}
+	}
+
+	/**
+	 * Crea una copia independiente de la simulación en su
+	 * estado actual, para probar qué pasa si a partir de
+	 * ahora ocurren otros {@code Event}s.
+	 * 
+	 * @return 	simulación copiada
+	 * 
+	 * @see #fork(int)
+	 */
+	public TrafficSimulation fork() {
+		return fork(1).get(0);
+	}
+
+	/**
+	 * <p>
+	 * Crea varias copias independientes de la simulación en
+	 * su estado actual. Cada una sigue exactamente igual que
+	 * seguiría ésta si no se le añaden otros {@code Event}s,
+	 * y lo que escribe al avanzar no lo ven ni ésta ni las
+	 * demás, así que pueden ejecutarse a la vez en hilos
+	 * distintos.
+	 * </p> <p>
+	 * Lo que no cambia se comparte en lugar de copiarse: los
+	 * {@code Event}s pendientes, los caminos mínimos y el
+	 * {@code LandmarkIndex} ya calculados. Las páginas del
+	 * {@code VehicleStore} y los carriles y colas de cada
+	 * {@code Road} también se comparten, y cada simulación
+	 * copia una página o un carril la primera vez que escribe
+	 * en él. Los objetos en sí, en cambio, se crean de nuevo,
+	 * pues se apuntan unos a otros: copiar cuesta un
+	 * {@code Junction}, {@code Road}, {@code Vehicle} y
+	 * {@code Route} por cada uno del mapa, aunque sin copiar
+	 * ninguna fila ni carril. Una copia que avance con varios
+	 * hilos copia antes las páginas que aún comparte.
+	 * Las copias mantienen el avance rápido, pero no los
+	 * {@code Listener}s y avanzan sin hilos propios.
+	 * </p>
+	 * 
+	 * @param copies 	- número de copias
+	 * 
+	 * @return 			simulaciones copiadas
+	 */
+	public List<TrafficSimulation> fork(int copies) {
+		List<TrafficSimulation> forks = new ArrayList<>(copies);
+		for (int i = 0; i < copies; ++i) {
+			TrafficSimulation fork = new TrafficSimulation();
+			fork.fastForward = fastForward;
+			fork.time = time;
+			fork.seedSalt = seedSalt;
+			fork.roadMap.copy(roadMap);
+			fork.roadMap.getRoutePlanner().shareFrom(roadMap.getRoutePlanner());
+
+			for (Event event : events.pending()) {
+				fork.events.add(event);
+			}
+			forks.add(fork);
+		}
+
+		return forks;
+	}
+
 	/**
 	 * Reinicia el simulador, borrando los eventos
 	 * y el mapa.
@@ -425,6 +1105,216 @@ public class TrafficSimulation {
 		fireUpdateEvent(EventType.RESET, "Reset error");
 	}
 	
+	/**
+	 * Fija el número de hilos con los que se avanzan las 
+	 * {@code Road}s en cada tick. Con un único hilo (o menos)
+	 * el avance es secuencial. Los informes generados son 
+	 * idénticos en ambos casos.
+	 * 
+	 * @param threads 	- número de hilos de trabajo
+	 */
+	public void setParallelism(int threads) {
+		if ( workers != null ) {
+			workers.shutdown();
+		}
+		workers = (threads > 1) ? new ForkJoinPool(threads) : null;
+	}
+
+	/**
+	 * Activa o desactiva el avance rápido, que salta de 
+	 * golpe los ticks en los que no hay tráfico y resume
+	 * sus informes en los de las {@code Junction}s que 
+	 * cambian y una sección {@code [unchanged_report]}.
+	 * 
+	 * @param enabled 	- si se activa el avance rápido
+	 */
+	public void setFastForward(boolean enabled) {
+		fastForward = enabled;
+	}
+
+	/**
+	 * Elige si el estado de los {@code Vehicle}s se guarda 
+	 * fuera del heap. Debe fijarse antes de crear ninguno.
+	 * 
+	 * @param offHeap 	- si se guarda fuera del heap
+	 * 
+	 * @throws IllegalStateException	if vehicles already
+	 * 									exist
+	 */
+	public void setOffHeapVehicles(boolean offHeap) {
+		roadMap.setOffHeapVehicles(offHeap);
+	}
+
+	/**
+	 * Hace que los informes de cada tick se copien a un 
+	 * anillo de registros y los escriba un hilo aparte, de 
+	 * forma que la simulación no espera a la salida. Con 
+	 * {@code 0} registros se escriben en el propio tick. 
+	 * Los informes generados son idénticos en ambos casos.
+	 * 
+	 * @param slots 	- ticks que pueden esperar a 
+	 * 					ser escritos
+	 * @param policy 	- qué hacer si no queda sitio: 
+	 * 					esperar o volcar a disco
+	 * 
+	 * @throws IllegalArgumentException 	if slots is 
+	 * 										negative
+	 */
+	public void setAsyncReports(int slots, Backpressure policy) {
+		if ( slots < 0 ) {
+			throw new IllegalArgumentException(
+				"Invalid number of report slots: " + slots
+			);
+		}
+		reportSlots = slots;
+		backpressure = policy;
+	}
+
+	/**
+	 * Elige si los informes se escriben en el formato 
+	 * binario por columnas de {@link ColumnarReportWriter} 
+	 * en lugar de en {@code .ini}. Se escriben en el hilo 
+	 * de la simulación y siempre completos, así que no se 
+	 * combina con los informes asíncronos ni delta.
+	 * 
+	 * @param enabled 	- si se usa el formato columnar
+	 */
+	public void setColumnarReports(boolean enabled) {
+		columnarReports = enabled;
+		columnarWriter = null;
+	}
+
+	/**
+	 * Hace que los informes se escriban en un archivo de 
+	 * segmentos con índice, en lugar de en el flujo de 
+	 * salida de {@link #execute}, que puede ser nulo. 
+	 * Como el formato columnar, no se combina con los 
+	 * informes asíncronos ni delta. El archivo no se 
+	 * cierra al terminar la simulación.
+	 * 
+	 * @param reportArchive 	- archivo de segmentos, o 
+	 * 							{@code null} para volver 
+	 * 							al flujo de salida
+	 */
+	public void setReportArchive(ReportArchiveWriter reportArchive) {
+		archive = reportArchive;
+	}
+
+	/**
+	 * Hace que la simulación lea sus {@code Event}s de una 
+	 * fuente según avanza, en lugar de recibirlos todos antes 
+	 * de empezar: en cada tick se leen los que caen hasta 
+	 * {@code lookahead} ticks por delante, y se olvidan una 
+	 * vez ejecutados. Así, los {@code Event}s en memoria 
+	 * dependen de la ventana y no del tamaño de la fuente. 
+	 * Un {@code Event} que llega cuando su tiempo ya ha 
+	 * pasado es un error de la simulación.
+	 * 
+	 * @param source 	- fuente de {@code Event}s, o 
+	 * 					{@code null} para dejar de usarla
+	 * @param ticks 	- ticks por delante del actual 
+	 * 					hasta los que se leen
+	 * 
+	 * @throws IllegalArgumentException 	if the window 
+	 * 										is negative
+	 */
+	public void setEventSource(EventSource source, int ticks) {
+		if ( ticks < 0 ) {
+			throw new IllegalArgumentException(
+				"Invalid lookahead window: " + ticks
+			);
+		}
+		eventSource = source;
+		lookahead = ticks;
+		pendingEventTime = null;
+	}
+
+	/**
+	 * Elige qué informes se escriben: cada cuántos ticks, 
+	 * de qué tipos de objeto y de qué IDs. Los objetos que 
+	 * no se eligen no llegan a generar su informe. Con 
+	 * avance rápido, los saltos se detienen antes de cada 
+	 * tick con informes, y los que no cubren ninguno no 
+	 * escriben su sección {@code [unchanged_report]}.
+	 * 
+	 * @param selection 	- informes que se escriben, o 
+	 * 						{@code null} para escribirlos 
+	 * 						todos en cada tick
+	 */
+	public void setReportSelection(ReportSelection selection) {
+		reportSelection = selection;
+	}
+
+	/**
+	 * Activa o desactiva el modo delta, en el que cada 
+	 * tick sólo se informa de los objetos que han cambiado 
+	 * desde el anterior, con un informe completo cada 
+	 * {@code keyframeInterval} ticks. La salida empieza 
+	 * siempre por uno completo, y se puede volver al 
+	 * formato de siempre con {@link DeltaExpander}.
+	 * 
+	 * @param keyframeInterval 	- ticks entre informes 
+	 * 							completos, o {@code 0} 
+	 * 							para desactivarlo
+	 * 
+	 * @throws IllegalArgumentException 	if the interval 
+	 * 										is negative
+	 */
+	public void setDeltaReports(int keyframeInterval) {
+		if ( keyframeInterval < 0 ) {
+			throw new IllegalArgumentException(
+				"Invalid keyframe interval: " + keyframeInterval
+			);
+		}
+		deltaInterval = keyframeInterval;
+		deltaFilter = null;
+		deltaFile = null;
+	}
+
+	/**
+	 * Fija el valor con el que se derivan las semillas de los 
+	 * {@code CarVehicle}s creados a partir de ahora, de forma 
+	 * que cada valor da una réplica distinta del mismo escenario. 
+	 * Con {@code 0} se usan las semillas del escenario.
+	 * 
+	 * @param salt 	- valor de derivación
+	 */
+	public void setSeedSalt(long salt) {
+		seedSalt = salt;
+	}
+
+	/**
+	 * Devuelve la semilla con la que se crea un 
+	 * {@code CarVehicle} en esta simulación.
+	 * 
+	 * @param seed 	- semilla del escenario
+	 * 
+	 * @return 		semilla derivada
+	 */
+	public long deriveSeed(long seed) {
+		if ( seedSalt == 0 ) {
+			return seed;
+		}
+
+		// Mezcla de SplitMix64, para que réplicas consecutivas
+		// no den semillas parecidas.
+		long z = seed + seedSalt * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Hace que las rutas de los {@code Vehicle}s de origen 
+	 * y destino se busquen con un {@code LandmarkIndex}, 
+	 * guardado en un fichero si se da.
+	 * 
+	 * @param file 	- fichero del índice o {@code null}
+	 */
+	public void setLandmarkIndex(File file) {
+		roadMap.getRoutePlanner().useLandmarks(file);
+	}
+
 	/**
 	 * Devuelve el mapa de la simulación.
 	 * 
@@ -444,13 +1334,13 @@ public class TrafficSimulation {
 	}
 
 	/**
-	 * Devuelve el listado de eventos de la 
+	 * Devuelve los eventos pendientes de la 
 	 * simulación.
 	 * 
-	 * @return 	{@code MultiTreeMap} con el 
-	 * 			listado de eventos
+	 * @return 	{@code EventQueue} con los 
+	 * 			eventos pendientes
 	 */
-	public MultiTreeMap<Integer, Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
@@ -0,0 +1,134 @@
+package es.ucm.fdi.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ * Conjunto de los objetos que tienen trabajo pendiente,
+ * guardado como lista para poder recorrerlo (o repartirlo
+ * entre hilos) en cada tick sin coste extra.
+ * </p> <p>
+ * Los objetos entran con {@link #wake(Object)} cuando les
+ * ocurre algo y salen con {@link #prune(Predicate)} cuando
+ * se quedan dormidos. Cada objeto se identifica por un
+ * índice denso no negativo, así que comprobar si está es
+ * consultar un bit. No es seguro entre hilos: los objetos
+ * se despiertan y se descartan desde un único hilo.
+ * </p>
+ *
+ * @param <T>   tipo de los objetos del conjunto
+ */
+public class ActiveSet<T> {
+
+    /**
+     * Objetos activos, por orden de entrada.
+     */
+    private final List<T> members = new ArrayList<>();
+
+    /**
+     * Índices de los objetos activos.
+     */
+    private final BitSet present = new BitSet();
+
+    /**
+     * Función que da el índice denso de cada objeto.
+     */
+    private final ToIntFunction<? super T> indexer;
+
+    /**
+     * Constructor de {@link ActiveSet}.
+     *
+     * @param indexer   - índice denso de cada objeto; dos
+     *                  objetos distintos tienen índices
+     *                  distintos
+     */
+    public ActiveSet(ToIntFunction<? super T> indexer) {
+        this.indexer = indexer;
+    }
+
+    /**
+     * Añade un objeto al final del conjunto, si no estaba.
+     *
+     * @param obj   - objeto a despertar
+     *
+     * @return      si estaba dormido
+     */
+    public boolean wake(T obj) {
+        int index = indexer.applyAsInt(obj);
+        if (present.get(index)) {
+            return false;
+        }
+        present.set(index);
+        members.add(obj);
+        return true;
+    }
+
+    /**
+     * Quita los objetos que ya no están activos, sin
+     * cambiar el orden relativo de los demás.
+     *
+     * @param stillActive   - indica si un objeto sigue
+     *                      teniendo trabajo pendiente
+     */
+    public void prune(Predicate<? super T> stillActive) {
+        int kept = 0;
+        for (int i = 0; i < members.size(); i++) {
+            T obj = members.get(i);
+            if (stillActive.test(obj)) {
+                members.set(kept++, obj);
+            } else {
+                present.clear(indexer.applyAsInt(obj));
+            }
+        }
+        members.subList(kept, members.size()).clear();
+    }
+
+    /**
+     * Devuelve los objetos activos como lista de sólo
+     * lectura, por orden de entrada. Refleja los cambios
+     * posteriores del conjunto.
+     *
+     * @return  objetos activos
+     */
+    public List<T> asList() {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Comprueba si un objeto está activo.
+     *
+     * @param obj   - objeto a comprobar
+     *
+     * @return      si está en el conjunto
+     */
+    public boolean contains(T obj) {
+        return present.get(indexer.applyAsInt(obj));
+    }
+
+    /**
+     * @return  número de objetos activos
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * @return  si no hay ningún objeto activo
+     */
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * Duerme todos los objetos.
+     */
+    public void clear() {
+        members.clear();
+        present.clear();
+    }
+}
@@ -60,7 +60,6 @@ import es.ucm.fdi.model.simulation.TrafficSimulation;
 import es.ucm.fdi.model.simulation.TrafficSimulation.Listener;
 import es.ucm.fdi.model.simulation.TrafficSimulation.UpdateEvent;
 import es.ucm.fdi.util.Describable;
-import es.ucm.fdi.util.MultiTreeMap;
 
 /**
  * JFrame que representa la interfaz gráfica de la simulación.
@@ -383,8 +382,7 @@ public class SimWindow extends JFrame {
 	 * Creación de la tabla de eventos.
 	 */
 	private void addEventsView() {
-		MultiTreeMap<Integer, Event> eventsMap = control.getSimulator().getEvents();
-		List<Event> eventsList = eventsMap.valuesList();
+		List<Event> eventsList = control.getSimulator().getEvents().pending();
 
 		eventsTable = new SimTable(Event.descriptionCols, eventsList);
 
@@ -534,7 +532,7 @@ public class SimWindow extends JFrame {
 		public void update(UpdateEvent ue, String error) {
 			switch (ue.getEvent()) {
 				case NEW_EVENT:
-					List<Event> addedEvents = ue.getEventQueue().valuesList();
+					List<Event> addedEvents = ue.getEventQueue().pending();
 					eventsTable.setList(addedEvents);
 					infoText.setText("Events added to the simulator.");
 					break;
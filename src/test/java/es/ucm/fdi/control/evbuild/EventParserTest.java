@@ -1,6 +1,7 @@
 package es.ucm.fdi.control.evbuild;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -9,6 +10,7 @@ import es.ucm.fdi.model.events.Event;
 import es.ucm.fdi.model.events.FaultyVehicle;
 import es.ucm.fdi.model.events.NewJunction;
 import es.ucm.fdi.model.events.NewRoad;
+import es.ucm.fdi.model.events.NewRobinJunction;
 import es.ucm.fdi.model.events.NewVehicle;
 
 import static org.junit.Assert.*;
@@ -75,4 +77,54 @@ public class EventParserTest {
 		assertEquals("faulty vehicle builder test", fv, current);
 	}
 	
+	@Test
+	public void dispatchAndParallelParse() throws Exception {
+		EventParser parser = new EventParser();
+		
+		//Cada sección va al builder de su etiqueta y tipo
+		IniSection robin = new IniSection("new_junction");
+		robin.setValue("id", "j1");
+		robin.setValue("type", "rr");
+		robin.setValue("min_time_slice", 1);
+		robin.setValue("max_time_slice", 3);
+		assertEquals(NewRobinJunction.class, parser.parse(robin).getClass());
+		robin.setValue("type", "xx");
+		try {
+			parser.parse(robin);
+			fail("Unknown type");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("No event found.", e.getMessage());
+		}
+		
+		//IDs como \\w+
+		assertTrue(EventBuilder.validID("a_Z09"));
+		assertFalse(EventBuilder.validID(""));
+		assertFalse(EventBuilder.validID("a-b"));
+		assertFalse(EventBuilder.validID("ñ"));
+		
+		//En varios hilos, los mismos eventos en el mismo orden
+		List<IniSection> sections = new ArrayList<>();
+		for (int i = 0; i < 5000; ++i) {
+			IniSection junction = new IniSection("new_junction");
+			junction.setValue("time", i % 7);
+			junction.setValue("id", "j" + i);
+			sections.add(junction);
+		}
+		List<Event> sequential = parser.parseAll(sections, 1);
+		assertEquals(5000, sequential.size());
+		assertEquals(sequential, parser.parseAll(sections, 4));
+		
+		//Con varios errores, se da el primero
+		sections.get(3000).setValue("id", "bad-3000");
+		sections.get(4500).setValue("id", "bad-4500");
+		try {
+			parser.parseAll(sections, 4);
+			fail("Illegal IDs");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("bad-3000"));
+		}
+	}
+	
 }
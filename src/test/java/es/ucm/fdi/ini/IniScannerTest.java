@@ -0,0 +1,85 @@
+package es.ucm.fdi.ini;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IniScannerTest {
+	
+	@Test
+	public void mappedIniTest() throws Exception {
+		//Mismas secciones, con las claves en el mismo orden, que leyendo el flujo
+		List<File> files = new ArrayList<>();
+		for (String folder : new String[] { "basic", "advanced", "err", "new" }) {
+			files.addAll(Arrays.asList(new File("src/test/resources/examples/" + folder)
+					.listFiles((d, name) -> name.endsWith(".ini") || name.endsWith(".eout"))));
+		}
+		File edges = File.createTempFile("edges", ".ini");
+		edges.deleteOnExit();
+		Files.write(edges.toPath(), ("; comentario\r\n \t\r\n[ a b ]  \r\nk = v = w\r\n"
+				+ "  # clave = x\r\n[!oculta]\rz=1\r[ñ]\n ñk = ñv \t\n,x\n[x]]y=2").getBytes());
+		files.add(edges);
+		
+		for (File file : files) {
+			Ini mapped = new Ini(file.getPath());
+			Ini read = new Ini(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+			assertEquals(file.getName(), read, mapped);
+			for (int i = 0; i < read.getSections().size(); ++i) {
+				assertEquals(read.getSections().get(i).getKeys(), 
+						mapped.getSections().get(i).getKeys());
+			}
+		}
+		assertEquals(2, new Ini(edges.getPath()).getSections().size());
+		
+		//Los errores de sintaxis se detectan igual
+		Files.write(edges.toPath(), "[s]\nk=v\nsin igual\n".getBytes());
+		try {
+			new Ini(edges.getPath());
+			fail("Line without '='");
+		}
+		catch (IOException e) {
+			assertEquals("Syntax error: line sin igual", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void chunkedReaderTest() throws Exception {
+		//Líneas partidas entre lecturas, \r\n incluido, y una más larga que el buffer
+		StringBuilder text = new StringBuilder("[a]\r\nk = v\r\n[!b]\nz=1\n[c]\rlong = ");
+		for (int i = 0; i < 100000; ++i) {
+			text.append((char) ('a' + i % 26));
+		}
+		text.append("\n; fin\n[d]\nñ = ü");
+		byte[] bytes = text.toString().getBytes();
+		File file = File.createTempFile("chunks", ".ini");
+		file.deleteOnExit();
+		Files.write(file.toPath(), bytes);
+		Ini mapped = new Ini(file.getPath());
+		assertEquals(3, mapped.getSections().size());
+		
+		for (int chunk : new int[] { 1, 2, 7, 1 << 20 }) {
+			IniSectionReader reader = new IniSectionReader(new ByteArrayInputStream(bytes) {
+				@Override
+				public synchronized int read(byte[] b, int off, int len) {
+					return super.read(b, off, Math.min(len, chunk));
+				}
+			});
+			for (IniSection section : mapped.getSections()) {
+				IniSection read = reader.next();
+				assertEquals("chunk " + chunk, section, read);
+				assertEquals(section.getKeys(), read.getKeys());
+			}
+			assertNull(reader.next());
+			assertNull(reader.next());
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package es.ucm.fdi.model.events;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import es.ucm.fdi.control.Controller;
+import es.ucm.fdi.control.evbuild.EventParser;
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+import static org.junit.Assert.*;
+
+public class CompiledScenarioTest {
+
+	@Test
+	public void compiledScenarioTest() throws Exception {
+		String[] folders = { "basic", "advanced" };
+		File compiled = File.createTempFile("scenario", ".tsc");
+
+		try {
+			for (String folder : folders) {
+				File dir = new File("src/test/resources/examples/" + folder);
+				for (File source : dir.listFiles((d, name) -> name.endsWith(".ini"))) {
+					byte[] hash = CompiledScenario.hash(source);
+					CompiledScenario.write(parse(source), hash, compiled);
+
+					assertTrue(CompiledScenario.isCompiled(compiled));
+					assertFalse(CompiledScenario.isCompiled(source));
+					assertArrayEquals(hash, CompiledScenario.getSourceHash(compiled));
+					assertNull(CompiledScenario.getSourceHash(source));
+
+					//Mismos informes que con el archivo .ini
+					List<Event> events = CompiledScenario.read(compiled);
+					assertEquals(new Ini(source.getPath()).getSections().size(), events.size());
+					assertArrayEquals(source.getName(), 
+							Files.readAllBytes(new File(source.getPath() + ".eout").toPath()), 
+							run(events));
+				}
+			}
+		}
+		finally {
+			compiled.delete();
+		}
+	}
+
+	@Test
+	public void cacheTest() throws Exception {
+		File dir = Files.createTempDirectory("scenarios").toFile();
+		File source = copy("advanced/11_car.ini", dir);
+		File compiled = new File(source.getPath() + ".tsc");
+		AtomicInteger parsed = new AtomicInteger();
+		Callable<List<Event>> parser = () -> {
+			parsed.incrementAndGet();
+			return parse(source);
+		};
+
+		try {
+			//La primera vez se compila al lado del .ini, como con --scenario-cache
+			List<Event> events = CompiledScenario.load(compiled,
+					CompiledScenario.hash(source), parser);
+			assertEquals(1, parsed.get());
+			assertArrayEquals(CompiledScenario.hash(source),
+					CompiledScenario.getSourceHash(compiled));
+			byte[] expected = run(parse(source));
+			assertArrayEquals(expected, run(events));
+
+			//Después se carga sin parsear el .ini
+			events = CompiledScenario.load(compiled, CompiledScenario.hash(source), parser);
+			assertEquals(1, parsed.get());
+			assertArrayEquals(expected, run(events));
+
+			//Sin temporales a medio escribir
+			assertEquals(2, dir.listFiles().length);
+		}
+		finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void staleCacheTest() throws Exception {
+		File dir = Files.createTempDirectory("scenarios").toFile();
+		File source = copy("advanced/11_car.ini", dir);
+		File compiled = new File(source.getPath() + ".tsc");
+		AtomicInteger parsed = new AtomicInteger();
+		Callable<List<Event>> parser = () -> {
+			parsed.incrementAndGet();
+			return parse(source);
+		};
+
+		try {
+			CompiledScenario.load(compiled, CompiledScenario.hash(source), parser);
+			byte[] oldHash = CompiledScenario.getSourceHash(compiled);
+
+			//Al cambiar el .ini se vuelve a compilar
+			Ini ini = new Ini(source.getPath());
+			ini.getSections().get(3).setValue("max_speed", 7);
+			try (OutputStream out = new FileOutputStream(source)) {
+				ini.store(out);
+			}
+			byte[] hash = CompiledScenario.hash(source);
+			assertFalse(Arrays.equals(oldHash, hash));
+			List<Event> events = CompiledScenario.load(compiled, hash, parser);
+			assertEquals(2, parsed.get());
+			assertArrayEquals(hash, CompiledScenario.getSourceHash(compiled));
+			assertArrayEquals(run(parse(source)), run(events));
+			assertArrayEquals(run(parse(source)), run(CompiledScenario.read(compiled)));
+
+			//Con la cabecera bien pero los registros cortados, también
+			byte[] bytes = Files.readAllBytes(compiled.toPath());
+			Files.write(compiled.toPath(), Arrays.copyOf(bytes, bytes.length - 20));
+			events = CompiledScenario.load(compiled, hash, parser);
+			assertEquals(3, parsed.get());
+			assertArrayEquals(run(parse(source)), run(events));
+			assertArrayEquals(bytes, Files.readAllBytes(compiled.toPath()));
+		}
+		finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void compileTimeSeedTest() throws Exception {
+		//Coche que se estropea, sin semilla en el .ini
+		File dir = Files.createTempDirectory("scenarios").toFile();
+		File source = copy("advanced/11_car.ini", dir);
+		Ini ini = new Ini(source.getPath());
+		IniSection car = ini.getSections().get(3);
+		assertEquals("car", car.getValue("type"));
+		car.eraseKey("seed");
+		try (OutputStream out = new FileOutputStream(source)) {
+			ini.store(out);
+		}
+		File compiled = new File(source.getPath() + ".tsc");
+
+		try {
+			CompiledScenario.write(parse(source), CompiledScenario.hash(source), compiled);
+
+			//La semilla se sacó al compilar: cada ejecución la reutiliza
+			byte[] first = run(CompiledScenario.read(compiled), 50);
+			Thread.sleep(5);
+			assertArrayEquals(first, run(CompiledScenario.read(compiled), 50));
+
+			//y está guardada en el archivo
+			File again = new File(dir, "again.tsc");
+			CompiledScenario.write(CompiledScenario.read(compiled),
+					CompiledScenario.hash(source), again);
+			assertArrayEquals(Files.readAllBytes(compiled.toPath()),
+					Files.readAllBytes(again.toPath()));
+		}
+		finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Construye los {@code Event}s de un archivo {@code .ini}.
+	 */
+	private static List<Event> parse(File source) throws Exception {
+		return new EventParser().parseAll(new Ini(source.getPath()).getSections(), 1);
+	}
+
+	/**
+	 * Ejecuta un escenario durante 10 ticks y devuelve
+	 * los informes generados.
+	 */
+	private static byte[] run(List<Event> events) throws Exception {
+		return run(events, 10);
+	}
+
+	/**
+	 * Ejecuta un escenario durante los ticks dados y
+	 * devuelve los informes generados.
+	 */
+	private static byte[] run(List<Event> events, int ticks) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Controller control = new Controller(null, out, ticks);
+		control.setScenario(events);
+		control.executeBatch();
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Copia un ejemplo a un directorio.
+	 */
+	private static File copy(String example, File dir) throws Exception {
+		File source = new File("src/test/resources/examples/" + example);
+		File copy = new File(dir, source.getName());
+		Files.copy(source.toPath(), copy.toPath());
+
+		return copy;
+	}
+}
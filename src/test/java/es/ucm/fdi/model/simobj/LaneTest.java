@@ -0,0 +1,181 @@
+package es.ucm.fdi.model.simobj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LaneTest {
+
+	@Test
+	public void insertionOrderTest() throws Exception {
+		VehicleStore store = new HeapVehicleStore();
+		int[] v = slots(store, 20);
+		Lane lane = new Lane();
+
+		//Todos entran en la posición 0: van por orden de entrada,
+		//también al crecer el array por encima de su capacidad
+		for (int each : v) {
+			lane.addLast(each);
+		}
+		assertEquals(20, lane.size());
+		assertEquals(list(v), contents(lane));
+
+		//Con la misma posición, reordenar no cambia nada
+		lane.reorder(store);
+		assertEquals(list(v), contents(lane));
+
+		//Al desplazar la ventana se conserva el orden
+		for (int i = 0; i < 10; ++i) {
+			assertTrue(lane.remove(v[i]));
+		}
+		int[] more = slots(store, 10);
+		for (int each : more) {
+			lane.addLast(each);
+		}
+		List<Integer> expected = new ArrayList<>(list(v).subList(10, 20));
+		expected.addAll(list(more));
+		assertEquals(expected, contents(lane));
+	}
+
+	@Test
+	public void positionUpdateTest() throws Exception {
+		VehicleStore store = new HeapVehicleStore();
+		int[] v = slots(store, 4);
+		Lane lane = new Lane();
+		for (int each : v) {
+			lane.addLast(each);
+		}
+
+		//v3 adelanta a todos y v1 alcanza a v0: a igual
+		//posición va antes el que entró primero
+		setLocation(store, 0, 10);
+		setLocation(store, 1, 10);
+		setLocation(store, 2, 5);
+		setLocation(store, 3, 30);
+		lane.reorder(store);
+		assertEquals(list(v[3], v[0], v[1], v[2]), contents(lane));
+
+		//v1 adelanta a v0
+		setLocation(store, 1, 12);
+		lane.reorder(store);
+		assertEquals(list(v[3], v[1], v[0], v[2]), contents(lane));
+
+		//v0 vuelve a alcanzar a v1 y recupera su sitio
+		setLocation(store, 0, 12);
+		lane.reorder(store);
+		assertEquals(list(v[3], v[0], v[1], v[2]), contents(lane));
+	}
+
+	@Test
+	public void removalTest() throws Exception {
+		VehicleStore store = new HeapVehicleStore();
+		int[] v = slots(store, 5);
+		Lane lane = new Lane();
+		for (int each : v) {
+			lane.addLast(each);
+		}
+
+		//Cabeza, medio y un Vehicle que no está
+		assertTrue(lane.remove(v[0]));
+		assertTrue(lane.remove(v[2]));
+		assertFalse(lane.remove(v[2]));
+		assertEquals(3, lane.size());
+		assertEquals(list(v[1], v[3], v[4]), contents(lane));
+
+		//Los huecos desaparecen al reordenar
+		lane.reorder(store);
+		assertEquals(list(v[1], v[3], v[4]), contents(lane));
+
+		//Se puede sacar el Vehicle actual mientras se recorre
+		List<Integer> seen = new ArrayList<>();
+		PrimitiveIterator.OfInt it = lane.iterator();
+		while (it.hasNext()) {
+			int each = it.nextInt();
+			seen.add(each);
+			if ( each != v[4] ) {
+				assertTrue(lane.remove(each));
+			}
+		}
+		assertEquals(list(v[1], v[3], v[4]), seen);
+		assertEquals(list(v[4]), contents(lane));
+
+		assertTrue(lane.remove(v[4]));
+		assertTrue(lane.isEmpty());
+		assertFalse(lane.iterator().hasNext());
+
+		//El carril vacío se puede volver a llenar
+		lane.addLast(v[0]);
+		assertEquals(list(v[0]), contents(lane));
+	}
+
+	@Test
+	public void copyTest() {
+		VehicleStore store = new HeapVehicleStore();
+		int[] v = slots(store, 6);
+		Lane lane = new Lane();
+		for (int i = 0; i < 4; ++i) {
+			lane.addLast(v[i]);
+		}
+		assertTrue(lane.remove(v[1]));
+
+		//La copia tiene lo mismo, sin los huecos a la vista
+		Lane copy = new Lane();
+		copy.copy(lane);
+		assertEquals(list(v[0], v[2], v[3]), contents(copy));
+		assertEquals(v[0], copy.first());
+
+		//Lo que cambia cada uno no lo ve el otro
+		copy.addLast(v[4]);
+		assertTrue(lane.remove(v[0]));
+		lane.addLast(v[5]);
+		assertEquals(list(v[0], v[2], v[3], v[4]), contents(copy));
+		assertEquals(list(v[2], v[3], v[5]), contents(lane));
+
+		//y siguen el mismo orden de entrada
+		setLocation(store, v[3], 50);
+		copy.reorder(store);
+		lane.reorder(store);
+		assertEquals(list(v[3], v[0], v[2], v[4]), contents(copy));
+		assertEquals(list(v[3], v[2], v[5]), contents(lane));
+
+		copy.clear();
+		assertTrue(copy.isEmpty());
+		assertEquals(3, lane.size());
+	}
+
+	/**
+	 * Reserva filas consecutivas de {@code store}.
+	 */
+	private static int[] slots(VehicleStore store, int n) {
+		int[] v = new int[n];
+		for (int i = 0; i < n; ++i) {
+			v[i] = store.allocate();
+		}
+		return v;
+	}
+
+	private static void setLocation(VehicleStore store, int slot, int location) {
+		store.setInt(slot, VehicleStore.LOCATION, location);
+	}
+
+	private static List<Integer> contents(Lane lane) {
+		List<Integer> list = new ArrayList<>();
+		PrimitiveIterator.OfInt it = lane.iterator();
+		while (it.hasNext()) {
+			list.add(it.nextInt());
+		}
+		return list;
+	}
+
+	private static List<Integer> list(int... slots) {
+		List<Integer> list = new ArrayList<>();
+		for (int slot : slots) {
+			list.add(slot);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,104 @@
+package es.ucm.fdi.model.simobj;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VehicleStoreTest {
+
+	@Test
+	public void heapShareTest() {
+		shareTest(new HeapVehicleStore());
+	}
+
+	@Test
+	public void directShareTest() {
+		shareTest(new DirectVehicleStore());
+	}
+
+	@Test
+	public void heapPagedShareTest() {
+		pagedShareTest(new HeapVehicleStore());
+	}
+
+	@Test
+	public void directPagedShareTest() {
+		pagedShareTest(new DirectVehicleStore());
+	}
+
+	private void pagedShareTest(VehicleStore store) {
+		//Varias páginas, la última a medio llenar
+		int rows = 2 * VehicleStore.PAGE_ROWS + 10;
+		for (int i = 0; i < rows; ++i) {
+			int slot = store.allocate();
+			store.setInt(slot, VehicleStore.LOCATION, i);
+		}
+		VehicleStore copy = store.share();
+
+		//Cada uno escribe en una página distinta y en la misma
+		copy.setInt(1, VehicleStore.LOCATION, -1);
+		store.setInt(VehicleStore.PAGE_ROWS + 1, VehicleStore.LOCATION, -2);
+		copy.setInt(rows - 1, VehicleStore.LOCATION, -3);
+		store.setInt(rows - 2, VehicleStore.LOCATION, -4);
+		for (int i = 0; i < rows; ++i) {
+			int expectedCopy = ( i == 1 ) ? -1 : ( i == rows - 1 ) ? -3 : i;
+			int expectedStore = ( i == VehicleStore.PAGE_ROWS + 1 ) ? -2 
+					: ( i == rows - 2 ) ? -4 : i;
+			assertEquals(expectedCopy, copy.getInt(i, VehicleStore.LOCATION));
+			assertEquals(expectedStore, store.getInt(i, VehicleStore.LOCATION));
+		}
+
+		//Al crecer una página se siguen compartiendo las demás
+		for (int i = rows; i < 3 * VehicleStore.PAGE_ROWS + 1; ++i) {
+			assertEquals(i, copy.allocate());
+			copy.setInt(i, VehicleStore.LOCATION, i);
+		}
+		store.setInt(2, VehicleStore.LOCATION, -5);
+		assertEquals(2, copy.getInt(2, VehicleStore.LOCATION));
+		copy.setInt(VehicleStore.PAGE_ROWS + 2, VehicleStore.LOCATION, -6);
+		assertEquals(VehicleStore.PAGE_ROWS + 2, 
+				store.getInt(VehicleStore.PAGE_ROWS + 2, VehicleStore.LOCATION));
+		assertEquals(rows, store.size());
+	}
+
+	private void shareTest(VehicleStore store) {
+		for (int i = 0; i < 10; ++i) {
+			int slot = store.allocate();
+			store.setInt(slot, VehicleStore.LOCATION, i);
+			store.setInt(slot, VehicleStore.SPEED, 2 * i);
+		}
+		VehicleStore copy = store.share();
+		assertEquals(10, copy.size());
+		assertEquals(7, copy.getInt(7, VehicleStore.LOCATION));
+
+		//Lo que escribe cada uno no lo ve el otro
+		copy.setInt(3, VehicleStore.LOCATION, 100);
+		store.setInt(4, VehicleStore.LOCATION, 200);
+		assertEquals(3, store.getInt(3, VehicleStore.LOCATION));
+		assertEquals(100, copy.getInt(3, VehicleStore.LOCATION));
+		assertEquals(4, copy.getInt(4, VehicleStore.LOCATION));
+		assertEquals(200, store.getInt(4, VehicleStore.LOCATION));
+
+		//Las columnas sin escribir siguen igual en ambos
+		store.setInt(5, VehicleStore.SPEED, 50);
+		assertEquals(10, copy.getInt(5, VehicleStore.SPEED));
+		copy.unshare();
+		copy.setInt(6, VehicleStore.SPEED, 60);
+		assertEquals(12, store.getInt(6, VehicleStore.SPEED));
+
+		//Las filas nuevas de cada uno empiezan a 0, también al crecer
+		for (int i = 10; i < 100; ++i) {
+			int slot = copy.allocate();
+			assertEquals(i, slot);
+			assertEquals(0, copy.getInt(slot, VehicleStore.KILOMETRAGE));
+			copy.setInt(slot, VehicleStore.KILOMETRAGE, i);
+		}
+		int slot = store.allocate();
+		assertEquals(10, slot);
+		assertEquals(0, store.getInt(slot, VehicleStore.KILOMETRAGE));
+		assertEquals(10, copy.getInt(10, VehicleStore.KILOMETRAGE));
+		assertEquals(100, copy.getInt(3, VehicleStore.LOCATION));
+		assertEquals(11, store.size());
+		assertEquals(100, copy.size());
+	}
+}
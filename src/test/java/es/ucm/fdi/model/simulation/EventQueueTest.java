@@ -0,0 +1,71 @@
+package es.ucm.fdi.model.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import es.ucm.fdi.control.Controller;
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.model.events.Event;
+import es.ucm.fdi.model.events.NewJunction;
+import static org.junit.Assert.*;
+
+public class EventQueueTest {
+	
+	@Test
+	public void orderTest() throws Exception {
+		//Ticks repartidos en muchas vueltas del anillo, con el mismo orden que un TreeMap
+		EventQueue queue = new EventQueue();
+		TreeMap<Integer, List<Event>> expected = new TreeMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; ++i) {
+			int time = (i % 3 == 0) ? random.nextInt(20) : random.nextInt(5000);
+			Event event = new NewJunction(time, "j" + i);
+			queue.add(event);
+			expected.computeIfAbsent(time, t -> new ArrayList<>()).add(event);
+		}
+		assertEquals(2000, queue.size());
+		
+		List<Event> all = new ArrayList<>();
+		expected.values().forEach(all::addAll);
+		assertEquals(all, queue.pending());
+		
+		//Cada tick se saca y se libera en orden
+		for (int time = 0; time < 5000; time = queue.nextTime(time + 1)) {
+			assertEquals(expected.ceilingKey(time).intValue(), queue.nextTime(time));
+			assertEquals(expected.get(time), queue.get(time));
+			queue.release(time);
+			assertNull(queue.get(time));
+			if (queue.size() == 0) {
+				break;
+			}
+		}
+		assertEquals(0, queue.size());
+		assertEquals(-1, queue.nextTime(0));
+		assertTrue(queue.pending().isEmpty());
+	}
+	
+	@Test
+	public void releaseTest() throws Exception {
+		//Los eventos ejecutados no se quedan en el simulador
+		Ini ini = new Ini("src/test/resources/examples/basic/07_reductionFactor.ini");
+		Controller control = new Controller(ini, new ByteArrayOutputStream(), 3);
+		control.executeBatch();
+		int pending = 0;
+		for (IniSection section : ini.getSections()) {
+			if (Integer.parseInt(section.getValue("time")) >= 3) {
+				pending++;
+			}
+		}
+		assertTrue(pending > 0);
+		assertEquals(pending, control.getSimulator().getEvents().size());
+		for (Event event : control.getSimulator().getEvents().pending()) {
+			assertTrue(event.getTime() >= 3);
+		}
+	}
+}
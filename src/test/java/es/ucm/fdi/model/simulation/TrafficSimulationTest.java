@@ -1,14 +1,45 @@
 package es.ucm.fdi.model.simulation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.cli.ParseException;
 import org.junit.Test;
 
+import es.ucm.fdi.control.Controller;
+import es.ucm.fdi.ini.AsyncIniWriter.Backpressure;
+import es.ucm.fdi.ini.DeltaExpander;
+import es.ucm.fdi.ini.DeltaSectionFilter;
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.IniStreamWriter;
 import es.ucm.fdi.model.events.FaultyVehicle;
 import es.ucm.fdi.model.events.NewJunction;
+import es.ucm.fdi.model.events.NewODVehicle;
 import es.ucm.fdi.model.events.NewRoad;
 import es.ucm.fdi.model.events.NewVehicle;
+import es.ucm.fdi.model.simobj.Junction;
+import es.ucm.fdi.model.simobj.Road;
+import es.ucm.fdi.model.simobj.Route;
+import es.ucm.fdi.model.simulation.ReportSelection.Kind;
 import static org.junit.Assert.*;
 
 public class TrafficSimulationTest {
@@ -64,4 +95,1118 @@ public class TrafficSimulationTest {
 		
 	}
 	
+	@Test
+	public void denseIndexTest() throws Exception {
+		TrafficSimulation sim = new TrafficSimulation();
+		sim.pushEvent(new NewJunction(0, "j1"));
+		sim.pushEvent(new NewJunction(0, "j2"));
+		sim.pushEvent(new NewJunction(0, "j3"));
+		sim.pushEvent(new NewRoad(0, "r1", 20, 10, "j1", "j2"));
+		sim.pushEvent(new NewRoad(0, "r2", 20, 10, "j2", "j3"));
+		sim.pushEvent(new NewVehicle(0, "v1", 5, new ArrayList<>(Arrays.asList("j1", "j2", "j3"))));
+		sim.pushEvent(new NewVehicle(1, "v2", 5, new ArrayList<>(Arrays.asList("j2", "j3"))));
+		sim.execute(2, null);
+		
+		//Los objetos tienen índices densos por orden de inserción
+		RoadMap map = sim.roadMap;
+		String[] junctions = {"j1", "j2", "j3"};
+		for (int i = 0; i < junctions.length; ++i) {
+			assertEquals(i, map.indexOfJunction(junctions[i]));
+			assertSame(map.getJunctionWithID(junctions[i]), map.getJunction(i));
+			assertEquals(i, map.getJunction(i).getIndex());
+		}
+		assertEquals(1, map.indexOfRoad("r2"));
+		assertSame(map.getRoadWithID("r2"), map.getRoad(1));
+		assertEquals(0, map.getRoadWithID("r1").getIndex());
+		assertEquals(1, map.indexOfVehicle("v2"));
+		assertSame(map.getVehicleWithID("v2"), map.getVehicle(1));
+		
+		//Los identificadores desconocidos no tienen índice
+		assertEquals(-1, map.indexOfJunction("j4"));
+		assertEquals(-1, map.indexOfRoad("r3"));
+		assertEquals(-1, map.indexOfVehicle("v3"));
+	}
+	
+	@Test
+	public void sharedRouteTest() throws Exception {
+		TrafficSimulation sim = new TrafficSimulation();
+		sim.pushEvent(new NewJunction(0, "j1"));
+		sim.pushEvent(new NewJunction(0, "j2"));
+		sim.pushEvent(new NewJunction(0, "j3"));
+		sim.pushEvent(new NewRoad(0, "r1", 20, 10, "j1", "j2"));
+		
+		//La carretera del segundo tramo aún no existe
+		List<String> trip = Arrays.asList("j1", "j2", "j3");
+		sim.pushEvent(new NewVehicle(0, "v1", 5, new ArrayList<>(trip)));
+		sim.pushEvent(new NewVehicle(0, "v2", 8, new ArrayList<>(trip)));
+		sim.pushEvent(new NewRoad(1, "r2", 20, 10, "j2", "j3"));
+		sim.execute(10, null);
+		
+		//Los vehículos con el mismo itinerario comparten ruta
+		Route route = sim.roadMap.getRoute(trip);
+		assertNotNull(route);
+		assertSame(route, sim.roadMap.getVehicleWithID("v1").getRoute());
+		assertSame(route, sim.roadMap.getVehicleWithID("v2").getRoute());
+		
+		//Y han seguido el tramo creado después que ellos
+		assertSame(sim.roadMap.getRoadWithID("r2"), route.getRoad(1));
+		assertTrue(sim.roadMap.getVehicleWithID("v2").hasArrived());
+	}
+	
+	/**
+	 * Ejecuta un fichero de ejemplo con un número de hilos
+	 * dado y devuelve los informes generados.
+	 */
+	private byte[] runExample(File file, int threads) throws Exception {
+		return runIni(new Ini(file.getPath()), threads, 10);
+	}
+	
+	/**
+	 * Ejecuta una simulación durante los ticks dados con un 
+	 * número de hilos dado y devuelve los informes generados.
+	 */
+	private byte[] runIni(Ini ini, int threads, int ticks) throws Exception {
+		return runIni(ini, threads, ticks, false);
+	}
+	
+	/**
+	 * Ejecuta una simulación durante los ticks dados con un 
+	 * número de hilos y un modo de avance dados y devuelve 
+	 * los informes generados.
+	 */
+	private byte[] runIni(Ini ini, int threads, int ticks, boolean fastForward) 
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, out, ticks);
+		control.setParallelism(threads);
+		control.setFastForward(fastForward);
+		try {
+			control.executeBatch();
+		}
+		finally {
+			//Se cierra el pool de hilos del simulador
+			control.setParallelism(1);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	@Test
+	public void parallelRoadPhaseTest() throws Exception {
+		String[] folders = { "basic", "advanced" };
+		
+		for (String folder : folders) {
+			File dir = new File("src/test/resources/examples/" + folder);
+			for (File file : dir.listFiles((d, name) -> name.endsWith(".ini"))) {
+				//Los informes en paralelo han de ser idénticos byte a byte
+				assertArrayEquals(file.getName(), 
+						runExample(file, 1), runExample(file, 4));
+			}
+		}
+		
+		//Red con muchas más carreteras que el umbral de ProceedTask,
+		//para que el avance sí se reparta entre hilos
+		Ini ini = ringNetwork(200);
+		assertArrayEquals(runIni(ini, 1, 60), runIni(ini, 4, 60));
+	}
+	
+	/**
+	 * Genera una red en anillo de {@code n} cruces de los tres 
+	 * tipos, con carreteras a los dos cruces siguientes y 
+	 * vehículos que recorren varios tramos del anillo.
+	 */
+	private Ini ringNetwork(int n) {
+		Ini ini = new Ini();
+		
+		for (int i = 0; i < n; ++i) {
+			IniSection junction = new IniSection("new_junction");
+			junction.setValue("time", 0);
+			junction.setValue("id", "j" + i);
+			if (i % 3 == 1) {
+				junction.setValue("type", "rr");
+				junction.setValue("min_time_slice", 1);
+				junction.setValue("max_time_slice", 3);
+			}
+			else if (i % 3 == 2) {
+				junction.setValue("type", "mc");
+			}
+			ini.addsection(junction);
+		}
+		for (int i = 0; i < n; ++i) {
+			for (int step = 1; step <= 2; ++step) {
+				IniSection road = new IniSection("new_road");
+				road.setValue("time", 0);
+				road.setValue("id", "r" + i + "_" + step);
+				road.setValue("src", "j" + i);
+				road.setValue("dest", "j" + ((i + step) % n));
+				road.setValue("max_speed", 10 + i % 7);
+				road.setValue("length", 20 + (i * 13) % 40);
+				ini.addsection(road);
+			}
+		}
+		for (int v = 0; v < 4 * n; ++v) {
+			StringBuilder itinerary = new StringBuilder("j" + (v % n));
+			int pos = v % n;
+			for (int hop = 0; hop < 2 + v % 4; ++hop) {
+				pos = (pos + 1 + (v + hop) % 2) % n;
+				itinerary.append(",j" + pos);
+			}
+			IniSection vehicle = new IniSection("new_vehicle");
+			vehicle.setValue("time", v % 10);
+			vehicle.setValue("id", "v" + v);
+			vehicle.setValue("itinerary", itinerary.toString());
+			vehicle.setValue("max_speed", 8 + v % 15);
+			ini.addsection(vehicle);
+		}
+		
+		return ini;
+	}
+	
+	@Test
+	public void parallelJunctionPhaseTest() throws Exception {
+		//Suficientes cruces como para que el avance se reparta entre hilos
+		Ini ini = ringNetwork(150);
+		
+		//Los cruces en paralelo han de dar informes idénticos byte a byte
+		assertArrayEquals(runIni(ini, 1, 60), runIni(ini, 4, 60));
+	}
+	
+	@Test
+	public void odVehicleTest() throws Exception {
+		TrafficSimulation sim = new TrafficSimulation();
+		for (int i = 0; i < 4; ++i) {
+			sim.pushEvent(new NewJunction(0, "j" + i));
+		}
+		//Dos carreteras de j0 a j1: la primera es más lenta
+		sim.pushEvent(new NewRoad(0, "slow", 100, 10, "j0", "j1"));
+		sim.pushEvent(new NewRoad(0, "fast", 10, 10, "j0", "j1"));
+		sim.pushEvent(new NewRoad(0, "r13", 10, 10, "j1", "j3"));
+		sim.pushEvent(new NewRoad(0, "r02", 10, 1, "j0", "j2"));
+		sim.pushEvent(new NewRoad(0, "r23", 1, 1, "j2", "j3"));
+		sim.pushEvent(new NewODVehicle(0, "v1", 5, "j0", "j3"));
+		sim.execute(1, null);
+		
+		//La ruta es la de menor tiempo a la velocidad límite
+		Route route = sim.roadMap.getVehicleWithID("v1").getRoute();
+		assertEquals(3, route.size());
+		assertSame(sim.roadMap.getRoadWithID("fast"), route.getRoad(0));
+		assertSame(sim.roadMap.getRoadWithID("r13"), route.getRoad(1));
+		
+		//Al añadir una carretera se recalculan los caminos
+		sim.pushEvent(new NewRoad(1, "r03", 1, 10, "j0", "j3"));
+		sim.pushEvent(new NewODVehicle(1, "v2", 5, "j0", "j3"));
+		sim.execute(1, null);
+		assertEquals(2, sim.roadMap.getVehicleWithID("v2").getRoute().size());
+	}
+	
+	@Test
+	public void parallelRoutePlanningTest() throws Exception {
+		Ini ini = ringNetwork(60);
+		for (int v = 0; v < 600; ++v) {
+			IniSection vehicle = new IniSection("new_vehicle");
+			vehicle.setValue("time", v % 5);
+			vehicle.setValue("id", "od" + v);
+			vehicle.setValue("type", "od");
+			vehicle.setValue("origin", "j" + (v * 7) % 60);
+			vehicle.setValue("destination", "j" + (v * 7 + 1 + v % 50) % 60);
+			vehicle.setValue("max_speed", 10 + v % 9);
+			ini.addsection(vehicle);
+		}
+		
+		//Las rutas calculadas en paralelo son las mismas
+		assertArrayEquals(runIni(ini, 1, 40), runIni(ini, 4, 40));
+	}
+	
+	@Test
+	public void landmarkRoutingTest() throws Exception {
+		File file = File.createTempFile("ring", ".alt");
+		file.delete();
+		Controller dijkstra = new Controller(ringNetwork(50), new ByteArrayOutputStream(), 1);
+		dijkstra.executeBatch();
+		Controller landmarks = new Controller(ringNetwork(50), new ByteArrayOutputStream(), 1);
+		landmarks.setLandmarkIndex(file);
+		landmarks.executeBatch();
+		TrafficSimulation plain = dijkstra.getSimulator();
+		TrafficSimulation alt = landmarks.getSimulator();
+		
+		//Las rutas con landmarks tienen el mismo coste que con Dijkstra
+		RoadMap map = alt.getRoadMap();
+		for (int o = 0; o < 50; o += 7) {
+			for (int d = 0; d < 50; ++d) {
+				if (o != d) {
+					Junction origin = map.getJunction(o);
+					Junction destination = map.getJunction(d);
+					assertEquals(routeCost(plain.getRoadMap().getRoutePlanner()
+							.getRoute(plain.getRoadMap().getJunction(o), 
+									plain.getRoadMap().getJunction(d))),
+							routeCost(map.getRoutePlanner().getRoute(origin, destination)),
+							1e-9);
+				}
+			}
+		}
+		
+		//El índice guardado sólo vale para el mismo mapa
+		try {
+			assertTrue(file.exists());
+			assertNotNull(LandmarkIndex.load(file, map));
+			alt.pushEvent(new NewRoad(1, "extra", 5, 10, "j0", "j25"));
+			alt.execute(1, null);
+			assertNull(LandmarkIndex.load(file, map));
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void landmarkRouteCacheTest() throws Exception {
+		Controller control = new Controller(ringNetwork(50), new ByteArrayOutputStream(), 1);
+		control.setLandmarkIndex(null);
+		control.executeBatch();
+		TrafficSimulation sim = control.getSimulator();
+		RoadMap map = sim.getRoadMap();
+		RoutePlanner planner = map.getRoutePlanner();
+		planner.getRoute(map.getJunction(1), map.getJunction(0));
+		
+		//Una Junction nueva no deja alcanzable un par que 
+		//no lo es por compartir clave con otro ya buscado
+		sim.pushEvent(new NewJunction(1, "j50"));
+		sim.execute(1, null);
+		try {
+			planner.getRoute(map.getJunction(0), map.getJunction(50));
+			fail("j50 is not reachable");
+		}
+		catch (SimulationException e) {
+		}
+	}
+	
+	@Test
+	public void landmarkFileErrorTest() throws Exception {
+		File dir = Files.createTempDirectory("alt").toFile();
+		File file = new File(new File(dir, "missing"), "ring.alt");
+		try {
+			Controller control = new Controller(ringNetwork(20), new ByteArrayOutputStream(), 1);
+			control.setLandmarkIndex(file);
+			control.executeBatch();
+			RoadMap map = control.getSimulator().getRoadMap();
+			
+			//Si no se puede guardar el índice, la búsqueda falla
+			try {
+				map.getRoutePlanner().getRoute(map.getJunction(0), map.getJunction(5));
+				fail("landmark index can't be saved");
+			}
+			catch (SimulationException e) {
+				assertTrue(e.getMessage().contains("not saved"));
+			}
+		}
+		finally {
+			dir.delete();
+		}
+	}
+	
+	@Test
+	public void landmarkCorruptFileTest() throws Exception {
+		File dir = Files.createTempDirectory("alt").toFile();
+		File file = new File(dir, "ring.alt");
+		try {
+			RoadMap map = routeWithLandmarks(file);
+			byte[] saved = Files.readAllBytes(file.toPath());
+			
+			//Un índice cortado se vuelve a construir y a guardar
+			Files.write(file.toPath(), Arrays.copyOf(saved, saved.length - 12));
+			routeWithLandmarks(file);
+			assertArrayEquals(saved, Files.readAllBytes(file.toPath()));
+			
+			//También uno con un landmark que no es una Junction
+			byte[] corrupt = saved.clone();
+			ByteBuffer.wrap(corrupt).putInt(20, map.getJunctionList().size());
+			Files.write(file.toPath(), corrupt);
+			try {
+				LandmarkIndex.load(file, map);
+				fail("landmark out of range");
+			}
+			catch (IOException e) {
+			}
+			routeWithLandmarks(file);
+			assertArrayEquals(saved, Files.readAllBytes(file.toPath()));
+			
+			//Sin temporales a medio escribir
+			assertEquals(1, dir.listFiles().length);
+		}
+		finally {
+			for (File each : dir.listFiles()) {
+				each.delete();
+			}
+			dir.delete();
+		}
+	}
+	
+	/**
+	 * Busca una ruta en la red en anillo con el 
+	 * {@code LandmarkIndex} de un fichero.
+	 */
+	private RoadMap routeWithLandmarks(File file) throws Exception {
+		Controller control = new Controller(ringNetwork(20), new ByteArrayOutputStream(), 1);
+		control.setLandmarkIndex(file);
+		control.executeBatch();
+		RoadMap map = control.getSimulator().getRoadMap();
+		map.getRoutePlanner().getRoute(map.getJunction(0), map.getJunction(5));
+		
+		return map;
+	}
+	
+	/**
+	 * Devuelve el tiempo de recorrido de una ruta 
+	 * a la velocidad límite.
+	 */
+	private double routeCost(Route route) throws Exception {
+		double cost = 0;
+		for (int pos = 0; pos + 1 < route.size(); ++pos) {
+			Road road = route.getRoad(pos);
+			cost += (double) road.getLength() / road.getSpeedLimit();
+		}
+		
+		return cost;
+	}
+	
+	@Test
+	public void fastForwardTest() throws Exception {
+		//Red con tráfico al principio y un último vehículo muy posterior
+		Ini ini = ringNetwork(6);
+		IniSection late = new IniSection("new_vehicle");
+		late.setValue("time", 150);
+		late.setValue("id", "late");
+		late.setValue("itinerary", "j0,j1,j2,j4");
+		late.setValue("max_speed", 12);
+		ini.addsection(late);
+		
+		byte[] normalBytes = runIni(ini, 1, 200, false);
+		byte[] skippedBytes = runIni(ini, 1, 200, true);
+		Ini normal = new Ini(new ByteArrayInputStream(normalBytes));
+		Ini skipped = new Ini(new ByteArrayInputStream(skippedBytes));
+		
+		//Se han saltado ticks y los informes completos que quedan 
+		//coinciden con los de la ejecución tick a tick
+		int unchanged = 0;
+		for (IniSection section : skipped.getSections()) {
+			if (section.getTag().equals("unchanged_report")) {
+				unchanged++;
+			}
+			else {
+				assertTrue(section.toString(), normal.getSections().contains(section));
+			}
+		}
+		assertTrue("no ticks skipped", unchanged > 0);
+		
+		//El estado final es el mismo
+		assertFalse(sectionsAt(normal, 200).isEmpty());
+		assertEquals(sectionsAt(normal, 200), sectionsAt(skipped, 200));
+		
+		//Con los informes de las Junctions que cambian en los ticks 
+		//saltados, se recupera el estado de cada objeto en cada tick
+		Map<String, IniSection> state = new HashMap<>();
+		for (int t = 1; t <= 200; ++t) {
+			for (IniSection section : sectionsAt(skipped, t)) {
+				state.put(section.getTag() + " " + section.getValue("id"), section);
+			}
+			for (IniSection section : sectionsAt(normal, t)) {
+				IniSection last = state.get(section.getTag() + " " + section.getValue("id"));
+				assertNotNull(section.toString(), last);
+				assertEquals("time " + t, keysWithoutTime(section), keysWithoutTime(last));
+			}
+		}
+		
+		//Igual que al leer un archivo de informes tick a tick
+		File dir = Files.createTempDirectory("archive").toFile();
+		try {
+			ReportArchiveWriter archive = new ReportArchiveWriter(dir, 50, false);
+			Controller control = new Controller(ini, null, 200);
+			control.setFastForward(true);
+			control.setReportArchive(archive);
+			control.executeBatch();
+			archive.close();
+			
+			ReportArchiveReader reader = new ReportArchiveReader(dir);
+			for (int t = 100; t <= 110; ++t) {
+				for (IniSection section : sectionsAt(normal, t)) {
+					IniSection last = reader.getState(section.getTag(), section.getValue("id"), t);
+					assertEquals("time " + t, keysWithoutTime(section), keysWithoutTime(last));
+				}
+			}
+		}
+		finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+		
+		//En modo delta, los ticks saltados se expanden al informe completo
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, delta, 200);
+		control.setFastForward(true);
+		control.setDeltaReports(20);
+		control.executeBatch();
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new DeltaExpander().expand(new ByteArrayInputStream(delta.toByteArray()), full);
+		assertArrayEquals(normalBytes, full.toByteArray());
+		
+		//Y el formato por columnas guarda lo mismo que el .ini
+		ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+		control = new Controller(ini, columnar, 200);
+		control.setFastForward(true);
+		control.setColumnarReports(true);
+		control.executeBatch();
+		ByteArrayOutputStream converted = new ByteArrayOutputStream();
+		ColumnarReportReader.convert(new ByteArrayInputStream(columnar.toByteArray()), converted);
+		assertArrayEquals(skippedBytes, converted.toByteArray());
+	}
+	
+	@Test
+	public void idleJunctionTest() throws Exception {
+		//Cruce al que nunca llega ningún vehículo
+		int[] proceeds = new int[1];
+		TrafficSimulation sim = new TrafficSimulation();
+		sim.pushEvent(new NewJunction(0, "j1"));
+		sim.pushEvent(new NewJunction(0, "j2"));
+		sim.addJunction(new Junction("j3") {
+			@Override
+			public void proceed() {
+				proceeds[0]++;
+				super.proceed();
+			}
+		});
+		sim.pushEvent(new NewRoad(0, "r1", 20, 10, "j1", "j2"));
+		sim.pushEvent(new NewRoad(0, "r2", 20, 10, "j2", "j3"));
+		sim.pushEvent(new NewRoad(0, "r3", 20, 10, "j1", "j3"));
+		sim.pushEvent(new NewVehicle(0, "v1", 10, new ArrayList<>(Arrays.asList("j1", "j2"))));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		sim.execute(5, out);
+		
+		//El cruce no avanza, pero su semáforo sigue el mismo 
+		//ciclo que si hubiera avanzado en cada tick
+		assertEquals(0, proceeds[0]);
+		StringBuilder queues = new StringBuilder();
+		for (IniSection section : new Ini(new ByteArrayInputStream(out.toByteArray())).getSections()) {
+			if (section.getValue("id").equals("j3")) {
+				queues.append(section.getValue("time")).append(' ')
+					.append(section.getValue("queues")).append('\n');
+			}
+		}
+		assertEquals("1 (r2,green,[]),(r3,red,[])\n"
+				+ "2 (r2,red,[]),(r3,green,[])\n"
+				+ "3 (r2,green,[]),(r3,red,[])\n"
+				+ "4 (r2,red,[]),(r3,green,[])\n"
+				+ "5 (r2,green,[]),(r3,red,[])\n", queues.toString());
+	}
+	
+	@Test
+	public void offHeapVehiclesTest() throws Exception {
+		Ini ini = ringNetwork(40);
+		
+		ByteArrayOutputStream heap = new ByteArrayOutputStream();
+		new Controller(ini, heap, 60).executeBatch();
+		
+		ByteArrayOutputStream offHeap = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, offHeap, 60);
+		control.setOffHeapVehicles(true);
+		control.executeBatch();
+		
+		//Los informes no dependen de dónde se guarde el estado
+		assertArrayEquals(heap.toByteArray(), offHeap.toByteArray());
+	}
+	
+	@Test
+	public void failedVehicleTest() throws Exception {
+		TrafficSimulation sim = new TrafficSimulation();
+		sim.pushEvent(new NewJunction(0, "j1"));
+		sim.pushEvent(new NewJunction(0, "j2"));
+		sim.pushEvent(new NewJunction(0, "j3"));
+		sim.pushEvent(new NewRoad(0, "r1", 20, 10, "j1", "j2"));
+		sim.pushEvent(new NewVehicle(0, "v1", 5, new ArrayList<>(Arrays.asList("j1", "j2"))));
+		
+		//No hay Road entre j2 y j3: el Vehicle no llega a crearse
+		sim.pushEvent(new NewVehicle(0, "v2", 5, new ArrayList<>(Arrays.asList("j2", "j3"))));
+		sim.execute(1, null);
+		
+		//Y no deja ocupada ninguna fila del almacén
+		assertTrue(sim.roadMap.existsVehicleID("v1"));
+		assertFalse(sim.roadMap.existsVehicleID("v2"));
+		assertEquals(1, sim.roadMap.getVehicleStore().size());
+	}
+	
+	@Test
+	public void checkpointResumeTest() throws Exception {
+		Ini ini = ringNetwork(30);
+		for (int v = 0; v < 40; ++v) {
+			IniSection car = new IniSection("new_vehicle");
+			car.setValue("time", v % 60);
+			car.setValue("id", "car" + v);
+			car.setValue("type", v % 4 == 0 ? "bike" : "car");
+			car.setValue("itinerary", "j" + v % 30 + ",j" + (v + 1) % 30 + ",j" + (v + 3) % 30);
+			car.setValue("max_speed", 12 + v % 5);
+			if (v % 4 != 0) {
+				car.setValue("resistance", 10);
+				car.setValue("fault_probability", 0.3);
+				car.setValue("max_fault_duration", 4);
+				car.setValue("seed", 1000 + v);
+			}
+			ini.addsection(car);
+		}
+		//Eventos de todos los tipos pendientes al guardar el checkpoint
+		IniSection dirt = new IniSection("new_road");
+		dirt.setValue("time", 50);
+		dirt.setValue("id", "dirt");
+		dirt.setValue("src", "j0");
+		dirt.setValue("dest", "j15");
+		dirt.setValue("max_speed", 20);
+		dirt.setValue("length", 60);
+		dirt.setValue("type", "dirt");
+		ini.addsection(dirt);
+		IniSection lanes = new IniSection("new_road");
+		lanes.setValue("time", 55);
+		lanes.setValue("id", "lanes");
+		lanes.setValue("src", "j15");
+		lanes.setValue("dest", "j0");
+		lanes.setValue("max_speed", 30);
+		lanes.setValue("length", 60);
+		lanes.setValue("type", "lanes");
+		lanes.setValue("lanes", 2);
+		ini.addsection(lanes);
+		IniSection od = new IniSection("new_vehicle");
+		od.setValue("time", 56);
+		od.setValue("id", "od");
+		od.setValue("type", "od");
+		od.setValue("origin", "j1");
+		od.setValue("destination", "j15");
+		od.setValue("max_speed", 15);
+		ini.addsection(od);
+		IniSection faulty = new IniSection("make_vehicle_faulty");
+		faulty.setValue("time", 58);
+		faulty.setValue("vehicles", "v3,car7,od");
+		faulty.setValue("duration", 3);
+		ini.addsection(faulty);
+		
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new Controller(ini, full, 120).executeBatch();
+		
+		File file = File.createTempFile("sim", ".ckpt");
+		try {
+			ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+			Controller first = new Controller(ini, resumed, 45);
+			first.executeBatch();
+			first.saveCheckpoint(file);
+			
+			Controller second = new Controller(null, resumed, 75);
+			second.loadCheckpoint(file);
+			assertEquals(45, second.getExecutionTime());
+			second.executeBatch();
+			
+			//Los informes tras reanudar son los de la ejecución sin interrumpir
+			assertArrayEquals(full.toByteArray(), resumed.toByteArray());
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void forkTest() throws Exception {
+		Ini ini = ringNetwork(30);
+		for (int v = 0; v < 20; ++v) {
+			IniSection od = new IniSection("new_vehicle");
+			od.setValue("time", v);
+			od.setValue("id", "od" + v);
+			od.setValue("type", "od");
+			od.setValue("origin", "j" + v % 5);
+			od.setValue("destination", "j" + (v * 7 + 10) % 30);
+			od.setValue("max_speed", 10 + v % 6);
+			ini.addsection(od);
+		}
+		
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new Controller(ini, full, 100).executeBatch();
+		
+		ByteArrayOutputStream original = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, original, 40);
+		control.executeBatch();
+		TrafficSimulation sim = control.getSimulator();
+		List<TrafficSimulation> forks = sim.fork(3);
+		
+		//Cada copia prueba una alternativa distinta
+		forks.get(1).pushEvent(new FaultyVehicle(40, Arrays.asList("v1", "v5", "od3"), 10));
+		forks.get(2).pushEvent(new NewODVehicle(42, "extra", 20, "j0", "j20"));
+		
+		//Las copias avanzan a la vez, cada una en su hilo
+		ExecutorService threads = Executors.newFixedThreadPool(forks.size());
+		List<Future<byte[]>> results = new ArrayList<>();
+		try {
+			for (TrafficSimulation fork : forks) {
+				results.add(threads.submit(() -> {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					fork.execute(60, out);
+					return out.toByteArray();
+				}));
+			}
+			sim.execute(60, original);
+			
+			byte[] expected = Arrays.copyOfRange(full.toByteArray(), 
+					full.size() - results.get(0).get().length, full.size());
+			
+			//La copia sin cambios sigue igual que el original
+			assertArrayEquals(expected, results.get(0).get());
+			assertFalse(Arrays.equals(expected, results.get(1).get()));
+			assertFalse(Arrays.equals(expected, results.get(2).get()));
+		}
+		finally {
+			threads.shutdown();
+		}
+		
+		//Y el original no se ve afectado por las copias
+		assertArrayEquals(full.toByteArray(), original.toByteArray());
+		assertNull(sim.roadMap.getVehicleWithID("extra"));
+		assertNotNull(forks.get(2).roadMap.getVehicleWithID("extra"));
+	}
+	
+	@Test
+	public void parallelForkTest() throws Exception {
+		Ini ini = ringNetwork(40);
+		
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new Controller(ini, full, 90).executeBatch();
+		
+		//Original en paralelo y fuera del heap
+		Controller control = new Controller(ini, new ByteArrayOutputStream(), 30);
+		control.setOffHeapVehicles(true);
+		control.setParallelism(4);
+		control.executeBatch();
+		TrafficSimulation sim = control.getSimulator();
+		TrafficSimulation fork = sim.fork();
+		assertEquals(sim.roadMap.getVehicleStore().getClass(), 
+				fork.roadMap.getVehicleStore().getClass());
+		
+		//Ambos escriben en las columnas que comparten
+		ByteArrayOutputStream fromFork = new ByteArrayOutputStream();
+		ByteArrayOutputStream fromSim = new ByteArrayOutputStream();
+		Thread thread = new Thread(() -> fork.execute(60, fromFork));
+		thread.start();
+		sim.execute(60, fromSim);
+		thread.join();
+		
+		byte[] expected = Arrays.copyOfRange(full.toByteArray(), 
+				full.size() - fromSim.size(), full.size());
+		try {
+			assertArrayEquals(expected, fromSim.toByteArray());
+			assertArrayEquals(expected, fromFork.toByteArray());
+		}
+		finally {
+			control.setParallelism(1);
+		}
+	}
+	
+	@Test
+	public void ensembleTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		for (int v = 0; v < 30; ++v) {
+			IniSection car = new IniSection("new_vehicle");
+			car.setValue("time", v % 10);
+			car.setValue("id", "car" + v);
+			car.setValue("type", "car");
+			car.setValue("itinerary", "j" + v % 20 + ",j" + (v + 1) % 20 + ",j" + (v + 3) % 20);
+			car.setValue("max_speed", 10 + v % 5);
+			car.setValue("resistance", 5);
+			car.setValue("fault_probability", 0.4);
+			car.setValue("max_fault_duration", 5);
+			car.setValue("seed", 77 + v);
+			ini.addsection(car);
+		}
+		
+		//El resultado no depende de cuántas réplicas se ejecuten a la vez
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		new Controller(ini, sequential, 80).executeEnsemble(8, 1);
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		new Controller(ini, parallel, 80).executeEnsemble(8, 4);
+		assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+		
+		//Una sección por carretera y por vehículo
+		Ini stats = new Ini(new ByteArrayInputStream(sequential.toByteArray()));
+		int roads = 0;
+		boolean varies = false;
+		for (IniSection section : stats.getSections()) {
+			assertEquals("8", section.getValue("replicas"));
+			if (section.getTag().equals("road_stats")) {
+				roads++;
+			}
+			else if (section.getValue("id").startsWith("car")) {
+				//Las réplicas tienen semillas distintas
+				varies |= ! section.getValue("faults_p50").equals(section.getValue("faults_p90"));
+			}
+		}
+		assertEquals(40, roads);
+		assertEquals(40 + 80 + 30, stats.getSections().size());
+		assertTrue(varies);
+		
+		//La réplica 0 usa las semillas del escenario
+		TrafficSimulation sim = new TrafficSimulation();
+		assertEquals(77, sim.deriveSeed(77));
+		sim.setSeedSalt(1);
+		assertNotEquals(77, sim.deriveSeed(77));
+	}
+	
+	@Test
+	public void junctionSweepTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		Ini sweep = new Ini();
+		IniSection j1 = new IniSection("sweep");
+		j1.setValue("junction", "j1");
+		j1.setValue("type", "rr, mc, default");
+		j1.setValue("min_time_slice", "1-2");
+		j1.setValue("max_time_slice", "3, 1");
+		sweep.addsection(j1);
+		IniSection j4 = new IniSection("sweep");
+		j4.setValue("junction", "j4");
+		j4.setValue("type", "rr, default");
+		sweep.addsection(j4);
+		
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		new Controller(ini, sequential, 60).executeSweep(sweep, 1);
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		new Controller(ini, parallel, 60).executeSweep(sweep, 4);
+		assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+		
+		//rr con (1,3), (1,1) y (2,3), mc y default, por rr y default
+		List<IniSection> results = new Ini(
+				new ByteArrayInputStream(sequential.toByteArray())).getSections();
+		assertEquals(10, results.size());
+		assertEquals("rr:2:3", results.get(4).getValue("j1"));
+		assertEquals("default", results.get(3).getValue("j4"));
+		
+		//La primera combinación es el escenario sin cambios
+		assertEquals("rr:1:3", results.get(0).getValue("j1"));
+		assertEquals("rr", results.get(0).getValue("j4"));
+		ByteArrayOutputStream ensemble = new ByteArrayOutputStream();
+		new Controller(ini, ensemble, 60).executeEnsemble(1, 1);
+		int arrived = 0;
+		double delay = 0;
+		List<IniSection> vehicles = new ArrayList<>();
+		for (IniSection s : new Ini(new ByteArrayInputStream(ensemble.toByteArray())).getSections()) {
+			if (s.getTag().equals("vehicle_stats")) {
+				vehicles.add(s);
+				arrived += Integer.parseInt(s.getValue("arrived"));
+				delay += Double.parseDouble(s.getValue("wait_mean"));
+			}
+		}
+		assertEquals(String.valueOf(vehicles.size()), results.get(0).getValue("vehicles"));
+		assertEquals(String.valueOf(arrived), results.get(0).getValue("arrived"));
+		assertEquals(String.format(Locale.ROOT, "%.2f", delay / vehicles.size()), 
+				results.get(0).getValue("mean_delay"));
+		
+		//Un cruce que no está en el escenario es un error
+		IniSection missing = new IniSection("sweep");
+		missing.setValue("junction", "nowhere");
+		sweep.addsection(missing);
+		try {
+			new Controller(ini, new ByteArrayOutputStream(), 60).executeSweep(sweep, 1);
+			fail("Sweep over a missing junction");
+		}
+		catch (ParseException e) {
+		}
+	}
+	
+	@Test
+	public void streamReportTest() throws Exception {
+		String[] folders = { "basic", "advanced" };
+		
+		for (String folder : folders) {
+			File dir = new File("src/test/resources/examples/" + folder);
+			for (File file : dir.listFiles((d, name) -> name.endsWith(".ini"))) {
+				byte[] expected = Files.readAllBytes(
+						new File(file.getPath() + ".eout").toPath());
+				
+				//Informes en memoria y directamente a un archivo
+				assertArrayEquals(file.getName(), expected, runExample(file, 1));
+				File out = File.createTempFile("reports", ".ini");
+				try {
+					try (FileOutputStream stream = new FileOutputStream(out)) {
+						new Controller(new Ini(file.getPath()), stream, 10).executeBatch();
+					}
+					assertArrayEquals(file.getName(), expected, 
+							Files.readAllBytes(out.toPath()));
+				}
+				finally {
+					out.delete();
+				}
+			}
+		}
+		
+		//Mismo formato que Ini.store, también fuera de ASCII
+		String sep = System.lineSeparator();
+		String stored = "[extra]" + sep + "name = añadido ñ, ü" + sep 
+				+ "value = -2048" + sep + "min = " + Integer.MIN_VALUE + sep 
+				+ "empty = " + sep + sep;
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		IniStreamWriter writer = new IniStreamWriter(streamed);
+		writer.beginSection("extra");
+		writer.value("name", "añadido ñ, ü");
+		writer.value("value", -2048);
+		writer.value("min", Integer.MIN_VALUE);
+		writer.value("empty", "");
+		writer.endSection();
+		writer.flush();
+		assertArrayEquals(stored.getBytes(), streamed.toByteArray());
+	}
+	
+	@Test
+	public void asyncReportsTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		byte[] expected = runIni(ini, 1, 80);
+		
+		for (Backpressure policy : Backpressure.values()) {
+			//Salida lenta, para que el anillo se llene
+			ByteArrayOutputStream slow = new ByteArrayOutputStream() {
+				@Override
+				public synchronized void write(byte[] b, int off, int len) {
+					try {
+						Thread.sleep(2);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					super.write(b, off, len);
+				}
+			};
+			Controller control = new Controller(ini, slow, 40);
+			control.setAsyncReports(2, policy);
+			control.executeBatch();
+			control.simulate(40);
+			
+			assertArrayEquals(policy.toString(), expected, slow.toByteArray());
+		}
+	}
+	
+	@Test
+	public void deltaReportsTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		byte[] expected = runIni(ini, 1, 80);
+		
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, delta, 80);
+		control.setDeltaReports(20);
+		control.executeBatch();
+		
+		Ini deltaIni = new Ini(new ByteArrayInputStream(delta.toByteArray()));
+		int keyframes = 0;
+		for (IniSection section : deltaIni.getSections()) {
+			if ( section.getTag().equals(DeltaSectionFilter.KEYFRAME_TAG) ) {
+				keyframes++;
+			}
+		}
+		assertEquals(4, keyframes);
+		assertTrue(delta.size() < expected.length);
+		
+		//Expandido, es igual que el informe completo
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new DeltaExpander().expand(new ByteArrayInputStream(delta.toByteArray()), full);
+		assertArrayEquals(expected, full.toByteArray());
+	}
+	
+	@Test
+	public void columnarReportsTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		byte[] expected = runIni(ini, 1, 60);
+		
+		ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+		Controller control = new Controller(ini, columnar, 60);
+		control.setColumnarReports(true);
+		control.executeBatch();
+		assertTrue(columnar.size() < expected.length / 4);
+		
+		//Convertido, es igual que el informe .ini
+		ByteArrayOutputStream converted = new ByteArrayOutputStream();
+		ColumnarReportReader.convert(
+				new ByteArrayInputStream(columnar.toByteArray()), converted);
+		assertArrayEquals(expected, converted.toByteArray());
+		
+		//Una columna se lee sin pasar por el texto
+		Ini reports = new Ini(new ByteArrayInputStream(expected));
+		ColumnarReportReader reader = new ColumnarReportReader(
+				new ByteArrayInputStream(columnar.toByteArray()));
+		int ticks = 0;
+		while ( reader.next() ) {
+			ticks++;
+			int[] ids = reader.getColumn(ColumnarReportReader.Column.VEHICLE_ID);
+			int[] speeds = reader.getColumn(ColumnarReportReader.Column.SPEED);
+			List<IniSection> vehicles = new ArrayList<>();
+			for (IniSection section : sectionsAt(reports, reader.getTime())) {
+				if ( section.getTag().equals("vehicle_report") ) {
+					vehicles.add(section);
+				}
+			}
+			
+			assertEquals(vehicles.size(), reader.numVehicles());
+			for (int v = 0; v < vehicles.size(); ++v) {
+				assertEquals(vehicles.get(v).getValue("id"), reader.getName(ids[v]));
+				assertEquals(vehicles.get(v).getValue("speed"), String.valueOf(speeds[v]));
+			}
+		}
+		assertEquals(60, ticks);
+	}
+	
+	@Test
+	public void reportSelectionTest() throws Exception {
+		//Red con tráfico al principio y un último vehículo muy posterior
+		Ini ini = ringNetwork(6);
+		IniSection late = new IniSection("new_vehicle");
+		late.setValue("time", 150);
+		late.setValue("id", "late");
+		late.setValue("itinerary", "j0,j1,j2,j4");
+		late.setValue("max_speed", 12);
+		ini.addsection(late);
+		Ini normal = new Ini(new ByteArrayInputStream(runIni(ini, 1, 200)));
+		
+		for (boolean fastForward : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Controller control = new Controller(ini, out, 200);
+			control.setFastForward(fastForward);
+			control.setReportSelection(new ReportSelection(25, "j.*|r.*|late", "r1.*",
+					EnumSet.of(Kind.ROAD, Kind.VEHICLE)));
+			control.executeBatch();
+			
+			//Son los informes de la ejecución completa que cumplen 
+			//la selección, también con avance rápido
+			Ini expected = new Ini();
+			for (IniSection section : normal.getSections()) {
+				String id = section.getValue("id");
+				if ( Integer.parseInt(section.getValue("time")) % 25 == 0
+						&& ! section.getTag().equals("junction_report")
+						&& id.matches("j.*|r.*|late") && ! id.matches("r1.*") ) {
+					expected.addsection(section);
+				}
+			}
+			Ini selected = new Ini(new ByteArrayInputStream(out.toByteArray()));
+			assertFalse(selected.getSections().isEmpty());
+			assertEquals(expected.getSections(), selected.getSections());
+		}
+	}
+	
+	@Test
+	public void eventStreamTest() throws Exception {
+		//Red con tráfico al principio y un último vehículo muy posterior
+		Ini ini = ringNetwork(6);
+		IniSection late = new IniSection("new_vehicle");
+		late.setValue("time", 150);
+		late.setValue("id", "late");
+		late.setValue("itinerary", "j0,j1,j2,j4");
+		late.setValue("max_speed", 12);
+		ini.addsection(late);
+		
+		//Archivo ordenado por tiempo, y comprimido
+		List<IniSection> sections = new ArrayList<>(ini.getSections());
+		sections.sort((a, b) -> Integer.compare(
+				Integer.parseInt(a.getValue("time")), Integer.parseInt(b.getValue("time"))));
+		Ini sorted = new Ini();
+		for (IniSection section : sections) {
+			sorted.addsection(section);
+		}
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(gzip)) {
+			sorted.store(out);
+		}
+		
+		//Mismos informes con cualquier ventana, también con avance rápido
+		for (boolean fastForward : new boolean[] {false, true}) {
+			byte[] expected = runIni(sorted, 1, 200, fastForward);
+			for (int lookahead : new int[] {0, 10}) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				Controller control = new Controller(null, out, 200);
+				control.setFastForward(fastForward);
+				control.setEventStream(new GZIPInputStream(
+						new ByteArrayInputStream(gzip.toByteArray())), lookahead);
+				control.executeBatch();
+				assertArrayEquals(expected, out.toByteArray());
+				assertEquals(200, control.getExecutionTime());
+			}
+		}
+		
+		//Un evento que llega cuando su tiempo ya ha pasado detiene la simulación
+		ByteArrayOutputStream unsorted = new ByteArrayOutputStream();
+		late.setValue("time", 0);
+		ini.store(unsorted);
+		Controller control = new Controller(null, new ByteArrayOutputStream(), 200);
+		control.setEventStream(new ByteArrayInputStream(unsorted.toByteArray()), 0);
+		control.executeBatch();
+		assertTrue(control.getExecutionTime() < 200);
+	}
+	
+	@Test
+	public void reportArchiveTest() throws Exception {
+		Ini ini = ringNetwork(20);
+		byte[] expected = runIni(ini, 1, 60);
+		
+		for (boolean gzip : new boolean[] {false, true}) {
+			File dir = Files.createTempDirectory("archive").toFile();
+			try {
+				ReportArchiveWriter archive = new ReportArchiveWriter(dir, 7, gzip);
+				Controller control = new Controller(ini, null, 60);
+				control.setReportArchive(archive);
+				control.executeBatch();
+				archive.close();
+				
+				//Segmentos de 7 ticks, más el índice
+				assertEquals(60 / 7 + 2, dir.list().length);
+				
+				//Juntos, es igual que el informe .ini
+				ReportArchiveReader reader = new ReportArchiveReader(dir);
+				ByteArrayOutputStream copy = new ByteArrayOutputStream();
+				reader.copyTo(copy);
+				assertArrayEquals(expected, copy.toByteArray());
+				assertEquals(1, reader.getFirstTime());
+				assertEquals(60, reader.getLastTime());
+				
+				//Cualquier tick y objeto se lee por separado
+				Ini reports = new Ini(new ByteArrayInputStream(expected));
+				for (int time : new int[] {1, 8, 33, 60}) {
+					assertEquals(sectionsAt(reports, time), reader.getTick(time));
+					for (IniSection section : sectionsAt(reports, time)) {
+						assertEquals(section, reader.getState(
+								section.getTag(), section.getValue("id"), time));
+					}
+				}
+				assertNull(reader.getTick(61));
+				assertNull(reader.getState("vehicle_report", "nadie", 8));
+			}
+			finally {
+				for (File file : dir.listFiles()) {
+					file.delete();
+				}
+				dir.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Devuelve las claves y valores de una sección 
+	 * de informe, salvo su tiempo.
+	 */
+	private Map<String, String> keysWithoutTime(IniSection section) {
+		Map<String, String> keys = new HashMap<>(section.getKeysMap());
+		keys.remove("time");
+		
+		return keys;
+	}
+	
+	/**
+	 * Devuelve las secciones de informe de un tiempo dado.
+	 */
+	private List<IniSection> sectionsAt(Ini ini, int time) {
+		List<IniSection> sections = new ArrayList<>();
+		for (IniSection section : ini.getSections()) {
+			if (String.valueOf(time).equals(section.getValue("time"))) {
+				sections.add(section);
+			}
+		}
+		
+		return sections;
+	}
+	
 }
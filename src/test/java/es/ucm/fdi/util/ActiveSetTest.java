@@ -0,0 +1,62 @@
+package es.ucm.fdi.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ActiveSetTest {
+
+    @Test
+    public void wakeAndPrune() {
+        ActiveSet<Integer> set = new ActiveSet<>(i -> i);
+        assertTrue(set.isEmpty());
+
+        //Cada objeto entra una sola vez, por orden de entrada
+        assertTrue(set.wake(5));
+        assertTrue(set.wake(2));
+        assertFalse(set.wake(5));
+        assertTrue(set.wake(7));
+        assertTrue(set.wake(0));
+        assertEquals(Arrays.asList(5, 2, 7, 0), set.asList());
+        assertEquals(4, set.size());
+
+        //Al descartar se mantiene el orden de los demás
+        set.prune(i -> i != 2 && i != 0);
+        assertEquals(Arrays.asList(5, 7), set.asList());
+        assertFalse(set.contains(2));
+        assertTrue(set.contains(7));
+
+        //Los descartados pueden volver a entrar, al final
+        assertTrue(set.wake(2));
+        assertEquals(Arrays.asList(5, 7, 2), set.asList());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(5));
+        assertTrue(set.wake(5));
+    }
+
+    @Test
+    public void listReflectsChanges() {
+        ActiveSet<String> set = new ActiveSet<>(String::length);
+        List<String> view = set.asList();
+
+        set.wake("a");
+        set.wake("abc");
+        assertEquals(Arrays.asList("a", "abc"), view);
+
+        set.prune(s -> s.length() > 1);
+        assertEquals(Arrays.asList("abc"), view);
+
+        //La vista es de sólo lectura
+        try {
+            view.add("ab");
+            fail("view should be read-only");
+        }
+        catch (UnsupportedOperationException e) {
+        }
+    }
+}